@@ -22,6 +22,8 @@ import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.VariantBuilder;
 import org.opencb.commons.utils.FileUtils;
 import org.opencb.commons.utils.URLUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -35,18 +37,19 @@ import java.util.stream.Collectors;
 public class ActionableVariantManager {
     // Folder where actionable variant files are located, multiple assemblies are supported, i.e.: one variant actionable file per assembly
     // File name format: actionableVariants_xxx.txt[.gz] where xxx = assembly in lower case
-    private final String ACTIONABLE_URL = "http://resources.opencb.org/opencb/opencga/analysis/resources/";
+    private static final String ACTIONABLE_URL = "http://resources.opencb.org/opencb/opencga/analysis/resources/";
 
     // We keep a Map for each assembly with a Map of variant IDs with the phenotype list
     private static Map<String, Map<String, List<String>>> actionableVariants = null;
+    // Actionable variant IDs of each assembly, sorted by chromosome and position
+    private static Map<String, List<String>> sortedActionableVariantIds = null;
+
+    private static Logger logger = LoggerFactory.getLogger(ActionableVariantManager.class);
 
     public ActionableVariantManager() {}
 
     public Map<String, List<String>> getActionableVariants(String assembly) throws IOException {
-        // Lazy loading
-        if (actionableVariants == null) {
-            actionableVariants = loadActionableVariants();
-        }
+        load();
 
         if (actionableVariants.containsKey(assembly)) {
             return actionableVariants.get(assembly);
@@ -54,8 +57,75 @@ public class ActionableVariantManager {
         return null;
     }
 
+    /**
+     * Returns the actionable variant IDs sorted by chromosome and position, so they can be queried in genomic order.
+     * Invalid variant IDs are skipped.
+     * @param assembly Assembly
+     * @return Sorted list of variant IDs, or an empty list if there are no actionable variants for the assembly
+     * @throws IOException If the actionable variants can not be loaded
+     */
+    public List<String> getSortedActionableVariantIds(String assembly) throws IOException {
+        load();
+
+        return sortedActionableVariantIds.getOrDefault(assembly, Collections.emptyList());
+    }
+
+    private static void load() throws IOException {
+        load(ActionableVariantManager::loadActionableVariants);
+    }
+
+    @FunctionalInterface
+    interface ActionableVariantsLoader {
+        Map<String, Map<String, List<String>>> load() throws IOException;
+    }
+
+    static synchronized void load(ActionableVariantsLoader loader) throws IOException {
+        // Lazy loading
+        if (actionableVariants == null) {
+            Map<String, Map<String, List<String>>> variantsByAssembly = loader.load();
+            Map<String, List<String>> sortedIdsByAssembly = new HashMap<>();
+            for (Map.Entry<String, Map<String, List<String>>> entry : variantsByAssembly.entrySet()) {
+                sortedIdsByAssembly.put(entry.getKey(), Collections.unmodifiableList(sortVariantIds(entry.getValue().keySet())));
+            }
+            sortedActionableVariantIds = sortedIdsByAssembly;
+            actionableVariants = variantsByAssembly;
+        }
+    }
+
+    static synchronized void reset() {
+        actionableVariants = null;
+        sortedActionableVariantIds = null;
+    }
+
+    /**
+     * Sort variant IDs by chromosome and position. Numeric chromosomes go first, in numerical order.
+     * Invalid variant IDs are skipped.
+     *
+     * @param variantIds Variant IDs
+     * @return Sorted list of valid variant IDs
+     */
+    static List<String> sortVariantIds(Collection<String> variantIds) {
+        List<Variant> variants = new ArrayList<>(variantIds.size());
+        for (String variantId : variantIds) {
+            try {
+                variants.add(new Variant(variantId));
+            } catch (RuntimeException e) {
+                logger.warn("Skip invalid actionable variant '{}': {}", variantId, e.getMessage());
+            }
+        }
+        variants.sort(Comparator.comparing((Variant v) -> chromosomeOrder(v.getChromosome()))
+                .thenComparing(Variant::getChromosome)
+                .thenComparingInt(Variant::getStart)
+                .thenComparing(Variant::toString));
+        return variants.stream().map(Variant::toString).collect(Collectors.toList());
+    }
+
+    private static int chromosomeOrder(String chromosome) {
+        return StringUtils.isNumeric(chromosome) ? Integer.parseInt(chromosome) : Integer.MAX_VALUE;
+    }
+
 
-    private Map<String, Map<String, List<String>>> loadActionableVariants() throws IOException {
+    private static Map<String, Map<String, List<String>>> loadActionableVariants() throws IOException {
         // Load actionable variants for each assembly, if present
         // First, read all actionableVariants filenames, actionableVariants_xxx.txt[.gz] where xxx = assembly in lower case
         Map<String, Map<String, List<String>>> actionableVariantsByAssembly = new HashMap<>();
@@ -89,7 +159,7 @@ public class ActionableVariantManager {
      * @return Map of variant IDs with a alist of phenotypes
      * @throws IOException If file is not found
      */
-    private Map<String, List<String>> loadActionableVariants(File file) throws IOException {
+    private static Map<String, List<String>> loadActionableVariants(File file) throws IOException {
 
 //        System.out.println("ActionableVariantManager: path = " + file.toString());
 
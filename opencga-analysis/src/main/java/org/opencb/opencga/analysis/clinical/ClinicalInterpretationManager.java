@@ -80,6 +80,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static org.opencb.biodata.models.clinical.interpretation.VariantClassification.*;
@@ -310,45 +311,20 @@ public class ClinicalInterpretationManager extends StorageManager {
         // Start watch
         StopWatch watch = StopWatch.createStarted();
 
-        List<Variant> variants = new ArrayList<>();
-
-        // Prepare query object
-        Query query = new Query();
-        query.put(STUDY.key(), studyId);
-        query.put(VariantQueryParam.SAMPLE.key(), sampleId);
-
         // Get the correct actionable variants for the assembly
         String assembly = getAssembly(studyId, token);
         Map<String, List<String>> actionableVariants = actionableVariantManager.getActionableVariants(assembly);
-        if (actionableVariants != null) {
-            Iterator<String> iterator = actionableVariants.keySet().iterator();
-            List<String> variantIds = new ArrayList<>();
-            while (iterator.hasNext()) {
-                String id = iterator.next();
-                variantIds.add(id);
-                if (variantIds.size() >= 1000) {
-                    query.put(VariantQueryParam.ID.key(), variantIds);
-                    VariantQueryResult<Variant> result = variantStorageManager.get(query, QueryOptions.empty(), token);
-                    variants.addAll(result.getResults());
-                    variantIds.clear();
-                }
-            }
 
-            if (variantIds.size() > 0) {
-                query.put(VariantQueryParam.ID.key(), variantIds);
-                VariantQueryResult<Variant> result = variantStorageManager.get(query, QueryOptions.empty(), token);
-                variants.addAll(result.getResults());
-            }
-        }
-
-        // Convert variant into clinical variant
         List<ClinicalVariant> clinicalVariants = new ArrayList<>();
-        for (Variant variant : variants) {
-            ClinicalVariant clinicalVariant = createClinicalVariant(variant, null, roleInCancerManager.getRoleInCancer(),
-                    actionableVariants, null);
-            if (clinicalVariant != null) {
-                clinicalVariants.add(clinicalVariant);
-            }
+        if (actionableVariants != null) {
+            Map<String, ClinicalProperty.RoleInCancer> roleInCancer = roleInCancerManager.getRoleInCancer();
+            // Convert variant into clinical variant as they are read
+            getActionableVariantsInSample(studyId, sampleId, assembly, token, variant -> {
+                ClinicalVariant clinicalVariant = createClinicalVariant(variant, null, roleInCancer, actionableVariants, null);
+                if (clinicalVariant != null) {
+                    clinicalVariants.add(clinicalVariant);
+                }
+            });
         }
 
         int dbTime = (int) watch.getTime(TimeUnit.MILLISECONDS);
@@ -356,6 +332,44 @@ public class ClinicalInterpretationManager extends StorageManager {
         return new OpenCGAResult<>(dbTime, Collections.emptyList(), clinicalVariants.size(), clinicalVariants, clinicalVariants.size());
     }
 
+    /**
+     * Fetch the actionable variants of the assembly found in the sample.
+     * One single query with all the actionable variants, so the catalog and permissions are only resolved once.
+     * Sorted IDs allow the storage engine to fetch them in genomic order.
+     *
+     * @param studyId  Study
+     * @param sampleId Sample
+     * @param assembly Assembly of the study
+     * @param token    User token
+     * @param consumer Consumer of each actionable variant in the sample, as they are read
+     * @throws CatalogException       if the study or the sample are not found
+     * @throws IOException            if the actionable variants can not be read
+     * @throws StorageEngineException if there is an error querying the variants
+     */
+    private void getActionableVariantsInSample(String studyId, String sampleId, String assembly, String token,
+                                               Consumer<Variant> consumer)
+            throws CatalogException, IOException, StorageEngineException {
+        List<String> actionableVariantIds = actionableVariantManager.getSortedActionableVariantIds(assembly);
+        if (CollectionUtils.isEmpty(actionableVariantIds)) {
+            return;
+        }
+        Query query = new Query()
+                .append(STUDY.key(), studyId)
+                .append(VariantQueryParam.SAMPLE.key(), sampleId)
+                .append(VariantQueryParam.ID.key(), actionableVariantIds);
+
+        VariantDBIterator iterator = variantStorageManager.iterator(query, QueryOptions.empty(), token);
+        try {
+            iterator.forEachRemaining(consumer);
+        } finally {
+            try {
+                iterator.close();
+            } catch (Exception e) {
+                logger.warn("Error closing actionable variants iterator", e);
+            }
+        }
+    }
+
     /*--------------------------------------------------------------------------*/
 
     private ClinicalVariant createClinicalVariant(Variant variant, Map<String, Set<String>> genePanelMap,
@@ -831,36 +845,9 @@ public class ClinicalInterpretationManager extends StorageManager {
     public List<ClinicalVariant> getSecondaryFindings(String studyId, String sampleId, ClinicalVariantCreator clinicalVariantCreator,
                                                       String sessionId) throws ToolException {
         try {
-            List<Variant> variants = new ArrayList<>();
-
-            // Prepare query object
-            Query query = new Query();
-            query.put(STUDY.key(), studyId);
-            query.put(VariantQueryParam.SAMPLE.key(), sampleId);
-
-            // Get the correct actionable variants for the assembly
             String assembly = getAssembly(studyId, sessionId);
-            Map<String, List<String>> actionableVariants = actionableVariantManager.getActionableVariants(assembly);
-            if (actionableVariants != null) {
-                Iterator<String> iterator = actionableVariants.keySet().iterator();
-                List<String> variantIds = new ArrayList<>();
-                while (iterator.hasNext()) {
-                    String id = iterator.next();
-                    variantIds.add(id);
-                    if (variantIds.size() >= 1000) {
-                        query.put(VariantQueryParam.ID.key(), variantIds);
-                        VariantQueryResult<Variant> result = variantStorageManager.get(query, QueryOptions.empty(), sessionId);
-                        variants.addAll(result.getResults());
-                        variantIds.clear();
-                    }
-                }
-
-                if (variantIds.size() > 0) {
-                    query.put(VariantQueryParam.ID.key(), variantIds);
-                    VariantQueryResult<Variant> result = variantStorageManager.get(query, QueryOptions.empty(), sessionId);
-                    variants.addAll(result.getResults());
-                }
-            }
+            List<Variant> variants = new ArrayList<>();
+            getActionableVariantsInSample(studyId, sampleId, assembly, sessionId, variants::add);
 
             return clinicalVariantCreator.create(variants);
         } catch (InterpretationAnalysisException | IOException | CatalogException | StorageEngineException e) {
@@ -887,37 +874,10 @@ public class ClinicalInterpretationManager extends StorageManager {
             }
         }
 
-        List<Variant> variants = new ArrayList<>();
-
-        // Prepare query object
-        Query query = new Query();
-        query.put(STUDY.key(), studyId);
-        query.put(VariantQueryParam.SAMPLE.key(), sampleId);
-
         // Get the correct actionable variants for the assembly
         String assembly = getAssembly(studyId, sessionId);
-        Map<String, List<String>> actionableVariants = actionableVariantManager.getActionableVariants(assembly);
-        if (actionableVariants != null) {
-            Iterator<String> iterator = actionableVariants.keySet().iterator();
-            List<String> variantIds = new ArrayList<>();
-            while (iterator.hasNext()) {
-                String id = iterator.next();
-                variantIds.add(id);
-                if (variantIds.size() >= 1000) {
-                    query.put(VariantQueryParam.ID.key(), variantIds);
-                    VariantQueryResult<Variant> result = variantStorageManager.get(query, QueryOptions.empty(), sessionId);
-                    variants.addAll(result.getResults());
-                    variantIds.clear();
-                }
-            }
-
-            if (variantIds.size() > 0) {
-                query.put(VariantQueryParam.ID.key(), variantIds);
-                VariantQueryResult<Variant> result = variantStorageManager.get(query, QueryOptions.empty(), sessionId);
-                variants.addAll(result.getResults());
-            }
-        }
-
+        List<Variant> variants = new ArrayList<>();
+        getActionableVariantsInSample(studyId, sampleId, assembly, sessionId, variants::add);
         return variants;
     }
 
@@ -0,0 +1,399 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.analysis.clinical.tiering;
+
+import htsjdk.variant.vcf.VCFConstants;
+import org.apache.commons.lang3.StringUtils;
+import org.opencb.biodata.models.clinical.Disorder;
+import org.opencb.biodata.models.clinical.interpretation.ClinicalProperty;
+import org.opencb.biodata.models.clinical.pedigree.Pedigree;
+import org.opencb.biodata.models.variant.Genotype;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.PopulationFrequency;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+import org.opencb.biodata.tools.pedigree.ModeOfInheritance;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.utils.ListUtils;
+import org.opencb.opencga.core.models.individual.Individual;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+
+import java.util.*;
+
+import static org.opencb.biodata.models.clinical.interpretation.ClinicalProperty.ModeOfInheritance.*;
+
+/**
+ * Evaluates all the modes of inheritance of a family with one single variant scan.
+ *
+ * The scan query contains the filters shared by all the modes of inheritance and the loosest population frequency thresholds,
+ * and includes the genotypes of all the family members. Each returned variant is then classified in memory against the
+ * chromosome, population frequency and genotype rules of every mode of inheritance, as well as the compound heterozygous
+ * and de novo rules, producing the same variants as one query per rule.
+ */
+public class TieringFamilyVariantEvaluator {
+
+    private static final Set<String> X_CHROMOSOMES = Collections.singleton("X");
+    private static final Set<String> Y_CHROMOSOMES = Collections.singleton("Y");
+    private static final Set<String> MT_CHROMOSOMES = new HashSet<>(Arrays.asList("M", "Mt", "mt", "m", "MT"));
+
+    private final Query baseQuery;
+    private final Map<String, String> sampleMap;
+    private final List<String> samples;
+    private final String probandSample;
+    private final int probandIdx;
+    private final int motherIdx;
+    private final int fatherIdx;
+
+    private final Map<ClinicalProperty.ModeOfInheritance, Rule> rules = new EnumMap<>(ClinicalProperty.ModeOfInheritance.class);
+    private final Rule deNovoRule;
+    private final Rule compoundHeterozygousRule;
+
+    /**
+     * Build the evaluator for a family.
+     *
+     * @param pedigree           Pedigree, without members without samples
+     * @param disorder           Disorder
+     * @param penetrance         Penetrance
+     * @param proband            Proband, with the parents information
+     * @param sampleMap          Map of individual ID to sample ID
+     * @param dominantQuery      Annotation filters for dominant modes of inheritance and de novo variants
+     * @param recessiveQuery     Annotation filters for recessive modes of inheritance and compound heterozygous variants
+     * @param mitochondrialQuery Annotation filters for mitochondrial variants
+     */
+    public TieringFamilyVariantEvaluator(Pedigree pedigree, Disorder disorder, ClinicalProperty.Penetrance penetrance,
+                                         Individual proband, Map<String, String> sampleMap, Query dominantQuery, Query recessiveQuery,
+                                         Query mitochondrialQuery) {
+        this.sampleMap = sampleMap;
+        this.samples = new ArrayList<>(new LinkedHashSet<>(sampleMap.values()));
+        this.probandSample = sampleMap.get(proband.getId());
+        this.probandIdx = samples.indexOf(probandSample);
+        this.motherIdx = getParentIdx(proband.getMother());
+        this.fatherIdx = getParentIdx(proband.getFather());
+
+        FrequencyFilter dominant = new FrequencyFilter(dominantQuery);
+        FrequencyFilter recessive = new FrequencyFilter(recessiveQuery);
+        FrequencyFilter mitochondrial = new FrequencyFilter(mitochondrialQuery);
+
+        addRule(AUTOSOMAL_DOMINANT, dominant, null, ModeOfInheritance.dominant(pedigree, disorder, penetrance));
+        addRule(Y_LINKED, dominant, Y_CHROMOSOMES, ModeOfInheritance.yLinked(pedigree, disorder, penetrance));
+        addRule(X_LINKED_DOMINANT, dominant, X_CHROMOSOMES, ModeOfInheritance.xLinked(pedigree, disorder, true, penetrance));
+        addRule(AUTOSOMAL_RECESSIVE, recessive, null, ModeOfInheritance.recessive(pedigree, disorder, penetrance));
+        addRule(X_LINKED_RECESSIVE, recessive, X_CHROMOSOMES, ModeOfInheritance.xLinked(pedigree, disorder, false, penetrance));
+        Map<String, List<String>> mitochondrialGenotypes = ModeOfInheritance.mitochondrial(pedigree, disorder, penetrance);
+        filterOutHealthyGenotypes(mitochondrialGenotypes);
+        addRule(MITOCHONDRIAL, mitochondrial, MT_CHROMOSOMES, mitochondrialGenotypes);
+
+        deNovoRule = buildRule(dominant, null, ModeOfInheritance.deNovo(pedigree));
+        compoundHeterozygousRule = buildRule(recessive, null, ModeOfInheritance.compoundHeterozygous(pedigree));
+
+        // Filters shared by all the queries
+        baseQuery = new Query()
+                .append(VariantQueryParam.ANNOT_BIOTYPE.key(), recessiveQuery.get(VariantQueryParam.ANNOT_BIOTYPE.key()))
+                .append(VariantQueryParam.ANNOT_CONSEQUENCE_TYPE.key(), recessiveQuery.get(VariantQueryParam.ANNOT_CONSEQUENCE_TYPE.key()));
+        FrequencyFilter.union(Arrays.asList(dominant, recessive, mitochondrial)).addTo(baseQuery);
+    }
+
+    /**
+     * Build the query to scan the family variants. Contains the loosest filters of all the rules.
+     *
+     * @param studyId Study
+     * @return Scan query
+     */
+    public Query buildQuery(String studyId) {
+        Query query = new Query(baseQuery)
+                .append(VariantQueryParam.STUDY.key(), studyId)
+                .append(VariantQueryParam.INCLUDE_SAMPLE.key(), samples)
+                .append(VariantQueryParam.INCLUDE_GENOTYPE.key(), true)
+                .append(VariantQueryParam.FILTER.key(), VCFConstants.PASSES_FILTERS_v4)
+                .append(VariantQueryParam.UNKNOWN_GENOTYPE.key(), "./.");
+        if (probandIdx >= 0 && isProbandCarrierRequired()) {
+            query.append(VariantQueryParam.SAMPLE.key(), probandSample);
+        }
+        return query;
+    }
+
+    public QueryOptions buildQueryOptions() {
+        // Compound heterozygous variants require sorted variants
+        return new QueryOptions(QueryOptions.SORT, true);
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty() && deNovoRule == null && compoundHeterozygousRule == null;
+    }
+
+    /**
+     * Classify the scanned variants.
+     *
+     * @param iterator Variants returned by the query from {@link #buildQuery}
+     * @return Result of the evaluation
+     */
+    public Result evaluate(Iterator<Variant> iterator) {
+        Result result = new Result();
+        List<Variant> deNovoCandidates = new ArrayList<>();
+        List<Variant> chCandidates = new ArrayList<>();
+        while (iterator.hasNext()) {
+            Variant variant = iterator.next();
+            for (Map.Entry<ClinicalProperty.ModeOfInheritance, Rule> entry : rules.entrySet()) {
+                if (entry.getValue().test(variant)) {
+                    result.moiVariants.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(variant);
+                }
+            }
+            if (deNovoRule != null && deNovoRule.test(variant)) {
+                deNovoCandidates.add(variant);
+            }
+            if (compoundHeterozygousRule != null && compoundHeterozygousRule.test(variant)) {
+                chCandidates.add(variant);
+            }
+        }
+
+        if (deNovoRule != null) {
+            result.moiVariants.put(DE_NOVO, ModeOfInheritance.deNovo(VariantDBIterator.wrapper(deNovoCandidates.iterator()),
+                    probandIdx, motherIdx, fatherIdx));
+        }
+        if (compoundHeterozygousRule != null) {
+            result.chVariants.putAll(ModeOfInheritance.compoundHeterozygous(VariantDBIterator.wrapper(chCandidates.iterator()),
+                    probandIdx, motherIdx, fatherIdx));
+        }
+        return result;
+    }
+
+    private int getParentIdx(Individual parent) {
+        if (parent != null && StringUtils.isNotEmpty(parent.getId()) && sampleMap.containsKey(parent.getId())) {
+            return samples.indexOf(sampleMap.get(parent.getId()));
+        }
+        return -1;
+    }
+
+    private boolean isProbandCarrierRequired() {
+        List<Rule> allRules = new ArrayList<>(rules.values());
+        allRules.add(deNovoRule);
+        allRules.add(compoundHeterozygousRule);
+        for (Rule rule : allRules) {
+            if (rule == null) {
+                continue;
+            }
+            Set<String> genotypes = rule.genotypes.get(probandSample);
+            if (genotypes == null) {
+                return false;
+            }
+            for (String genotype : genotypes) {
+                if (!hasAlternate(genotype)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void addRule(ClinicalProperty.ModeOfInheritance moi, FrequencyFilter frequencyFilter, Set<String> chromosomes,
+                         Map<String, List<String>> genotypes) {
+        Rule rule = buildRule(frequencyFilter, chromosomes, genotypes);
+        if (rule != null) {
+            rules.put(moi, rule);
+        }
+    }
+
+    private Rule buildRule(FrequencyFilter frequencyFilter, Set<String> chromosomes, Map<String, List<String>> genotypes) {
+        if (genotypes == null || ModeOfInheritance.isEmptyMapOfGenotypes(genotypes)) {
+            return null;
+        }
+        Map<String, Set<String>> sampleGenotypes = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : genotypes.entrySet()) {
+            if (sampleMap.containsKey(entry.getKey()) && ListUtils.isNotEmpty(entry.getValue())) {
+                Set<String> normalized = new HashSet<>();
+                for (String genotype : entry.getValue()) {
+                    normalized.add(normalizeGenotype(genotype));
+                }
+                sampleGenotypes.put(sampleMap.get(entry.getKey()), normalized);
+            }
+        }
+        return new Rule(frequencyFilter, chromosomes, sampleGenotypes);
+    }
+
+    private static void filterOutHealthyGenotypes(Map<String, List<String>> genotypes) {
+        genotypes.values().removeIf(gts -> gts.stream().noneMatch(gt -> gt.contains("1")));
+    }
+
+    /**
+     * Unphased genotype with sorted alleles, so "1|0", "0|1" and "0/1" are equivalent, as in the genotype query filter.
+     *
+     * @param genotype Genotype
+     * @return Normalized genotype
+     */
+    static String normalizeGenotype(String genotype) {
+        if (genotype == null) {
+            return "./.";
+        }
+        int[] alleles;
+        try {
+            alleles = new Genotype(genotype).getAllelesIdx().clone();
+        } catch (RuntimeException e) {
+            return genotype;
+        }
+        Arrays.sort(alleles);
+        StringBuilder sb = new StringBuilder();
+        for (int allele : alleles) {
+            if (sb.length() > 0) {
+                sb.append('/');
+            }
+            sb.append(allele < 0 ? "." : String.valueOf(allele));
+        }
+        return sb.toString();
+    }
+
+    private static boolean hasAlternate(String normalizedGenotype) {
+        for (String allele : normalizedGenotype.split("/")) {
+            if (!allele.equals("0") && !allele.equals(".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class Result {
+        private final Map<ClinicalProperty.ModeOfInheritance, List<Variant>> moiVariants
+                = new EnumMap<>(ClinicalProperty.ModeOfInheritance.class);
+        private final Map<String, List<Variant>> chVariants = new HashMap<>();
+
+        public Map<ClinicalProperty.ModeOfInheritance, List<Variant>> getMoiVariants() {
+            return moiVariants;
+        }
+
+        public Map<String, List<Variant>> getChVariants() {
+            return chVariants;
+        }
+    }
+
+    private static final class Rule {
+        private final FrequencyFilter frequencyFilter;
+        private final Set<String> chromosomes;
+        private final Map<String, Set<String>> genotypes;
+
+        private Rule(FrequencyFilter frequencyFilter, Set<String> chromosomes, Map<String, Set<String>> genotypes) {
+            this.frequencyFilter = frequencyFilter;
+            this.chromosomes = chromosomes;
+            this.genotypes = genotypes;
+        }
+
+        private boolean test(Variant variant) {
+            if (chromosomes != null && !chromosomes.contains(variant.getChromosome())) {
+                return false;
+            }
+            if (variant.getStudies().isEmpty()) {
+                return false;
+            }
+            StudyEntry studyEntry = variant.getStudies().get(0);
+            for (Map.Entry<String, Set<String>> entry : genotypes.entrySet()) {
+                String gt = studyEntry.getSampleData(entry.getKey(), "GT");
+                if (!entry.getValue().contains(normalizeGenotype(gt))) {
+                    return false;
+                }
+            }
+            return frequencyFilter.test(variant);
+        }
+    }
+
+    /**
+     * Population alternate frequency and MAF thresholds, parsed from a query.
+     * Missing populations or stats are accepted, as in the variant query.
+     */
+    static final class FrequencyFilter {
+        // study:population -> maximum alternate frequency (exclusive)
+        private final Map<String, Float> populations = new LinkedHashMap<>();
+        // cohort -> maximum MAF (exclusive)
+        private final Map<String, Float> cohorts = new LinkedHashMap<>();
+
+        FrequencyFilter(Query query) {
+            parse(query.getString(VariantQueryParam.ANNOT_POPULATION_ALTERNATE_FREQUENCY.key()), populations);
+            parse(query.getString(VariantQueryParam.STATS_MAF.key()), cohorts);
+        }
+
+        private FrequencyFilter() {
+        }
+
+        private static void parse(String value, Map<String, Float> thresholds) {
+            if (StringUtils.isEmpty(value)) {
+                return;
+            }
+            for (String filter : value.split(";")) {
+                if (filter.isEmpty()) {
+                    continue;
+                }
+                String[] split = filter.split("<");
+                if (split.length != 2) {
+                    throw new IllegalArgumentException("Unsupported frequency filter " + filter);
+                }
+                thresholds.put(split[0], Float.valueOf(split[1]));
+            }
+        }
+
+        /**
+         * Loosest filter accepting all the variants accepted by any of the given filters. Only thresholds defined by all the
+         * filters are kept.
+         */
+        static FrequencyFilter union(List<FrequencyFilter> filters) {
+            FrequencyFilter union = new FrequencyFilter();
+            union.populations.putAll(filters.get(0).populations);
+            union.cohorts.putAll(filters.get(0).cohorts);
+            for (FrequencyFilter filter : filters) {
+                union.populations.keySet().retainAll(filter.populations.keySet());
+                union.populations.replaceAll((key, value) -> Math.max(value, filter.populations.get(key)));
+                union.cohorts.keySet().retainAll(filter.cohorts.keySet());
+                union.cohorts.replaceAll((key, value) -> Math.max(value, filter.cohorts.get(key)));
+            }
+            return union;
+        }
+
+        void addTo(Query query) {
+            if (!populations.isEmpty()) {
+                query.append(VariantQueryParam.ANNOT_POPULATION_ALTERNATE_FREQUENCY.key(), toString(populations));
+            }
+            if (!cohorts.isEmpty()) {
+                query.append(VariantQueryParam.STATS_MAF.key(), toString(cohorts));
+            }
+        }
+
+        private static String toString(Map<String, Float> thresholds) {
+            StringJoiner joiner = new StringJoiner(";");
+            thresholds.forEach((key, value) -> joiner.add(key + "<" + value));
+            return joiner.toString();
+        }
+
+        boolean test(Variant variant) {
+            if (!populations.isEmpty() && variant.getAnnotation() != null
+                    && variant.getAnnotation().getPopulationFrequencies() != null) {
+                for (PopulationFrequency populationFrequency : variant.getAnnotation().getPopulationFrequencies()) {
+                    Float max = populations.get(populationFrequency.getStudy() + ":" + populationFrequency.getPopulation());
+                    if (max != null && populationFrequency.getAltAlleleFreq() >= max) {
+                        return false;
+                    }
+                }
+            }
+            if (!cohorts.isEmpty() && !variant.getStudies().isEmpty()) {
+                for (Map.Entry<String, Float> entry : cohorts.entrySet()) {
+                    VariantStats stats = variant.getStudies().get(0).getStats(entry.getKey());
+                    if (stats != null && stats.getMaf() >= entry.getValue()) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
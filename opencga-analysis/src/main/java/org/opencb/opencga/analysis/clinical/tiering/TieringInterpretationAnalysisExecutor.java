@@ -17,8 +17,6 @@
 package org.opencb.opencga.analysis.clinical.tiering;
 
 import htsjdk.variant.vcf.VCFConstants;
-import org.apache.commons.lang3.StringUtils;
-import org.opencb.biodata.models.clinical.Disorder;
 import org.opencb.biodata.models.clinical.interpretation.ClinicalProperty;
 import org.opencb.biodata.models.clinical.interpretation.ClinicalVariant;
 import org.opencb.biodata.models.clinical.interpretation.DiseasePanel;
@@ -30,7 +28,6 @@ import org.opencb.biodata.tools.clinical.TieringClinicalVariantCreator;
 import org.opencb.biodata.tools.pedigree.ModeOfInheritance;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
-import org.opencb.commons.utils.ListUtils;
 import org.opencb.opencga.analysis.clinical.ClinicalInterpretationAnalysisExecutor;
 import org.opencb.opencga.analysis.clinical.ClinicalInterpretationManager;
 import org.opencb.opencga.analysis.clinical.ClinicalUtils;
@@ -43,13 +40,13 @@ import org.opencb.opencga.core.tools.OpenCgaToolExecutor;
 import org.opencb.opencga.core.tools.annotations.ToolExecutor;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
-import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.*;
-import java.util.stream.Collectors;
 
 import static org.opencb.biodata.models.clinical.interpretation.ClinicalProperty.ModeOfInheritance.*;
 
@@ -68,6 +65,8 @@ public class TieringInterpretationAnalysisExecutor extends OpenCgaToolExecutor i
     private String sessionId;
     private ClinicalInterpretationManager clinicalInterpretationManager;
 
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
     private final static Query dominantQuery;
     private final static Query recessiveQuery;
     private final static Query mitochondrialQuery;
@@ -152,43 +151,27 @@ public class TieringInterpretationAnalysisExecutor extends OpenCgaToolExecutor i
         // samples easily)
         Map<String, String> sampleMap = ClinicalUtils.getSampleMap(clinicalAnalysis, proband);
 
+        // Evaluate all the modes of inheritance, compound heterozygous and de novo variants with one single scan
+        TieringFamilyVariantEvaluator evaluator = new TieringFamilyVariantEvaluator(pedigree, clinicalAnalysis.getDisorder(),
+                penetrance, proband, sampleMap, dominantQuery, recessiveQuery, mitochondrialQuery);
         Map<ClinicalProperty.ModeOfInheritance, List<Variant>> resultMap = new HashMap<>();
         Map<String, List<Variant>> chVariantMap = new HashMap<>();
-
-        List<Variant> regionVariants = new ArrayList<>();
-
-        ExecutorService threadPool = Executors.newFixedThreadPool(8);
-
-        List<Future<Boolean>> futureList = new ArrayList<>(8);
-        futureList.add(threadPool.submit(getNamedThread(AUTOSOMAL_DOMINANT.name(),
-                () -> query(pedigree, clinicalAnalysis.getDisorder(), sampleMap, AUTOSOMAL_DOMINANT, resultMap))));
-        futureList.add(threadPool.submit(getNamedThread(X_LINKED_DOMINANT.name(),
-                () -> query(pedigree, clinicalAnalysis.getDisorder(), sampleMap, X_LINKED_DOMINANT, resultMap))));
-        futureList.add(threadPool.submit(getNamedThread(Y_LINKED.name(),
-                () -> query(pedigree, clinicalAnalysis.getDisorder(), sampleMap, Y_LINKED, resultMap))));
-        futureList.add(threadPool.submit(getNamedThread(AUTOSOMAL_RECESSIVE.name(),
-                () -> query(pedigree, clinicalAnalysis.getDisorder(), sampleMap, AUTOSOMAL_RECESSIVE, resultMap))));
-        futureList.add(threadPool.submit(getNamedThread(X_LINKED_RECESSIVE.name(),
-                () -> query(pedigree, clinicalAnalysis.getDisorder(), sampleMap, X_LINKED_RECESSIVE, resultMap))));
-        futureList.add(threadPool.submit(getNamedThread(MITOCHONDRIAL.name(),
-                () -> query(pedigree, clinicalAnalysis.getDisorder(), sampleMap, MITOCHONDRIAL, resultMap))));
-        futureList.add(threadPool.submit(getNamedThread(COMPOUND_HETEROZYGOUS.name(), () -> compoundHeterozygous(chVariantMap))));
-        futureList.add(threadPool.submit(getNamedThread(DE_NOVO.name(), () -> deNovo(resultMap))));
-        futureList.add(threadPool.submit(getNamedThread("REGION", () -> region(diseasePanels, sampleMap.values(),
-                assembly, regionVariants))));
-        threadPool.shutdown();
-
-        try {
-            threadPool.awaitTermination(2, TimeUnit.MINUTES);
-            if (!threadPool.isTerminated()) {
-                for (Future<Boolean> future : futureList) {
-                    future.cancel(true);
-                }
+        if (!evaluator.isEmpty()) {
+            Query query = evaluator.buildQuery(studyId);
+            logger.debug("Tiering family query: {}", query.safeToString());
+            try (VariantDBIterator iterator = clinicalInterpretationManager.getVariantStorageManager()
+                    .iterator(query, evaluator.buildQueryOptions(), sessionId)) {
+                TieringFamilyVariantEvaluator.Result result = evaluator.evaluate(iterator);
+                resultMap.putAll(result.getMoiVariants());
+                chVariantMap.putAll(result.getChVariants());
+            } catch (Exception e) {
+                throw new ToolException("Error querying variants for the Tiering interpretation analysis", e);
             }
-        } catch (InterruptedException e) {
-            throw new ToolException("Error launching threads when execuging the Tiering interpretation analysis", e);
         }
 
+        List<Variant> regionVariants = new ArrayList<>();
+        region(diseasePanels, sampleMap.values(), assembly, regionVariants);
+
         List<Variant> variantList = new ArrayList<>();
         Map<String, List<ClinicalProperty.ModeOfInheritance>> variantMoIMap = new HashMap<>();
 
@@ -249,40 +232,6 @@ public class TieringInterpretationAnalysisExecutor extends OpenCgaToolExecutor i
         ClinicalUtils.writeClinicalVariants(secondaryFindings, Paths.get(getOutDir() + "/secondary-findings.json"));
     }
 
-    private <T> Callable<T> getNamedThread(String name, Callable<T> c) {
-        String parentThreadName = Thread.currentThread().getName();
-        return () -> {
-            Thread.currentThread().setName(parentThreadName + "-" + name);
-            return c.call();
-        };
-    }
-
-    private Boolean compoundHeterozygous(Map<String, List<Variant>> resultMap) {
-        Query query = new Query(recessiveQuery);
-        try {
-            Map<String, List<Variant>> chVariants = clinicalInterpretationManager.getCompoundHeterozigousVariants(clinicalAnalysisId,
-                    studyId, query, QueryOptions.empty(), sessionId);
-            resultMap.putAll(chVariants);
-        } catch (Exception e) {
-            return false;
-        }
-
-        return true;
-    }
-
-    private Boolean deNovo(Map<ClinicalProperty.ModeOfInheritance, List<Variant>> resultMap) {
-        Query query = new Query(dominantQuery);
-        try {
-            List<Variant> deNovoVariants = clinicalInterpretationManager.getDeNovoVariants(clinicalAnalysisId, studyId, query,
-                    QueryOptions.empty(), sessionId);
-            resultMap.put(DE_NOVO, deNovoVariants);
-        } catch (Exception e) {
-            return false;
-        }
-
-        return true;
-    }
-
     private Boolean region(List<DiseasePanel> diseasePanelList, Collection<String> samples, String assembly, List<Variant> result) {
         List<Region> regions = new ArrayList<>();
         if (diseasePanelList == null || diseasePanelList.isEmpty()) {
@@ -323,91 +272,6 @@ public class TieringInterpretationAnalysisExecutor extends OpenCgaToolExecutor i
         return true;
     }
 
-    private Boolean query(Pedigree pedigree, Disorder disorder, Map<String, String> sampleMap, ClinicalProperty.ModeOfInheritance moi,
-                          Map<ClinicalProperty.ModeOfInheritance, List<Variant>> resultMap) {
-        Query query;
-        Map<String, List<String>> genotypes;
-        switch (moi) {
-            case AUTOSOMAL_DOMINANT:
-                query = new Query(dominantQuery);
-                genotypes = ModeOfInheritance.dominant(pedigree, disorder, penetrance);
-                break;
-            case Y_LINKED:
-                query = new Query(dominantQuery)
-                        .append(VariantQueryParam.REGION.key(), "Y");
-                genotypes = ModeOfInheritance.yLinked(pedigree, disorder, penetrance);
-                break;
-            case X_LINKED_DOMINANT:
-                query = new Query(dominantQuery)
-                        .append(VariantQueryParam.REGION.key(), "X");
-                genotypes = ModeOfInheritance.xLinked(pedigree, disorder, true, penetrance);
-                break;
-            case AUTOSOMAL_RECESSIVE:
-                query = new Query(recessiveQuery);
-                genotypes = ModeOfInheritance.recessive(pedigree, disorder, penetrance);
-                break;
-            case X_LINKED_RECESSIVE:
-                query = new Query(recessiveQuery)
-                        .append(VariantQueryParam.REGION.key(), "X");
-                genotypes = ModeOfInheritance.xLinked(pedigree, disorder, false, penetrance);
-                break;
-            case MITOCHONDRIAL:
-                query = new Query(mitochondrialQuery);
-                genotypes = ModeOfInheritance.mitochondrial(pedigree, disorder, penetrance);
-                filterOutHealthyGenotypes(genotypes);
-                break;
-            default:
-                return false;
-        }
-        query.append(VariantQueryParam.INCLUDE_GENOTYPE.key(), true)
-                .append(VariantQueryParam.STUDY.key(), studyId)
-                .append(VariantQueryParam.FILTER.key(), VCFConstants.PASSES_FILTERS_v4)
-                .append(VariantQueryParam.UNKNOWN_GENOTYPE.key(), "./.");
-
-        if (ModeOfInheritance.isEmptyMapOfGenotypes(genotypes)) {
-            return false;
-        }
-        addGenotypeFilter(genotypes, sampleMap, query);
-
-        try {
-            resultMap.put(moi, clinicalInterpretationManager.getVariantStorageManager().get(query, QueryOptions.empty(), sessionId)
-                    .getResults());
-        } catch (CatalogException | StorageEngineException | IOException e) {
-            return false;
-        }
-        return true;
-    }
-
-    private void filterOutHealthyGenotypes(Map<String, List<String>> genotypes) {
-        List<String> filterOutKeys = new ArrayList<>();
-        for (String key : genotypes.keySet()) {
-            List<String> gts = genotypes.get(key);
-            boolean filterOut = true;
-            for (String gt : gts) {
-                if (gt.contains("1")) {
-                    filterOut = false;
-                }
-            }
-            if (filterOut) {
-                filterOutKeys.add(key);
-            }
-        }
-        for (String filterOutKey : filterOutKeys) {
-            genotypes.remove(filterOutKey);
-        }
-    }
-
-    private void addGenotypeFilter(Map<String, List<String>> genotypes, Map<String, String> sampleMap, Query query) {
-        String genotypeString = StringUtils.join(genotypes.entrySet().stream()
-                .filter(entry -> sampleMap.containsKey(entry.getKey()))
-                .filter(entry -> ListUtils.isNotEmpty(entry.getValue()))
-                .map(entry -> sampleMap.get(entry.getKey()) + ":" + StringUtils.join(entry.getValue(), VariantQueryUtils.OR))
-                .collect(Collectors.toList()), ";");
-        if (StringUtils.isNotEmpty(genotypeString)) {
-            query.put(VariantQueryParam.GENOTYPE.key(), genotypeString);
-        }
-    }
-
     public String getStudyId() {
         return studyId;
     }
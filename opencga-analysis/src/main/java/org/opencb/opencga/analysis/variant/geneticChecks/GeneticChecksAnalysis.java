@@ -121,6 +121,7 @@ public class GeneticChecksAnalysis extends OpenCgaTool {
     protected void check() throws Exception {
         super.check();
         setUpStorageEngineExecutor(studyId);
+        executorParams.put(IBDComputation.NUM_THREADS, params.getInt(IBDComputation.NUM_THREADS, IBDComputation.DEFAULT_NUM_THREADS));
 
         if (StringUtils.isEmpty(studyId)) {
             throw new ToolException("Missing study ID.");
@@ -80,9 +80,10 @@ public class GeneticChecksLocalAnalysisExecutor extends GeneticChecksAnalysisExe
                 VariantStorageManager variantStorageManager = getVariantStorageManager();
                 CatalogManager catalogManager = variantStorageManager.getCatalogManager();
 
-                // Run IBD/IBS computation using PLINK in docker
+                // Run IBD/IBS computation
                 RelatednessReport relatednessReport = IBDComputation.compute(getStudyId(), getSampleIds(), getMinorAlleleFreq(),
-                        getOutDir(), variantStorageManager, getToken());
+                        getExecutorParams().getInt(IBDComputation.NUM_THREADS, IBDComputation.DEFAULT_NUM_THREADS),
+                        variantStorageManager, getToken());
 
                 // Set relatedness report
                 getReport().setRelatednessReport(relatednessReport);
@@ -20,10 +20,6 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
-import org.opencb.commons.exec.Command;
-import org.opencb.commons.utils.DockerUtils;
-import org.opencb.opencga.analysis.variant.manager.VariantStorageManager;
-import org.opencb.opencga.analysis.wrappers.PlinkWrapperAnalysis;
 import org.opencb.opencga.catalog.db.api.IndividualDBAdaptor;
 import org.opencb.opencga.catalog.db.api.ProjectDBAdaptor;
 import org.opencb.opencga.catalog.exceptions.CatalogException;
@@ -39,32 +35,25 @@ import org.opencb.opencga.core.models.variant.InferredSexReport;
 import org.opencb.opencga.core.models.variant.MendelianErrorReport;
 import org.opencb.opencga.core.models.variant.MendelianErrorReport.SampleAggregation;
 import org.opencb.opencga.core.models.variant.MendelianErrorReport.SampleAggregation.ChromosomeAggregation;
-import org.opencb.opencga.core.models.variant.RelatednessReport;
 import org.opencb.opencga.core.response.OpenCGAResult;
-import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
-import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
-import static org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat.TPED;
-
 public class GeneticChecksUtils {
 
-    public static void selectMarkers(String basename, String study, List<String> samples, String maf, Path outDir,
-                                     VariantStorageManager storageManager, String token) throws ToolException {
-        AbstractMap.SimpleEntry<String, String> outputBinding = new AbstractMap.SimpleEntry<>(outDir.toAbsolutePath().toString(),
-                "/data/output");
-
-        // MAF parameter:
-        //    - For annotated population studies, e.g.: 1kG_phase3:CEU>0.3
-        //    - For cohort, e.g.: cohort:ALL>0.3
-
+    /**
+     * Query to select the markers for the genetic checks: biallelic SNVs from autosomal chromosomes, called in all
+     * the samples and filtered by minor allele frequency.
+     *
+     * @param study   Study
+     * @param samples Samples
+     * @param maf     MAF filter, either from an annotated population study, e.g.: 1kG_phase3:CEU>0.3,
+     *                or from a cohort, e.g.: cohort:ALL>0.3
+     * @return Query
+     */
+    public static Query buildMarkersQuery(String study, List<String> samples, String maf) {
         // Apply filter: biallelic variants
         Query query = new Query()
                 .append(VariantQueryParam.STUDY.key(), study)
@@ -74,24 +63,13 @@ public class GeneticChecksUtils {
         query.put(VariantQueryParam.GENOTYPE.key(), gt);
         //.append(VariantQueryParam.FILTER.key(), "PASS")
 
-        // Export variants in format .tped and .tfam to run PLINK (only autosomal chromosomes)
-        File tpedFile = outDir.resolve(basename + ".tped").toFile();
-        File tfamFile = outDir.resolve(basename + ".tfam").toFile();
         query.put(VariantQueryParam.REGION.key(), Arrays.asList("1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,17,18,19,20,21,22".split(",")));
         if (maf.startsWith("cohort:")) {
             query.put(VariantQueryParam.STATS_MAF.key(), maf.substring(7));
         } else {
             query.put(VariantQueryParam.ANNOT_POPULATION_MINOR_ALLELE_FREQUENCY.key(), maf);
         }
-
-        exportData(tpedFile, tfamFile, query, storageManager, token);
-        if (tpedFile.exists() && tpedFile.length() > 0) {
-            pruneVariants(basename, outputBinding);
-        }
-
-        if (!tpedFile.exists() || tpedFile.length() == 0) {
-            throw new ToolException("No variants found when exporting data to TPED/TFAM format");
-        }
+        return query;
     }
 
     public static List<String> getSamples(String study, String familyId, CatalogManager catalogManager, String token)
@@ -146,43 +124,6 @@ public class GeneticChecksUtils {
         return assembly;
     }
 
-    public static RelatednessReport buildRelatednessReport(File file) throws ToolException {
-        RelatednessReport relatednessReport = new RelatednessReport();
-
-        // Set method
-        relatednessReport.setMethod("IBD");
-
-        BufferedReader reader;
-        try {
-            reader = new BufferedReader(new FileReader(file));
-            // First line is the header
-            // FID1         IID1 FID2         IID2 RT    EZ      Z0      Z1      Z2  PI_HAT PHE       DST     PPC   RATIO
-            String line = reader.readLine();
-
-            while ((line = reader.readLine()) != null) {
-                String[] splits = line.trim().split("\\s+");
-
-                // Create relatedness score
-                RelatednessReport.RelatednessScore score = new RelatednessReport.RelatednessScore();
-                score.setSampleId1(splits[1]);
-                score.setSampleId2(splits[3]);
-                score.setZ0(Double.parseDouble(splits[6]));
-                score.setZ1(Double.parseDouble(splits[7]));
-                score.setZ2(Double.parseDouble(splits[8]));
-                score.setPiHat(Double.parseDouble(splits[9]));
-                score.setReportedRelation(splits[4]);
-
-                // Add relatedness score to the report
-                relatednessReport.getScores().add(score);
-            }
-            reader.close();
-        } catch (IOException e) {
-            throw new ToolException(e);
-        }
-
-        return relatednessReport;
-    }
-
     public static Family getFamilyById(String studyId, String familyId, CatalogManager catalogManager, String token)
             throws ToolException {
         OpenCGAResult<Family> familyResult;
@@ -362,42 +303,4 @@ public class GeneticChecksUtils {
             }
         }
     }
-
-    //-------------------------------------------------------------------------
-    // P R I V A T E     M E T H O D S
-    //-------------------------------------------------------------------------
-
-    private static void exportData(File tpedFile, File tfamFile, Query query, VariantStorageManager storageManager,
-                                   String token) throws ToolException {
-        try {
-            storageManager.exportData(tpedFile.getAbsolutePath(), TPED, null, query, QueryOptions.empty(), token);
-        } catch(CatalogException | IOException | StorageEngineException e) {
-            throw new ToolException(e);
-        }
-
-        if (!tpedFile.exists() || !tfamFile.exists()) {
-            throw new ToolException("Something wrong exporting data to TPED/TFAM format");
-        }
-    }
-
-    private static void pruneVariants(String basename, AbstractMap.SimpleEntry<String, String> outputBinding) throws ToolException {
-        // Variant pruning using PLINK in docker
-        String plinkParams = "plink --tfile /data/output/" + basename + " --indep 50 5 2 --out /data/output/" + basename;
-        try {
-            DockerUtils.run(PlinkWrapperAnalysis.PLINK_DOCKER_IMAGE, null, outputBinding, plinkParams, null);
-        } catch (IOException e) {
-            throw new ToolException(e);
-        }
-    }
-
-    private static int getNumLines(File file) throws ToolException {
-        Command cmd = new Command(file.getAbsolutePath() + " -wl");
-        cmd.run();
-        String output = cmd.getOutput();
-        if (StringUtils.isEmpty(output)) {
-            throw new ToolException("Error reading number of lines: " + file.getAbsolutePath());
-        }
-
-        return (Integer.parseInt(output.split("\t")[0]) - 1);
-    }
 }
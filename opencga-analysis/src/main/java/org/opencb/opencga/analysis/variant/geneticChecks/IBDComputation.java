@@ -16,98 +16,169 @@
 
 package org.opencb.opencga.analysis.variant.geneticChecks;
 
-import org.opencb.commons.utils.DockerUtils;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.opencga.analysis.variant.manager.VariantStorageManager;
-import org.opencb.opencga.analysis.wrappers.PlinkWrapperAnalysis;
+import org.opencb.opencga.catalog.db.api.IndividualDBAdaptor;
+import org.opencb.opencga.catalog.exceptions.CatalogException;
+import org.opencb.opencga.catalog.managers.CatalogManager;
 import org.opencb.opencga.core.exceptions.ToolException;
+import org.opencb.opencga.core.models.individual.Individual;
+import org.opencb.opencga.core.models.sample.Sample;
 import org.opencb.opencga.core.models.variant.RelatednessReport;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.*;
-import java.nio.file.Path;
-import java.util.AbstractMap;
-import java.util.List;
-import java.util.Scanner;
+import java.util.*;
 
 public class IBDComputation {
 
-    private static final String BASENAME = "variants";
-
-    public static RelatednessReport compute(String study, List<String> samples, String maf, Path outDir,
+    public static final String PARENT_OFFSPRING = "PO";
+    public static final String FULL_SIBLINGS = "FS";
+    public static final String HALF_SIBLINGS = "HS";
+    public static final String UNRELATED = "UN";
+
+    // Executor param with the number of threads of the computation
+    public static final String NUM_THREADS = "numThreads";
+    public static final int DEFAULT_NUM_THREADS = 4;
+
+    // LD pruning parameters, same as PLINK --indep 50 5 2
+    public static final int PRUNE_WINDOW_SIZE = 50;
+    public static final int PRUNE_STEP = 5;
+    public static final double PRUNE_VIF_THRESHOLD = 2;
+
+    private static Logger logger = LoggerFactory.getLogger(IBDComputation.class);
+
+    /**
+     * Compute the IBD/IBS relatedness scores of all the pairs of samples.
+     *
+     * Genotypes of the selected markers are read from the variant storage, and the scores are computed in memory
+     * with a {@link RelatednessCalculator}. Markers in linkage disequilibrium are pruned first, as PLINK --indep 50 5 2 does.
+     *
+     * @param study          Study
+     * @param samples        Samples
+     * @param maf            MAF filter to select the markers
+     * @param numThreads     Number of threads
+     * @param storageManager Variant storage manager
+     * @param token          User token
+     * @return Relatedness report
+     * @throws ToolException if no markers are found, or on any error reading the variants
+     */
+    public static RelatednessReport compute(String study, List<String> samples, String maf, int numThreads,
                                             VariantStorageManager storageManager, String token) throws ToolException {
-        // Select markers
-        GeneticChecksUtils.selectMarkers(BASENAME, study, samples, maf, outDir, storageManager, token);
+        RelatednessCalculator calculator = loadMarkers(study, samples, maf, storageManager, token);
+        int numPruned = calculator.pruneLD(PRUNE_WINDOW_SIZE, PRUNE_STEP, PRUNE_VIF_THRESHOLD);
+        if (calculator.getNumMarkers() == 0) {
+            throw new ToolException("No variants found to compute relatedness analysis");
+        }
+        logger.info("Computing relatedness of {} samples with {} markers ({} pruned by LD)", samples.size(),
+                calculator.getNumMarkers(), numPruned);
 
-        // run IBD and return the result file (now autosome-file comprises X chromosome too)
-        File outFile = runIBD(BASENAME, outDir);
+        List<RelatednessReport.RelatednessScore> scores = calculator.compute(numThreads);
 
-        if (!outFile.exists()) {
-            throw new ToolException("Something wrong happened executing relatedness analysis");
+        Map<String, Individual> individuals = getIndividualsBySample(study, samples, storageManager.getCatalogManager(), token);
+        for (RelatednessReport.RelatednessScore score : scores) {
+            score.setReportedRelation(getReportedRelation(individuals.get(score.getSampleId1()), individuals.get(score.getSampleId2())));
         }
 
-        return GeneticChecksUtils.buildRelatednessReport(outFile);
+        return new RelatednessReport("IBD", scores);
     }
 
-    private static File runIBD(String basename, Path outDir) throws ToolException {
-        AbstractMap.SimpleEntry<String, String> outputBinding = new AbstractMap.SimpleEntry<>(outDir.toAbsolutePath().toString(),
-                "/data/output");
-
-        // Calculate allele frequencies to pass to PLINK: --read-freq <.freq filename>
-        String readFreq = "";
-        String readFreqFilename = basename + ".maf.freq";
-        createReadFreqFile(outputBinding.getKey() + "/" + basename + ".tped", outputBinding.getKey() + "/" + readFreqFilename);
-        if (new File(outputBinding.getKey() + "/" + readFreqFilename).exists()) {
-            readFreq = " --read-freq /data/output/" + readFreqFilename;
+    private static RelatednessCalculator loadMarkers(String study, List<String> samples, String maf,
+                                                     VariantStorageManager storageManager, String token) throws ToolException {
+        RelatednessCalculator calculator = new RelatednessCalculator(samples);
+        Map<String, Integer> samplePositions = new HashMap<>();
+        for (int i = 0; i < samples.size(); i++) {
+            samplePositions.put(samples.get(i), i);
         }
 
-        // Run IBD using PLINK in docker
-        String exclude = "";
-        File pruneOutFile = new File(outputBinding.getKey() + "/" + basename + ".prune.out");
-        if (pruneOutFile.exists() && pruneOutFile.length() > 0) {
-            exclude = " --exclude /data/output/" + basename + ".prune.out";
-        }
-        String plinkParams = "plink --tfile /data/output/" + basename + " --genome rel-check " + readFreq + exclude + " --out /data/output/"
-                + basename;
-        try {
-            DockerUtils.run(PlinkWrapperAnalysis.PLINK_DOCKER_IMAGE, null, outputBinding, plinkParams, null);
-        } catch (IOException e) {
-            throw new ToolException(e);
-        }
-
-        // Check output file
-        File outFile = new File(outputBinding.getKey() + "/" + basename + ".genome");
-        if (!outFile.exists()) {
-            throw new ToolException("Something wrong executing relatedness analysis (i.e., IBD/IBS computation) in PLINK docker.");
+        Query query = GeneticChecksUtils.buildMarkersQuery(study, samples, maf)
+                .append(VariantQueryParam.INCLUDE_SAMPLE.key(), samples)
+                .append(VariantQueryParam.INCLUDE_SAMPLE_DATA.key(), "GT");
+        QueryOptions options = new QueryOptions(QueryOptions.EXCLUDE, VariantField.ANNOTATION);
+
+        int[] altAlleleCounts = new int[samples.size()];
+        try (VariantDBIterator iterator = storageManager.iterator(query, options, token)) {
+            while (iterator.hasNext()) {
+                Variant variant = iterator.next();
+                StudyEntry studyEntry = variant.getStudies().get(0);
+                Integer gtIdx = studyEntry.getSampleDataKeyPosition("GT");
+                if (gtIdx == null || gtIdx < 0) {
+                    continue;
+                }
+                Arrays.fill(altAlleleCounts, RelatednessCalculator.MISSING);
+                int sampleIdx = 0;
+                for (String sample : studyEntry.getOrderedSamplesName()) {
+                    Integer position = samplePositions.get(sample);
+                    if (position != null) {
+                        altAlleleCounts[position] = RelatednessCalculator
+                                .altAlleleCount(studyEntry.getSamples().get(sampleIdx).getData().get(gtIdx));
+                    }
+                    sampleIdx++;
+                }
+                calculator.addMarker(variant.getChromosome(), altAlleleCounts);
+            }
+        } catch (Exception e) {
+            throw new ToolException("Error reading variants to compute relatedness analysis", e);
         }
-
-        return outFile;
+        return calculator;
     }
 
-    private static void createReadFreqFile(String tpedFilename, String mafFilename) throws ToolException {
-        try (FileWriter f = new FileWriter(mafFilename, true);
-             PrintWriter p = new PrintWriter(new BufferedWriter(f))) {
-
-            p.println("CHR\tSNP\tA1\tA2\tMAF\tNCHROBS");
-
-            FileInputStream fis = new FileInputStream(tpedFilename);
-            Scanner sc = new Scanner(fis);
-            while(sc.hasNextLine()) {
-                String[] splits = sc.nextLine().split("\t");
-                String[] varSplits = splits[1].split(":");
-
-                int a1 = 0;
-                int a2 = 0;
-                for (int i = 4; i < splits.length; i++) {
-                    if (splits[i].equals(varSplits[2])) {
-                        a1++;
-                    } else if (splits[i].equals(varSplits[3])) {
-                        a2++;
+    private static Map<String, Individual> getIndividualsBySample(String study, List<String> samples, CatalogManager catalogManager,
+                                                                  String token) throws ToolException {
+        Map<String, Individual> individuals = new HashMap<>();
+        Query query = new Query(IndividualDBAdaptor.QueryParams.SAMPLES.key(), samples);
+        QueryOptions queryOptions = new QueryOptions(QueryOptions.INCLUDE, "id,father.id,mother.id,samples.id");
+        try {
+            for (Individual individual : catalogManager.getIndividualManager().search(study, query, queryOptions, token).getResults()) {
+                if (individual.getSamples() != null) {
+                    for (Sample sample : individual.getSamples()) {
+                        individuals.put(sample.getId(), individual);
                     }
                 }
-                p.println(splits[0] + "\t" + splits[1] + "\t" + varSplits[2] + "\t" + varSplits[3] + "\t" + (1.0d * a2 / (a1 + a2)) + "\t"
-                        + (a1 + a2));
             }
-        } catch (IOException e) {
+        } catch (CatalogException e) {
             throw new ToolException(e);
         }
+        return individuals;
+    }
+
+    /**
+     * Relation between two individuals according to the pedigree, using the same codes as PLINK.
+     *
+     * @param individual1 First individual. Nullable
+     * @param individual2 Second individual. Nullable
+     * @return PO (parent-offspring), FS (full siblings), HS (half siblings) or UN (unrelated or unknown)
+     */
+    static String getReportedRelation(Individual individual1, Individual individual2) {
+        if (individual1 == null || individual2 == null) {
+            return UNRELATED;
+        }
+        String father1 = getId(individual1.getFather());
+        String mother1 = getId(individual1.getMother());
+        String father2 = getId(individual2.getFather());
+        String mother2 = getId(individual2.getMother());
+        if (individual1.getId().equals(father2) || individual1.getId().equals(mother2)
+                || individual2.getId().equals(father1) || individual2.getId().equals(mother1)) {
+            return PARENT_OFFSPRING;
+        }
+        boolean sameFather = father1 != null && father1.equals(father2);
+        boolean sameMother = mother1 != null && mother1.equals(mother2);
+        if (sameFather && sameMother) {
+            return FULL_SIBLINGS;
+        } else if (sameFather || sameMother) {
+            return HALF_SIBLINGS;
+        } else {
+            return UNRELATED;
+        }
+    }
+
+    private static String getId(Individual individual) {
+        return individual == null ? null : individual.getId();
     }
 }
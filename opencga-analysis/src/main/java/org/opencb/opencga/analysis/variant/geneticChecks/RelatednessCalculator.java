@@ -0,0 +1,565 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.analysis.variant.geneticChecks;
+
+import org.opencb.biodata.models.variant.Genotype;
+import org.opencb.opencga.core.exceptions.ToolException;
+import org.opencb.opencga.core.models.variant.RelatednessReport.RelatednessScore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Pairwise relatedness from biallelic markers, computed in memory.
+ *
+ * Genotypes are packed in two bit planes per sample, one bit per marker:
+ * <ul>
+ *     <li>0/0 : ref=1, alt=0</li>
+ *     <li>0/1 : ref=1, alt=1</li>
+ *     <li>1/1 : ref=0, alt=1</li>
+ *     <li>missing : ref=0, alt=0</li>
+ * </ul>
+ * IBS counts of a pair of samples are obtained with bitwise operations and popcounts over 64 markers at a time.
+ *
+ * Z0, Z1, Z2 and PI_HAT are estimated with the method of moments, as PLINK --genome does, using allele frequencies
+ * computed from the given samples and the same small sample size correction of the expected IBS probabilities.
+ * The KING-robust kinship coefficient is computed as well.
+ *
+ * Markers in linkage disequilibrium can be pruned with {@link #pruneLD}, equivalent to PLINK --indep.
+ */
+public class RelatednessCalculator {
+
+    public static final int MISSING = -1;
+
+    private final List<String> samples;
+    private long[][] refPlanes;
+    private long[][] altPlanes;
+    private int numMarkers;
+    // Number of called alleles and alternate alleles of each marker
+    private int[] markerAlleles = new int[1024];
+    private int[] markerAltAlleles = new int[1024];
+    // First marker of each chromosome
+    private final List<Integer> chromosomeStarts = new ArrayList<>();
+    private String lastChromosome;
+
+    public RelatednessCalculator(List<String> samples) {
+        this.samples = samples;
+        refPlanes = new long[samples.size()][16];
+        altPlanes = new long[samples.size()][16];
+    }
+
+    /**
+     * Number of alternate alleles of a diploid genotype.
+     *
+     * @param genotype Genotype
+     * @return 0, 1, 2 or {@link #MISSING} for missing, non diploid or multiallelic genotypes
+     */
+    public static int altAlleleCount(String genotype) {
+        int[] alleles;
+        try {
+            alleles = new Genotype(genotype).getAllelesIdx();
+        } catch (RuntimeException e) {
+            return MISSING;
+        }
+        if (alleles.length != 2) {
+            return MISSING;
+        }
+        int count = 0;
+        for (int allele : alleles) {
+            if (allele < 0 || allele > 1) {
+                return MISSING;
+            }
+            count += allele;
+        }
+        return count;
+    }
+
+    /**
+     * Add a marker from the same chromosome as the previous one.
+     *
+     * @param altAlleleCounts Number of alternate alleles for each sample, in the same order as the samples list.
+     * @return false if the marker was discarded for being monomorphic or missing in all the samples
+     */
+    public boolean addMarker(int[] altAlleleCounts) {
+        return addMarker(lastChromosome, altAlleleCounts);
+    }
+
+    /**
+     * Add a marker. Markers must be added sorted by chromosome and position.
+     *
+     * @param chromosome      Chromosome of the marker
+     * @param altAlleleCounts Number of alternate alleles for each sample, in the same order as the samples list.
+     * @return false if the marker was discarded for being monomorphic or missing in all the samples
+     */
+    public boolean addMarker(String chromosome, int[] altAlleleCounts) {
+        int alleles = 0;
+        int altAlleles = 0;
+        for (int count : altAlleleCounts) {
+            if (count != MISSING) {
+                alleles += 2;
+                altAlleles += count;
+            }
+        }
+        if (altAlleles == 0 || altAlleles == alleles) {
+            // Non informative marker
+            return false;
+        }
+
+        if (chromosomeStarts.isEmpty() || !Objects.equals(chromosome, lastChromosome)) {
+            chromosomeStarts.add(numMarkers);
+            lastChromosome = chromosome;
+        }
+        int word = numMarkers >>> 6;
+        if (word == refPlanes[0].length) {
+            for (int i = 0; i < samples.size(); i++) {
+                refPlanes[i] = Arrays.copyOf(refPlanes[i], word * 2);
+                altPlanes[i] = Arrays.copyOf(altPlanes[i], word * 2);
+            }
+        }
+        if (numMarkers == markerAlleles.length) {
+            markerAlleles = Arrays.copyOf(markerAlleles, numMarkers * 2);
+            markerAltAlleles = Arrays.copyOf(markerAltAlleles, numMarkers * 2);
+        }
+        markerAlleles[numMarkers] = alleles;
+        markerAltAlleles[numMarkers] = altAlleles;
+        long bit = 1L << (numMarkers & 63);
+        for (int i = 0; i < altAlleleCounts.length; i++) {
+            switch (altAlleleCounts[i]) {
+                case 0:
+                    refPlanes[i][word] |= bit;
+                    break;
+                case 1:
+                    refPlanes[i][word] |= bit;
+                    altPlanes[i][word] |= bit;
+                    break;
+                case 2:
+                    altPlanes[i][word] |= bit;
+                    break;
+                default:
+                    break;
+            }
+        }
+        numMarkers++;
+        return true;
+    }
+
+    public int getNumMarkers() {
+        return numMarkers;
+    }
+
+    /**
+     * Expected IBS given IBD of one marker, as PLINK --genome computes them. Alleles are sampled without replacement
+     * from the observed alleles, which is the PLINK small sample size correction. Markers with less than 4 called
+     * alleles use the uncorrected frequencies.
+     *
+     * @param alleles    Number of called alleles
+     * @param altAlleles Number of alternate alleles
+     * @param expectedIbs Expected IBS given IBD to sum the marker to. Indexed by [ibs][ibd]
+     */
+    static void addExpectedIbs(int alleles, int altAlleles, double[][] expectedIbs) {
+        double n = alleles;
+        double x = altAlleles;
+        double y = alleles - altAlleles;
+        double x2;
+        double x3;
+        double x4;
+        double y2;
+        double y3;
+        double y4;
+        double n3;
+        double n4;
+        if (alleles >= 4) {
+            x2 = x * (x - 1);
+            x3 = x2 * (x - 2);
+            x4 = x3 * (x - 3);
+            y2 = y * (y - 1);
+            y3 = y2 * (y - 2);
+            y4 = y3 * (y - 3);
+            n3 = n * (n - 1) * (n - 2);
+            n4 = n3 * (n - 3);
+        } else {
+            x2 = x * x;
+            x3 = x2 * x;
+            x4 = x3 * x;
+            y2 = y * y;
+            y3 = y2 * y;
+            y4 = y3 * y;
+            n3 = n * n * n;
+            n4 = n3 * n;
+        }
+        // Joint probabilities of drawing 4 alleles (IBD 0) or 3 alleles (IBD 1), with x2 = x * (x - 1)...
+        expectedIbs[0][0] += 2 * x2 * y2 / n4;
+        expectedIbs[1][0] += (4 * x3 * y + 4 * x * y3) / n4;
+        expectedIbs[2][0] += (x4 + y4 + 4 * x2 * y2) / n4;
+        expectedIbs[1][1] += (2 * x2 * y + 2 * x * y2) / n3;
+        expectedIbs[2][1] += (x3 + y3 + x2 * y + x * y2) / n3;
+        expectedIbs[2][2] += 1;
+    }
+
+    /**
+     * Prune markers in linkage disequilibrium, as PLINK --indep does.
+     *
+     * A window of markers slides along each chromosome. Within each window, the variance inflation factor (VIF) of each
+     * marker, regressed on all the other markers of the window, is obtained from the inverse of their correlation matrix.
+     * The marker with the largest VIF is removed until all of them are below the threshold. Markers whose correlation
+     * matrix is singular are removed starting from the last one of the window.
+     *
+     * @param windowSize    Window size, in number of markers
+     * @param step          Number of markers to shift the window at each step
+     * @param vifThreshold  VIF threshold
+     * @return Number of pruned markers
+     */
+    public int pruneLD(int windowSize, int step, double vifThreshold) {
+        boolean[] pruned = new boolean[numMarkers];
+        for (int c = 0; c < chromosomeStarts.size(); c++) {
+            int chromosomeEnd = c + 1 < chromosomeStarts.size() ? chromosomeStarts.get(c + 1) : numMarkers;
+            for (int start = chromosomeStarts.get(c); start < chromosomeEnd; start += step) {
+                int end = Math.min(start + windowSize, chromosomeEnd);
+                List<Integer> window = new ArrayList<>(end - start);
+                for (int marker = start; marker < end; marker++) {
+                    if (!pruned[marker]) {
+                        window.add(marker);
+                    }
+                }
+                pruneWindow(window, vifThreshold, pruned);
+                if (end == chromosomeEnd) {
+                    break;
+                }
+            }
+        }
+
+        int numPruned = 0;
+        for (boolean p : pruned) {
+            if (p) {
+                numPruned++;
+            }
+        }
+        if (numPruned > 0) {
+            removeMarkers(pruned);
+        }
+        return numPruned;
+    }
+
+    private void pruneWindow(List<Integer> window, double vifThreshold, boolean[] pruned) {
+        if (window.size() < 2) {
+            return;
+        }
+        double[][] correlation = correlation(window);
+        List<Integer> current = new ArrayList<>(window.size());
+        for (int i = 0; i < window.size(); i++) {
+            current.add(i);
+        }
+        while (current.size() > 1) {
+            double[][] matrix = new double[current.size()][current.size()];
+            for (int i = 0; i < current.size(); i++) {
+                for (int j = 0; j < current.size(); j++) {
+                    matrix[i][j] = correlation[current.get(i)][current.get(j)];
+                }
+            }
+            int remove;
+            if (!invert(matrix)) {
+                remove = current.size() - 1;
+            } else {
+                remove = 0;
+                for (int i = 1; i < current.size(); i++) {
+                    if (matrix[i][i] > matrix[remove][remove]) {
+                        remove = i;
+                    }
+                }
+                if (matrix[remove][remove] <= vifThreshold) {
+                    break;
+                }
+            }
+            pruned[window.get(current.remove(remove))] = true;
+        }
+    }
+
+    /**
+     * Correlation matrix of the genotypes of the given markers. Missing genotypes take the mean value of the marker.
+     */
+    private double[][] correlation(List<Integer> markers) {
+        int numSamples = samples.size();
+        double[][] values = new double[markers.size()][numSamples];
+        for (int m = 0; m < markers.size(); m++) {
+            int marker = markers.get(m);
+            int word = marker >>> 6;
+            long bit = 1L << (marker & 63);
+            double mean = ((double) markerAltAlleles[marker]) / markerAlleles[marker] * 2;
+            double[] v = values[m];
+            for (int s = 0; s < numSamples; s++) {
+                boolean ref = (refPlanes[s][word] & bit) != 0;
+                boolean alt = (altPlanes[s][word] & bit) != 0;
+                double dosage;
+                if (ref) {
+                    dosage = alt ? 1 : 0;
+                } else {
+                    dosage = alt ? 2 : mean;
+                }
+                v[s] = dosage - mean;
+            }
+        }
+        double[] sd = new double[markers.size()];
+        for (int m = 0; m < markers.size(); m++) {
+            double sum = 0;
+            for (double v : values[m]) {
+                sum += v * v;
+            }
+            sd[m] = Math.sqrt(sum);
+        }
+        double[][] correlation = new double[markers.size()][markers.size()];
+        for (int i = 0; i < markers.size(); i++) {
+            for (int j = i; j < markers.size(); j++) {
+                double sum = 0;
+                for (int s = 0; s < numSamples; s++) {
+                    sum += values[i][s] * values[j][s];
+                }
+                // Markers without variance are fully correlated, to be pruned as singular
+                double r = sd[i] == 0 || sd[j] == 0 ? 1 : sum / (sd[i] * sd[j]);
+                correlation[i][j] = r;
+                correlation[j][i] = r;
+            }
+        }
+        return correlation;
+    }
+
+    /**
+     * Invert a matrix in place with Gauss-Jordan elimination and partial pivoting.
+     *
+     * @return false if the matrix is singular
+     */
+    static boolean invert(double[][] matrix) {
+        int n = matrix.length;
+        double[][] inverse = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            inverse[i][i] = 1;
+        }
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < n; row++) {
+                if (Math.abs(matrix[row][col]) > Math.abs(matrix[pivot][col])) {
+                    pivot = row;
+                }
+            }
+            if (Math.abs(matrix[pivot][col]) < 1e-10) {
+                return false;
+            }
+            double[] tmp = matrix[col];
+            matrix[col] = matrix[pivot];
+            matrix[pivot] = tmp;
+            tmp = inverse[col];
+            inverse[col] = inverse[pivot];
+            inverse[pivot] = tmp;
+
+            double value = matrix[col][col];
+            for (int j = 0; j < n; j++) {
+                matrix[col][j] /= value;
+                inverse[col][j] /= value;
+            }
+            for (int row = 0; row < n; row++) {
+                if (row != col && matrix[row][col] != 0) {
+                    double factor = matrix[row][col];
+                    for (int j = 0; j < n; j++) {
+                        matrix[row][j] -= factor * matrix[col][j];
+                        inverse[row][j] -= factor * inverse[col][j];
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            matrix[i] = inverse[i];
+        }
+        return true;
+    }
+
+    private void removeMarkers(boolean[] removed) {
+        int words = Math.max(16, (numMarkers + 63) >>> 6);
+        for (int s = 0; s < samples.size(); s++) {
+            long[] ref = new long[words];
+            long[] alt = new long[words];
+            int newMarker = 0;
+            for (int marker = 0; marker < numMarkers; marker++) {
+                if (removed[marker]) {
+                    continue;
+                }
+                long bit = 1L << (marker & 63);
+                long newBit = 1L << (newMarker & 63);
+                if ((refPlanes[s][marker >>> 6] & bit) != 0) {
+                    ref[newMarker >>> 6] |= newBit;
+                }
+                if ((altPlanes[s][marker >>> 6] & bit) != 0) {
+                    alt[newMarker >>> 6] |= newBit;
+                }
+                newMarker++;
+            }
+            refPlanes[s] = ref;
+            altPlanes[s] = alt;
+        }
+
+        int newMarker = 0;
+        List<Integer> newChromosomeStarts = new ArrayList<>(chromosomeStarts.size());
+        for (int c = 0; c < chromosomeStarts.size(); c++) {
+            int chromosomeEnd = c + 1 < chromosomeStarts.size() ? chromosomeStarts.get(c + 1) : numMarkers;
+            int chromosomeStart = newMarker;
+            for (int marker = chromosomeStarts.get(c); marker < chromosomeEnd; marker++) {
+                if (!removed[marker]) {
+                    markerAlleles[newMarker] = markerAlleles[marker];
+                    markerAltAlleles[newMarker] = markerAltAlleles[marker];
+                    newMarker++;
+                }
+            }
+            if (newMarker > chromosomeStart) {
+                newChromosomeStarts.add(chromosomeStart);
+            }
+        }
+        chromosomeStarts.clear();
+        chromosomeStarts.addAll(newChromosomeStarts);
+        numMarkers = newMarker;
+    }
+
+    /**
+     * Compute the relatedness scores of all the pairs of samples.
+     *
+     * @param numThreads Number of threads
+     * @return Relatedness scores, without reported relation
+     * @throws ToolException if the computation is interrupted or fails
+     */
+    public List<RelatednessScore> compute(int numThreads) throws ToolException {
+        // Expected IBS given IBD, summed over all the markers. Indexed by [ibs][ibd]
+        double[][] expectedIbs = new double[3][3];
+        for (int marker = 0; marker < numMarkers; marker++) {
+            addExpectedIbs(markerAlleles[marker], markerAltAlleles[marker], expectedIbs);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numThreads));
+        try {
+            List<Future<List<RelatednessScore>>> futures = new ArrayList<>(samples.size());
+            for (int i = 0; i < samples.size(); i++) {
+                int sample1 = i;
+                futures.add(executor.submit(() -> {
+                    List<RelatednessScore> scores = new ArrayList<>(samples.size() - sample1 - 1);
+                    for (int sample2 = sample1 + 1; sample2 < samples.size(); sample2++) {
+                        scores.add(compute(sample1, sample2, expectedIbs));
+                    }
+                    return scores;
+                }));
+            }
+            List<RelatednessScore> scores = new ArrayList<>();
+            for (Future<List<RelatednessScore>> future : futures) {
+                scores.addAll(future.get());
+            }
+            return scores;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ToolException(e);
+        } catch (ExecutionException e) {
+            throw new ToolException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    RelatednessScore compute(int sample1, int sample2, double[][] expectedIbs) {
+        long[] ref1 = refPlanes[sample1];
+        long[] alt1 = altPlanes[sample1];
+        long[] ref2 = refPlanes[sample2];
+        long[] alt2 = altPlanes[sample2];
+
+        long shared = 0;
+        long ibs0 = 0;
+        long ibs2 = 0;
+        long hetHet = 0;
+        long het1 = 0;
+        long het2 = 0;
+        int words = (numMarkers + 63) >>> 6;
+        for (int w = 0; w < words; w++) {
+            long r1 = ref1[w];
+            long a1 = alt1[w];
+            long r2 = ref2[w];
+            long a2 = alt2[w];
+            long both = (r1 | a1) & (r2 | a2);
+            long opposite = (r1 & ~a1 & a2 & ~r2) | (a1 & ~r1 & r2 & ~a2);
+            long same = both & ~((r1 ^ r2) | (a1 ^ a2));
+            long h1 = r1 & a1 & both;
+            long h2 = r2 & a2 & both;
+
+            shared += Long.bitCount(both);
+            ibs0 += Long.bitCount(opposite);
+            ibs2 += Long.bitCount(same);
+            hetHet += Long.bitCount(h1 & h2);
+            het1 += Long.bitCount(h1);
+            het2 += Long.bitCount(h2);
+        }
+        long ibs1 = shared - ibs0 - ibs2;
+
+        RelatednessScore score = new RelatednessScore()
+                .setSampleId1(samples.get(sample1))
+                .setSampleId2(samples.get(sample2));
+        if (shared == 0) {
+            return score.setZ0(Double.NaN).setZ1(Double.NaN).setZ2(Double.NaN).setPiHat(Double.NaN).setKinship(Double.NaN);
+        }
+
+        // Only markers called in both samples are considered
+        double f = ((double) shared) / numMarkers;
+        double z0 = ibs0 / (expectedIbs[0][0] * f);
+        double z1 = (ibs1 - z0 * expectedIbs[1][0] * f) / (expectedIbs[1][1] * f);
+        double z2 = (ibs2 - z0 * expectedIbs[2][0] * f - z1 * expectedIbs[2][1] * f) / (expectedIbs[2][2] * f);
+        double[] z = boundIbd(z0, z1, z2);
+
+        double kinship = het1 + het2 == 0 ? 0 : (hetHet - 2.0 * ibs0) / (het1 + het2);
+
+        return score.setZ0(z[0])
+                .setZ1(z[1])
+                .setZ2(z[2])
+                .setPiHat(z[1] / 2 + z[2])
+                .setKinship(kinship);
+    }
+
+    /**
+     * Constrain the IBD estimates to the range 0-1, summing 1, as PLINK does.
+     */
+    static double[] boundIbd(double z0, double z1, double z2) {
+        double[] z = {z0, z1, z2};
+        for (int i = 0; i < 3; i++) {
+            if (z[i] > 1) {
+                Arrays.fill(z, 0);
+                z[i] = 1;
+            }
+        }
+        for (int i = 0; i < 3; i++) {
+            if (z[i] < 0) {
+                z[i] = 0;
+                normalize(z);
+            }
+        }
+        normalize(z);
+        return z;
+    }
+
+    private static void normalize(double[] z) {
+        double sum = z[0] + z[1] + z[2];
+        if (sum > 0) {
+            for (int i = 0; i < 3; i++) {
+                z[i] /= sum;
+            }
+        }
+    }
+}
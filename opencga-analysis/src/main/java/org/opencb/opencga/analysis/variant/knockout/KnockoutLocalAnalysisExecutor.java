@@ -16,6 +16,9 @@
 
 package org.opencb.opencga.analysis.variant.knockout;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.collect.Iterables;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
@@ -35,6 +38,7 @@ import org.opencb.opencga.analysis.variant.knockout.result.KnockoutVariant;
 import org.opencb.opencga.analysis.variant.manager.VariantCatalogQueryUtils;
 import org.opencb.opencga.analysis.variant.manager.VariantStorageManager;
 import org.opencb.opencga.analysis.variant.manager.VariantStorageToolExecutor;
+import org.opencb.opencga.core.common.JacksonUtils;
 import org.opencb.opencga.core.common.TimeUtils;
 import org.opencb.opencga.core.models.sample.Sample;
 import org.opencb.opencga.core.tools.annotations.ToolExecutor;
@@ -44,12 +48,17 @@ import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
+import org.opencb.opencga.storage.core.variant.query.executors.CompoundHeterozygousQueryExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.function.Predicate;
 
@@ -64,6 +73,16 @@ import static org.opencb.opencga.storage.core.variant.query.VariantQueryUtils.IS
         framework = ToolExecutor.Framework.LOCAL)
 public class KnockoutLocalAnalysisExecutor extends KnockoutAnalysisExecutor implements VariantStorageToolExecutor {
 
+    // Minimum number of samples to use the "scan" execution method when analysing all protein coding genes
+    private static final int SCAN_MIN_SAMPLES = 20;
+    // Genes are completed once the scan is this far from their last variant. Larger than the longest human gene.
+    private static final int MAX_GENE_LENGTH = 3000000;
+    // Genotypes of the compound heterozygous segregation, same as the family segregation query
+    private static final Set<String> COMP_HET_GENOTYPES
+            = new HashSet<>(Arrays.asList(CompoundHeterozygousQueryExecutor.HET.split(",")));
+    private static final Set<String> COMP_HET_REF_GENOTYPES
+            = new HashSet<>(Arrays.asList(CompoundHeterozygousQueryExecutor.REF.split(",")));
+
     private Logger logger = LoggerFactory.getLogger(this.getClass());
     private VariantStorageManager variantStorageManager;
     private boolean allProteinCoding;
@@ -80,40 +99,46 @@ public class KnockoutLocalAnalysisExecutor extends KnockoutAnalysisExecutor impl
         allProteinCoding = getProteinCodingGenes().size() == 1 && getProteinCodingGenes().iterator().next().equals(ALL);
 
         String executionMethod = getExecutorParams().getString("executionMethod", "auto");
-        boolean bySample;
         switch (executionMethod) {
             case "bySample":
-                bySample = true;
+            case "scan":
                 break;
             case "byGene":
                 if (allProteinCoding) {
                     throw new IllegalArgumentException("Unable to execute '" + executionMethod + "' "
                             + "when analysing all protein coding genes");
                 }
-                bySample = false;
                 break;
             case "auto":
             case "":
                 if (allProteinCoding) {
-                    bySample = true;
+                    executionMethod = getSamples().size() >= SCAN_MIN_SAMPLES ? "scan" : "bySample";
                 } else if (getSamples().size() < (getProteinCodingGenes().size() + getOtherGenes().size())) {
-                    bySample = true;
+                    executionMethod = "bySample";
                 } else {
-                    bySample = false;
+                    executionMethod = "byGene";
                 }
                 break;
             default:
                 throw new IllegalArgumentException("Unknown executionMethod '" + executionMethod + "'");
         }
 //        if (bySample || (auto && (allProteinCoding || (getProteinCodingGenes().size() + getOtherGenes().size()) >= getSamples().size()))) {
-        if (bySample) {
-            logger.info("Execute knockout analysis by sample");
-            addAttribute("executionMethod", "bySample");
-            new KnockoutBySampleExecutor().run();
-        } else {
-            logger.info("Execute knockout analysis by gene");
-            addAttribute("executionMethod", "byGene");
-            new KnockoutByGeneExecutor().run();
+        addAttribute("executionMethod", executionMethod);
+        switch (executionMethod) {
+            case "bySample":
+                logger.info("Execute knockout analysis by sample");
+                new KnockoutBySampleExecutor().run();
+                break;
+            case "byGene":
+                logger.info("Execute knockout analysis by gene");
+                new KnockoutByGeneExecutor().run();
+                break;
+            case "scan":
+                logger.info("Execute knockout analysis with a single variant scan");
+                new KnockoutByScanExecutor().run();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown executionMethod '" + executionMethod + "'");
         }
     }
 
@@ -302,15 +327,7 @@ public class KnockoutLocalAnalysisExecutor extends KnockoutAnalysisExecutor impl
                                         Predicate<String> biotypeFilter,
                                         Predicate<String> geneFilter)
                 throws Exception {
-            query = new Query(query)
-                    .append(VariantCatalogQueryUtils.FAMILY.key(), family.getId())
-                    .append(VariantCatalogQueryUtils.FAMILY_DISORDER.key(), getDisorder())
-                    .append(VariantCatalogQueryUtils.FAMILY_PROBAND.key(), sample)
-                    .append(VariantCatalogQueryUtils.FAMILY_SEGREGATION.key(), COMPOUND_HETEROZYGOUS)
-                    .append(VariantQueryParam.INCLUDE_SAMPLE.key(), family.toList())
-                    .append(VariantQueryParam.INCLUDE_SAMPLE_DATA.key(), "GT");
-
-            int numVariants = iterate(query, v -> {
+            int numVariants = iterate(buildCompHetQuery(query, sample, family), v -> {
                 StudyEntry studyEntry = v.getStudies().get(0);
                 SampleEntry sampleEntry = studyEntry.getSample(0);
                 FileEntry fileEntry = studyEntry.getFiles().get(sampleEntry.getFileIndex());
@@ -688,6 +705,412 @@ public class KnockoutLocalAnalysisExecutor extends KnockoutAnalysisExecutor impl
         }
     }
 
+    /**
+     * Scans all the variants once, with the genotypes of all the samples, instead of running one query per sample or gene.
+     * Compound heterozygous variants are obtained with the same family segregation query as the "bySample" execution.
+     * Variants are grouped by gene in memory. Each gene is resolved (HOM_ALT, COMP_HET, HET_ALT and DELETION_OVERLAP) and
+     * written once the scan leaves it, so both by-gene and by-sample results are produced without transposing files.
+     */
+    /**
+     * Single scan over all the variants of all the samples, sorted by chromosome and position.
+     *
+     * Variants are buffered by gene until the scan is far enough from the last variant of the gene. Then, the gene is resolved
+     * and written. Each sample accumulates its knockout genes in a partial file, so memory usage depends on the genes being
+     * buffered and not on the number of samples. Partial files are merged into the sample files at the end.
+     *
+     * Compound heterozygous variants are obtained from the genotypes of the trio within each gene: at least one heterozygous
+     * variant inherited from each parent. Unlike the "bySample" method, which runs one family segregation query per sample,
+     * the disorder of the family is not taken into account.
+     */
+    private class KnockoutByScanExecutor {
+
+        private final Set<String> samples = new HashSet<>(getSamples());
+        private final Map<String, GeneBuffer> genes = new LinkedHashMap<>();
+        // Knockout genes of each sample resolved since the last write to the partial files
+        private final Map<String, List<KnockoutGene>> pendingSampleGenes = new HashMap<>();
+        private final ObjectMapper objectMapper = JacksonUtils.getDefaultObjectMapper();
+        private String chromosome;
+        private int lastFlushPosition;
+        private int numGenes;
+
+        public void run() throws Exception {
+            StopWatch stopWatch = StopWatch.createStarted();
+            // Parents are included to segregate the compound heterozygous variants
+            Set<String> includeSamples = new LinkedHashSet<>(getSamples());
+            for (Trio trio : getTrios().values()) {
+                includeSamples.addAll(trio.toList());
+            }
+            Query baseQuery = new Query()
+                    .append(VariantQueryParam.STUDY.key(), getStudy())
+                    .append(VariantQueryParam.FILTER.key(), getFilter())
+                    .append(VariantQueryParam.QUAL.key(), getQual())
+                    .append(VariantQueryParam.INCLUDE_SAMPLE.key(), new ArrayList<>(includeSamples))
+                    .append(VariantQueryParam.INCLUDE_SAMPLE_DATA.key(), "GT");
+
+            // Protein coding genes (if any)
+            if (allProteinCoding) {
+                scan(new Query(baseQuery)
+                                .append(VariantQueryParam.ANNOT_BIOTYPE.key(), PROTEIN_CODING)
+                                .append(VariantQueryParam.ANNOT_CONSEQUENCE_TYPE.key(), getCt()),
+                        getCts()::contains,
+                        b -> b.equals(PROTEIN_CODING),
+                        g -> true);
+            } else if (!getProteinCodingGenes().isEmpty()) {
+                scan(new Query(baseQuery)
+                                .append(VariantQueryParam.GENE.key(), getProteinCodingGenes())
+                                .append(VariantQueryParam.ANNOT_BIOTYPE.key(), PROTEIN_CODING)
+                                .append(VariantQueryParam.ANNOT_CONSEQUENCE_TYPE.key(), getCt()),
+                        getCts()::contains,
+                        b -> b.equals(PROTEIN_CODING),
+                        getProteinCodingGenes()::contains);
+            }
+
+            // Other genes (if any)
+            if (!getOtherGenes().isEmpty()) {
+                scan(new Query(baseQuery)
+                                .append(VariantQueryParam.ANNOT_BIOTYPE.key(), biotype)
+                                .append(VariantQueryParam.GENE.key(), getOtherGenes()),
+                        ct -> true,  // Accept any CT
+                        biotype == null ? (b -> !b.equals(PROTEIN_CODING)) : new HashSet<>(biotype)::contains,
+                        getOtherGenes()::contains);
+            }
+
+            for (String sample : getSamples()) {
+                KnockoutBySample knockoutBySample = readPartialSampleFile(sample);
+                if (knockoutBySample == null) {
+                    logger.info("No results for sample {}", sample);
+                } else {
+                    knockoutBySample.setStats(getGeneKnockoutBySampleStats(knockoutBySample.getGenes()));
+                    writeSampleFile(knockoutBySample);
+                    Files.delete(getPartialSampleFileName(sample));
+                }
+            }
+            logger.info("{} knockout genes found in {}", numGenes, TimeUtils.durationToString(stopWatch));
+        }
+
+        private void scan(Query query, Predicate<String> ctFilter, Predicate<String> biotypeFilter, Predicate<String> geneFilter)
+                throws Exception {
+            chromosome = null;
+            int numVariants = iterate(query, new QueryOptions(QueryOptions.SORT, true), variant -> {
+                if (!variant.getChromosome().equals(chromosome)) {
+                    flush(Integer.MAX_VALUE);
+                    chromosome = variant.getChromosome();
+                    lastFlushPosition = variant.getStart();
+                    logger.info("Scanning chromosome {}", chromosome);
+                } else if (variant.getStart() - lastFlushPosition > MAX_GENE_LENGTH) {
+                    flush(variant.getStart());
+                    lastFlushPosition = variant.getStart();
+                }
+                addVariant(variant, ctFilter, biotypeFilter, geneFilter);
+            });
+            flush(Integer.MAX_VALUE);
+            logger.info("Scanned {} variants", numVariants);
+        }
+
+        private void addVariant(Variant variant, Predicate<String> ctFilter, Predicate<String> biotypeFilter,
+                                Predicate<String> geneFilter) {
+            StudyEntry studyEntry = variant.getStudies().get(0);
+            Map<String, String> genotypes = new HashMap<>();
+            for (SampleEntry sampleEntry : studyEntry.getSamples()) {
+                genotypes.put(sampleEntry.getSampleId(), sampleEntry.getData().get(0));
+            }
+            Map<String, Carrier> carriers = new HashMap<>();
+            for (SampleEntry sampleEntry : studyEntry.getSamples()) {
+                String sample = sampleEntry.getSampleId();
+                String gt = sampleEntry.getData().get(0);
+                if (samples.contains(sample) && GenotypeClass.MAIN_ALT.test(gt)) {
+                    FileEntry fileEntry = studyEntry.getFiles().get(sampleEntry.getFileIndex());
+                    String filter = fileEntry.getData().get(StudyEntry.FILTER);
+                    String qual = fileEntry.getData().get(StudyEntry.QUAL);
+                    String secondaryVariant = null;
+                    if (GenotypeClass.HET_ALT.test(gt)) {
+                        Variant secVar = getSecondaryVariant(variant, gt);
+                        secondaryVariant = secVar == null ? null : secVar.toString();
+                    }
+                    carriers.put(sample, new Carrier(gt, filter, qual, secondaryVariant,
+                            getInheritedFrom(getTrios().get(sample), gt, genotypes)));
+                }
+            }
+            if (carriers.isEmpty()) {
+                return;
+            }
+
+            Map<String, List<ConsequenceType>> ctsByGene = new HashMap<>();
+            for (ConsequenceType consequenceType : variant.getAnnotation().getConsequenceTypes()) {
+                if (validCt(consequenceType, ctFilter, biotypeFilter, geneFilter)) {
+                    ctsByGene.computeIfAbsent(consequenceType.getGeneName(), k -> new ArrayList<>()).add(consequenceType);
+                }
+            }
+            for (Map.Entry<String, List<ConsequenceType>> entry : ctsByGene.entrySet()) {
+                GeneBuffer gene = genes.computeIfAbsent(entry.getKey(), GeneBuffer::new);
+                gene.id = entry.getValue().get(0).getEnsemblGeneId();
+                gene.lastEnd = Math.max(gene.lastEnd, variant.getEnd());
+                gene.variants.add(new GeneVariant(variant, entry.getValue(), carriers));
+            }
+        }
+
+        /**
+         * Parent from whom a heterozygous variant of the child was inherited, following the same genotype rules as the
+         * compound heterozygous segregation. With a single parent, variants not found in the parent come from the other one.
+         *
+         * @return Parent, or null if the variant can not be a compound heterozygous candidate
+         */
+        private Parent getInheritedFrom(Trio trio, String gt, Map<String, String> genotypes) {
+            if (trio == null || !COMP_HET_GENOTYPES.contains(gt)) {
+                return null;
+            }
+            String fatherGt = trio.getFather() == null ? null : genotypes.get(trio.getFather());
+            String motherGt = trio.getMother() == null ? null : genotypes.get(trio.getMother());
+            if (trio.getFather() != null && trio.getMother() != null) {
+                if (COMP_HET_GENOTYPES.contains(fatherGt) && COMP_HET_REF_GENOTYPES.contains(motherGt)) {
+                    return Parent.FATHER;
+                } else if (COMP_HET_REF_GENOTYPES.contains(fatherGt) && COMP_HET_GENOTYPES.contains(motherGt)) {
+                    return Parent.MOTHER;
+                }
+            } else if (trio.getFather() != null) {
+                if (COMP_HET_GENOTYPES.contains(fatherGt)) {
+                    return Parent.FATHER;
+                } else if (COMP_HET_REF_GENOTYPES.contains(fatherGt)) {
+                    return Parent.MOTHER;
+                }
+            } else if (trio.getMother() != null) {
+                if (COMP_HET_GENOTYPES.contains(motherGt)) {
+                    return Parent.MOTHER;
+                } else if (COMP_HET_REF_GENOTYPES.contains(motherGt)) {
+                    return Parent.FATHER;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Resolve and write all the genes whose last variant ends before the given position minus {@link #MAX_GENE_LENGTH}.
+         */
+        private void flush(int position) throws IOException {
+            Iterator<GeneBuffer> iterator = genes.values().iterator();
+            while (iterator.hasNext()) {
+                GeneBuffer gene = iterator.next();
+                if (position == Integer.MAX_VALUE || gene.lastEnd + MAX_GENE_LENGTH < position) {
+                    iterator.remove();
+                    resolve(gene);
+                }
+            }
+            writePartialSampleFiles();
+        }
+
+        private void resolve(GeneBuffer gene) throws IOException {
+            // Variants of each sample in the gene
+            Map<String, List<GeneVariant>> variantsBySample = new HashMap<>();
+            for (GeneVariant variant : gene.variants) {
+                for (String sample : variant.carriers.keySet()) {
+                    variantsBySample.computeIfAbsent(sample, k -> new ArrayList<>()).add(variant);
+                }
+            }
+
+            for (Map.Entry<String, List<GeneVariant>> entry : variantsBySample.entrySet()) {
+                String sample = entry.getKey();
+                List<GeneVariant> variants = entry.getValue();
+                Map<String, GeneVariant> hetAltVariants = new HashMap<>();
+                // Candidate compound heterozygous variants of this gene inherited from each parent
+                Map<Parent, List<GeneVariant>> compHetCandidates = new EnumMap<>(Parent.class);
+                for (GeneVariant variant : variants) {
+                    Carrier carrier = variant.carriers.get(sample);
+                    if (GenotypeClass.HOM_ALT.test(carrier.gt)) {
+                        for (ConsequenceType ct : variant.cts) {
+                            add(gene, sample, variant, ct, KnockoutVariant.KnockoutType.HOM_ALT);
+                        }
+                    } else if (GenotypeClass.HET_ALT.test(carrier.gt)) {
+                        hetAltVariants.put(variant.id, variant);
+                    }
+                    if (carrier.inheritedFrom != null) {
+                        compHetCandidates.computeIfAbsent(carrier.inheritedFrom, k -> new ArrayList<>()).add(variant);
+                    }
+                }
+                if (compHetCandidates.size() == 2) {
+                    for (List<GeneVariant> compHetVariants : compHetCandidates.values()) {
+                        for (GeneVariant variant : compHetVariants) {
+                            for (ConsequenceType ct : variant.cts) {
+                                add(gene, sample, variant, ct, KnockoutVariant.KnockoutType.COMP_HET);
+                            }
+                        }
+                    }
+                }
+                for (GeneVariant variant : hetAltVariants.values()) {
+                    // Both alternates of the multi-allelic genotype are in the gene
+                    GeneVariant secVariant = hetAltVariants.get(variant.carriers.get(sample).secondaryVariant);
+                    if (secVariant != null && secVariant != variant) {
+                        for (ConsequenceType ct : variant.cts) {
+                            add(gene, sample, variant, ct, KnockoutVariant.KnockoutType.HET_ALT);
+                            add(gene, sample, secVariant, ct, KnockoutVariant.KnockoutType.HET_ALT);
+                        }
+                    }
+                }
+                for (GeneVariant deletion : variants) {
+                    if (deletion.deletion) {
+                        deletionOverlap(gene, sample, deletion, variants);
+                    }
+                }
+            }
+
+            if (!gene.samples.isEmpty()) {
+                numGenes++;
+                writeGeneFile(new KnockoutByGene()
+                        .setId(gene.id)
+                        .setName(gene.name)
+                        .setSamples(new ArrayList<>(gene.samples.values())));
+                for (KnockoutByGene.KnockoutSample knockoutSample : gene.samples.values()) {
+                    pendingSampleGenes.computeIfAbsent(knockoutSample.getId(), k -> new ArrayList<>())
+                            .add(new KnockoutGene(gene.name)
+                                    .setId(gene.id)
+                                    .addTranscripts(knockoutSample.getTranscripts()));
+                }
+            }
+        }
+
+        private void deletionOverlap(GeneBuffer gene, String sample, GeneVariant deletion, List<GeneVariant> variants) {
+            Set<String> transcripts = new HashSet<>();
+            for (ConsequenceType ct : deletion.cts) {
+                transcripts.add(ct.getEnsemblTranscriptId());
+            }
+            for (GeneVariant variant : variants) {
+                if (variant == deletion || variant.start > deletion.end || variant.end < deletion.start) {
+                    continue;
+                }
+                for (ConsequenceType ct : variant.cts) {
+                    if (transcripts.contains(ct.getEnsemblTranscriptId())) {
+                        add(gene, sample, variant, ct, KnockoutVariant.KnockoutType.DELETION_OVERLAP);
+                        add(gene, sample, deletion, ct, KnockoutVariant.KnockoutType.DELETION_OVERLAP);
+                    }
+                }
+            }
+        }
+
+        private void add(GeneBuffer gene, String sample, GeneVariant variant, ConsequenceType ct, KnockoutVariant.KnockoutType type) {
+            Carrier carrier = variant.carriers.get(sample);
+            KnockoutVariant knockoutVariant = new KnockoutVariant(variant.id, carrier.gt, carrier.filter, carrier.qual, type,
+                    ct.getSequenceOntologyTerms());
+
+            KnockoutTranscript transcript = gene.samples.computeIfAbsent(sample, s -> new KnockoutByGene.KnockoutSample().setId(s))
+                    .getTranscript(ct.getEnsemblTranscriptId());
+            transcript.setBiotype(ct.getBiotype());
+            transcript.addVariant(knockoutVariant);
+        }
+
+        private Path getPartialSampleFileName(String sample) {
+            return Paths.get(getSampleFileName(sample).toString() + ".partial");
+        }
+
+        /**
+         * Append the knockout genes resolved since the last call to the partial file of each sample, one gene per line.
+         */
+        private void writePartialSampleFiles() throws IOException {
+            ObjectWriter writer = objectMapper.writerFor(KnockoutGene.class);
+            for (Map.Entry<String, List<KnockoutGene>> entry : pendingSampleGenes.entrySet()) {
+                try (BufferedWriter bufferedWriter = Files.newBufferedWriter(getPartialSampleFileName(entry.getKey()),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (KnockoutGene knockoutGene : entry.getValue()) {
+                        bufferedWriter.write(writer.writeValueAsString(knockoutGene));
+                        bufferedWriter.newLine();
+                    }
+                }
+            }
+            pendingSampleGenes.clear();
+        }
+
+        /**
+         * Merge the partial file of a sample. The same gene may appear more than once if it was found in several scans.
+         *
+         * @return Knockout genes of the sample, or null if the sample has no knockout genes
+         */
+        private KnockoutBySample readPartialSampleFile(String sample) throws IOException {
+            Path path = getPartialSampleFileName(sample);
+            if (!Files.exists(path)) {
+                return null;
+            }
+            ObjectReader reader = objectMapper.readerFor(KnockoutGene.class);
+            KnockoutBySample knockoutBySample = new KnockoutBySample().setSample(new Sample().setId(sample));
+            try (BufferedReader bufferedReader = Files.newBufferedReader(path)) {
+                String line;
+                while ((line = bufferedReader.readLine()) != null) {
+                    KnockoutGene partialGene = reader.readValue(line);
+                    KnockoutGene knockoutGene = knockoutBySample.getGene(partialGene.getName());
+                    knockoutGene.setId(partialGene.getId());
+                    for (KnockoutTranscript partialTranscript : partialGene.getTranscripts()) {
+                        KnockoutTranscript transcript = knockoutGene.getTranscript(partialTranscript.getId());
+                        transcript.setBiotype(partialTranscript.getBiotype());
+                        for (KnockoutVariant variant : partialTranscript.getVariants()) {
+                            transcript.addVariant(variant);
+                        }
+                    }
+                }
+            }
+            return knockoutBySample;
+        }
+    }
+
+    private enum Parent {
+        FATHER,
+        MOTHER
+    }
+
+    private static class GeneBuffer {
+        private final String name;
+        private String id;
+        private int lastEnd;
+        private final List<GeneVariant> variants = new ArrayList<>();
+        private final Map<String, KnockoutByGene.KnockoutSample> samples = new LinkedHashMap<>();
+
+        GeneBuffer(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class GeneVariant {
+        private final String id;
+        private final int start;
+        private final int end;
+        private final boolean deletion;
+        private final List<ConsequenceType> cts;
+        // Samples with the main alternate, shared by all the genes of the variant
+        private final Map<String, Carrier> carriers;
+
+        GeneVariant(Variant variant, List<ConsequenceType> cts, Map<String, Carrier> carriers) {
+            this.id = variant.toString();
+            this.start = variant.getStart();
+            this.end = variant.getEnd();
+            this.deletion = VariantType.DELETION.equals(variant.getType());
+            this.cts = cts;
+            this.carriers = carriers;
+        }
+    }
+
+    private static class Carrier {
+        private final String gt;
+        private final String filter;
+        private final String qual;
+        private final String secondaryVariant;
+        // Parent of the heterozygous variant, if it is a compound heterozygous candidate
+        private final Parent inheritedFrom;
+
+        Carrier(String gt, String filter, String qual, String secondaryVariant, Parent inheritedFrom) {
+            this.gt = gt;
+            this.filter = filter;
+            this.qual = qual;
+            this.secondaryVariant = secondaryVariant;
+            this.inheritedFrom = inheritedFrom;
+        }
+    }
+
+    private Query buildCompHetQuery(Query query, String sample, Trio family) {
+        return new Query(query)
+                .append(VariantCatalogQueryUtils.FAMILY.key(), family.getId())
+                .append(VariantCatalogQueryUtils.FAMILY_DISORDER.key(), getDisorder())
+                .append(VariantCatalogQueryUtils.FAMILY_PROBAND.key(), sample)
+                .append(VariantCatalogQueryUtils.FAMILY_SEGREGATION.key(), COMPOUND_HETEROZYGOUS)
+                .append(VariantQueryParam.INCLUDE_SAMPLE.key(), family.toList())
+                .append(VariantQueryParam.INCLUDE_SAMPLE_DATA.key(), "GT");
+    }
+
     public interface VariantConsumer {
         void accept(Variant v) throws Exception;
     }
@@ -752,7 +1175,11 @@ public class KnockoutLocalAnalysisExecutor extends KnockoutAnalysisExecutor impl
     }
 
     private Variant getSecondaryVariant(Variant variant) {
-        Genotype gt = new Genotype(variant.getStudies().get(0).getSampleData(0).get(0));
+        return getSecondaryVariant(variant, variant.getStudies().get(0).getSampleData(0).get(0));
+    }
+
+    private Variant getSecondaryVariant(Variant variant, String genotype) {
+        Genotype gt = new Genotype(genotype);
         Variant secVar = null;
         for (int allelesIdx : gt.getAllelesIdx()) {
             if (allelesIdx > 1) {
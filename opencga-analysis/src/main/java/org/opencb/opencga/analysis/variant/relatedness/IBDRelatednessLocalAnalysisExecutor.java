@@ -40,9 +40,10 @@ public class IBDRelatednessLocalAnalysisExecutor extends IBDRelatednessAnalysisE
         VariantStorageManager variantStorageManager = getVariantStorageManager();
         CatalogManager catalogManager = variantStorageManager.getCatalogManager();
 
-        // Run IBD/IBS computation using PLINK in docker
-        RelatednessReport report = IBDComputation.compute(getStudyId(), getSampleIds(), getMinorAlleleFreq(), getOutDir(),
-                variantStorageManager, getToken());
+        // Run IBD/IBS computation
+        RelatednessReport report = IBDComputation.compute(getStudyId(), getSampleIds(), getMinorAlleleFreq(),
+                getExecutorParams().getInt(IBDComputation.NUM_THREADS, IBDComputation.DEFAULT_NUM_THREADS), variantStorageManager,
+                getToken());
 
         // Sanity check
         if (report == null) {
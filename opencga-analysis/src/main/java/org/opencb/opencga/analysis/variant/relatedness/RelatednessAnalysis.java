@@ -20,6 +20,7 @@ import com.nimbusds.oauth2.sdk.util.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.opencb.opencga.analysis.tools.OpenCgaTool;
 import org.opencb.opencga.analysis.variant.geneticChecks.GeneticChecksUtils;
+import org.opencb.opencga.analysis.variant.geneticChecks.IBDComputation;
 import org.opencb.opencga.catalog.exceptions.CatalogException;
 import org.opencb.opencga.core.exceptions.ToolException;
 import org.opencb.opencga.core.models.common.Enums;
@@ -96,6 +97,7 @@ public class RelatednessAnalysis extends OpenCgaTool {
     protected void check() throws Exception {
         super.check();
         setUpStorageEngineExecutor(studyId);
+        executorParams.put(IBDComputation.NUM_THREADS, params.getInt(IBDComputation.NUM_THREADS, IBDComputation.DEFAULT_NUM_THREADS));
 
         if (StringUtils.isEmpty(studyId)) {
             throw new ToolException("Missing study.");
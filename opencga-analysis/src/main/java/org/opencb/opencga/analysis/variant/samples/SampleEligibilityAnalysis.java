@@ -50,7 +50,6 @@ import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
-import org.opencb.opencga.storage.core.variant.query.ParsedVariantQuery;
 import org.opencb.opencga.storage.core.variant.query.VariantQueryParser;
 import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
 
@@ -74,8 +73,11 @@ public class SampleEligibilityAnalysis extends OpenCgaToolScopeStudy {
     private TreeQuery treeQuery;
     private String studyFqn;
 //    private LinkedList<String> steps;
+    // Samples are mapped to dense positions, so sample sets can be represented with BitSets
+    private List<String> sampleIds;
+    private Map<String, Integer> samplePositions;
+    private Map<String, NodeResult> nodeResults;
 
-    private final static Comparator<TreeQuery.Node> COMPARATOR = Comparator.comparing(SampleEligibilityAnalysis::toQueryValue);
     private static final Set<QueryParam> INVALID_QUERY_PARAMS;
 
     static {
@@ -126,6 +128,8 @@ public class SampleEligibilityAnalysis extends OpenCgaToolScopeStudy {
 
         checkValidQueryFilters(treeQuery);
 
+        VariantQueryOptimizer.sortBySelectivity(treeQuery);
+
         treeQuery.log();
     }
 
@@ -174,11 +178,11 @@ public class SampleEligibilityAnalysis extends OpenCgaToolScopeStudy {
     protected void run() throws Exception {
         List<String> samplesResult = new ArrayList<>();
         step(() -> {
-            List<String> inputSamples = new ArrayList<>(getVariantStorageManager().getIndexedSamples(studyFqn, getToken()));
             Query baseQuery = new Query();
             baseQuery.put(VariantQueryParam.STUDY.key(), studyFqn);
 
-            samplesResult.addAll(resolveNode(treeQuery.getRoot(), baseQuery, inputSamples));
+            List<String> indexedSamples = new ArrayList<>(getVariantStorageManager().getIndexedSamples(studyFqn, getToken()));
+            samplesResult.addAll(toSampleIds(resolveTree(treeQuery.getRoot(), indexedSamples, baseQuery)));
 
             addAttribute("numSamples", samplesResult.size());
             logger.info("Found {} samples", samplesResult.size());
@@ -238,95 +242,95 @@ public class SampleEligibilityAnalysis extends OpenCgaToolScopeStudy {
         }
     }
 
-    // Return a value that will depend on the likely of the node to return a large or small number of samples
-    private static Integer toQueryValue(TreeQuery.Node node) {
-        switch (node.getType()) {
-            case QUERY:
-                int v = 1000;
-                Query query = node.getQuery();
-                if (VariantQueryUtils.isValidParam(query, VariantQueryParam.ANNOT_CONSEQUENCE_TYPE)) {
-                    List<String> cts = VariantQueryUtils
-                            .parseConsequenceTypes(query.getAsStringList(VariantQueryParam.ANNOT_CONSEQUENCE_TYPE.key()));
-                    if (VariantQueryUtils.LOF_SET.containsAll(cts)) {
-                        v -= 500;
-                    } else if (VariantQueryUtils.LOF_EXTENDED_SET.containsAll(cts)) {
-                        v -= 250;
-                    }
-                }
-                ParsedVariantQuery.VariantQueryXref xrefs = VariantQueryParser.parseXrefs(query);
-                int fromXref = 0;
-//                if (!xrefs.getGenes().isEmpty()) {
-//
-//                }
-//                if (!xrefs.getOtherXrefs().isEmpty()) {
-//
-//                }
-//
-//                if (VariantQueryUtils.isValidParam(query, VariantQueryParam.ANNOT_CONSEQUENCE_TYPE)) {
-//
-//                }
-//                if (VariantQueryUtils.isValidParam(query, VariantQueryParam.ANNOT_CONSEQUENCE_TYPE)) {
-//
-//                }
-                v -= fromXref;
-                return v;
-            case COMPLEMENT:
-                return 1000 - toQueryValue(node.getNodes().get(0));
-            case UNION:
-                return node.getNodes().stream().mapToInt(SampleEligibilityAnalysis::toQueryValue).max().orElse(0);
-            case INTERSECTION:
-                return node.getNodes().stream().mapToInt(SampleEligibilityAnalysis::toQueryValue).min().orElse(0);
-            default:
-                throw new IllegalArgumentException("Unknown node type " + node.getType());
+    /**
+     * Resolve the samples matching the tree query, out of the given samples.
+     *
+     * @param root      Root node of the tree query
+     * @param sampleIds Samples to evaluate
+     * @param baseQuery Query common to all the nodes
+     * @return Samples matching the tree query, as positions in the list of samples
+     * @throws CatalogException       on errors querying catalog
+     * @throws StorageEngineException on errors querying the variants
+     * @throws IOException            on errors querying the variants
+     */
+    BitSet resolveTree(TreeQuery.Node root, List<String> sampleIds, Query baseQuery)
+            throws CatalogException, StorageEngineException, IOException {
+        this.sampleIds = sampleIds;
+        samplePositions = new HashMap<>(sampleIds.size() * 2);
+        for (int i = 0; i < sampleIds.size(); i++) {
+            samplePositions.put(sampleIds.get(i), i);
         }
+        nodeResults = new HashMap<>();
 
+        BitSet inputSamples = new BitSet(sampleIds.size());
+        inputSamples.set(0, sampleIds.size());
+        return resolveNode(root, baseQuery, inputSamples);
     }
 
-    private List<String> resolveNode(TreeQuery.Node node, Query baseQuery, List<String> includeSamples)
+    private BitSet resolveNode(TreeQuery.Node node, Query baseQuery, BitSet includeSamples)
             throws CatalogException, StorageEngineException, IOException {
+        // The result of a node for a sample does not depend on the other samples, so results can be reused
+        // by any other equivalent node evaluated over a subset of the same samples.
+        String key = node.toString();
+        NodeResult nodeResult = nodeResults.get(key);
+        if (nodeResult != null && nodeResult.contains(includeSamples)) {
+            logger.info("Reuse result of node '{}' for {} samples", node, includeSamples.cardinality());
+            return nodeResult.get(includeSamples);
+        }
+
+        BitSet result;
         switch (node.getType()) {
             case QUERY:
-                return resolveQuery(((TreeQuery.QueryNode) node), baseQuery, includeSamples);
+                result = resolveQuery(((TreeQuery.QueryNode) node), baseQuery, includeSamples);
+                break;
             case COMPLEMENT:
-                return resolveComplementQuery(((TreeQuery.ComplementNode) node), baseQuery, includeSamples);
+                result = resolveComplementQuery(((TreeQuery.ComplementNode) node), baseQuery, includeSamples);
+                break;
             case INTERSECTION:
-                return resolveIntersectNode(((TreeQuery.IntersectionNode) node), baseQuery, includeSamples);
+                result = resolveIntersectNode(((TreeQuery.IntersectionNode) node), baseQuery, includeSamples);
+                break;
             case UNION:
-                return resolveUnionNode(((TreeQuery.UnionNode) node), baseQuery, includeSamples);
+                result = resolveUnionNode(((TreeQuery.UnionNode) node), baseQuery, includeSamples);
+                break;
             default:
                 throw new IllegalArgumentException("Unknown node type " + node.getType());
         }
+
+        if (nodeResult == null) {
+            nodeResults.put(key, new NodeResult(includeSamples, result));
+        } else {
+            nodeResult.add(includeSamples, result);
+        }
+        return result;
     }
 
-    private List<String> resolveUnionNode(TreeQuery.UnionNode node, Query baseQuery, List<String> includeSamples)
+    private BitSet resolveUnionNode(TreeQuery.UnionNode node, Query baseQuery, BitSet includeSamples)
             throws CatalogException, StorageEngineException, IOException {
 
         logger.info("Execute union-node with {} children for {} samples",
-                node.getNodes().size(), includeSamples.size());
+                node.getNodes().size(), includeSamples.cardinality());
 
-        includeSamples = new ArrayList<>(includeSamples);
-        Set<String> result = new HashSet<>();
-        node.getNodes().sort(COMPARATOR.reversed());
+        BitSet pendingSamples = (BitSet) includeSamples.clone();
+        BitSet result = new BitSet(sampleIds.size());
         for (TreeQuery.Node subNode : node.getNodes()) {
-            if (includeSamples.isEmpty()) {
+            if (pendingSamples.isEmpty()) {
                 logger.info("Skip node '{}'. All samples found", subNode);
             } else {
-                List<String> thisNodeResult = resolveNode(subNode, baseQuery, includeSamples);
-                includeSamples.removeAll(thisNodeResult);
-                result.addAll(thisNodeResult);
+                BitSet thisNodeResult = resolveNode(subNode, baseQuery, pendingSamples);
+                result.or(thisNodeResult);
+                pendingSamples.andNot(thisNodeResult);
             }
         }
 
-        return new ArrayList<>(result);
+        return result;
     }
 
-    private List<String> resolveIntersectNode(TreeQuery.IntersectionNode node, Query baseQuery, List<String> includeSamples)
+    private BitSet resolveIntersectNode(TreeQuery.IntersectionNode node, Query baseQuery, BitSet includeSamples)
             throws CatalogException, StorageEngineException, IOException {
 
         logger.info("Execute intersect-node with {} children at for {} samples",
-                node.getNodes().size(), includeSamples.size());
+                node.getNodes().size(), includeSamples.cardinality());
 
-        node.getNodes().sort(COMPARATOR.reversed());
         for (TreeQuery.Node subNode : node.getNodes()) {
             if (includeSamples.isEmpty()) {
                 logger.info("Skip node '{}'", subNode);
@@ -338,22 +342,23 @@ public class SampleEligibilityAnalysis extends OpenCgaToolScopeStudy {
         return includeSamples;
     }
 
-    private List<String> resolveComplementQuery(TreeQuery.ComplementNode node, Query baseQuery, List<String> includeSamples)
+    private BitSet resolveComplementQuery(TreeQuery.ComplementNode node, Query baseQuery, BitSet includeSamples)
             throws CatalogException, IOException, StorageEngineException {
-        logger.info("Execute complement-node for {} samples", includeSamples.size());
-        List<String> subSamples = resolveNode(node.getNodes().get(0), baseQuery, includeSamples);
-        logger.info("Discard {} of {} samples", subSamples.size(), includeSamples.size());
+        logger.info("Execute complement-node for {} samples", includeSamples.cardinality());
+        BitSet subSamples = resolveNode(node.getNodes().get(0), baseQuery, includeSamples);
+        logger.info("Discard {} of {} samples", subSamples.cardinality(), includeSamples.cardinality());
 
-        includeSamples = new LinkedList<>(includeSamples);
-        includeSamples.removeAll(subSamples);
-        return includeSamples;
+        BitSet result = (BitSet) includeSamples.clone();
+        result.andNot(subSamples);
+        return result;
     }
 
-    private List<String> resolveQuery(TreeQuery.QueryNode node, Query baseQuery, List<String> includeSamples)
+    protected BitSet resolveQuery(TreeQuery.QueryNode node, Query baseQuery, BitSet includeSamples)
             throws CatalogException, StorageEngineException, IOException {
-        logger.info("Execute leaf-node '{}' for {} samples", node, includeSamples.size());
+        logger.info("Execute leaf-node '{}' for {} samples", node, includeSamples.cardinality());
 
-        Query variantsQuery = node.getQuery();
+        // Do not modify the node query, as the same node might be evaluated again
+        Query variantsQuery = new Query(node.getQuery());
         Query sampleQuery = new Query();
         Query individualQuery = new Query();
         for (String key : new HashSet<>(variantsQuery.keySet())) {
@@ -367,67 +372,68 @@ public class SampleEligibilityAnalysis extends OpenCgaToolScopeStudy {
             }
         }
         if (!sampleQuery.isEmpty()) {
-            int inputSampleSize = includeSamples.size();
+            int inputSampleSize = includeSamples.cardinality();
             if (sampleQuery.containsKey(SampleDBAdaptor.QueryParams.ID.key())) {
                 // Remove samples not in the query
-                Set<String> samplesFromQuery = new HashSet<>(sampleQuery.getAsStringList(SampleDBAdaptor.QueryParams.ID.key()));
-                includeSamples = new LinkedList<>(includeSamples);
-                includeSamples.removeIf(s -> !samplesFromQuery.contains(s));
+                BitSet samplesFromQuery = toBitSet(sampleQuery.getAsStringList(SampleDBAdaptor.QueryParams.ID.key()));
+                samplesFromQuery.and(includeSamples);
+                includeSamples = samplesFromQuery;
             }
             if (!includeSamples.isEmpty()) {
-                sampleQuery.put(SampleDBAdaptor.QueryParams.ID.key(), includeSamples);
-                includeSamples = getCatalogManager().getSampleManager()
+                sampleQuery.put(SampleDBAdaptor.QueryParams.ID.key(), toSampleIds(includeSamples));
+                includeSamples = toBitSet(getCatalogManager().getSampleManager()
                         .search(studyFqn, sampleQuery, new QueryOptions(QueryOptions.INCLUDE, "id"), getToken())
                         .getResults()
                         .stream()
                         .map(Sample::getId)
-                        .collect(Collectors.toList());
+                        .collect(Collectors.toList()));
             }
 
             logger.info("Filter samples with catalog samples metadata. Found {} samples out of {}",
-                    includeSamples.size(), inputSampleSize);
+                    includeSamples.cardinality(), inputSampleSize);
             if (includeSamples.isEmpty()) {
                 logger.info("Skip query leaf no sample passed the catalog sample filter.");
-                return Collections.emptyList();
+                return includeSamples;
             }
         }
 
         if (!individualQuery.isEmpty()) {
-            int inputSampleSize = includeSamples.size();
-            individualQuery.put(IndividualDBAdaptor.QueryParams.SAMPLES.key(), includeSamples);
-            includeSamples = getCatalogManager().getIndividualManager()
+            int inputSampleSize = includeSamples.cardinality();
+            individualQuery.put(IndividualDBAdaptor.QueryParams.SAMPLES.key(), toSampleIds(includeSamples));
+            BitSet individualSamples = toBitSet(getCatalogManager().getIndividualManager()
                     .search(studyFqn, individualQuery, new QueryOptions(QueryOptions.INCLUDE, "id"), getToken())
                     .getResults()
                     .stream()
                     .map(Individual::getSamples)
                     .flatMap(Collection::stream)
                     .map(Sample::getId)
-                    .filter(new HashSet<>(includeSamples)::contains)
-                    .collect(Collectors.toList());
+                    .collect(Collectors.toList()));
+            individualSamples.and(includeSamples);
+            includeSamples = individualSamples;
 
             logger.info("Filter samples with catalog individuals metadata. Found {} samples out of {}",
-                    includeSamples.size(), inputSampleSize);
+                    includeSamples.cardinality(), inputSampleSize);
             if (includeSamples.isEmpty()) {
                 logger.info("Skip query leaf no sample passed the catalog individual filter.");
-                return Collections.emptyList();
+                return includeSamples;
             }
         }
 
-        Set<String> samples;
+        BitSet samples;
         if (params.getBoolean("direct")) {
-            samples = resolveQueryDirect(node, baseQuery, includeSamples);
+            samples = resolveQueryDirect(variantsQuery, baseQuery, includeSamples);
         } else {
-            samples = resolveQuerySamplesData(node, baseQuery, includeSamples);
+            samples = resolveQuerySamplesData(node, variantsQuery, baseQuery, includeSamples);
         }
 
-        logger.info("Found {} sample in leaf '{}'", samples.size(), node);
-        return new ArrayList<>(samples);
+        logger.info("Found {} sample in leaf '{}'", samples.cardinality(), node);
+        return samples;
     }
 
-    private Set<String> resolveQuerySamplesData(TreeQuery.QueryNode node, Query baseQuery, List<String> includeSamples)
+    private BitSet resolveQuerySamplesData(TreeQuery.QueryNode node, Query variantsQuery, Query baseQuery, BitSet includeSamples)
             throws CatalogException, StorageEngineException, IOException {
         Query query = new Query(baseQuery);
-        query.putAll(node.getQuery());
+        query.putAll(variantsQuery);
         String genotypes = null;
         if (VariantQueryUtils.isValidParam(query, VariantQueryParam.GENOTYPE)) {
             genotypes = query.getString(VariantQueryParam.GENOTYPE.key());
@@ -436,29 +442,29 @@ public class SampleEligibilityAnalysis extends OpenCgaToolScopeStudy {
                 genotypes = genotypes.substring(2);
             }
         }
-        Set<String> samples = new HashSet<>();
-        includeSamples = new LinkedList<>(includeSamples);
+        BitSet samples = new BitSet(sampleIds.size());
+        BitSet pendingSamples = (BitSet) includeSamples.clone();
 
-        List<String> thisVariantSamples = new ArrayList<>(includeSamples.size());
         VariantDBIterator iterator = getVariantStorageManager()
                 .iterator(new Query(query), new QueryOptions(VariantField.SUMMARY, true), getToken());
         while (iterator.hasNext()) {
             Variant next = iterator.next();
             StopWatch stopWatch = StopWatch.createStarted();
             logger.debug("[{}] start processing", next);
-            includeSamples.removeAll(samples);
-            if (includeSamples.isEmpty()) {
-                logger.info("Shortcut at node '{}' after finding {} samples", node, samples.size());
+            if (pendingSamples.isEmpty()) {
+                logger.info("Shortcut at node '{}' after finding {} samples", node, samples.cardinality());
                 break;
             }
 
+            List<String> pendingSampleIds = toSampleIds(pendingSamples);
             int limit = 1000;
             int skip = 0;
             int numSamples;
+            int thisVariantSamples = 0;
 
             do {
                 QueryOptions queryOptions = new QueryOptions();
-                queryOptions.put(VariantQueryParam.INCLUDE_SAMPLE.key(), includeSamples);
+                queryOptions.put(VariantQueryParam.INCLUDE_SAMPLE.key(), pendingSampleIds);
                 queryOptions.put(QueryOptions.LIMIT, limit);
                 queryOptions.put(QueryOptions.SKIP, skip);
                 queryOptions.put(VariantQueryParam.GENOTYPE.key(), genotypes);
@@ -472,15 +478,17 @@ public class SampleEligibilityAnalysis extends OpenCgaToolScopeStudy {
 
                 for (SampleEntry sampleEntry : studyEntry.getSamples()) {
                     if (GenotypeClass.MAIN_ALT.test(sampleEntry.getData().get(0))) {
-                        String sampleId = sampleEntry.getSampleId();
-                        samples.add(sampleId);
-                        thisVariantSamples.add(sampleId);
+                        Integer position = samplePositions.get(sampleEntry.getSampleId());
+                        if (position != null) {
+                            samples.set(position);
+                            pendingSamples.clear(position);
+                        }
+                        thisVariantSamples++;
                     }
                 }
             } while (numSamples == limit);
 
-            logger.debug("[{}] found {} samples in {}", next, thisVariantSamples.size(), TimeUtils.durationToString(stopWatch));
-            thisVariantSamples.clear();
+            logger.debug("[{}] found {} samples in {}", next, thisVariantSamples, TimeUtils.durationToString(stopWatch));
         }
         try {
             iterator.close();
@@ -490,11 +498,11 @@ public class SampleEligibilityAnalysis extends OpenCgaToolScopeStudy {
         return samples;
     }
 
-    private Set<String> resolveQueryDirect(TreeQuery.QueryNode node, Query baseQuery, List<String> includeSamples)
+    private BitSet resolveQueryDirect(Query variantsQuery, Query baseQuery, BitSet includeSamples)
             throws CatalogException, StorageEngineException {
         Query query = new Query(baseQuery);
-        query.putAll(node.getQuery());
-        query.put(VariantQueryParam.INCLUDE_SAMPLE.key(), includeSamples);
+        query.putAll(variantsQuery);
+        query.put(VariantQueryParam.INCLUDE_SAMPLE.key(), toSampleIds(includeSamples));
         query.put(VariantQueryParam.INCLUDE_SAMPLE_DATA.key(), "GT");
         query.put(VariantQueryParam.INCLUDE_SAMPLE_ID.key(), true);
         Predicate<String> genotypeFilter = GenotypeClass.MAIN_ALT;
@@ -509,7 +517,7 @@ public class SampleEligibilityAnalysis extends OpenCgaToolScopeStudy {
             List<String> genotypesList = VariantQueryParser.preProcessGenotypesFilter(Arrays.asList(genotypes.split(",")), loadedGenotypes);
             genotypeFilter = new HashSet<>(genotypesList)::contains;
         }
-        Set<String> samples = new HashSet<>();
+        BitSet samples = new BitSet(sampleIds.size());
 
         VariantDBIterator iterator = getVariantStorageManager().iterator(query, new QueryOptions(), getToken());
         while (iterator.hasNext()) {
@@ -517,7 +525,10 @@ public class SampleEligibilityAnalysis extends OpenCgaToolScopeStudy {
             for (SampleEntry sampleEntry : next.getStudies().get(0).getSamples()) {
                 String genotype = sampleEntry.getData().get(0);
                 if (GenotypeClass.MAIN_ALT.test(genotype) && genotypeFilter.test(genotype)) {
-                    samples.add(sampleEntry.getData().get(1));
+                    Integer position = samplePositions.get(sampleEntry.getData().get(1));
+                    if (position != null) {
+                        samples.set(position);
+                    }
                 }
             }
         }
@@ -529,4 +540,53 @@ public class SampleEligibilityAnalysis extends OpenCgaToolScopeStudy {
         return samples;
     }
 
+    private List<String> toSampleIds(BitSet samples) {
+        List<String> list = new ArrayList<>(samples.cardinality());
+        for (int i = samples.nextSetBit(0); i >= 0; i = samples.nextSetBit(i + 1)) {
+            list.add(sampleIds.get(i));
+        }
+        return list;
+    }
+
+    private BitSet toBitSet(Collection<String> samples) {
+        BitSet bitSet = new BitSet(sampleIds.size());
+        for (String sample : samples) {
+            Integer position = samplePositions.get(sample);
+            if (position != null) {
+                bitSet.set(position);
+            }
+        }
+        return bitSet;
+    }
+
+    /**
+     * Result of a node, for the set of samples where it was evaluated.
+     */
+    private static class NodeResult {
+        private final BitSet evaluatedSamples;
+        private final BitSet samples;
+
+        NodeResult(BitSet evaluatedSamples, BitSet samples) {
+            this.evaluatedSamples = (BitSet) evaluatedSamples.clone();
+            this.samples = (BitSet) samples.clone();
+        }
+
+        boolean contains(BitSet includeSamples) {
+            BitSet missing = (BitSet) includeSamples.clone();
+            missing.andNot(evaluatedSamples);
+            return missing.isEmpty();
+        }
+
+        BitSet get(BitSet includeSamples) {
+            BitSet result = (BitSet) samples.clone();
+            result.and(includeSamples);
+            return result;
+        }
+
+        void add(BitSet includeSamples, BitSet result) {
+            evaluatedSamples.or(includeSamples);
+            samples.or(result);
+        }
+    }
+
 }
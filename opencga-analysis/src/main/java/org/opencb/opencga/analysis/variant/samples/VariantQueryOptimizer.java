@@ -16,16 +16,21 @@
 
 package org.opencb.opencga.analysis.variant.samples;
 
+import org.opencb.commons.datastore.core.Query;
 import org.opencb.opencga.analysis.variant.samples.TreeQuery.QueryNode;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
 public class VariantQueryOptimizer {
 
+    public static final int MAX_SELECTIVITY = 1000;
+    private static final Comparator<TreeQuery.Node> SELECTIVITY_COMPARATOR = Comparator.comparingInt(VariantQueryOptimizer::selectivity);
+
     public static TreeQuery optimize(TreeQuery query) {
         return query.setRoot(optimize(query.getRoot()));
     }
@@ -90,6 +95,78 @@ public class VariantQueryOptimizer {
         return node;
     }
 
+    /**
+     * Sort the children of every intersection and union node by their estimated selectivity.
+     *
+     * Intersections resolve first the nodes expected to return fewer samples, so the following nodes are evaluated on a
+     * smaller set of samples. Unions resolve first the nodes expected to return more samples, so the following nodes
+     * can skip the samples already found.
+     *
+     * @param query TreeQuery to sort
+     * @return same tree query
+     */
+    public static TreeQuery sortBySelectivity(TreeQuery query) {
+        query.forEachNode(node -> {
+            if (node.getType().equals(TreeQuery.Node.Type.INTERSECTION)) {
+                node.getNodes().sort(SELECTIVITY_COMPARATOR);
+            } else if (node.getType().equals(TreeQuery.Node.Type.UNION)) {
+                node.getNodes().sort(SELECTIVITY_COMPARATOR.reversed());
+            }
+        });
+        return query;
+    }
+
+    /**
+     * Estimate the selectivity of a node, from 0 to {@link #MAX_SELECTIVITY}.
+     * Lower values are expected to return a smaller number of samples, or to be cheaper to resolve.
+     *
+     * @param node Node to evaluate
+     * @return Estimated selectivity
+     */
+    public static int selectivity(TreeQuery.Node node) {
+        switch (node.getType()) {
+            case QUERY:
+                Query query = node.getQuery();
+                if (isCatalogOnly(query)) {
+                    // Only catalog filters. The catalog query is cheap and narrows down the samples for the rest of the tree,
+                    // although the leaf still iterates variants until every remaining sample is found with a variant.
+                    return 0;
+                }
+                int v = MAX_SELECTIVITY;
+                if (VariantQueryUtils.isValidParam(query, VariantQueryParam.ANNOT_CONSEQUENCE_TYPE)) {
+                    List<String> cts = VariantQueryUtils
+                            .parseConsequenceTypes(query.getAsStringList(VariantQueryParam.ANNOT_CONSEQUENCE_TYPE.key()));
+                    if (VariantQueryUtils.LOF_SET.containsAll(cts)) {
+                        v -= 500;
+                    } else if (VariantQueryUtils.LOF_EXTENDED_SET.containsAll(cts)) {
+                        v -= 250;
+                    }
+                }
+                if (withPositionalFilter((QueryNode) node)) {
+                    v -= 250;
+                }
+                return v;
+            case COMPLEMENT:
+                return MAX_SELECTIVITY - selectivity(node.getNodes().get(0));
+            case UNION:
+                return node.getNodes().stream().mapToInt(VariantQueryOptimizer::selectivity).max().orElse(0);
+            case INTERSECTION:
+                return node.getNodes().stream().mapToInt(VariantQueryOptimizer::selectivity).min().orElse(0);
+            default:
+                throw new IllegalArgumentException("Unknown node type " + node.getType());
+        }
+    }
+
+    private static boolean isCatalogOnly(Query query) {
+        for (String key : query.keySet()) {
+            if (!key.startsWith(SampleEligibilityAnalysis.SAMPLE_PREFIX)
+                    && !key.startsWith(SampleEligibilityAnalysis.INDIVIDUAL_PREFIX)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static boolean checkQueryCollide(QueryNode thisNode, Set<VariantQueryParam> thisNodeParams, QueryNode subNode) {
         for (VariantQueryParam thisNodeParam : thisNodeParams) {
             if (VariantQueryUtils.isValidParam(subNode.getQuery(), thisNodeParam)) {
@@ -0,0 +1,84 @@
+package org.opencb.opencga.analysis.clinical;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class ActionableVariantManagerTest {
+
+    @Before
+    public void setUp() {
+        ActionableVariantManager.reset();
+    }
+
+    @After
+    public void tearDown() {
+        ActionableVariantManager.reset();
+    }
+
+    @Test
+    public void testSortVariantIds() {
+        List<String> sorted = ActionableVariantManager.sortVariantIds(Arrays.asList(
+                "X:100:A:C",
+                "10:500:A:C",
+                "2:300:A:C",
+                "2:1000:A:C",
+                "1:abc:A:C",
+                "2:300:A:G",
+                "1:20000:A:C",
+                "MT:10:A:C"));
+        assertEquals(Arrays.asList(
+                "1:20000:A:C",
+                "2:300:A:C",
+                "2:300:A:G",
+                "2:1000:A:C",
+                "10:500:A:C",
+                "MT:10:A:C",
+                "X:100:A:C"), sorted);
+    }
+
+    @Test
+    public void testLazyLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ActionableVariantManager.ActionableVariantsLoader loader = () -> {
+            loads.incrementAndGet();
+            Map<String, List<String>> variants = new HashMap<>();
+            variants.put("2:300:A:C", Collections.singletonList("phenotype"));
+            variants.put("1:20000:A:C", Collections.emptyList());
+            variants.put("invalid", Collections.emptyList());
+            return Collections.singletonMap("grch38", variants);
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    ActionableVariantManager.load(loader);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+
+        ActionableVariantManager manager = new ActionableVariantManager();
+        assertEquals(Arrays.asList("1:20000:A:C", "2:300:A:C"), manager.getSortedActionableVariantIds("grch38"));
+        assertEquals(Collections.emptyList(), manager.getSortedActionableVariantIds("grch37"));
+        assertEquals(Collections.singletonList("phenotype"), manager.getActionableVariants("grch38").get("2:300:A:C"));
+        assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,270 @@
+package org.opencb.opencga.analysis.clinical.tiering;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.clinical.Disorder;
+import org.opencb.biodata.models.clinical.interpretation.ClinicalProperty;
+import org.opencb.biodata.models.clinical.interpretation.ClinicalVariant;
+import org.opencb.biodata.models.clinical.interpretation.ClinicalVariantEvidence;
+import org.opencb.biodata.models.clinical.interpretation.DiseasePanel;
+import org.opencb.biodata.models.clinical.interpretation.DiseasePanel.GenePanel;
+import org.opencb.biodata.models.clinical.pedigree.Pedigree;
+import org.opencb.biodata.models.pedigree.IndividualProperty;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.ConsequenceType;
+import org.opencb.biodata.models.variant.avro.PopulationFrequency;
+import org.opencb.biodata.models.variant.avro.SequenceOntologyTerm;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.biodata.tools.clinical.TieringClinicalVariantCreator;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.opencga.analysis.clinical.ClinicalUtils;
+import org.opencb.opencga.catalog.managers.FamilyManager;
+import org.opencb.opencga.core.models.clinical.ClinicalAnalysis;
+import org.opencb.opencga.core.models.family.Family;
+import org.opencb.opencga.core.models.individual.Individual;
+import org.opencb.opencga.core.models.panel.Panel;
+import org.opencb.opencga.core.models.sample.Sample;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.opencb.biodata.models.clinical.interpretation.ClinicalProperty.ModeOfInheritance.*;
+import static org.opencb.biodata.models.clinical.interpretation.VariantClassification.*;
+
+public class TieringFamilyVariantEvaluatorTest {
+
+    private static final String STUDY = "study";
+    private static final String FATHER = "s1";
+    private static final String MOTHER = "s2";
+    private static final String CHILD = "s3";
+    private static final String PANEL_GENE = "BRCA2";
+    private static final String PANEL_GENE_ID = "ENSG00000139618";
+    private static final String OTHER_GENE = "ADSL";
+    private static final String OTHER_GENE_ID = "ENSG00000239900";
+
+    private Disorder disorder;
+    private TieringFamilyVariantEvaluator evaluator;
+    private TieringClinicalVariantCreator creator;
+
+    @Before
+    public void setUp() throws Exception {
+        // Trio with an affected father and child, and a healthy mother
+        disorder = new Disorder("disorder", "Disorder", "source", "description", null, null);
+        Individual father = new Individual().setId("father")
+                .setSex(IndividualProperty.Sex.MALE)
+                .setDisorders(Collections.singletonList(disorder))
+                .setSamples(Collections.singletonList(new Sample().setId(FATHER)));
+        Individual mother = new Individual().setId("mother")
+                .setSex(IndividualProperty.Sex.FEMALE)
+                .setDisorders(Collections.emptyList())
+                .setSamples(Collections.singletonList(new Sample().setId(MOTHER)));
+        Individual child = new Individual().setId("child")
+                .setSex(IndividualProperty.Sex.MALE)
+                .setDisorders(Collections.singletonList(disorder))
+                .setFather(father)
+                .setMother(mother)
+                .setSamples(Collections.singletonList(new Sample().setId(CHILD)));
+        Family family = new Family("family", "family", null, null, Arrays.asList(child, father, mother), "", 3,
+                Collections.emptyList(), Collections.emptyMap());
+        ClinicalAnalysis clinicalAnalysis = new ClinicalAnalysis().setId("analysis").setDisorder(disorder)
+                .setProband(child).setFamily(family);
+
+        Pedigree pedigree = FamilyManager.getPedigreeFromFamily(family, child.getId());
+        ClinicalUtils.removeMembersWithoutSamples(pedigree, family);
+        Map<String, String> sampleMap = ClinicalUtils.getSampleMap(clinicalAnalysis, child);
+
+        Query dominantQuery = new Query(VariantQueryParam.ANNOT_POPULATION_ALTERNATE_FREQUENCY.key(), "GNOMAD_GENOMES:ALL<0.001");
+        Query recessiveQuery = new Query(VariantQueryParam.ANNOT_POPULATION_ALTERNATE_FREQUENCY.key(), "GNOMAD_GENOMES:ALL<0.01");
+        Query mitochondrialQuery = new Query(VariantQueryParam.ANNOT_POPULATION_ALTERNATE_FREQUENCY.key(), "GNOMAD_GENOMES:ALL<0.001");
+        evaluator = new TieringFamilyVariantEvaluator(pedigree, disorder, ClinicalProperty.Penetrance.COMPLETE, child, sampleMap,
+                dominantQuery, recessiveQuery, mitochondrialQuery);
+
+        GenePanel genePanel = new GenePanel().setName(PANEL_GENE);
+        genePanel.setId(PANEL_GENE_ID);
+        genePanel.setModeOfInheritance("BOTH_MONOALLELIC_AND_BIALLELIC");
+        Panel panel = new Panel("panel", "panel", 1);
+        panel.setGenes(Collections.singletonList(genePanel));
+        List<DiseasePanel> panels = Collections.singletonList(panel);
+        creator = new TieringClinicalVariantCreator(panels, Collections.emptyMap(), Collections.emptyMap(), disorder, null,
+                ClinicalProperty.Penetrance.COMPLETE, "GRCh38");
+    }
+
+    @Test
+    public void testTier1AutosomalDominant() throws Exception {
+        // Loss of function variant in a panel gene, inherited from the affected father
+        Variant variant = variant("1:1000:A:C", "0/1", "0/0", "0/1", PANEL_GENE, PANEL_GENE_ID, "stop_gained", 0.0001f);
+        TieringFamilyVariantEvaluator.Result result = evaluator.evaluate(Collections.singletonList(variant).iterator());
+
+        assertEquals(Collections.singleton(AUTOSOMAL_DOMINANT), getModesOfInheritance(result, variant));
+        assertEquals(Collections.singleton(TIER_1), getTiers(result, variant, AUTOSOMAL_DOMINANT));
+    }
+
+    @Test
+    public void testTier2AutosomalRecessive() throws Exception {
+        // Missense variant in a panel gene, homozygous in the affected members and carried by the healthy mother
+        Variant variant = variant("1:2000:A:C", "1/1", "0/1", "1/1", PANEL_GENE, PANEL_GENE_ID, "missense_variant", 0.005f);
+        TieringFamilyVariantEvaluator.Result result = evaluator.evaluate(Collections.singletonList(variant).iterator());
+
+        assertEquals(Collections.singleton(AUTOSOMAL_RECESSIVE), getModesOfInheritance(result, variant));
+        assertEquals(Collections.singleton(TIER_2), getTiers(result, variant, AUTOSOMAL_RECESSIVE));
+    }
+
+    @Test
+    public void testTier3AutosomalDominantOutsidePanels() throws Exception {
+        // Loss of function variant in a gene that is not in the panels
+        Variant variant = variant("1:3000:A:C", "0/1", "0/0", "0/1", OTHER_GENE, OTHER_GENE_ID, "stop_gained", 0.0001f);
+        TieringFamilyVariantEvaluator.Result result = evaluator.evaluate(Collections.singletonList(variant).iterator());
+
+        assertEquals(Collections.singleton(AUTOSOMAL_DOMINANT), getModesOfInheritance(result, variant));
+        assertEquals(Collections.singleton(TIER_3), getTiers(result, variant, AUTOSOMAL_DOMINANT));
+    }
+
+    @Test
+    public void testDeNovo() throws Exception {
+        // Not inherited from the affected father, so it can not be dominant
+        Variant variant = variant("1:4000:A:C", "0/0", "0/0", "0/1", PANEL_GENE, PANEL_GENE_ID, "stop_gained", 0.0001f);
+        TieringFamilyVariantEvaluator.Result result = evaluator.evaluate(Collections.singletonList(variant).iterator());
+
+        assertEquals(Collections.singleton(DE_NOVO), getModesOfInheritance(result, variant));
+        assertEquals(Collections.singleton(TIER_1), getTiers(result, variant, DE_NOVO));
+    }
+
+    @Test
+    public void testCompoundHeterozygous() throws Exception {
+        // One heterozygous variant from each parent in the same gene
+        Variant fromFather = variant("1:5000:A:C", "0/1", "0/0", "0/1", PANEL_GENE, PANEL_GENE_ID, "missense_variant", 0.005f);
+        Variant fromMother = variant("1:5100:A:C", "0/0", "0/1", "0/1", PANEL_GENE, PANEL_GENE_ID, "missense_variant", 0.005f);
+        TieringFamilyVariantEvaluator.Result result = evaluator.evaluate(Arrays.asList(fromFather, fromMother).iterator());
+
+        Set<String> chVariants = result.getChVariants().values().stream().flatMap(List::stream).map(Variant::toString)
+                .collect(Collectors.toSet());
+        assertEquals(new HashSet<>(Arrays.asList(fromFather.toString(), fromMother.toString())), chVariants);
+        // The variant from the father is too common for the dominant rule
+        assertEquals(Collections.emptySet(), getModesOfInheritance(result, fromFather));
+        assertEquals(Collections.emptySet(), getModesOfInheritance(result, fromMother));
+    }
+
+    @Test
+    public void testPopulationFrequencyPerRule() throws Exception {
+        // Passes the recessive frequency threshold, but not the dominant one
+        Variant variant = variant("1:6000:A:C", "0/1", "0/0", "0/1", PANEL_GENE, PANEL_GENE_ID, "stop_gained", 0.005f);
+        TieringFamilyVariantEvaluator.Result result = evaluator.evaluate(Collections.singletonList(variant).iterator());
+
+        assertEquals(Collections.emptySet(), getModesOfInheritance(result, variant));
+    }
+
+    @Test
+    public void testNormalizeGenotype() {
+        assertEquals("0/1", TieringFamilyVariantEvaluator.normalizeGenotype("0/1"));
+        assertEquals("0/1", TieringFamilyVariantEvaluator.normalizeGenotype("1|0"));
+        assertEquals("1/1", TieringFamilyVariantEvaluator.normalizeGenotype("1|1"));
+        assertEquals("./.", TieringFamilyVariantEvaluator.normalizeGenotype("./."));
+        assertEquals("1", TieringFamilyVariantEvaluator.normalizeGenotype("1"));
+    }
+
+    @Test
+    public void testFrequencyFilterUnion() {
+        TieringFamilyVariantEvaluator.FrequencyFilter dominant = new TieringFamilyVariantEvaluator.FrequencyFilter(new Query()
+                .append(VariantQueryParam.ANNOT_POPULATION_ALTERNATE_FREQUENCY.key(), "1kG_phase3:AFR<0.002;GNOMAD_EXOMES:AFR<0.001")
+                .append(VariantQueryParam.STATS_MAF.key(), "ALL<0.001"));
+        TieringFamilyVariantEvaluator.FrequencyFilter recessive = new TieringFamilyVariantEvaluator.FrequencyFilter(new Query()
+                .append(VariantQueryParam.ANNOT_POPULATION_ALTERNATE_FREQUENCY.key(), "1kG_phase3:AFR<0.01;GNOMAD_EXOMES:AFR<0.01")
+                .append(VariantQueryParam.STATS_MAF.key(), "ALL<0.01"));
+        TieringFamilyVariantEvaluator.FrequencyFilter mitochondrial = new TieringFamilyVariantEvaluator.FrequencyFilter(new Query()
+                .append(VariantQueryParam.ANNOT_POPULATION_ALTERNATE_FREQUENCY.key(), "1kG_phase3:AFR<0.002;"));
+
+        Query query = new Query();
+        TieringFamilyVariantEvaluator.FrequencyFilter.union(Arrays.asList(dominant, recessive, mitochondrial)).addTo(query);
+        assertEquals("1kG_phase3:AFR<0.01", query.getString(VariantQueryParam.ANNOT_POPULATION_ALTERNATE_FREQUENCY.key()));
+        assertFalse(query.containsKey(VariantQueryParam.STATS_MAF.key()));
+
+        Variant variant = variant("1kG_phase3", "AFR", 0.005f);
+        assertFalse(dominant.test(variant));
+        assertTrue(recessive.test(variant));
+        assertFalse(mitochondrial.test(variant));
+
+        // Missing populations are accepted
+        variant = variant("GNOMAD_GENOMES", "AFR", 0.5f);
+        assertTrue(dominant.test(variant));
+        assertTrue(recessive.test(variant));
+    }
+
+    private static Variant variant(String study, String population, float altAlleleFreq) {
+        Variant variant = new Variant("1:100:A:C");
+        VariantAnnotation annotation = new VariantAnnotation();
+        PopulationFrequency populationFrequency = new PopulationFrequency();
+        populationFrequency.setStudy(study);
+        populationFrequency.setPopulation(population);
+        populationFrequency.setAltAlleleFreq(altAlleleFreq);
+        annotation.setPopulationFrequencies(Collections.singletonList(populationFrequency));
+        variant.setAnnotation(annotation);
+        return variant;
+    }
+
+    private Set<ClinicalProperty.ModeOfInheritance> getModesOfInheritance(TieringFamilyVariantEvaluator.Result result, Variant variant) {
+        Set<ClinicalProperty.ModeOfInheritance> mois = new HashSet<>();
+        for (Map.Entry<ClinicalProperty.ModeOfInheritance, List<Variant>> entry : result.getMoiVariants().entrySet()) {
+            for (Variant v : entry.getValue()) {
+                if (v.toString().equals(variant.toString())) {
+                    mois.add(entry.getKey());
+                }
+            }
+        }
+        return mois;
+    }
+
+    private Set<String> getTiers(TieringFamilyVariantEvaluator.Result result, Variant variant, ClinicalProperty.ModeOfInheritance moi)
+            throws Exception {
+        // Same classification as the TieringInterpretationAnalysisExecutor
+        List<Variant> variants = new ArrayList<>();
+        Map<String, List<ClinicalProperty.ModeOfInheritance>> variantMoIMap = new HashMap<>();
+        for (Map.Entry<ClinicalProperty.ModeOfInheritance, List<Variant>> entry : result.getMoiVariants().entrySet()) {
+            for (Variant v : entry.getValue()) {
+                if (!variantMoIMap.containsKey(v.getId())) {
+                    variantMoIMap.put(v.getId(), new ArrayList<>());
+                    variants.add(v);
+                }
+                variantMoIMap.get(v.getId()).add(entry.getKey());
+            }
+        }
+        Set<String> tiers = new HashSet<>();
+        for (ClinicalVariant clinicalVariant : creator.create(variants, variantMoIMap)) {
+            if (!clinicalVariant.getChromosome().equals(variant.getChromosome())
+                    || !clinicalVariant.getStart().equals(variant.getStart())) {
+                continue;
+            }
+            for (ClinicalVariantEvidence evidence : clinicalVariant.getEvidences()) {
+                if (moi.equals(evidence.getModeOfInheritance()) && !UNTIERED.equals(evidence.getClassification().getTier())) {
+                    tiers.add(evidence.getClassification().getTier());
+                }
+            }
+        }
+        return tiers;
+    }
+
+    private static Variant variant(String id, String fatherGt, String motherGt, String childGt, String geneName, String geneId,
+                                   String consequenceType, float altAlleleFreq) {
+        Variant variant = Variant.newBuilder(id)
+                .setStudyId(STUDY)
+                .setSampleDataKeys("GT")
+                .addSample(FATHER, fatherGt)
+                .addSample(MOTHER, motherGt)
+                .addSample(CHILD, childGt)
+                .build();
+        ConsequenceType ct = new ConsequenceType();
+        ct.setGeneName(geneName);
+        ct.setEnsemblGeneId(geneId);
+        ct.setEnsemblTranscriptId(geneId.replace("ENSG", "ENST"));
+        ct.setBiotype("protein_coding");
+        ct.setSequenceOntologyTerms(Collections.singletonList(new SequenceOntologyTerm(
+                consequenceType.equals("stop_gained") ? "SO:0001587" : "SO:0001583", consequenceType)));
+        VariantAnnotation annotation = variant("GNOMAD_GENOMES", "ALL", altAlleleFreq).getAnnotation();
+        annotation.setConsequenceTypes(Collections.singletonList(ct));
+        variant.setAnnotation(annotation);
+        return variant;
+    }
+}
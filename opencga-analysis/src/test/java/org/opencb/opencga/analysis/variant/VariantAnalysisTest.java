@@ -35,6 +35,9 @@ import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.opencga.analysis.tools.ToolRunner;
 import org.opencb.opencga.analysis.variant.gwas.GwasAnalysis;
 import org.opencb.opencga.analysis.variant.knockout.KnockoutAnalysis;
+import org.opencb.opencga.analysis.variant.knockout.result.KnockoutBySample;
+import org.opencb.opencga.analysis.variant.knockout.result.KnockoutTranscript;
+import org.opencb.opencga.analysis.variant.knockout.result.KnockoutVariant;
 import org.opencb.opencga.analysis.variant.manager.VariantStorageManager;
 import org.opencb.opencga.analysis.variant.samples.SampleEligibilityAnalysis;
 import org.opencb.opencga.analysis.variant.stats.CohortVariantStatsAnalysis;
@@ -71,6 +74,7 @@ import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor
 import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
@@ -446,6 +450,45 @@ public class VariantAnalysisTest {
         checkExecutionResult(er, false);
     }
 
+    @Test
+    public void testKnockoutGenesScan() throws Exception {
+        KnockoutAnalysisParams params = new KnockoutAnalysisParams();
+        params.setSample(file.getSamples().stream().map(Sample::getId).collect(Collectors.toList()));
+
+        Path bySampleOutDir = Paths.get(opencga.createTmpOutdir("_knockout_genes_by_sample"));
+        ExecutionResult er = toolRunner.execute(KnockoutAnalysis.class, params.toObjectMap().append("executionMethod", "bySample"),
+                bySampleOutDir, token);
+        checkExecutionResult(er, false);
+
+        Path scanOutDir = Paths.get(opencga.createTmpOutdir("_knockout_genes_scan"));
+        er = toolRunner.execute(KnockoutAnalysis.class, params.toObjectMap().append("executionMethod", "scan"), scanOutDir, token);
+        checkExecutionResult(er, false);
+
+        // Both execution methods must find the same knockouts
+        Set<String> expected = readKnockoutsBySample(bySampleOutDir);
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, readKnockoutsBySample(scanOutDir));
+    }
+
+    private Set<String> readKnockoutsBySample(Path outDir) throws IOException {
+        Set<String> knockouts = new TreeSet<>();
+        List<Path> files = Files.list(outDir)
+                .filter(path -> path.getFileName().toString().matches("knockout.sample..*.json"))
+                .collect(Collectors.toList());
+        for (Path path : files) {
+            KnockoutBySample knockoutBySample = JacksonUtils.getDefaultObjectMapper().readValue(path.toFile(), KnockoutBySample.class);
+            for (KnockoutBySample.KnockoutGene gene : knockoutBySample.getGenes()) {
+                for (KnockoutTranscript transcript : gene.getTranscripts()) {
+                    for (KnockoutVariant variant : transcript.getVariants()) {
+                        knockouts.add(knockoutBySample.getSample().getId() + " " + gene.getName() + " " + transcript.getId() + " "
+                                + variant.getId() + " " + variant.getGenotype() + " " + variant.getKnockoutType());
+                    }
+                }
+            }
+        }
+        return knockouts;
+    }
+
     @Test
     public void testKnockoutGenesSpecificGenes() throws Exception {
         Path outDir = Paths.get(opencga.createTmpOutdir("_knockout_genes_specific_genes"));
@@ -0,0 +1,204 @@
+package org.opencb.opencga.analysis.variant.geneticChecks;
+
+import org.junit.Test;
+import org.opencb.opencga.core.models.individual.Individual;
+import org.opencb.opencga.core.models.variant.RelatednessReport.RelatednessScore;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class RelatednessCalculatorTest {
+
+    @Test
+    public void testAltAlleleCount() {
+        assertEquals(0, RelatednessCalculator.altAlleleCount("0/0"));
+        assertEquals(1, RelatednessCalculator.altAlleleCount("0/1"));
+        assertEquals(1, RelatednessCalculator.altAlleleCount("1|0"));
+        assertEquals(2, RelatednessCalculator.altAlleleCount("1/1"));
+        assertEquals(RelatednessCalculator.MISSING, RelatednessCalculator.altAlleleCount("./."));
+        assertEquals(RelatednessCalculator.MISSING, RelatednessCalculator.altAlleleCount("1/2"));
+        assertEquals(RelatednessCalculator.MISSING, RelatednessCalculator.altAlleleCount("1"));
+    }
+
+    @Test
+    public void testCompute() throws Exception {
+        List<String> samples = new ArrayList<>(Arrays.asList("father", "mother", "child", "duplicate"));
+        for (int i = 0; i < 20; i++) {
+            samples.add("unrelated_" + i);
+        }
+        RelatednessCalculator calculator = new RelatednessCalculator(samples);
+
+        Random random = new Random(1);
+        int[] altAlleleCounts = new int[samples.size()];
+        for (int marker = 0; marker < 2000; marker++) {
+            double p = 0.1 + random.nextDouble() * 0.4;
+            int[] father = {allele(random, p), allele(random, p)};
+            int[] mother = {allele(random, p), allele(random, p)};
+            altAlleleCounts[0] = father[0] + father[1];
+            altAlleleCounts[1] = mother[0] + mother[1];
+            altAlleleCounts[2] = father[random.nextInt(2)] + mother[random.nextInt(2)];
+            altAlleleCounts[3] = altAlleleCounts[0];
+            for (int i = 4; i < samples.size(); i++) {
+                altAlleleCounts[i] = allele(random, p) + allele(random, p);
+            }
+            if (marker % 100 == 0) {
+                altAlleleCounts[5] = RelatednessCalculator.MISSING;
+            }
+            calculator.addMarker(altAlleleCounts);
+        }
+        // Monomorphic markers are discarded
+        Arrays.fill(altAlleleCounts, 0);
+        assertFalse(calculator.addMarker(altAlleleCounts));
+
+        List<RelatednessScore> scores = calculator.compute(4);
+        assertEquals(samples.size() * (samples.size() - 1) / 2, scores.size());
+        Map<String, RelatednessScore> scoresMap = new HashMap<>();
+        for (RelatednessScore score : scores) {
+            scoresMap.put(score.getSampleId1() + "-" + score.getSampleId2(), score);
+            assertEquals(1.0, score.getZ0() + score.getZ1() + score.getZ2(), 0.0001);
+        }
+
+        RelatednessScore duplicate = scoresMap.get("father-duplicate");
+        assertEquals(1.0, duplicate.getPiHat(), 0.05);
+        assertEquals(0.5, duplicate.getKinship(), 0.05);
+
+        for (String parent : Arrays.asList("father", "mother")) {
+            RelatednessScore parentOffspring = scoresMap.get(parent + "-child");
+            assertTrue(parentOffspring.getZ1() > 0.8);
+            assertEquals(0.5, parentOffspring.getPiHat(), 0.1);
+            assertEquals(0.25, parentOffspring.getKinship(), 0.05);
+        }
+
+        for (String pair : Arrays.asList("father-mother", "unrelated_0-unrelated_1", "child-unrelated_1")) {
+            RelatednessScore unrelated = scoresMap.get(pair);
+            assertTrue(pair, unrelated.getPiHat() < 0.2);
+            assertTrue(pair, unrelated.getKinship() < 0.1);
+        }
+    }
+
+    @Test
+    public void testExpectedIbsSmallSampleCorrection() {
+        // 2 alternate alleles out of 4. Drawing 4 alleles without replacement: 2 * (2 * 1 * 2 * 1) / (4 * 3 * 2 * 1)
+        double[][] expectedIbs = new double[3][3];
+        RelatednessCalculator.addExpectedIbs(4, 2, expectedIbs);
+        assertEquals(1.0 / 3, expectedIbs[0][0], 0.0001);
+        assertEquals(1.0, expectedIbs[0][0] + expectedIbs[1][0] + expectedIbs[2][0], 0.0001);
+        assertEquals(1.0, expectedIbs[1][1] + expectedIbs[2][1], 0.0001);
+
+        // Large samples converge to the uncorrected expectation
+        expectedIbs = new double[3][3];
+        RelatednessCalculator.addExpectedIbs(20000, 5000, expectedIbs);
+        assertEquals(2 * 0.25 * 0.25 * 0.75 * 0.75, expectedIbs[0][0], 0.0001);
+        assertEquals(2 * 0.25 * 0.25 * 0.75 + 2 * 0.25 * 0.75 * 0.75, expectedIbs[1][1], 0.0001);
+    }
+
+    @Test
+    public void testPruneLD() {
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            samples.add("sample_" + i);
+        }
+        RelatednessCalculator calculator = new RelatednessCalculator(samples);
+        Random random = new Random(1);
+        int[] marker1 = new int[samples.size()];
+        int[] marker2 = new int[samples.size()];
+        for (int i = 0; i < samples.size(); i++) {
+            marker1[i] = allele(random, 0.4) + allele(random, 0.4);
+            marker2[i] = allele(random, 0.4) + allele(random, 0.4);
+        }
+        // Independent markers are kept
+        assertTrue(calculator.addMarker("1", marker1));
+        assertTrue(calculator.addMarker("1", marker2));
+        assertEquals(0, calculator.pruneLD(50, 5, 2));
+        assertEquals(2, calculator.getNumMarkers());
+
+        // Duplicated markers in the same window are pruned, but not across chromosomes
+        calculator.addMarker("1", marker1);
+        calculator.addMarker("2", marker2);
+        assertEquals(1, calculator.pruneLD(50, 5, 2));
+        assertEquals(3, calculator.getNumMarkers());
+
+        // Markers out of the window are not compared
+        for (int i = 0; i < 3; i++) {
+            int[] counts = new int[samples.size()];
+            for (int j = 0; j < samples.size(); j++) {
+                counts[j] = allele(random, 0.4) + allele(random, 0.4);
+            }
+            calculator.addMarker("2", counts);
+        }
+        calculator.addMarker("2", marker2);
+        assertEquals(0, calculator.pruneLD(3, 1, 2));
+        assertEquals(7, calculator.getNumMarkers());
+    }
+
+    /**
+     * Check the estimates against PLINK --genome. The genotypes of the ibd.genome samples are not available, so only the
+     * final transformations are compared with its output, plus the pairs whose estimates do not depend on the
+     * allele frequencies.
+     */
+    @Test
+    public void testPlinkGenomeParity() throws Exception {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(getClass().getResourceAsStream("/ibd.genome")))) {
+            // FID1 IID1 FID2 IID2 RT EZ Z0 Z1 Z2 PI_HAT PHE DST PPC RATIO
+            String line = reader.readLine();
+            int pairs = 0;
+            while ((line = reader.readLine()) != null) {
+                String[] split = line.trim().split("\\s+");
+                double[] z = {Double.parseDouble(split[6]), Double.parseDouble(split[7]), Double.parseDouble(split[8])};
+                assertArrayEquals(line, z, RelatednessCalculator.boundIbd(z[0], z[1], z[2]), 0.0001);
+                assertEquals(line, Double.parseDouble(split[9]), z[1] / 2 + z[2], 0.0001);
+                pairs++;
+            }
+            assertEquals(6, pairs);
+        }
+
+        // Duplicated samples are always Z2 = 1 in PLINK, and samples with opposite homozygous genotypes Z0 = 1
+        List<String> samples = Arrays.asList("sample", "duplicate", "opposite", "other");
+        RelatednessCalculator calculator = new RelatednessCalculator(samples);
+        Random random = new Random(1);
+        for (int marker = 0; marker < 200; marker++) {
+            int count = random.nextBoolean() ? 0 : 2;
+            calculator.addMarker("1", new int[]{count, count, 2 - count, random.nextInt(3)});
+        }
+        Map<String, RelatednessScore> scoresMap = new HashMap<>();
+        for (RelatednessScore score : calculator.compute(1)) {
+            scoresMap.put(score.getSampleId1() + "-" + score.getSampleId2(), score);
+        }
+        RelatednessScore duplicate = scoresMap.get("sample-duplicate");
+        assertArrayEquals(new double[]{0, 0, 1, 1},
+                new double[]{duplicate.getZ0(), duplicate.getZ1(), duplicate.getZ2(), duplicate.getPiHat()}, 0.0001);
+        RelatednessScore opposite = scoresMap.get("sample-opposite");
+        assertArrayEquals(new double[]{1, 0, 0, 0},
+                new double[]{opposite.getZ0(), opposite.getZ1(), opposite.getZ2(), opposite.getPiHat()}, 0.0001);
+    }
+
+    @Test
+    public void testBoundIbd() {
+        assertArrayEquals(new double[]{0, 0, 1}, RelatednessCalculator.boundIbd(-0.1, 0.2, 1.2), 0.0001);
+        assertArrayEquals(new double[]{0, 0.25, 0.75}, RelatednessCalculator.boundIbd(-0.1, 0.1, 0.3), 0.0001);
+        assertArrayEquals(new double[]{0.5, 0.5, 0}, RelatednessCalculator.boundIbd(0.6, 0.6, -0.2), 0.0001);
+    }
+
+    @Test
+    public void testReportedRelation() {
+        Individual father = new Individual().setId("father");
+        Individual mother = new Individual().setId("mother");
+        Individual child1 = new Individual().setId("child1").setFather(father).setMother(mother);
+        Individual child2 = new Individual().setId("child2").setFather(father).setMother(mother);
+        Individual halfSibling = new Individual().setId("child3").setMother(mother);
+
+        assertEquals(IBDComputation.PARENT_OFFSPRING, IBDComputation.getReportedRelation(father, child1));
+        assertEquals(IBDComputation.PARENT_OFFSPRING, IBDComputation.getReportedRelation(child2, mother));
+        assertEquals(IBDComputation.FULL_SIBLINGS, IBDComputation.getReportedRelation(child1, child2));
+        assertEquals(IBDComputation.HALF_SIBLINGS, IBDComputation.getReportedRelation(child1, halfSibling));
+        assertEquals(IBDComputation.UNRELATED, IBDComputation.getReportedRelation(father, mother));
+        assertEquals(IBDComputation.UNRELATED, IBDComputation.getReportedRelation(father, null));
+    }
+
+    private static int allele(Random random, double p) {
+        return random.nextDouble() < p ? 1 : 0;
+    }
+}
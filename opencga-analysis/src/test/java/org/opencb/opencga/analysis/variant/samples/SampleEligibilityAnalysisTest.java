@@ -19,7 +19,13 @@ package org.opencb.opencga.analysis.variant.samples;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.opencb.commons.datastore.core.Query;
 import org.opencb.opencga.core.exceptions.ToolException;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
 
 public class SampleEligibilityAnalysisTest {
 
@@ -47,4 +53,68 @@ public class SampleEligibilityAnalysisTest {
 //        treeQuery.log();
         SampleEligibilityAnalysis.checkValidQueryFilters(treeQuery);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReuseNodeResults() throws Exception {
+        Map<String, BitSet> leaves = new HashMap<>();
+        leaves.put("a", bitSet(0, 1, 2, 3));
+        leaves.put("b", bitSet(0, 1));
+        leaves.put("c", bitSet(2, 4));
+        LeafRecorder analysis = new LeafRecorder(leaves);
+        List<String> samples = Arrays.asList("s0", "s1", "s2", "s3", "s4", "s5");
+
+        // ((a AND b) OR (a AND c)) : the second "a" is evaluated over a subset of the samples of the first one
+        TreeQuery.Node root = new TreeQuery.UnionNode(Arrays.asList(
+                new TreeQuery.IntersectionNode(Arrays.asList(leaf("a"), leaf("b"))),
+                new TreeQuery.IntersectionNode(Arrays.asList(leaf("a"), leaf("c")))));
+
+        assertEquals(bitSet(0, 1, 2), analysis.resolveTree(root, samples, new Query()));
+        assertEquals(Collections.singletonList(bitSet(0, 1, 2, 3, 4, 5)), analysis.evaluations.get("a"));
+        assertEquals(Collections.singletonList(bitSet(0, 1, 2, 3)), analysis.evaluations.get("b"));
+        assertEquals(Collections.singletonList(bitSet(2, 3)), analysis.evaluations.get("c"));
+
+        // ((b AND a) OR a) : the second "a" needs samples not evaluated by the first one
+        analysis = new LeafRecorder(leaves);
+        root = new TreeQuery.UnionNode(Arrays.asList(
+                new TreeQuery.IntersectionNode(Arrays.asList(leaf("b"), leaf("a"))),
+                leaf("a")));
+
+        assertEquals(bitSet(0, 1, 2, 3), analysis.resolveTree(root, samples, new Query()));
+        assertEquals(Arrays.asList(bitSet(0, 1), bitSet(2, 3, 4, 5)), analysis.evaluations.get("a"));
+        assertEquals(Collections.singletonList(bitSet(0, 1, 2, 3, 4, 5)), analysis.evaluations.get("b"));
+    }
+
+    private static TreeQuery.QueryNode leaf(String gene) {
+        return new TreeQuery.QueryNode(new Query("gene", gene));
+    }
+
+    private static BitSet bitSet(int... positions) {
+        BitSet bitSet = new BitSet();
+        for (int position : positions) {
+            bitSet.set(position);
+        }
+        return bitSet;
+    }
+
+    /**
+     * Resolves each leaf with a fixed set of samples, recording the samples where each leaf was evaluated.
+     */
+    private static class LeafRecorder extends SampleEligibilityAnalysis {
+        private final Map<String, BitSet> leaves;
+        private final Map<String, List<BitSet>> evaluations = new HashMap<>();
+
+        LeafRecorder(Map<String, BitSet> leaves) {
+            this.leaves = leaves;
+            logger = LoggerFactory.getLogger(SampleEligibilityAnalysisTest.class);
+        }
+
+        @Override
+        protected BitSet resolveQuery(TreeQuery.QueryNode node, Query baseQuery, BitSet includeSamples) {
+            String gene = node.getQuery().getString("gene");
+            evaluations.computeIfAbsent(gene, k -> new ArrayList<>()).add((BitSet) includeSamples.clone());
+            BitSet result = (BitSet) leaves.get(gene).clone();
+            result.and(includeSamples);
+            return result;
+        }
+    }
+}
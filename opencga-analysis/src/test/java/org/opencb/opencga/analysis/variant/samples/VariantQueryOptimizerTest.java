@@ -82,4 +82,22 @@ public class VariantQueryOptimizerTest {
         //System.out.println("optimize = " + optimize);
         Assert.assertEquals("(NOT (key=value AND key3>50)) OR (NOT (key5>=2323))", optimize.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSortBySelectivity() {
+        TreeQuery node = new TreeQuery("(ct=missense_variant AND gene=BRCA2) AND (ct=lof AND gene=BMPR2)");
+        VariantQueryOptimizer.optimize(node);
+        VariantQueryOptimizer.sortBySelectivity(node);
+        Assert.assertEquals("(ct=lof AND gene=BMPR2) AND (ct=missense_variant AND gene=BRCA2)", node.toString());
+
+        node = new TreeQuery("ct=lof OR ct=missense_variant");
+        VariantQueryOptimizer.optimize(node);
+        VariantQueryOptimizer.sortBySelectivity(node);
+        Assert.assertEquals("(ct=missense_variant) OR (ct=lof)", node.toString());
+
+        node = new TreeQuery("NOT (sample.id=S1) AND ct=lof");
+        VariantQueryOptimizer.optimize(node);
+        VariantQueryOptimizer.sortBySelectivity(node);
+        Assert.assertEquals("(ct=lof) AND (NOT (sample.id=S1))", node.toString());
+    }
+}
@@ -37,11 +37,17 @@ public class SearchConfiguration {
     private boolean active;
     private int timeout;
     private int insertBatchSize;
+    private int insertThreads;
+    private int insertCommitWithin;
+    private int insertMaxRetries;
 
     private static final String DEFAULT_MODE = "cloud";
     private static final boolean DEFAULT_ACTIVE = true;
     private static final int DEFAULT_TIMEOUT = 30000;
     private static final int DEFAULT_INSERT_BATCH_SIZE = 10000;
+    private static final int DEFAULT_INSERT_THREADS = 4;
+    private static final int DEFAULT_INSERT_COMMIT_WITHIN = 60000;
+    private static final int DEFAULT_INSERT_MAX_RETRIES = 3;
 
 
     public SearchConfiguration() {
@@ -59,6 +65,9 @@ public class SearchConfiguration {
         this.active = active;
         this.timeout = timeout;
         this.insertBatchSize = insertBatchSize;
+        this.insertThreads = DEFAULT_INSERT_THREADS;
+        this.insertCommitWithin = DEFAULT_INSERT_COMMIT_WITHIN;
+        this.insertMaxRetries = DEFAULT_INSERT_MAX_RETRIES;
     }
 
     @Override
@@ -73,6 +82,9 @@ public class SearchConfiguration {
                 ", active=" + active +
                 ", timeout=" + timeout +
                 ", insertBatchSize=" + insertBatchSize +
+                ", insertThreads=" + insertThreads +
+                ", insertCommitWithin=" + insertCommitWithin +
+                ", insertMaxRetries=" + insertMaxRetries +
                 '}';
     }
 
@@ -176,4 +188,37 @@ public class SearchConfiguration {
         this.insertBatchSize = insertBatchSize;
         return this;
     }
+
+    public int getInsertThreads() {
+        return insertThreads;
+    }
+
+    public SearchConfiguration setInsertThreads(int insertThreads) {
+        this.insertThreads = insertThreads;
+        return this;
+    }
+
+    /**
+     * Maximum time in milliseconds before the inserted documents are committed when loading variants.
+     * A single hard commit is executed at the end of the load.
+     *
+     * @return commitWithin in milliseconds
+     */
+    public int getInsertCommitWithin() {
+        return insertCommitWithin;
+    }
+
+    public SearchConfiguration setInsertCommitWithin(int insertCommitWithin) {
+        this.insertCommitWithin = insertCommitWithin;
+        return this;
+    }
+
+    public int getInsertMaxRetries() {
+        return insertMaxRetries;
+    }
+
+    public SearchConfiguration setInsertMaxRetries(int insertMaxRetries) {
+        this.insertMaxRetries = insertMaxRetries;
+        return this;
+    }
 }
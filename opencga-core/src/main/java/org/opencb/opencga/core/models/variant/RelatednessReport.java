@@ -49,6 +49,9 @@ public class RelatednessReport {
         // PI-HAT score
         private double piHat;
 
+        // KING-robust kinship coefficient
+        private double kinship;
+
         public RelatednessScore() {
         }
 
@@ -125,6 +128,15 @@ public class RelatednessReport {
             this.piHat = piHat;
             return this;
         }
+
+        public double getKinship() {
+            return kinship;
+        }
+
+        public RelatednessScore setKinship(double kinship) {
+            this.kinship = kinship;
+            return this;
+        }
     }
 
     public RelatednessReport() {
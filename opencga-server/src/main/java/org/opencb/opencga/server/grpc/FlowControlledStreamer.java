@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.server.grpc;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Streams the elements of an iterator to a gRPC client, grouped in batches, honouring the gRPC flow control.
+ *
+ * Messages are only written while the call is ready. Once the transport buffer is full, the streamer stops
+ * and waits for the next "onReady" notification to resume, so a slow client never makes the server buffer
+ * the whole result in memory. The iterator is closed when all the elements are sent, on error, or when the
+ * client cancels the call.
+ */
+class FlowControlledStreamer<E, T> {
+
+    private final StreamObserver<T> responseObserver;
+    private final Iterator<E> iterator;
+    private final int batchSize;
+    private final Function<List<E>, T> converter;
+
+    private boolean finished;
+    private volatile boolean cancelled;
+    private long numElements;
+    private long numMessages;
+    private final long start = System.currentTimeMillis();
+
+    private final Logger logger = LoggerFactory.getLogger(FlowControlledStreamer.class);
+
+    FlowControlledStreamer(StreamObserver<T> responseObserver, Iterator<E> iterator, int batchSize, Function<List<E>, T> converter) {
+        this.responseObserver = responseObserver;
+        this.iterator = iterator;
+        this.batchSize = Math.max(1, batchSize);
+        this.converter = converter;
+    }
+
+    /**
+     * Start streaming. Must be called from the thread executing the RPC method, as the gRPC handlers can only be
+     * registered there.
+     */
+    public void start() {
+        if (responseObserver instanceof ServerCallStreamObserver) {
+            ServerCallStreamObserver<T> serverObserver = (ServerCallStreamObserver<T>) responseObserver;
+            serverObserver.setOnCancelHandler(() -> {
+                cancelled = true;
+                logger.info("Stream cancelled by the client after {} elements", numElements);
+                finish();
+            });
+            serverObserver.setOnReadyHandler(this::drain);
+        }
+        drain();
+    }
+
+    /**
+     * Send messages while the call is ready.
+     */
+    synchronized void drain() {
+        if (finished) {
+            return;
+        }
+        try {
+            while (isReady()) {
+                if (cancelled) {
+                    finish();
+                    return;
+                }
+                if (!iterator.hasNext()) {
+                    responseObserver.onCompleted();
+                    finish();
+                    return;
+                }
+                List<E> batch = new ArrayList<>(batchSize);
+                while (batch.size() < batchSize && iterator.hasNext()) {
+                    batch.add(iterator.next());
+                }
+                numElements += batch.size();
+                numMessages++;
+                responseObserver.onNext(converter.apply(batch));
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error streaming results", e);
+            if (!cancelled) {
+                responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).withCause(e).asRuntimeException());
+            }
+            finish();
+        }
+    }
+
+    private boolean isReady() {
+        if (responseObserver instanceof ServerCallStreamObserver) {
+            return ((ServerCallStreamObserver<T>) responseObserver).isReady();
+        } else {
+            // No flow control available. Write everything.
+            return true;
+        }
+    }
+
+    private synchronized void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (iterator instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) iterator).close();
+            } catch (Exception e) {
+                logger.warn("Error closing iterator", e);
+            }
+        }
+        logger.info("Streamed {} elements in {} messages in {}ms", numElements, numMessages, System.currentTimeMillis() - start);
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public long getNumElements() {
+        return numElements;
+    }
+
+    public long getNumMessages() {
+        return numMessages;
+    }
+}
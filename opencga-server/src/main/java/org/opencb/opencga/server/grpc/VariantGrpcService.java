@@ -17,6 +17,7 @@
 package org.opencb.opencga.server.grpc;
 
 import io.grpc.stub.StreamObserver;
+import org.apache.commons.lang3.StringUtils;
 import org.opencb.biodata.models.common.protobuf.service.ServiceTypesModel;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.protobuf.VariantProto;
@@ -24,19 +25,57 @@ import org.opencb.biodata.tools.variant.converters.proto.VariantAvroToVariantPro
 import org.opencb.commons.datastore.core.DataResult;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.core.QueryParam;
+import org.opencb.opencga.analysis.variant.manager.VariantCatalogQueryUtils;
 import org.opencb.opencga.core.config.Configuration;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
 /**
  * Created by imedina on 29/12/15.
  */
 public class VariantGrpcService extends VariantServiceGrpc.VariantServiceImplBase {
 
+    public static final String FIELD = "field";
+    public static final String BATCH_SIZE = "batchSize";
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
     private GenericGrpcService genericGrpcService;
 
+    // Params selecting samples, or filtering by them. Callers using any of them expect the sample data back
+    private static final List<QueryParam> SAMPLE_PARAMS = Arrays.asList(
+            VariantQueryParam.INCLUDE_SAMPLE,
+            VariantQueryParam.INCLUDE_SAMPLE_ID,
+            VariantQueryParam.INCLUDE_SAMPLE_DATA,
+            VariantQueryParam.INCLUDE_GENOTYPE,
+            VariantQueryParam.INCLUDE_FILE,
+            VariantQueryParam.SAMPLE,
+            VariantQueryParam.GENOTYPE,
+            VariantQueryParam.SAMPLE_DATA,
+            VariantQueryParam.SAMPLE_METADATA,
+            VariantQueryParam.SAMPLE_LIMIT,
+            VariantQueryParam.SAMPLE_SKIP,
+            VariantQueryParam.FILE,
+            VariantQueryParam.FILE_DATA,
+            VariantQueryUtils.SAMPLE_MENDELIAN_ERROR,
+            VariantQueryUtils.SAMPLE_DE_NOVO,
+            VariantQueryUtils.SAMPLE_COMPOUND_HETEROZYGOUS,
+            VariantCatalogQueryUtils.SAMPLE_ANNOTATION,
+            VariantCatalogQueryUtils.FAMILY,
+            VariantCatalogQueryUtils.FAMILY_MEMBERS,
+            VariantCatalogQueryUtils.FAMILY_DISORDER,
+            VariantCatalogQueryUtils.FAMILY_PROBAND,
+            VariantCatalogQueryUtils.FAMILY_SEGREGATION);
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     public VariantGrpcService(Configuration configuration, StorageConfiguration storageConfiguration) {
@@ -47,7 +86,7 @@ public class VariantGrpcService extends VariantServiceGrpc.VariantServiceImplBas
     public void count(GenericServiceModel.Request request, StreamObserver<ServiceTypesModel.LongResponse> responseObserver) {
         try {
             Query query = genericGrpcService.createQuery(request);
-            logger.info("Count variants query : {} " + query.toJson());
+            logger.info("Count variants query : {}", query.toJson());
             DataResult<Long> count = genericGrpcService.variantStorageManager.count(query, request.getSessionId());
             responseObserver.onNext(ServiceTypesModel.LongResponse.newBuilder().setValue(count.getResults().get(0)).build());
             responseObserver.onCompleted();
@@ -59,32 +98,113 @@ public class VariantGrpcService extends VariantServiceGrpc.VariantServiceImplBas
 
     @Override
     public void distinct(GenericServiceModel.Request request, StreamObserver<ServiceTypesModel.StringArrayResponse> responseObserver) {
-        super.distinct(request, responseObserver);
+        try {
+            Query query = genericGrpcService.createQuery(request);
+            QueryOptions queryOptions = genericGrpcService.createQueryOptions(request);
+            String field = getField(queryOptions);
+            logger.info("Distinct variants query : {} , field : {}", query.toJson(), field);
+            DataResult<?> result = genericGrpcService.variantStorageManager.distinct(query, field, request.getSessionId());
+            ServiceTypesModel.StringArrayResponse.Builder builder = ServiceTypesModel.StringArrayResponse.newBuilder();
+            for (Object value : result.getResults()) {
+                builder.addValues(String.valueOf(value));
+            }
+            responseObserver.onNext(builder.build());
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            logger.error("Error on distinct", e);
+            responseObserver.onError(e);
+        }
     }
 
     @Override
     public void get(GenericServiceModel.Request request, StreamObserver<VariantProto.Variant> responseObserver) {
+        VariantAvroToVariantProtoConverter converter = new VariantAvroToVariantProtoConverter();
+        stream(request, responseObserver, 1, false, batch -> converter.convert(batch.get(0)));
+    }
+
+    @Override
+    public void getBatches(GenericServiceModel.Request request, StreamObserver<VariantServiceModel.VariantBatch> responseObserver) {
+        VariantAvroToVariantProtoConverter converter = new VariantAvroToVariantProtoConverter();
+        int batchSize = genericGrpcService.createQueryOptions(request).getInt(BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        stream(request, responseObserver, batchSize, true, batch -> {
+            VariantServiceModel.VariantBatch.Builder builder = VariantServiceModel.VariantBatch.newBuilder();
+            for (Variant variant : batch) {
+                builder.addVariants(converter.convert(variant));
+            }
+            return builder.build();
+        });
+    }
+
+    @Override
+    public void groupBy(GenericServiceModel.Request request, StreamObserver<ServiceTypesModel.GroupResponse> responseObserver) {
         try {
-            VariantAvroToVariantProtoConverter converter = new VariantAvroToVariantProtoConverter();
             Query query = genericGrpcService.createQuery(request);
             QueryOptions queryOptions = genericGrpcService.createQueryOptions(request);
-            logger.info("Get variants query : {} , queryOptions : {}" , query.toJson(), queryOptions.toJson());
-            try (VariantDBIterator iterator = genericGrpcService.variantStorageManager.iterator(query, queryOptions, request.getSessionId())) {
-                while (iterator.hasNext()) {
-                    Variant variant = iterator.next();
-                    responseObserver.onNext(converter.convert(variant));
+            String field = getField(queryOptions);
+            // Only the number of variants per group is returned
+            queryOptions.put(QueryOptions.COUNT, true);
+            logger.info("GroupBy variants query : {} , field : {}", query.toJson(), field);
+            DataResult<?> result = genericGrpcService.variantStorageManager.groupBy(field, query, queryOptions, request.getSessionId());
+            ServiceTypesModel.GroupResponse.Builder builder = ServiceTypesModel.GroupResponse.newBuilder();
+            for (Object value : result.getResults()) {
+                if (value instanceof Map) {
+                    Map<?, ?> group = (Map<?, ?>) value;
+                    builder.putValues(String.valueOf(group.get("id")), String.valueOf(group.get("count")));
                 }
             }
+            responseObserver.onNext(builder.build());
             responseObserver.onCompleted();
+        } catch (Exception e) {
+            logger.error("Error on groupBy", e);
+            responseObserver.onError(e);
+        }
+    }
+
+    private <T> void stream(GenericServiceModel.Request request, StreamObserver<T> responseObserver, int batchSize,
+                            boolean defaultProjection, Function<List<Variant>, T> converter) {
+        VariantDBIterator iterator;
+        try {
+            Query query = genericGrpcService.createQuery(request);
+            QueryOptions queryOptions = genericGrpcService.createQueryOptions(request);
+            if (defaultProjection) {
+                addDefaultProjection(query, queryOptions);
+            }
+            logger.info("Get variants query : {} , queryOptions : {}", query.toJson(), queryOptions.toJson());
+            iterator = genericGrpcService.variantStorageManager.iterator(query, queryOptions, request.getSessionId());
         } catch (Exception e) {
             logger.error("Error on get variants", e);
             responseObserver.onError(e);
+            return;
         }
+        new FlowControlledStreamer<>(responseObserver, iterator, batchSize, converter).start();
     }
 
-    @Override
-    public void groupBy(GenericServiceModel.Request request, StreamObserver<ServiceTypesModel.GroupResponse> responseObserver) {
-        super.groupBy(request, responseObserver);
+    /**
+     * Encoding the sample data is the most expensive part of the conversion to protobuf, and usually the largest part
+     * of the message. Exclude the samples unless they are explicitly requested, either from the query or the projection.
+     * Only used by getBatches. The get rpc keeps returning the samples by default.
+     *
+     * @param query        Variant query
+     * @param queryOptions Query options
+     */
+    static void addDefaultProjection(Query query, QueryOptions queryOptions) {
+        if (queryOptions.containsKey(QueryOptions.INCLUDE) || queryOptions.containsKey(QueryOptions.EXCLUDE)) {
+            return;
+        }
+        for (QueryParam param : SAMPLE_PARAMS) {
+            if (VariantQueryUtils.isValidParam(query, param)) {
+                return;
+            }
+        }
+        query.put(VariantQueryParam.INCLUDE_SAMPLE.key(), VariantQueryUtils.NONE);
+    }
+
+    private static String getField(QueryOptions queryOptions) {
+        String field = queryOptions.getString(FIELD);
+        if (StringUtils.isEmpty(field)) {
+            throw new IllegalArgumentException("Missing option '" + FIELD + "'");
+        }
+        return field;
     }
 
 }
@@ -123,6 +123,7 @@ public class IndividualWSServer extends OpenCGAWSServer {
 
     @GET
     @Path("/search")
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_NDJSON})
     @ApiOperation(value = "Search for individuals", response = Individual.class)
     @ApiImplicitParams({
             @ApiImplicitParam(name = QueryOptions.INCLUDE, value = ParamConstants.INCLUDE_DESCRIPTION,
@@ -186,6 +187,9 @@ public class IndividualWSServer extends OpenCGAWSServer {
                 query.put(Constants.ANNOTATION, StringUtils.join(annotationList, ";"));
             }
 
+            if (isNdJsonRequested()) {
+                return createNdJsonResponse(() -> individualManager.iterator(studyStr, query, getStreamQueryOptions(), token));
+            }
             return createOkResponse(individualManager.search(studyStr, query, queryOptions, token));
         } catch (Exception e) {
             return createErrorResponse(e);
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.server.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialize a response object straight into the response output stream, without building the whole JSON in memory.
+ *
+ * The status and headers are already sent if the serialization fails, so the stream ends with an error line instead.
+ * See {@link #writeError}.
+ */
+class JsonStreamingOutput implements StreamingOutput {
+
+    private final ObjectWriter objectWriter;
+    private final Object value;
+    private final boolean gzip;
+    private final long startTime;
+
+    private static Logger logger = LoggerFactory.getLogger(JsonStreamingOutput.class);
+
+    JsonStreamingOutput(ObjectWriter objectWriter, Object value, boolean gzip, long startTime) {
+        this.objectWriter = objectWriter;
+        this.value = value;
+        this.gzip = gzip;
+        this.startTime = startTime;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        MeteredOutputStream meteredOutput = new MeteredOutputStream(output, startTime);
+        OutputStream out = gzip ? new GZIPOutputStream(meteredOutput, 8192) : meteredOutput;
+        JsonGenerator generator = objectWriter.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try {
+            objectWriter.writeValue(generator, value);
+            generator.flush();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Error writing JSON response", e);
+            writeError(objectWriter, generator, out, e);
+        } finally {
+            // Finishes the gzip stream
+            out.close();
+        }
+        logger.debug("Written {} bytes{}. Time to first byte: {}ms, total: {}ms", meteredOutput.getBytes(), gzip ? " (gzip)" : "",
+                meteredOutput.getTimeToFirstByte(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Terminate a stream that failed after the status and headers were sent. Whatever was written is flushed, followed by
+     * a new line with {@code {"error": "<message>"}}, so clients can tell a failed stream apart from a complete one.
+     *
+     * @param objectWriter ObjectWriter
+     * @param generator    Generator that failed. Its buffered content is flushed before the error line
+     * @param out          Output stream
+     * @param e            Error
+     * @throws IOException if the error line can not be written, e.g. the client closed the connection
+     */
+    static void writeError(ObjectWriter objectWriter, JsonGenerator generator, OutputStream out, Exception e) throws IOException {
+        String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        try {
+            generator.flush();
+            out.write('\n');
+            out.write(objectWriter.without(SerializationFeature.INDENT_OUTPUT)
+                    .writeValueAsBytes(Collections.singletonMap("error", message)));
+            out.write('\n');
+            out.flush();
+        } catch (IOException writeException) {
+            e.addSuppressed(writeException);
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+    }
+}
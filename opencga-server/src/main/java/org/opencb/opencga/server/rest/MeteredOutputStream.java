@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.server.rest;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream of a response, counting the written bytes and the time to the first byte.
+ *
+ * The underlying stream belongs to the container, so it is flushed but never closed.
+ */
+class MeteredOutputStream extends FilterOutputStream {
+
+    private final long startTime;
+    private long firstByteTime = -1;
+    private long bytes;
+
+    /**
+     * @param out       Response output stream
+     * @param startTime Start of the request, in milliseconds
+     */
+    MeteredOutputStream(OutputStream out, long startTime) {
+        super(out);
+        this.startTime = startTime;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        markFirstByte();
+        out.write(b);
+        bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        markFirstByte();
+        out.write(b, off, len);
+        bytes += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private void markFirstByte() {
+        if (firstByteTime < 0) {
+            firstByteTime = System.currentTimeMillis();
+        }
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return Milliseconds from the start of the request to the first written byte, or -1 if nothing was written
+     */
+    public long getTimeToFirstByte() {
+        return firstByteTime < 0 ? -1 : firstByteTime - startTime;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.server.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Write the elements of an iterator as newline delimited JSON (NDJSON), one element per line.
+ *
+ * Elements are read from the iterator only as fast as they can be written to the client, so the size of the result set
+ * is not bounded by the server memory. The output is flushed every {@link #FLUSH_BATCH_SIZE} elements. The iterator is
+ * opened when the response is written, and closed at the end, if closeable.
+ *
+ * The status and headers are already sent when the iterator fails, so the stream ends with an error line instead.
+ * See {@link JsonStreamingOutput#writeError}.
+ */
+class NdJsonStreamingOutput implements StreamingOutput {
+
+    public static final int FLUSH_BATCH_SIZE = 100;
+
+    private final ObjectWriter objectWriter;
+    private final Callable<? extends Iterator<?>> iteratorSupplier;
+    private final boolean gzip;
+    private final long startTime;
+
+    private static Logger logger = LoggerFactory.getLogger(NdJsonStreamingOutput.class);
+
+    NdJsonStreamingOutput(ObjectWriter objectWriter, Callable<? extends Iterator<?>> iteratorSupplier, boolean gzip, long startTime) {
+        this.objectWriter = objectWriter.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.iteratorSupplier = iteratorSupplier;
+        this.gzip = gzip;
+        this.startTime = startTime;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        MeteredOutputStream meteredOutput = new MeteredOutputStream(output, startTime);
+        long count = 0;
+        Iterator<?> iterator = null;
+        // Sync flush, so every flush reaches the client even when compressed
+        OutputStream out = gzip ? new GZIPOutputStream(meteredOutput, 8192, true) : meteredOutput;
+        JsonGenerator generator = objectWriter.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(new SerializedString("\n"));
+        try {
+            iterator = iteratorSupplier.call();
+            while (iterator.hasNext()) {
+                objectWriter.writeValue(generator, iterator.next());
+                count++;
+                if (count % FLUSH_BATCH_SIZE == 0) {
+                    generator.flush();
+                }
+            }
+            if (count > 0) {
+                generator.writeRaw('\n');
+            }
+            generator.flush();
+        } catch (Exception e) {
+            logger.error("Error writing NDJSON response after " + count + " results", e);
+            JsonStreamingOutput.writeError(objectWriter, generator, out, e);
+        } finally {
+            close(iterator);
+            out.close();
+        }
+        logger.info("Streamed {} results, {} bytes{}. Time to first byte: {}ms, total: {}ms", count, meteredOutput.getBytes(),
+                gzip ? " (gzip)" : "", meteredOutput.getTimeToFirstByte(), System.currentTimeMillis() - startTime);
+    }
+
+    private void close(Iterator<?> iterator) {
+        if (iterator instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) iterator).close();
+            } catch (Exception e) {
+                logger.warn("Error closing iterator", e);
+            }
+        }
+    }
+}
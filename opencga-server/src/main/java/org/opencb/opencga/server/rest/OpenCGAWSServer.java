@@ -78,6 +78,9 @@ import static org.opencb.opencga.core.common.JacksonUtils.getExternalOpencgaObje
 @Produces(MediaType.APPLICATION_JSON)
 public class OpenCGAWSServer {
 
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON_TYPE = MediaType.valueOf(APPLICATION_NDJSON);
+
     @DefaultValue("v2")
     @PathParam("apiVersion")
     @ApiParam(name = "apiVersion", value = "OpenCGA major version", allowableValues = "v2", defaultValue = "v2")
@@ -481,7 +484,7 @@ public class OpenCGAWSServer {
             errorStatus = Response.Status.UNAUTHORIZED;
         }
 
-        Response response = Response.fromResponse(createJsonResponse(queryResponse)).status(errorStatus).build();
+        Response response = Response.fromResponse(createJsonStringResponse(queryResponse)).status(errorStatus).build();
         logResponse(response.getStatusInfo(), queryResponse);
         return response;
     }
@@ -493,7 +496,8 @@ public class OpenCGAWSServer {
         addErrorEvent(dataResponse, errorMessage);
         dataResponse.setResponses(Arrays.asList(result));
 
-        Response response = Response.fromResponse(createJsonResponse(dataResponse)).status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        Response response = Response.fromResponse(createJsonStringResponse(dataResponse))
+                .status(Response.Status.INTERNAL_SERVER_ERROR).build();
         logResponse(response.getStatusInfo(), dataResponse);
         return response;
     }
@@ -628,6 +632,13 @@ public class OpenCGAWSServer {
     }
 
     protected Response createJsonResponse(RestResponse queryResponse) {
+        boolean gzip = acceptsGzip();
+        StreamingOutput output = new JsonStreamingOutput(jsonObjectWriter, queryResponse, gzip, startTime);
+        return buildResponse(setContentEncoding(Response.ok(output, MediaType.APPLICATION_JSON_TYPE), gzip));
+    }
+
+    // Error responses are small. Serialize them before sending the status, so a failure can still be reported.
+    private Response createJsonStringResponse(RestResponse queryResponse) {
         try {
             return buildResponse(Response.ok(jsonObjectWriter.writeValueAsString(queryResponse), MediaType.APPLICATION_JSON_TYPE));
         } catch (JsonProcessingException e) {
@@ -637,6 +648,70 @@ public class OpenCGAWSServer {
         }
     }
 
+    /**
+     * Create a newline delimited JSON response, writing the elements of the iterator as they are read.
+     * The iterator is opened when the response is written, so it is never left open if the response is not written,
+     * and closed at the end.
+     *
+     * @param iteratorSupplier Opens the results iterator
+     * @return Response
+     */
+    protected Response createNdJsonResponse(Callable<? extends Iterator<?>> iteratorSupplier) {
+        boolean gzip = acceptsGzip();
+        StreamingOutput output = new NdJsonStreamingOutput(jsonObjectWriter, iteratorSupplier, gzip, startTime);
+        Response response = buildResponse(setContentEncoding(Response.ok(output, APPLICATION_NDJSON_TYPE), gzip));
+        logResponse(response.getStatusInfo());
+        return response;
+    }
+
+    /**
+     * Check if the client requested a newline delimited JSON response with the "Accept" header.
+     *
+     * @return if NDJSON is accepted
+     */
+    protected boolean isNdJsonRequested() {
+        String accept = httpServletRequest.getHeader(HttpHeaders.ACCEPT);
+        return accept != null && accept.contains(APPLICATION_NDJSON);
+    }
+
+    /**
+     * QueryOptions for streamed responses. The default limit does not apply, only the one requested by the client.
+     *
+     * @return QueryOptions
+     */
+    protected QueryOptions getStreamQueryOptions() {
+        QueryOptions options = new QueryOptions(queryOptions);
+        if (limit > 0) {
+            options.put(QueryOptions.LIMIT, limit);
+        } else {
+            options.remove(QueryOptions.LIMIT);
+        }
+        options.put(QueryOptions.SKIP_COUNT, true);
+        return options;
+    }
+
+    private boolean acceptsGzip() {
+        String acceptEncoding = httpServletRequest.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (StringUtils.isEmpty(acceptEncoding)) {
+            return false;
+        }
+        for (String encoding : acceptEncoding.split(",")) {
+            String[] split = encoding.trim().split(";");
+            if (split[0].trim().equalsIgnoreCase("gzip")) {
+                return split.length == 1 || !split[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private Response.ResponseBuilder setContentEncoding(Response.ResponseBuilder responseBuilder, boolean gzip) {
+        responseBuilder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            responseBuilder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return responseBuilder;
+    }
+
     protected Response buildResponse(Response.ResponseBuilder responseBuilder) {
         return responseBuilder
                 .header("Access-Control-Allow-Origin", "*")
@@ -709,7 +784,21 @@ public class OpenCGAWSServer {
     }
 
     public Response run(Callable<DataResult<?>> c) {
+        return run(c, null);
+    }
+
+    /**
+     * Run a query, returning a newline delimited JSON response if requested by the client.
+     *
+     * @param c              Query returning the JSON response
+     * @param ndJsonIterator   Opens the results iterator of the NDJSON response. Called once the response is written
+     * @return Response
+     */
+    public Response run(Callable<DataResult<?>> c, Callable<? extends Iterator<?>> ndJsonIterator) {
         try {
+            if (ndJsonIterator != null && isNdJsonRequested()) {
+                return createNdJsonResponse(ndJsonIterator);
+            }
             return createOkResponse(c.call());
         } catch (Exception e) {
             return createErrorResponse(e);
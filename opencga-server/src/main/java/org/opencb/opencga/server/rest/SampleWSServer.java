@@ -136,6 +136,7 @@ public class SampleWSServer extends OpenCGAWSServer {
 
     @GET
     @Path("/search")
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_NDJSON})
     @ApiOperation(value = "Sample search method", response = Sample.class)
     @ApiImplicitParams({
             @ApiImplicitParam(name = QueryOptions.INCLUDE, value = ParamConstants.INCLUDE_DESCRIPTION, example = "name,attributes", dataType = "string", paramType = "query"),
@@ -163,6 +164,9 @@ public class SampleWSServer extends OpenCGAWSServer {
             @ApiParam(value = ParamConstants.SNAPSHOT_DESCRIPTION) @QueryParam(ParamConstants.SNAPSHOT_PARAM) int snapshot) {
         try {
             query.remove(ParamConstants.STUDY_PARAM);
+            if (isNdJsonRequested()) {
+                return createNdJsonResponse(() -> sampleManager.iterator(studyStr, query, getStreamQueryOptions(), token));
+            }
             return createOkResponse(sampleManager.search(studyStr, query, queryOptions, token));
         } catch (Exception e) {
             return createErrorResponse(e);
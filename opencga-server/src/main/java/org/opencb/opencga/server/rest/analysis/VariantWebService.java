@@ -193,6 +193,7 @@ public class VariantWebService extends AnalysisWebService {
 
     @GET
     @Path("/query")
+    @Produces({MediaType.APPLICATION_JSON, APPLICATION_NDJSON})
     @ApiOperation(value = ParamConstants.VARIANTS_QUERY_DESCRIPTION, response = Variant.class)
     @ApiImplicitParams({
             @ApiImplicitParam(name = QueryOptions.INCLUDE, value = ParamConstants.INCLUDE_DESCRIPTION, example = "name,attributes", dataType = "string", paramType = "query"),
@@ -328,6 +329,12 @@ public class VariantWebService extends AnalysisWebService {
             Query query = getVariantQuery(queryOptions);
 
             return variantManager.get(query, queryOptions, token);
+        }, () -> {
+            // Stream all the variants. Limit only if requested
+            QueryOptions queryOptions = new QueryOptions(uriInfo.getQueryParameters(), true);
+            Query query = getVariantQuery(queryOptions);
+
+            return variantManager.iterator(query, queryOptions, token);
         });
     }
 
@@ -41,6 +41,7 @@ import org.opencb.opencga.core.exceptions.VersionException;
 import org.opencb.opencga.core.models.file.File;
 import org.opencb.opencga.core.models.file.FileRelatedFile;
 import org.opencb.opencga.server.rest.OpenCGAWSServer;
+import org.opencb.opencga.storage.core.alignment.local.BamManagerCache;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.analysis.alignment.AlignmentStorageManager;
 import org.opencb.opencga.analysis.variant.manager.VariantStorageManager;
@@ -54,6 +55,9 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static org.opencb.opencga.core.api.ParamConstants.REGION_CONTAINED_PARAM;
 import static org.opencb.opencga.core.api.ParamConstants.REGION_PARAM;
@@ -70,6 +74,11 @@ import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam
 @Api(value = "GA4GH", position = 13, description = "Global Alliance for Genomics & Health RESTful API")
 public class Ga4ghWSServer extends OpenCGAWSServer {
 
+    private static final long REFERENCE_PATHS_TTL = TimeUnit.MINUTES.toMillis(1);
+    private static final int REFERENCE_PATHS_CACHE_SIZE = 10000;
+    // Reference genome of CRAM files, by token, study, file and requested reference. Avoids catalog searches on every htsget request
+    private static final Map<String, ReferencePath> REFERENCE_PATHS = new ConcurrentHashMap<>();
+
     public Ga4ghWSServer(@Context UriInfo uriInfo, @Context HttpServletRequest httpServletRequest, @Context HttpHeaders httpHeaders) throws IOException, VersionException {
         super(uriInfo, httpServletRequest, httpHeaders);
     }
@@ -192,30 +201,11 @@ public class Ga4ghWSServer extends OpenCGAWSServer {
         try {
             File file = catalogManager.getFileManager().get(studyStr, fileIdStr, FileManager.EXCLUDE_FILE_ATTRIBUTES, token).first();
             java.nio.file.Path referencePath = null;
-
             if (file.getFormat() == File.Format.CRAM) {
-                if (org.apache.commons.lang3.StringUtils.isNotEmpty(referenceGenome)) {
-                    referencePath = Paths.get(catalogManager.getFileManager().get(studyStr, referenceGenome, FileManager.INCLUDE_FILE_URI_PATH, token).first().getUri().getPath());
-                } else if (ListUtils.isNotEmpty(file.getRelatedFiles())) {
-                    for (FileRelatedFile relatedFile : file.getRelatedFiles()) {
-                        if (relatedFile.getRelation() == FileRelatedFile.Relation.REFERENCE_GENOME) {
-                            referencePath = Paths.get(relatedFile.getFile().getUri().getPath());
-                            break;
-                        }
-                    }
-
-                    if (referencePath == null) {
-                        // Look for a reference genome in the study
-                        Query referenceQuery = new Query(FileDBAdaptor.QueryParams.BIOFORMAT.key(), File.Bioformat.REFERENCE_GENOME);
-                        DataResult<File> fileDataResult = catalogManager.getFileManager().search(studyStr, referenceQuery, FileManager.INCLUDE_FILE_URI_PATH, token);
-                        if (fileDataResult.getNumResults() == 0 || fileDataResult.getNumResults() > 1) {
-                            throw new CatalogException("Missing referenceGenome field for CRAM file");
-                        }
-                        referencePath = Paths.get(fileDataResult.first().getUri().getPath());
-                    }
-                }
+                referencePath = getReferencePath(studyStr, file, referenceGenome);
             }
-            try (BamManager bamManager = new BamManager(Paths.get(file.getUri().getPath()), referencePath)) {
+            try (BamManagerCache.Lease lease = BamManagerCache.getInstance().borrow(Paths.get(file.getUri().getPath()), referencePath)) {
+                BamManager bamManager = lease.get();
                 List<String> chunkOffsetList = bamManager.getBreakpoints(new Region(reference, start, end));
 
                 String url = uriInfo.getBaseUri().toString() + apiVersion + "/utils/ranges/" + fileIdStr + "?study=" + studyStr;
@@ -252,6 +242,53 @@ public class Ga4ghWSServer extends OpenCGAWSServer {
         }
     }
 
+    private java.nio.file.Path getReferencePath(String studyStr, File file, String referenceGenome) throws CatalogException {
+        String key = token + '|' + studyStr + '|' + file.getUuid() + '|' + referenceGenome;
+        long now = System.currentTimeMillis();
+        ReferencePath cached = REFERENCE_PATHS.get(key);
+        if (cached != null && cached.expirationTime > now) {
+            return cached.path;
+        }
+        java.nio.file.Path referencePath = null;
+        if (org.apache.commons.lang3.StringUtils.isNotEmpty(referenceGenome)) {
+            referencePath = Paths.get(catalogManager.getFileManager().get(studyStr, referenceGenome, FileManager.INCLUDE_FILE_URI_PATH, token).first().getUri().getPath());
+        } else if (ListUtils.isNotEmpty(file.getRelatedFiles())) {
+            for (FileRelatedFile relatedFile : file.getRelatedFiles()) {
+                if (relatedFile.getRelation() == FileRelatedFile.Relation.REFERENCE_GENOME) {
+                    referencePath = Paths.get(relatedFile.getFile().getUri().getPath());
+                    break;
+                }
+            }
+
+            if (referencePath == null) {
+                // Look for a reference genome in the study
+                Query referenceQuery = new Query(FileDBAdaptor.QueryParams.BIOFORMAT.key(), File.Bioformat.REFERENCE_GENOME);
+                DataResult<File> fileDataResult = catalogManager.getFileManager().search(studyStr, referenceQuery, FileManager.INCLUDE_FILE_URI_PATH, token);
+                if (fileDataResult.getNumResults() == 0 || fileDataResult.getNumResults() > 1) {
+                    throw new CatalogException("Missing referenceGenome field for CRAM file");
+                }
+                referencePath = Paths.get(fileDataResult.first().getUri().getPath());
+            }
+        }
+        if (REFERENCE_PATHS.size() >= REFERENCE_PATHS_CACHE_SIZE) {
+            REFERENCE_PATHS.clear();
+        }
+        if (referencePath != null) {
+            REFERENCE_PATHS.put(key, new ReferencePath(referencePath, now + REFERENCE_PATHS_TTL));
+        }
+        return referencePath;
+    }
+
+    private static final class ReferencePath {
+        private final java.nio.file.Path path;
+        private final long expirationTime;
+
+        private ReferencePath(java.nio.file.Path path, long expirationTime) {
+            this.path = path;
+            this.expirationTime = expirationTime;
+        }
+    }
+
     @POST
     @Path("/reads/search")
     @Consumes(MediaType.APPLICATION_JSON)
@@ -18,6 +18,7 @@ package org.opencb.opencga.server.rest.utils;
 
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.opencb.commons.datastore.core.DataResult;
 import org.opencb.opencga.core.api.ParamConstants;
@@ -30,17 +31,32 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.*;
 import java.io.DataInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 @Path("/{apiVersion}/utils")
 @Produces("application/json")
 public class FileRangesWSServer extends OpenCGAWSServer {
 
+    private static final long RESOLVED_FILE_TTL = TimeUnit.MINUTES.toMillis(1);
+    private static final int RESOLVED_FILE_CACHE_SIZE = 10000;
+    // Catalog resolution of files by token, study and file. Avoids a full catalog "get" for every chunk of the same file.
+    private static final Map<String, ResolvedFile> RESOLVED_FILES = new ConcurrentHashMap<>();
+
     public FileRangesWSServer(@Context UriInfo uriInfo, @Context HttpServletRequest httpServletRequest, @Context HttpHeaders headerParam)
             throws IOException, VersionException {
         super(uriInfo, httpServletRequest, headerParam);
@@ -56,47 +72,189 @@ public class FileRangesWSServer extends OpenCGAWSServer {
                               @QueryParam(ParamConstants.STUDY_PARAM) String studyStr) {
 
         try {
-            DataResult<File> queryResult = catalogManager.getFileManager().get(studyStr, fileIdStr, this.queryOptions, token);
-            File file = queryResult.getResults().get(0);
+            ResolvedFile file = resolveFile(studyStr, fileIdStr);
+            java.nio.file.Path filePath = Paths.get(file.uri);
+            long size = Files.size(filePath);
+            String eTag = "\"" + Long.toHexString(size) + '-' + Long.toHexString(Files.getLastModifiedTime(filePath).toMillis()) + "\"";
 
-            List<String> rangeList = headers.getRequestHeader("range");
-            if (rangeList != null) {
-                long from;
-                long to;
-                String[] acceptedRanges = rangeList.get(0).split("=")[1].split("-");
-                from = Long.parseLong(acceptedRanges[0]);
-                to = Long.parseLong(acceptedRanges[1]);
-                int length = (int) (to - from) + 1;
-                ByteBuffer buf = ByteBuffer.allocate(length);
-
-                logger.debug("from: {} , to: {}, length:{}", from, to, length);
+            String rangeHeader = headers.getHeaderString("range");
+            String ifRange = headers.getHeaderString("If-Range");
+            if (rangeHeader != null && ifRange != null && !ifRange.equals(eTag)) {
+                // The file has changed. Ignore the range and send the whole file
+                rangeHeader = null;
+            }
+            List<long[]> ranges = null;
+            if (rangeHeader != null) {
+                try {
+                    ranges = parseRanges(rangeHeader, size);
+                } catch (IllegalArgumentException e) {
+                    // Syntactically invalid range. Ignore the header and send the whole file
+                    logger.debug("Ignoring invalid range header '{}' : {}", rangeHeader, e.getMessage());
+                }
+            }
+            if (ranges != null) {
+                if (ranges.isEmpty()) {
+                    return rangeResponse(Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE), eTag)
+                            .header("Content-Range", "bytes */" + size)
+                            .build();
+                }
                 StopWatch t = StopWatch.createStarted();
+                Response.ResponseBuilder builder;
+                if (ranges.size() == 1) {
+                    long from = ranges.get(0)[0];
+                    long to = ranges.get(0)[1];
+                    logger.debug("from: {} , to: {}, length:{}", from, to, to - from + 1);
+                    builder = Response.ok((StreamingOutput) os -> transfer(filePath, from, to, os), MediaType.APPLICATION_OCTET_STREAM_TYPE)
+                            .header("Content-Range", "bytes " + from + "-" + to + "/" + size)
+                            .header("Content-length", to - from + 1);
+                } else {
+                    String boundary = UUID.randomUUID().toString();
+                    List<long[]> multipartRanges = ranges;
+                    builder = Response.ok((StreamingOutput) os -> {
+                        for (long[] range : multipartRanges) {
+                            os.write(("\r\n--" + boundary + "\r\n"
+                                    + "Content-Type: " + MediaType.APPLICATION_OCTET_STREAM + "\r\n"
+                                    + "Content-Range: bytes " + range[0] + "-" + range[1] + "/" + size + "\r\n\r\n")
+                                    .getBytes(StandardCharsets.US_ASCII));
+                            transfer(filePath, range[0], range[1], os);
+                        }
+                        os.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+                    }, "multipart/byteranges; boundary=" + boundary);
+                }
+                logger.debug("Prepared {} ranges in {}s", ranges.size(), t.getTime(TimeUnit.MILLISECONDS) / 1000.0);
+                return rangeResponse(builder.status(Response.Status.PARTIAL_CONTENT), eTag).build();
+            } else {
+                if (eTag.equals(headers.getHeaderString(HttpHeaders.IF_NONE_MATCH))) {
+                    return rangeResponse(Response.notModified(), eTag).build();
+                }
+                DataInputStream stream = catalogManager.getFileManager().download(studyStr, fileIdStr, -1, -1, token);
+                Response response = createOkResponse(stream, MediaType.APPLICATION_OCTET_STREAM_TYPE, file.name);
+                return rangeResponse(Response.fromResponse(response), eTag).build();
+            }
+        } catch (Exception e) {
+            return createErrorResponse(e);
+        }
+    }
 
-                java.nio.file.Path filePath = Paths.get(file.getUri());
-                try (FileChannel fc = (FileChannel.open(filePath, StandardOpenOption.READ))) {
-                    fc.position(from);
-                    fc.read(buf);
+    private ResolvedFile resolveFile(String studyStr, String fileIdStr) throws Exception {
+        String key = token + '|' + studyStr + '|' + fileIdStr;
+        ResolvedFile resolvedFile = RESOLVED_FILES.get(key);
+        long now = System.currentTimeMillis();
+        if (resolvedFile == null || resolvedFile.expirationTime < now) {
+            DataResult<File> queryResult = catalogManager.getFileManager().get(studyStr, fileIdStr, this.queryOptions, token);
+            File file = queryResult.getResults().get(0);
+            resolvedFile = new ResolvedFile(file.getUri(), file.getName(), now + RESOLVED_FILE_TTL);
+            if (RESOLVED_FILES.size() >= RESOLVED_FILE_CACHE_SIZE) {
+                RESOLVED_FILES.values().removeIf(r -> r.expirationTime < now);
+                if (RESOLVED_FILES.size() >= RESOLVED_FILE_CACHE_SIZE) {
+                    RESOLVED_FILES.clear();
                 }
+            }
+            RESOLVED_FILES.put(key, resolvedFile);
+        }
+        return resolvedFile;
+    }
 
-                t.stop();
-                logger.debug("Skip {}B and read {}B in {}s", from, length, t.getTime(TimeUnit.MILLISECONDS) / 1000.0);
+    private static Response.ResponseBuilder rangeResponse(Response.ResponseBuilder builder, String eTag) {
+        return builder
+                .header("Accept-Ranges", "bytes")
+                .header("ETag", eTag)
+                .header("Access-Control-Allow-Origin", "*")
+                .header("Access-Control-Allow-Headers", "x-requested-with, content-type, range, if-range")
+                .header("Access-Control-Expose-Headers", "content-range, content-length, accept-ranges, etag")
+                .header("Access-Control-Allow-Credentials", "true")
+                .header("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
+    }
 
-                return Response.ok(buf.array(), MediaType.APPLICATION_OCTET_STREAM_TYPE)
-                        .header("Accept-Ranges", "bytes")
-                        .header("Access-Control-Allow-Origin", "*")
-                        .header("Access-Control-Allow-Headers", "x-requested-with, content-type, range")
-                        .header("Access-Control-Allow-Credentials", "true")
-                        .header("Access-Control-Allow-Methods", "GET, POST, OPTIONS")
-                        .header("Content-Range", "bytes " + from + "-" + to + "/" + file.getSize())
-                        .header("Content-length", to - from + 1)
-                        .status(Response.Status.PARTIAL_CONTENT).build();
+    /**
+     * Copy a range of the file into the output stream, without loading the range into the heap.
+     * Uses {@link FileChannel#transferTo}, that can use zero-copy transfers depending on the underlying output.
+     *
+     * @param filePath File to read
+     * @param from     First byte
+     * @param to       Last byte, inclusive
+     * @param os       Output stream
+     * @throws IOException on error reading or writing
+     */
+    private static void transfer(java.nio.file.Path filePath, long from, long to, OutputStream os) throws IOException {
+        WritableByteChannel target = Channels.newChannel(os);
+        try (FileChannel fc = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long position = from;
+            long end = to + 1;
+            while (position < end) {
+                long transferred = fc.transferTo(position, end - position, target);
+                if (transferred <= 0) {
+                    throw new IOException("Unexpected end of file at position " + position + " of " + filePath);
+                }
+                position += transferred;
+            }
+        }
+        os.flush();
+    }
 
+    /**
+     * Parse an HTTP Range header. Supports closed ("from-to"), open-ended ("from-") and suffix ("-length") ranges, and
+     * multiple comma separated ranges. Ranges starting past the end of the file are discarded as unsatisfiable, and the
+     * end is truncated to the file size.
+     *
+     * @param rangeHeader Range header value, e.g. "bytes=0-99,200-"
+     * @param size        File size
+     * @return List of [from, to] ranges, inclusive. Empty if none is satisfiable.
+     * @throws IllegalArgumentException if the header is syntactically invalid, e.g. unknown unit or "from" greater than "to".
+     *                                  In that case, the header should be ignored.
+     */
+    static List<long[]> parseRanges(String rangeHeader, long size) {
+        String value = rangeHeader.trim();
+        if (!value.startsWith("bytes=")) {
+            throw new IllegalArgumentException("Unsupported range unit: " + rangeHeader);
+        }
+        List<long[]> ranges = new ArrayList<>();
+        for (String range : value.substring("bytes=".length()).split(",")) {
+            range = range.trim();
+            int idx = range.indexOf('-');
+            if (idx < 0) {
+                throw new IllegalArgumentException("Malformed range: " + rangeHeader);
+            }
+            String fromStr = range.substring(0, idx).trim();
+            String toStr = range.substring(idx + 1).trim();
+            long from;
+            long to;
+            if (fromStr.isEmpty()) {
+                // Suffix range. Last N bytes
+                long suffix = Long.parseLong(toStr);
+                if (suffix <= 0) {
+                    continue;
+                }
+                from = Math.max(0, size - suffix);
+                to = size - 1;
             } else {
-                DataInputStream stream = catalogManager.getFileManager().download(studyStr, fileIdStr, -1, -1, token);
-                return createOkResponse(stream, MediaType.APPLICATION_OCTET_STREAM_TYPE, file.getName());
+                from = Long.parseLong(fromStr);
+                if (StringUtils.isEmpty(toStr)) {
+                    to = size - 1;
+                } else {
+                    to = Long.parseLong(toStr);
+                    if (to < from) {
+                        throw new IllegalArgumentException("Invalid range: " + rangeHeader);
+                    }
+                    to = Math.min(to, size - 1);
+                }
             }
-        } catch (Exception e) {
-            return createErrorResponse(e);
+            if (from < size) {
+                ranges.add(new long[]{from, to});
+            }
+        }
+        return ranges.isEmpty() ? Collections.emptyList() : ranges;
+    }
+
+    private static final class ResolvedFile {
+        private final URI uri;
+        private final String name;
+        private final long expirationTime;
+
+        private ResolvedFile(URI uri, String name, long expirationTime) {
+            this.uri = uri;
+            this.name = name;
+            this.expirationTime = expirationTime;
         }
     }
 
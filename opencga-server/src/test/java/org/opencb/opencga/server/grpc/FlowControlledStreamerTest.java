@@ -0,0 +1,178 @@
+package org.opencb.opencga.server.grpc;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class FlowControlledStreamerTest {
+
+    @Test
+    public void testStreamHonoursReadiness() {
+        List<Integer> elements = IntStream.range(0, 25).boxed().collect(Collectors.toList());
+        AtomicBoolean closed = new AtomicBoolean(false);
+        TestObserver observer = new TestObserver();
+        observer.ready = 2;
+
+        FlowControlledStreamer<Integer, List<Integer>> streamer =
+                new FlowControlledStreamer<>(observer, new CloseableIterator(elements.iterator(), closed), 10, ArrayList::new);
+        streamer.start();
+
+        // Stops writing once the call is not ready
+        assertEquals(2, observer.messages.size());
+        assertFalse(observer.completed);
+        assertFalse(closed.get());
+
+        observer.ready = 10;
+        observer.onReadyHandler.run();
+
+        assertEquals(3, observer.messages.size());
+        assertEquals(10, observer.messages.get(0).size());
+        assertEquals(5, observer.messages.get(2).size());
+        assertEquals(elements, observer.messages.stream().flatMap(List::stream).collect(Collectors.toList()));
+        assertTrue(observer.completed);
+        assertTrue(closed.get());
+        assertTrue(streamer.isFinished());
+        assertEquals(25, streamer.getNumElements());
+        assertEquals(3, streamer.getNumMessages());
+    }
+
+    @Test
+    public void testCancel() {
+        List<Integer> elements = IntStream.range(0, 25).boxed().collect(Collectors.toList());
+        AtomicBoolean closed = new AtomicBoolean(false);
+        TestObserver observer = new TestObserver();
+        observer.ready = 1;
+
+        FlowControlledStreamer<Integer, List<Integer>> streamer =
+                new FlowControlledStreamer<>(observer, new CloseableIterator(elements.iterator(), closed), 10, ArrayList::new);
+        streamer.start();
+        assertEquals(1, observer.messages.size());
+
+        observer.onCancelHandler.run();
+        assertTrue(closed.get());
+        assertTrue(streamer.isFinished());
+
+        // Nothing else is sent after the cancellation
+        observer.ready = 10;
+        observer.onReadyHandler.run();
+        assertEquals(1, observer.messages.size());
+        assertFalse(observer.completed);
+    }
+
+    @Test
+    public void testError() {
+        AtomicBoolean closed = new AtomicBoolean(false);
+        TestObserver observer = new TestObserver();
+        observer.ready = 10;
+
+        Iterator<Integer> failing = new Iterator<Integer>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                throw new IllegalStateException("Broken iterator");
+            }
+        };
+        new FlowControlledStreamer<>(observer, new CloseableIterator(failing, closed), 10, ArrayList::new).start();
+
+        assertNotNull(observer.error);
+        assertFalse(observer.completed);
+        assertTrue(closed.get());
+    }
+
+    private static class TestObserver extends ServerCallStreamObserver<List<Integer>> {
+        private final List<List<Integer>> messages = new ArrayList<>();
+        private int ready;
+        private boolean completed;
+        private Throwable error;
+        private Runnable onReadyHandler;
+        private Runnable onCancelHandler;
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+            this.onCancelHandler = onCancelHandler;
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public boolean isReady() {
+            return messages.size() < ready;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+            this.onReadyHandler = onReadyHandler;
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+
+        @Override
+        public void onNext(List<Integer> value) {
+            messages.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+    }
+
+    private static class CloseableIterator implements Iterator<Integer>, AutoCloseable {
+        private final Iterator<Integer> iterator;
+        private final AtomicBoolean closed;
+
+        CloseableIterator(Iterator<Integer> iterator, AtomicBoolean closed) {
+            this.iterator = iterator;
+            this.closed = closed;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public Integer next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void close() {
+            closed.set(true);
+        }
+    }
+}
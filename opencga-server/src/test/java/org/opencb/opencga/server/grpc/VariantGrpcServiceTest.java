@@ -0,0 +1,36 @@
+package org.opencb.opencga.server.grpc;
+
+import org.junit.Test;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.analysis.variant.manager.VariantCatalogQueryUtils;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class VariantGrpcServiceTest {
+
+    @Test
+    public void testDefaultProjection() {
+        Query query = new Query(VariantQueryParam.REGION.key(), "1:1000-2000");
+        VariantGrpcService.addDefaultProjection(query, new QueryOptions());
+        assertEquals(VariantQueryUtils.NONE, query.getString(VariantQueryParam.INCLUDE_SAMPLE.key()));
+    }
+
+    @Test
+    public void testDefaultProjectionWithSampleParams() {
+        checkSamplesNotExcluded(new Query(VariantQueryParam.SAMPLE.key(), "S1"), new QueryOptions());
+        checkSamplesNotExcluded(new Query(VariantQueryParam.SAMPLE_DATA.key(), "S1:DP>10"), new QueryOptions());
+        checkSamplesNotExcluded(new Query(VariantQueryParam.FILE.key(), "file1.vcf"), new QueryOptions());
+        checkSamplesNotExcluded(new Query(VariantCatalogQueryUtils.FAMILY.key(), "F1"), new QueryOptions());
+        checkSamplesNotExcluded(new Query(VariantCatalogQueryUtils.FAMILY_DISORDER.key(), "D1"), new QueryOptions());
+        checkSamplesNotExcluded(new Query(), new QueryOptions(QueryOptions.INCLUDE, "studies"));
+    }
+
+    private void checkSamplesNotExcluded(Query query, QueryOptions queryOptions) {
+        VariantGrpcService.addDefaultProjection(query, queryOptions);
+        assertFalse(query.toJson(), query.containsKey(VariantQueryParam.INCLUDE_SAMPLE.key()));
+    }
+}
@@ -0,0 +1,147 @@
+package org.opencb.opencga.server.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.opencb.commons.datastore.core.ObjectMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NdJsonStreamingOutputTest {
+
+    private final ObjectWriter objectWriter = new ObjectMapper().writer();
+
+    @Test
+    public void testWrite() throws Exception {
+        List<ObjectMap> list = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            list.add(new ObjectMap("id", i).append("name", "result_" + i));
+        }
+        AtomicBoolean closed = new AtomicBoolean(false);
+
+        AtomicBoolean opened = new AtomicBoolean(false);
+        NdJsonStreamingOutput output = new NdJsonStreamingOutput(objectWriter, () -> {
+            opened.set(true);
+            return new CloseableIterator(list.iterator(), closed);
+        }, false, System.currentTimeMillis());
+        // The iterator is opened only when the response is written
+        assertFalse(opened.get());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        output.write(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\n", -1);
+        // One line per result, plus the trailing new line
+        assertEquals(251, lines.length);
+        assertEquals("", lines[250]);
+        for (int i = 0; i < 250; i++) {
+            assertEquals(objectWriter.writeValueAsString(list.get(i)), lines[i]);
+        }
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void testWriteGzip() throws Exception {
+        List<ObjectMap> list = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            list.add(new ObjectMap("id", i));
+        }
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new NdJsonStreamingOutput(objectWriter, list::iterator, false, System.currentTimeMillis()).write(expected);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new NdJsonStreamingOutput(objectWriter, list::iterator, true, System.currentTimeMillis()).write(out);
+        byte[] uncompressed = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())));
+
+        assertEquals(expected.toString(StandardCharsets.UTF_8.name()), new String(uncompressed, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWriteEmpty() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new NdJsonStreamingOutput(objectWriter, () -> new ArrayList<>().iterator(), false, System.currentTimeMillis()).write(out);
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void testWriteError() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean(false);
+        Iterator<ObjectMap> failing = new Iterator<ObjectMap>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public ObjectMap next() {
+                if (i == 3) {
+                    throw new IllegalStateException("Lost connection");
+                }
+                return new ObjectMap("id", i++);
+            }
+        };
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new NdJsonStreamingOutput(objectWriter, () -> new CloseableIterator(failing, closed), false, System.currentTimeMillis())
+                .write(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\n", -1);
+        // Three results, then the error line
+        assertEquals(5, lines.length);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(objectWriter.writeValueAsString(new ObjectMap("id", i)), lines[i]);
+        }
+        assertEquals("{\"error\":\"Lost connection\"}", lines[3]);
+        assertEquals("", lines[4]);
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void testWriteErrorOpening() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new NdJsonStreamingOutput(objectWriter, () -> {
+            throw new IllegalArgumentException("Unknown study");
+        }, false, System.currentTimeMillis()).write(out);
+
+        assertEquals("\n{\"error\":\"Unknown study\"}\n", out.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    private static class CloseableIterator implements Iterator<ObjectMap>, AutoCloseable {
+        private final Iterator<ObjectMap> iterator;
+        private final AtomicBoolean closed;
+
+        CloseableIterator(Iterator<ObjectMap> iterator, AtomicBoolean closed) {
+            this.iterator = iterator;
+            this.closed = closed;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public ObjectMap next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void close() {
+            closed.set(true);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.opencb.opencga.server.rest.utils;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FileRangesWSServerTest {
+
+    @Test
+    public void testParseRanges() {
+        List<long[]> ranges = FileRangesWSServer.parseRanges("bytes=0-99", 1000);
+        assertEquals(1, ranges.size());
+        assertArrayEquals(new long[]{0, 99}, ranges.get(0));
+
+        ranges = FileRangesWSServer.parseRanges("bytes=500-", 1000);
+        assertArrayEquals(new long[]{500, 999}, ranges.get(0));
+
+        ranges = FileRangesWSServer.parseRanges("bytes=-100", 1000);
+        assertArrayEquals(new long[]{900, 999}, ranges.get(0));
+
+        ranges = FileRangesWSServer.parseRanges("bytes=0-9, 20-29,990-2000", 1000);
+        assertEquals(3, ranges.size());
+        assertArrayEquals(new long[]{20, 29}, ranges.get(1));
+        assertArrayEquals(new long[]{990, 999}, ranges.get(2));
+
+        // Ranges over 2GB
+        ranges = FileRangesWSServer.parseRanges("bytes=3000000000-3999999999", 5000000000L);
+        assertArrayEquals(new long[]{3000000000L, 3999999999L}, ranges.get(0));
+    }
+
+    @Test
+    public void testParseUnsatisfiableRanges() {
+        assertTrue(FileRangesWSServer.parseRanges("bytes=1000-", 1000).isEmpty());
+        assertTrue(FileRangesWSServer.parseRanges("bytes=1000-2000, 1500-", 1000).isEmpty());
+        assertTrue(FileRangesWSServer.parseRanges("bytes=-0", 1000).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseInvalidRange() {
+        // Invalid, not unsatisfiable. The header must be ignored instead of replying 416
+        FileRangesWSServer.parseRanges("bytes=0-10,50-10", 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseMalformedRange() {
+        FileRangesWSServer.parseRanges("bytes=a-10", 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRangesWrongUnit() {
+        FileRangesWSServer.parseRanges("items=0-10", 1000);
+    }
+}
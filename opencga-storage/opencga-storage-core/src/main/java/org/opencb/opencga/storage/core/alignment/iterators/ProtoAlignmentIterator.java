@@ -25,14 +25,30 @@ import org.opencb.biodata.tools.alignment.iterators.BamIterator;
 public class ProtoAlignmentIterator extends AlignmentIterator<Reads.ReadAlignment> {
 
     private BamIterator<Reads.ReadAlignment> protoIterator;
+    private AutoCloseable resource;
 
     public ProtoAlignmentIterator(BamIterator<Reads.ReadAlignment> protoIterator) {
+        this(protoIterator, null);
+    }
+
+    /**
+     * @param protoIterator Iterator
+     * @param resource Resource to close together with the iterator, e.g. a lease of the BamManager. Nullable
+     */
+    public ProtoAlignmentIterator(BamIterator<Reads.ReadAlignment> protoIterator, AutoCloseable resource) {
         this.protoIterator = protoIterator;
+        this.resource = resource;
     }
 
     @Override
     public void close() throws Exception {
-        protoIterator.close();
+        try {
+            protoIterator.close();
+        } finally {
+            if (resource != null) {
+                resource.close();
+            }
+        }
     }
 
     @Override
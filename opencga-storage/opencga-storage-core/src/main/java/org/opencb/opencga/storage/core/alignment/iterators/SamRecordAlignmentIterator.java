@@ -25,14 +25,30 @@ import org.opencb.biodata.tools.alignment.iterators.BamIterator;
 public class SamRecordAlignmentIterator extends AlignmentIterator<SAMRecord> {
 
     private BamIterator<SAMRecord> bamIterator;
+    private AutoCloseable resource;
 
     public SamRecordAlignmentIterator(BamIterator<SAMRecord> bamIterator) {
+        this(bamIterator, null);
+    }
+
+    /**
+     * @param bamIterator Iterator
+     * @param resource Resource to close together with the iterator, e.g. a lease of the BamManager. Nullable
+     */
+    public SamRecordAlignmentIterator(BamIterator<SAMRecord> bamIterator, AutoCloseable resource) {
         this.bamIterator = bamIterator;
+        this.resource = resource;
     }
 
     @Override
     public void close() throws Exception {
-        bamIterator.close();
+        try {
+            bamIterator.close();
+        } finally {
+            if (resource != null) {
+                resource.close();
+            }
+        }
     }
 
     @Override
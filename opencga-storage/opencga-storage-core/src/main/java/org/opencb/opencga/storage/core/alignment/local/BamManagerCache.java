@@ -0,0 +1,238 @@
+package org.opencb.opencga.storage.core.alignment.local;
+
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+import org.opencb.biodata.tools.alignment.BamManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Shared, size-bounded cache of opened {@link BamManager}s, so the header and the index of an alignment file are not parsed
+ * for every query.
+ *
+ * BamManagers are not thread safe, so they are lent exclusively with {@link #borrow} and returned to the cache when the
+ * {@link Lease} is closed. Several idle instances may be kept for the same file to serve concurrent region queries.
+ * Each instance may also hold a raw {@link SamReader} of the same file, opened on demand, for the queries that do not need
+ * to build ReadAlignments.
+ *
+ * Entries are keyed by file path, reference path and modification time. Modified files get a new entry, and the entries
+ * of the previous version are closed.
+ */
+public class BamManagerCache {
+
+    public static final int DEFAULT_MAX_FILES = 64;
+    public static final int DEFAULT_MAX_IDLE_PER_FILE = 4;
+
+    private static final BamManagerCache INSTANCE = new BamManagerCache(DEFAULT_MAX_FILES, DEFAULT_MAX_IDLE_PER_FILE);
+    private static Logger logger = LoggerFactory.getLogger(BamManagerCache.class);
+
+    private final int maxFiles;
+    private final int maxIdlePerFile;
+    // Protected by "this". Access ordered, for LRU eviction
+    private final LinkedHashMap<Key, Deque<Entry>> idle = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+
+    public BamManagerCache(int maxFiles, int maxIdlePerFile) {
+        this.maxFiles = maxFiles;
+        this.maxIdlePerFile = maxIdlePerFile;
+    }
+
+    public static BamManagerCache getInstance() {
+        return INSTANCE;
+    }
+
+    public Lease borrow(Path path) throws IOException {
+        return borrow(path, null);
+    }
+
+    /**
+     * Borrow a BamManager for the given file. The returned lease must be closed to return the BamManager to the cache.
+     *
+     * @param path      Alignment file (BAM or CRAM)
+     * @param reference Reference genome, required for CRAM files. Nullable
+     * @return Lease with an exclusive BamManager
+     * @throws IOException if the file can not be opened
+     */
+    public Lease borrow(Path path, Path reference) throws IOException {
+        path = path.toAbsolutePath();
+        Key key = new Key(path, reference, Files.getLastModifiedTime(path).toMillis());
+        Entry entry = null;
+        synchronized (this) {
+            Deque<Entry> deque = idle.get(key);
+            if (deque != null) {
+                entry = deque.pollFirst();
+            }
+            if (entry == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+        }
+        if (entry == null) {
+            entry = new Entry(new BamManager(path, reference));
+        }
+        return new Lease(key, entry);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Close all the idle BamManagers.
+     */
+    public void clear() {
+        List<Entry> toClose = new ArrayList<>();
+        synchronized (this) {
+            idle.values().forEach(toClose::addAll);
+            idle.clear();
+        }
+        toClose.forEach(Entry::closeQuietly);
+    }
+
+    private void release(Key key, Entry released) {
+        List<Entry> toClose = new ArrayList<>();
+        synchronized (this) {
+            Deque<Entry> deque = idle.computeIfAbsent(key, k -> new ArrayDeque<>(maxIdlePerFile));
+            if (deque.size() < maxIdlePerFile) {
+                deque.addFirst(released);
+            } else {
+                toClose.add(released);
+            }
+            for (Iterator<Map.Entry<Key, Deque<Entry>>> it = idle.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<Key, Deque<Entry>> entry = it.next();
+                // Remove outdated versions of the same file, and the least recently used files
+                if (entry.getKey().isOutdatedVersionOf(key) || idle.size() > maxFiles) {
+                    toClose.addAll(entry.getValue());
+                    it.remove();
+                }
+            }
+        }
+        toClose.forEach(Entry::closeQuietly);
+    }
+
+    /**
+     * Exclusive access to a cached BamManager.
+     */
+    public final class Lease implements AutoCloseable {
+        private final Key key;
+        private final Entry entry;
+        private boolean closed;
+        private boolean discard;
+
+        private Lease(Key key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+
+        public BamManager get() {
+            return entry.bamManager;
+        }
+
+        /**
+         * Raw SamReader of the same file, opened on the first call and cached together with the BamManager.
+         * Records are lazily decoded, and validation is disabled.
+         *
+         * @return SamReader. Must not be closed by the caller
+         * @throws IOException if the file can not be opened
+         */
+        public SamReader getSamReader() throws IOException {
+            if (entry.samReader == null) {
+                SamReaderFactory factory = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT);
+                if (key.reference != null) {
+                    factory.referenceSequence(key.reference.toFile());
+                }
+                entry.samReader = factory.open(key.path.toFile());
+            }
+            return entry.samReader;
+        }
+
+        /**
+         * Do not return the BamManager to the cache. To be used if it might be in an inconsistent state, e.g. after an error.
+         */
+        public void discard() {
+            discard = true;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (discard) {
+                entry.closeQuietly();
+            } else {
+                release(key, entry);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final BamManager bamManager;
+        private SamReader samReader;
+
+        private Entry(BamManager bamManager) {
+            this.bamManager = bamManager;
+        }
+
+        private void closeQuietly() {
+            try {
+                bamManager.close();
+            } catch (Exception e) {
+                logger.warn("Error closing BamManager", e);
+            }
+            if (samReader != null) {
+                try {
+                    samReader.close();
+                } catch (Exception e) {
+                    logger.warn("Error closing SamReader", e);
+                }
+            }
+        }
+    }
+
+    private static final class Key {
+        private final Path path;
+        private final Path reference;
+        private final long lastModified;
+
+        private Key(Path path, Path reference, long lastModified) {
+            this.path = path;
+            this.reference = reference;
+            this.lastModified = lastModified;
+        }
+
+        private boolean isOutdatedVersionOf(Key other) {
+            return lastModified != other.lastModified && path.equals(other.path) && Objects.equals(reference, other.reference);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return lastModified == key.lastModified && path.equals(key.path) && Objects.equals(reference, key.reference);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, reference, lastModified);
+        }
+    }
+}
@@ -17,7 +17,13 @@
 package org.opencb.opencga.storage.core.alignment.local;
 
 import ga4gh.Reads;
+import htsjdk.samtools.BAMIndex;
+import htsjdk.samtools.BAMIndexMetaData;
+import htsjdk.samtools.SAMFlag;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamReader;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.ga4gh.models.ReadAlignment;
@@ -84,19 +90,25 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
 
             StopWatch watch = StopWatch.createStarted();
 
-            BamManager bamManager = new BamManager(path);
             Region region = parseRegion(query);
             AlignmentFilters<SAMRecord> alignmentFilters = parseQuery(query);
             AlignmentOptions alignmentOptions = parseQueryOptions(options);
 
             List<ReadAlignment> readAlignmentList;
-            if (region != null) {
-                readAlignmentList = bamManager.query(region, alignmentFilters, alignmentOptions, ReadAlignment.class);
-            } else {
-                readAlignmentList = bamManager.query(alignmentFilters, alignmentOptions, ReadAlignment.class);
+            try (BamManagerCache.Lease lease = BamManagerCache.getInstance().borrow(path)) {
+                BamManager bamManager = lease.get();
+                try {
+                    if (region != null) {
+                        readAlignmentList = bamManager.query(region, alignmentFilters, alignmentOptions, ReadAlignment.class);
+                    } else {
+                        readAlignmentList = bamManager.query(alignmentFilters, alignmentOptions, ReadAlignment.class);
+                    }
+                } catch (Exception e) {
+                    lease.discard();
+                    throw e;
+                }
             }
 
-            bamManager.close();
             watch.stop();
             return new OpenCGAResult<>(((int) watch.getTime()), Collections.emptyList(), readAlignmentList.size(), readAlignmentList,
                     readAlignmentList.size());
@@ -121,27 +133,36 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
         try {
             FileUtils.checkFile(path);
 
-            BamManager bamManager = new BamManager(path);
             Region region = parseRegion(query);
             AlignmentFilters<SAMRecord> alignmentFilters = parseQuery(query);
             AlignmentOptions alignmentOptions = parseQueryOptions(options);
 
-            if (region != null) {
-                if (Reads.ReadAlignment.class == clazz) {
-                    return (AlignmentIterator<T>) new ProtoAlignmentIterator(bamManager.iterator(region,
-                            alignmentFilters, alignmentOptions, Reads.ReadAlignment.class));
-                } else if (SAMRecord.class == clazz) {
-                    return (AlignmentIterator<T>) new SamRecordAlignmentIterator(bamManager.iterator(region,
-                            alignmentFilters, alignmentOptions, SAMRecord.class));
-                }
-            } else {
-                if (Reads.ReadAlignment.class == clazz) {
-                    return (AlignmentIterator<T>) new ProtoAlignmentIterator(bamManager.iterator(alignmentFilters,
-                            alignmentOptions, Reads.ReadAlignment.class));
-                } else if (SAMRecord.class == clazz) {
-                    return (AlignmentIterator<T>) new SamRecordAlignmentIterator(bamManager.iterator(alignmentFilters,
-                            alignmentOptions, SAMRecord.class));
+            // The lease is returned to the cache when the iterator is closed
+            BamManagerCache.Lease lease = BamManagerCache.getInstance().borrow(path);
+            BamManager bamManager = lease.get();
+            try {
+                if (region != null) {
+                    if (Reads.ReadAlignment.class == clazz) {
+                        return (AlignmentIterator<T>) new ProtoAlignmentIterator(bamManager.iterator(region,
+                                alignmentFilters, alignmentOptions, Reads.ReadAlignment.class), lease);
+                    } else if (SAMRecord.class == clazz) {
+                        return (AlignmentIterator<T>) new SamRecordAlignmentIterator(bamManager.iterator(region,
+                                alignmentFilters, alignmentOptions, SAMRecord.class), lease);
+                    }
+                } else {
+                    if (Reads.ReadAlignment.class == clazz) {
+                        return (AlignmentIterator<T>) new ProtoAlignmentIterator(bamManager.iterator(alignmentFilters,
+                                alignmentOptions, Reads.ReadAlignment.class), lease);
+                    } else if (SAMRecord.class == clazz) {
+                        return (AlignmentIterator<T>) new SamRecordAlignmentIterator(bamManager.iterator(alignmentFilters,
+                                alignmentOptions, SAMRecord.class), lease);
+                    }
                 }
+                lease.close();
+            } catch (Exception e) {
+                lease.discard();
+                lease.close();
+                throw e;
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -160,9 +181,14 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
         if (path.toString().endsWith("bw") || path.toString().endsWith("bigwig")) {
             regionCoverage = BamUtils.getCoverageFromBigWig(region, windowSize, path);
         } else {
-            BamManager bamManager = new BamManager(path);
-            regionCoverage = bamManager.coverage(region, windowSize);
-            bamManager.close();
+            try (BamManagerCache.Lease lease = BamManagerCache.getInstance().borrow(path)) {
+                try {
+                    regionCoverage = lease.get().coverage(region, windowSize);
+                } catch (Exception e) {
+                    lease.discard();
+                    throw e;
+                }
+            }
         }
 
         // If necessary, filter by coverage range and remove empty regions
@@ -210,17 +236,170 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
     public OpenCGAResult<Long> count(Path path, Query query, QueryOptions options) {
         StopWatch watch = StopWatch.createStarted();
 
-        ProtoAlignmentIterator iterator = iterator(path, query, options);
         long count = 0;
-        while (iterator.hasNext()) {
-            iterator.next();
-            count++;
+        try {
+            FileUtils.checkFile(path);
+            Long fastCount = fastCount(path, query, options);
+            if (fastCount != null) {
+                count = fastCount;
+            } else {
+                try (ProtoAlignmentIterator iterator = iterator(path, query, options)) {
+                    while (iterator.hasNext()) {
+                        iterator.next();
+                        count++;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Error counting alignments from " + path, e);
         }
 
         watch.stop();
         return new OpenCGAResult<>((int) watch.getTime(), Collections.emptyList(), 1, Collections.singletonList(count), 1);
     }
 
+    /**
+     * Count alignments without building ReadAlignment objects, when the query allows it.
+     * <ul>
+     *     <li>Whole files or chromosomes, not filtered or only skipping unmapped reads, are counted from the BAI/CSI metadata.</li>
+     *     <li>Queries only filtering by flags or mapping quality scan the raw records, which are lazily decoded by htsjdk.</li>
+     * </ul>
+     * Any other filter requires the full iterator.
+     *
+     * @param path    BAM file
+     * @param query   Query
+     * @param options Query options
+     * @return Number of alignments, or null if the query is not supported by the fast paths.
+     * @throws IOException if the file can not be read
+     */
+    private Long fastCount(Path path, Query query, QueryOptions options) throws IOException {
+        if (query == null) {
+            query = new Query();
+        }
+        if (options == null) {
+            options = new QueryOptions();
+        }
+        if (query.getInt(MAXIMUM_NUMBER_MISMATCHES_PARAM) > 0
+                || query.getInt(MAXIMUM_NUMBER_HITS_PARAM) > 0
+                || query.getInt(MAXIMUM_INSERT_SIZE_PARAM) > 0) {
+            return null;
+        }
+        int minMapQ = query.getInt(MINIMUM_MAPPING_QUALITY_PARAM);
+        boolean properlyPaired = query.getBoolean(PROPERLY_PAIRED_PARAM);
+        boolean skipUnmapped = query.getBoolean(SKIP_UNMAPPED_PARAM);
+        boolean skipDuplicated = query.getBoolean(SKIP_DUPLICATED_PARAM);
+        boolean contained = options.getBoolean(REGION_CONTAINED_PARAM, false);
+        int limit = options.getInt(QueryOptions.LIMIT);
+        Region region = parseRegion(query);
+
+        try (BamManagerCache.Lease lease = BamManagerCache.getInstance().borrow(path)) {
+            SamReader reader = lease.getSamReader();
+            // CRAM files would need the reference genome to be decoded
+            if (reader.type() != SamReader.Type.BAM_TYPE) {
+                return null;
+            }
+            SAMSequenceRecord sequence = null;
+            if (region != null) {
+                sequence = reader.getFileHeader().getSequence(region.getChromosome());
+                if (sequence == null || !reader.hasIndex()) {
+                    return null;
+                }
+            }
+
+            Long count = null;
+            try {
+                if (minMapQ <= 0 && !properlyPaired && !skipDuplicated && reader.hasIndex()) {
+                    count = countFromIndex(reader, region, sequence, contained, skipUnmapped);
+                }
+                if (count == null) {
+                    count = countRawRecords(reader, region, sequence, contained, minMapQ, properlyPaired, skipUnmapped, skipDuplicated);
+                }
+            } catch (RuntimeException e) {
+                lease.discard();
+                throw e;
+            }
+            return limit > 0 ? Math.min(limit, count) : count;
+        }
+    }
+
+    private Long countFromIndex(SamReader reader, Region region, SAMSequenceRecord sequence, boolean contained, boolean skipUnmapped) {
+        BAMIndex index = reader.indexing().getIndex();
+        if (region != null) {
+            // Only whole chromosomes. Contained queries with a finite end could discard reads overlapping the chromosome end.
+            if (region.getStart() > 1 || region.getEnd() < sequence.getSequenceLength()
+                    || contained && region.getEnd() < Integer.MAX_VALUE) {
+                return null;
+            }
+            return countFromIndex(index, sequence.getSequenceIndex(), skipUnmapped);
+        }
+
+        long count = 0;
+        for (SAMSequenceRecord samSequenceRecord : reader.getFileHeader().getSequenceDictionary().getSequences()) {
+            Long sequenceCount = countFromIndex(index, samSequenceRecord.getSequenceIndex(), skipUnmapped);
+            if (sequenceCount == null) {
+                return null;
+            }
+            count += sequenceCount;
+        }
+        if (!skipUnmapped) {
+            // Unplaced unmapped reads are not in the index metadata. They are stored at the end of the file
+            try (SAMRecordIterator iterator = reader.queryUnmapped()) {
+                while (iterator.hasNext()) {
+                    iterator.next();
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static Long countFromIndex(BAMIndex index, int sequenceIndex, boolean skipUnmapped) {
+        BAMIndexMetaData metaData = index.getMetaData(sequenceIndex);
+        if (metaData == null) {
+            return null;
+        }
+        // Unaligned records are unmapped reads placed at the position of their mate
+        return metaData.getAlignedRecordCount() + (skipUnmapped ? 0 : metaData.getUnalignedRecordCount());
+    }
+
+    private static long countRawRecords(SamReader reader, Region region, SAMSequenceRecord sequence, boolean contained, int minMapQ,
+                                        boolean properlyPaired, boolean skipUnmapped, boolean skipDuplicated) {
+        int unmappedMask = skipUnmapped ? SAMFlag.READ_UNMAPPED.intValue() : 0;
+        int duplicatedMask = skipDuplicated ? SAMFlag.DUPLICATE_READ.intValue() : 0;
+        int excludeMask = unmappedMask | duplicatedMask;
+        int properPairMask = SAMFlag.READ_PAIRED.intValue() | SAMFlag.PROPER_PAIR.intValue();
+
+        long count = 0;
+        SAMRecordIterator iterator;
+        if (region == null) {
+            iterator = reader.iterator();
+        } else {
+            // End 0 means end of the sequence
+            int end = region.getEnd() >= sequence.getSequenceLength() ? 0 : region.getEnd();
+            iterator = reader.query(region.getChromosome(), Math.max(1, region.getStart()), end, contained);
+        }
+        try {
+            while (iterator.hasNext()) {
+                // Flags and mapping quality are fixed fields. Sequence, qualities and attributes are never decoded
+                SAMRecord record = iterator.next();
+                int flags = record.getFlags();
+                if ((flags & excludeMask) != 0) {
+                    continue;
+                }
+                if (properlyPaired && (flags & properPairMask) != properPairMask) {
+                    continue;
+                }
+                if (minMapQ > 0 && record.getMappingQuality() < minMapQ) {
+                    continue;
+                }
+                count++;
+            }
+        } finally {
+            iterator.close();
+        }
+        return count;
+    }
+
     //-------------------------------------------------------------------------
     // STATS: run and info (stats query is performed by FileManager.search()
     //-------------------------------------------------------------------------
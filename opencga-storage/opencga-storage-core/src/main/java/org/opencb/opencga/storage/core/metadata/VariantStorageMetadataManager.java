@@ -202,6 +202,32 @@ public class VariantStorageMetadataManager implements AutoCloseable {
         }
     }
 
+    /**
+     * Update the StudyMetadata only if the given condition is true.
+     *
+     * The condition is first evaluated over the current StudyMetadata without taking the study lock, so concurrent
+     * operations over the same study do not serialize when there is nothing to modify. If the condition is true, the
+     * lock is taken and the condition is evaluated again over the latest StudyMetadata before applying the updater.
+     *
+     * @param study     Study
+     * @param condition Condition to update the StudyMetadata. Must not have side effects.
+     * @param updater   Update function
+     * @param <E>       Exception thrown by the updater
+     * @return          Updated StudyMetadata, or the current one if there was nothing to update
+     * @throws StorageEngineException if the lock could not be taken
+     * @throws E                      if the updater fails
+     */
+    public <E extends Exception> StudyMetadata updateStudyMetadata(Object study, Predicate<StudyMetadata> condition,
+                                                                   UpdateFunction<StudyMetadata, E> updater)
+            throws StorageEngineException, E {
+        int studyId = getStudyId(study);
+        StudyMetadata sm = getStudyMetadata(studyId);
+        if (!condition.test(sm)) {
+            return sm;
+        }
+        return updateStudyMetadata(studyId, latest -> condition.test(latest) ? updater.update(latest) : latest);
+    }
+
     public StudyMetadata getStudyMetadata(String name) {
         Integer studyId = getStudyIdOrNull(name);
         if (studyId == null) {
@@ -1320,25 +1346,23 @@ public class VariantStorageMetadataManager implements AutoCloseable {
 
     protected Integer registerSample(int studyId, Integer fileId, String sample) throws StorageEngineException {
         Integer sampleId = getSampleId(studyId, sample);
-        SampleMetadata sampleMetadata;
-        boolean update = false;
         if (sampleId == null) {
             //If the sample was not in the original studyId, a new SampleId is assigned.
             sampleId = newSampleId(studyId);
 
-            sampleMetadata = new SampleMetadata(studyId, sampleId, sample);
-            update = true;
-        } else {
-            sampleMetadata = getSampleMetadata(studyId, sampleId);
-        }
-        if (fileId != null) {
-            if (!sampleMetadata.getFiles().contains(fileId)) {
+            SampleMetadata sampleMetadata = new SampleMetadata(studyId, sampleId, sample);
+            if (fileId != null) {
                 sampleMetadata.getFiles().add(fileId);
             }
-            update = true;
-        }
-        if (update) {
             unsecureUpdateSampleMetadata(studyId, sampleMetadata);
+        } else if (fileId != null && !getSampleMetadata(studyId, sampleId).getFiles().contains(fileId)) {
+            // Lock only this sample, as other files sharing the sample could be registered concurrently
+            updateSampleMetadata(studyId, sampleId, sampleMetadata -> {
+                if (!sampleMetadata.getFiles().contains(fileId)) {
+                    sampleMetadata.getFiles().add(fileId);
+                }
+                return sampleMetadata;
+            });
         }
         return sampleId;
     }
@@ -6,10 +6,15 @@ import org.slf4j.LoggerFactory;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -28,7 +33,11 @@ public abstract class Lock implements Closeable {
     private final AtomicBoolean sleeping = new AtomicBoolean(false);
     private final AtomicReference<Exception> exception = new AtomicReference<>();
     private boolean locked = true;
-    private Future<?> keepAliveFuture;
+    private volatile Future<?> keepAliveFuture;
+    private volatile Future<?> refreshFuture;
+    private final AtomicInteger refreshCount = new AtomicInteger();
+    private boolean scheduledKeepAlive;
+    private int keepAliveIntervalMillis;
 
     public Lock(long token) {
         this.token.set(token);
@@ -60,6 +69,52 @@ public abstract class Lock implements Closeable {
         });
     }
 
+    /**
+     * Create a lock refreshed periodically by a shared scheduler, instead of using one thread per lock.
+     * The scheduler only triggers the refresh, that is executed by the refreshExecutor, so a slow refresh
+     * does not delay the refresh of other locks. A refresh still running after keepAliveIntervalMillis is
+     * cancelled, and retried.
+     *
+     * @param scheduler               Scheduler to trigger the refresh
+     * @param refreshExecutor         Executor to run the refresh
+     * @param keepAliveIntervalMillis Refresh interval. Also used as refresh timeout.
+     * @param token                   Lock token
+     */
+    public Lock(ScheduledExecutorService scheduler, ExecutorService refreshExecutor, int keepAliveIntervalMillis, long token) {
+        this.token.set(token);
+        this.keepAlive = new AtomicBoolean(true);
+        this.scheduledKeepAlive = true;
+        this.keepAliveIntervalMillis = keepAliveIntervalMillis;
+        keepAliveFuture = scheduler.scheduleWithFixedDelay(() -> {
+            synchronized (keepAlive) {
+                if (!keepAlive.get()) {
+                    return;
+                }
+                Future<?> previousRefresh = refreshFuture;
+                if (previousRefresh != null && !previousRefresh.isDone()) {
+                    logger.warn("Refresh of lock {} took more than {}ms. Cancel and retry", this.token, keepAliveIntervalMillis);
+                    previousRefresh.cancel(true);
+                }
+                int refreshId = refreshCount.incrementAndGet();
+                refreshFuture = refreshExecutor.submit(() -> {
+                    try {
+                        refresh();
+                    } catch (Exception e) {
+                        if (keepAlive.get() && refreshId == refreshCount.get()) {
+                            logger.error("Catch exception at Locked.keepAlive", e);
+                            exception.set(e);
+                            // Stop refreshing this lock
+                            keepAliveFuture.cancel(false);
+                        } else {
+                            // Refresh cancelled, or lock released
+                            logger.debug("Ignore exception from cancelled refresh of lock {}", this.token, e);
+                        }
+                    }
+                });
+            }
+        }, keepAliveIntervalMillis, keepAliveIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
     public long getToken() {
         return token.get();
     }
@@ -110,7 +165,28 @@ public abstract class Lock implements Closeable {
 
     public void keepAliveStop() {
         keepAlive.set(false);
-        if (keepAliveFuture != null) {
+        if (keepAliveFuture != null && scheduledKeepAlive) {
+            keepAliveFuture.cancel(false);
+            Future<?> lastRefresh;
+            synchronized (keepAlive) {
+                // No more refresh will be triggered.
+                lastRefresh = refreshFuture;
+                logger.debug("Stop keep alive of lock {}", token);
+            }
+            if (lastRefresh != null) {
+                // Wait for any running refresh to finish
+                try {
+                    lastRefresh.get(keepAliveIntervalMillis, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    lastRefresh.cancel(true);
+                } catch (CancellationException | ExecutionException e) {
+                    logger.debug("Last refresh of lock {} failed", token, e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+        } else if (keepAliveFuture != null) {
             if (sleeping.get()) {
                 // Interrupt thread only if sleeping
                 keepAliveFuture.cancel(true);
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.utils;
+
+import org.apache.commons.lang3.time.StopWatch;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Jittered exponential backoff to wait for a lock.
+ *
+ * The n-th wait sleeps a random time between {@code minSleep / 2} and {@code min(maxSleep, minSleep * 2^n)}.
+ * Long waits do not flood the lock storage, and concurrent waiters do not poll the lock at the same time, so
+ * the lock is still taken shortly after being released.
+ */
+public class LockBackoff {
+
+    public static final long DEFAULT_MIN_SLEEP_MILLIS = 50;
+    public static final long DEFAULT_MAX_SLEEP_MILLIS = 2000;
+    private static final int MAX_SHIFT = 20;
+
+    private final long minSleepMillis;
+    private final long maxSleepMillis;
+    private final long timeoutMillis;
+    private final StopWatch stopWatch;
+    private int attempts;
+    private int totalAttempts;
+
+    public LockBackoff(long timeoutMillis) {
+        this(DEFAULT_MIN_SLEEP_MILLIS, DEFAULT_MAX_SLEEP_MILLIS, timeoutMillis);
+    }
+
+    public LockBackoff(long minSleepMillis, long maxSleepMillis, long timeoutMillis) {
+        if (minSleepMillis <= 0 || maxSleepMillis < minSleepMillis) {
+            throw new IllegalArgumentException("Invalid backoff range [" + minSleepMillis + ", " + maxSleepMillis + "]");
+        }
+        this.minSleepMillis = minSleepMillis;
+        this.maxSleepMillis = maxSleepMillis;
+        this.timeoutMillis = timeoutMillis;
+        stopWatch = new StopWatch();
+        stopWatch.start();
+    }
+
+    /**
+     * Wait before the next attempt to get the lock.
+     *
+     * @throws InterruptedException if any thread has interrupted the current thread.
+     * @throws TimeoutException     if the timeout is reached.
+     */
+    public void sleep() throws InterruptedException, TimeoutException {
+        checkTimeout();
+        long sleep = Math.min(nextSleepMillis(), timeoutMillis - getElapsedMillis() + 1);
+        attempts++;
+        totalAttempts++;
+        Thread.sleep(Math.max(1, sleep));
+    }
+
+    /**
+     * Check if the timeout is reached.
+     *
+     * @throws TimeoutException if the timeout is reached.
+     */
+    public void checkTimeout() throws TimeoutException {
+        if (getElapsedMillis() > timeoutMillis) {
+            throw new TimeoutException("Unable to get the lock");
+        }
+    }
+
+    /**
+     * Restart the backoff sequence, without restarting the timeout. Next sleep will be the shortest one.
+     */
+    public void reset() {
+        attempts = 0;
+    }
+
+    protected long nextSleepMillis() {
+        long ceiling = Math.min(maxSleepMillis, minSleepMillis << Math.min(attempts, MAX_SHIFT));
+        long floor = minSleepMillis / 2;
+        return floor + ThreadLocalRandom.current().nextLong(ceiling - floor + 1);
+    }
+
+    public long getMaxSleepMillis() {
+        return maxSleepMillis;
+    }
+
+    public long getElapsedMillis() {
+        return stopWatch.getTime();
+    }
+
+    /**
+     * @return Number of times this backoff has slept.
+     */
+    public int getAttempts() {
+        return totalAttempts;
+    }
+}
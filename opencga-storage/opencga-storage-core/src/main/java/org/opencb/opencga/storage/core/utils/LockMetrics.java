@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.utils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wait time and contention metrics of the locks acquired by this JVM, by lock name.
+ */
+public final class LockMetrics {
+
+    private static final ConcurrentMap<String, LockMetrics> METRICS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong contended = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong waitAttempts = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+
+    private LockMetrics(String name) {
+        this.name = name;
+    }
+
+    public static LockMetrics get(String name) {
+        return METRICS.computeIfAbsent(name, LockMetrics::new);
+    }
+
+    public static Map<String, LockMetrics> getAll() {
+        return Collections.unmodifiableMap(METRICS);
+    }
+
+    public static void clear() {
+        METRICS.clear();
+    }
+
+    /**
+     * Register a successful lock acquisition.
+     *
+     * @param backoff Backoff used to wait for the lock
+     */
+    public void acquired(LockBackoff backoff) {
+        acquired.incrementAndGet();
+        register(backoff);
+    }
+
+    /**
+     * Register a lock acquisition that could not be completed before the timeout.
+     *
+     * @param backoff Backoff used to wait for the lock
+     */
+    public void timeout(LockBackoff backoff) {
+        timeouts.incrementAndGet();
+        register(backoff);
+    }
+
+    private void register(LockBackoff backoff) {
+        long waitMillis = backoff.getElapsedMillis();
+        if (backoff.getAttempts() > 0) {
+            contended.incrementAndGet();
+            waitAttempts.addAndGet(backoff.getAttempts());
+        }
+        totalWaitMillis.addAndGet(waitMillis);
+        maxWaitMillis.accumulateAndGet(waitMillis, Math::max);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getAcquired() {
+        return acquired.get();
+    }
+
+    /**
+     * @return Number of acquisitions, successful or not, that had to wait for the lock.
+     */
+    public long getContended() {
+        return contended.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getWaitAttempts() {
+        return waitAttempts.get();
+    }
+
+    public long getTotalWaitMillis() {
+        return totalWaitMillis.get();
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis.get();
+    }
+
+    public double getMeanWaitMillis() {
+        long requests = acquired.get() + timeouts.get();
+        return requests == 0 ? 0 : ((double) totalWaitMillis.get()) / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "LockMetrics{"
+                + "name='" + name + '\''
+                + ", acquired=" + acquired
+                + ", contended=" + contended
+                + ", timeouts=" + timeouts
+                + ", waitAttempts=" + waitAttempts
+                + ", meanWaitMillis=" + getMeanWaitMillis()
+                + ", maxWaitMillis=" + maxWaitMillis
+                + '}';
+    }
+}
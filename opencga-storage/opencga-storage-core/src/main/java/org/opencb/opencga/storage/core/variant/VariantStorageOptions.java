@@ -66,6 +66,16 @@ public enum VariantStorageOptions implements ConfigurationOption {
     ANNOTATOR_CELLBASE_EXCLUDE("annotator.cellbase.exclude"),
     ANNOTATOR_CELLBASE_VARIANT_LENGTH_THRESHOLD("annotator.cellbase.variantLengthThreshold", 10000),
     ANNOTATOR_CELLBASE_IMPRECISE_VARIANTS("annotator.cellbase.impreciseVariants"),
+    ANNOTATOR_CELLBASE_ADAPTIVE("annotator.cellbase.adaptive", true),            // Adapt concurrency and batch size to CellBase latency
+    ANNOTATOR_CELLBASE_MAX_CONCURRENCY("annotator.cellbase.maxConcurrency", 16),
+    ANNOTATOR_CELLBASE_MIN_BATCH_SIZE("annotator.cellbase.minBatchSize", 10),
+    ANNOTATOR_CELLBASE_TARGET_LATENCY("annotator.cellbase.targetLatency", 5000),  // Max latency (ms) before reducing the load
+    ANNOTATOR_CELLBASE_MAX_RETRIES("annotator.cellbase.maxRetries", 3),
+    ANNOTATOR_CELLBASE_RETRY_BACKOFF("annotator.cellbase.retryBackoff", 1000),    // Initial retry backoff (ms)
+    ANNOTATOR_CACHE("annotator.cache", false),                  // Use a persistent local cache of annotations
+    ANNOTATOR_CACHE_DIR("annotator.cache.dir"),
+    ANNOTATOR_CACHE_MAX_SHARDS("annotator.cache.maxShards", 64), // Max number of cache shards kept in memory
+    ANNOTATOR_CACHE_WARM_UP("annotator.cache.warmUp"),          // Annotation files (json.gz) to load into the cache
 
     INDEX_SEARCH("indexSearch", false), // Build secondary indexes using search engine.
 
@@ -156,13 +156,13 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
             VariantStorageMetadataManager smm = dbAdaptor.getMetadataManager();
             ensureStudyMetadataExists(null);
 
-            StudyMetadata studyMetadata = smm.updateStudyMetadata(study, existingStudyMetadata -> {
-                if (existingStudyMetadata.getAggregation() == null) {
-                    existingStudyMetadata.setAggregationStr(options.getString(VariantStorageOptions.STATS_AGGREGATION.key(),
-                            VariantStorageOptions.STATS_AGGREGATION.defaultValue().toString()));
-                }
-                return existingStudyMetadata;
-            });
+            // Only lock the study the first time, to define the aggregation
+            StudyMetadata studyMetadata = smm.updateStudyMetadata(study, sm -> sm.getAggregation() == null,
+                    existingStudyMetadata -> {
+                        existingStudyMetadata.setAggregationStr(options.getString(VariantStorageOptions.STATS_AGGREGATION.key(),
+                                VariantStorageOptions.STATS_AGGREGATION.defaultValue().toString()));
+                        return existingStudyMetadata;
+                    });
             setFileId(smm.registerFile(studyMetadata.getId(), input.getPath()));
         }
 
@@ -620,18 +620,23 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
         checkLoadedVariants(finalFileIds, getStudyMetadata());
 
         //Update StudyMetadata
-        getMetadataManager().updateStudyMetadata(getStudyId(), sm -> {
+        StudyMetadata studyMetadata = getMetadataManager().updateStudyMetadata(getStudyId(), sm -> {
             securePostLoad(finalFileIds, sm);
-            finalSecurePostLoad(finalFileIds, sm);
+            // Ensure the default cohort exists, so concurrent loads do not create it twice
+            if (getMetadataManager().getCohortId(sm.getId(), StudyEntry.DEFAULT_COHORT) == null) {
+                getMetadataManager().addSamplesToCohort(sm.getId(), StudyEntry.DEFAULT_COHORT, Collections.emptyList());
+            }
             return sm;
         });
+        // Samples, files and cohorts have their own locks. Do not hold the study lock while updating them.
+        finalPostLoad(finalFileIds, studyMetadata);
         return input;
     }
 
     protected void securePostLoad(List<Integer> fileIds, StudyMetadata studyMetadata) throws StorageEngineException {
     }
 
-    private void finalSecurePostLoad(List<Integer> fileIds, StudyMetadata studyMetadata) throws StorageEngineException {
+    private void finalPostLoad(List<Integer> fileIds, StudyMetadata studyMetadata) throws StorageEngineException {
         VariantStorageMetadataManager metadataManager = getMetadataManager();
         int studyId = studyMetadata.getId();
 
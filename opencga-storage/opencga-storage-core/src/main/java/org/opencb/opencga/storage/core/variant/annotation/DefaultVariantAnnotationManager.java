@@ -49,6 +49,9 @@ import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.annotation.annotators.AbstractCellBaseVariantAnnotator;
+import org.opencb.opencga.storage.core.variant.annotation.annotators.AdaptiveAnnotationClient;
+import org.opencb.opencga.storage.core.variant.annotation.annotators.CachedVariantAnnotator;
 import org.opencb.opencga.storage.core.variant.annotation.annotators.VariantAnnotator;
 import org.opencb.opencga.storage.core.variant.io.VariantReaderUtils;
 import org.opencb.opencga.storage.core.variant.io.db.VariantAnnotationDBWriter;
@@ -192,6 +195,8 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
         int numThreads = params.getInt(
                 VariantStorageOptions.ANNOTATION_NUM_THREADS.key(),
                 VariantStorageOptions.ANNOTATION_NUM_THREADS.defaultValue());
+        // The adaptive client, if any, is limited to numThreads concurrent requests
+        AdaptiveAnnotationClient adaptiveClient = getAdaptiveClient(variantAnnotator);
 
         try {
             DataReader<Variant> variantDataReader = getVariantDataReader(query, iteratorQueryOptions, params);
@@ -242,6 +247,14 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
             ParallelTaskRunner<Variant, VariantAnnotation> parallelTaskRunner =
                     new ParallelTaskRunner<>(variantDataReader, annotationTask, variantAnnotationDataWriter, config);
             parallelTaskRunner.run();
+            if (adaptiveClient != null) {
+                logger.info("Annotation client metrics : {}", adaptiveClient.getMetrics().toJson());
+            }
+            if (variantAnnotator instanceof CachedVariantAnnotator) {
+                CachedVariantAnnotator cachedVariantAnnotator = (CachedVariantAnnotator) variantAnnotator;
+                logger.info("Variant annotation cache hits : {}, misses : {}, hit rate : {}",
+                        cachedVariantAnnotator.getHits(), cachedVariantAnnotator.getMisses(), cachedVariantAnnotator.getHitRate());
+            }
         } catch (ExecutionException e) {
             throw new VariantAnnotatorException("Error creating annotations", e);
         }
@@ -249,6 +262,16 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
         return fileUri;
     }
 
+    private static AdaptiveAnnotationClient getAdaptiveClient(VariantAnnotator variantAnnotator) {
+        if (variantAnnotator instanceof CachedVariantAnnotator) {
+            variantAnnotator = ((CachedVariantAnnotator) variantAnnotator).getAnnotator();
+        }
+        if (variantAnnotator instanceof AbstractCellBaseVariantAnnotator) {
+            return ((AbstractCellBaseVariantAnnotator) variantAnnotator).getAdaptiveClient();
+        }
+        return null;
+    }
+
     protected DataReader<Variant> getVariantDataReader(Query query, QueryOptions iteratorQueryOptions, ObjectMap params) {
         return new VariantDBReader(dbAdaptor, query, iteratorQueryOptions);
     }
@@ -51,6 +51,7 @@ public abstract class AbstractCellBaseVariantAnnotator extends VariantAnnotator
     protected final QueryOptions queryOptions;
     protected final boolean impreciseVariants;
     protected final int variantLengthThreshold;
+    protected final AdaptiveAnnotationClient adaptiveClient;
 
     public AbstractCellBaseVariantAnnotator(StorageConfiguration storageConfiguration, ProjectMetadata projectMetadata, ObjectMap params)
             throws VariantAnnotatorException {
@@ -74,6 +75,7 @@ public abstract class AbstractCellBaseVariantAnnotator extends VariantAnnotator
                 VariantStorageOptions.ANNOTATOR_CELLBASE_VARIANT_LENGTH_THRESHOLD.key(),
                 VariantStorageOptions.ANNOTATOR_CELLBASE_VARIANT_LENGTH_THRESHOLD.defaultValue());
         impreciseVariants = params.getBoolean(VariantStorageOptions.ANNOTATOR_CELLBASE_IMPRECISE_VARIANTS.key(), true);
+        adaptiveClient = AdaptiveAnnotationClient.build(params);
 
         checkNotNull(cellbaseVersion, "cellbase version");
         checkNotNull(species, "species");
@@ -87,6 +89,10 @@ public abstract class AbstractCellBaseVariantAnnotator extends VariantAnnotator
         }
     }
 
+    public AdaptiveAnnotationClient getAdaptiveClient() {
+        return adaptiveClient;
+    }
+
     public static String toCellBaseSpeciesName(String scientificName) {
         if (scientificName != null && scientificName.contains(" ")) {
             String[] split = scientificName.split(" ", 2);
@@ -99,9 +105,23 @@ public abstract class AbstractCellBaseVariantAnnotator extends VariantAnnotator
     @Override
     public final List<VariantAnnotation> annotate(List<Variant> variants) throws VariantAnnotatorException {
         List<Variant> nonStructuralVariations = filterStructuralVariants(variants);
-        return getVariantAnnotationList(nonStructuralVariations, annotateFiltered(nonStructuralVariations));
+        List<QueryResult<VariantAnnotation>> queryResults;
+        if (adaptiveClient == null) {
+            queryResults = annotateFiltered(nonStructuralVariations);
+        } else {
+            queryResults = adaptiveClient.execute(nonStructuralVariations, this::annotateFiltered);
+        }
+        return getVariantAnnotationList(nonStructuralVariations, queryResults);
     }
 
+    /**
+     * Annotate a list of variants. Must return one QueryResult per variant, in the same order.
+     * If the adaptive client is enabled, this method may be called with sublists of the original batch, and may be retried.
+     *
+     * @param variants Variants to annotate
+     * @return One QueryResult per variant
+     * @throws VariantAnnotatorException on error
+     */
     protected abstract List<QueryResult<VariantAnnotation>> annotateFiltered(List<Variant> variants) throws VariantAnnotatorException;
 
     private List<Variant> filterStructuralVariants(List<Variant> variants) {
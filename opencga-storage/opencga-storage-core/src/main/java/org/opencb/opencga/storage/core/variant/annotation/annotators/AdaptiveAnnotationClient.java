@@ -0,0 +1,243 @@
+package org.opencb.opencga.storage.core.variant.annotation.annotators;
+
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotatorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends batches to a remote annotation service adapting the number of in-flight requests and the request size to the
+ * observed latency and error rate, following an AIMD (additive increase, multiplicative decrease) policy.
+ *
+ * Every request that completes under the target latency increases the concurrency limit by 1/limit (about one request
+ * per round trip) and the batch size by the min batch size. Slow or failed requests halve both.
+ *
+ * Failed requests are retried with exponential backoff. Before retrying, batches with more than one element are split
+ * in two, so an oversized batch or a single faulty element does not fail the whole batch.
+ *
+ * This class is thread safe. One instance should be shared by all the threads using the same service.
+ */
+public class AdaptiveAnnotationClient {
+
+    private static final long METRICS_LOG_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static Logger logger = LoggerFactory.getLogger(AdaptiveAnnotationClient.class);
+
+    @FunctionalInterface
+    public interface BatchCall<T, R> {
+        List<R> call(List<T> batch) throws Exception;
+    }
+
+    private final int maxConcurrency;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long targetLatency;
+    private final int maxRetries;
+    private final long retryBackoff;
+
+    // Protected by "this"
+    private double concurrency;
+    private double batchSize;
+    private int inFlight;
+    private long requests;
+    private long errors;
+    private long retries;
+    private long elements;
+    private long totalLatency;
+    private final long startTime;
+    private long lastMetricsLog;
+
+    public AdaptiveAnnotationClient(int initialConcurrency, int maxConcurrency, int minBatchSize, int maxBatchSize,
+                                    long targetLatency, int maxRetries, long retryBackoff) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.minBatchSize = Math.max(1, Math.min(minBatchSize, maxBatchSize));
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.targetLatency = targetLatency;
+        this.maxRetries = maxRetries;
+        this.retryBackoff = retryBackoff;
+        concurrency = Math.max(1, Math.min(initialConcurrency, this.maxConcurrency));
+        batchSize = this.maxBatchSize;
+        startTime = System.currentTimeMillis();
+        lastMetricsLog = startTime;
+    }
+
+    /**
+     * Build an adaptive client from the annotation options, or null if disabled.
+     * The max concurrency is limited by {@link VariantStorageOptions#ANNOTATION_NUM_THREADS}.
+     *
+     * @param options Annotation options
+     * @return Adaptive client, or null if {@link VariantStorageOptions#ANNOTATOR_CELLBASE_ADAPTIVE} is false.
+     */
+    public static AdaptiveAnnotationClient build(ObjectMap options) {
+        if (!options.getBoolean(VariantStorageOptions.ANNOTATOR_CELLBASE_ADAPTIVE.key(),
+                VariantStorageOptions.ANNOTATOR_CELLBASE_ADAPTIVE.defaultValue())) {
+            return null;
+        }
+        int numThreads = options.getInt(VariantStorageOptions.ANNOTATION_NUM_THREADS.key(),
+                VariantStorageOptions.ANNOTATION_NUM_THREADS.defaultValue());
+        // There are never more concurrent requests than annotation threads
+        int maxConcurrency = Math.min(numThreads, options.getInt(VariantStorageOptions.ANNOTATOR_CELLBASE_MAX_CONCURRENCY.key(),
+                VariantStorageOptions.ANNOTATOR_CELLBASE_MAX_CONCURRENCY.defaultValue()));
+        return new AdaptiveAnnotationClient(
+                numThreads,
+                maxConcurrency,
+                options.getInt(VariantStorageOptions.ANNOTATOR_CELLBASE_MIN_BATCH_SIZE.key(),
+                        VariantStorageOptions.ANNOTATOR_CELLBASE_MIN_BATCH_SIZE.defaultValue()),
+                options.getInt(VariantStorageOptions.ANNOTATION_BATCH_SIZE.key(),
+                        VariantStorageOptions.ANNOTATION_BATCH_SIZE.defaultValue()),
+                options.getLong(VariantStorageOptions.ANNOTATOR_CELLBASE_TARGET_LATENCY.key(),
+                        VariantStorageOptions.ANNOTATOR_CELLBASE_TARGET_LATENCY.<Integer>defaultValue()),
+                options.getInt(VariantStorageOptions.ANNOTATOR_CELLBASE_MAX_RETRIES.key(),
+                        VariantStorageOptions.ANNOTATOR_CELLBASE_MAX_RETRIES.defaultValue()),
+                options.getLong(VariantStorageOptions.ANNOTATOR_CELLBASE_RETRY_BACKOFF.key(),
+                        VariantStorageOptions.ANNOTATOR_CELLBASE_RETRY_BACKOFF.<Integer>defaultValue()));
+    }
+
+    /**
+     * Execute the call over all the elements, split in batches of the current batch size.
+     * Results are concatenated in the same order as the input elements.
+     *
+     * @param elements Elements to send
+     * @param call     Remote call
+     * @param <T>      Input type
+     * @param <R>      Result type
+     * @return Concatenated results
+     * @throws VariantAnnotatorException if any batch fails after all the retries
+     */
+    public <T, R> List<R> execute(List<T> elements, BatchCall<T, R> call) throws VariantAnnotatorException {
+        List<R> results = new ArrayList<>(elements.size());
+        int offset = 0;
+        while (offset < elements.size()) {
+            int size = Math.min(getBatchSize(), elements.size() - offset);
+            results.addAll(execute(elements.subList(offset, offset + size), call, 0));
+            offset += size;
+        }
+        return results;
+    }
+
+    private <T, R> List<R> execute(List<T> batch, BatchCall<T, R> call, int attempt) throws VariantAnnotatorException {
+        acquire();
+        long start = System.currentTimeMillis();
+        List<R> result = null;
+        Exception error = null;
+        try {
+            result = call.call(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VariantAnnotatorException("Interrupted annotation request", e);
+        } catch (Exception e) {
+            error = e;
+        } finally {
+            release();
+        }
+        long latency = System.currentTimeMillis() - start;
+
+        if (error == null) {
+            onSuccess(batch.size(), latency);
+            return result;
+        }
+
+        onError();
+        if (attempt >= maxRetries) {
+            throw new VariantAnnotatorException("Error annotating batch of " + batch.size() + " elements after "
+                    + attempt + " retries", error);
+        }
+        long backoff = retryBackoff * (1L << attempt);
+        backoff += ThreadLocalRandom.current().nextLong(Math.max(1, retryBackoff));
+        logger.warn("Error annotating batch of {} elements (attempt {}). Retry in {}ms : {}",
+                batch.size(), attempt + 1, backoff, error.getMessage());
+        try {
+            Thread.sleep(backoff);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VariantAnnotatorException("Interrupted annotation request", e);
+        }
+        synchronized (this) {
+            retries++;
+        }
+        if (batch.size() > 1) {
+            int half = batch.size() / 2;
+            List<R> results = new ArrayList<>(execute(batch.subList(0, half), call, attempt + 1));
+            results.addAll(execute(batch.subList(half, batch.size()), call, attempt + 1));
+            return results;
+        } else {
+            return execute(batch, call, attempt + 1);
+        }
+    }
+
+    private synchronized void acquire() throws VariantAnnotatorException {
+        while (inFlight >= (int) concurrency) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new VariantAnnotatorException("Interrupted annotation request", e);
+            }
+        }
+        inFlight++;
+    }
+
+    private synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    private synchronized void onSuccess(int size, long latency) {
+        requests++;
+        elements += size;
+        totalLatency += latency;
+        if (latency > targetLatency) {
+            decrease();
+        } else {
+            concurrency = Math.min(maxConcurrency, concurrency + 1 / concurrency);
+            batchSize = Math.min(maxBatchSize, batchSize + minBatchSize);
+            notifyAll();
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastMetricsLog > METRICS_LOG_INTERVAL) {
+            lastMetricsLog = now;
+            logger.info("Annotation client metrics. {}", getMetrics().toJson());
+        }
+    }
+
+    private synchronized void onError() {
+        requests++;
+        errors++;
+        decrease();
+    }
+
+    private void decrease() {
+        concurrency = Math.max(1, concurrency / 2);
+        batchSize = Math.max(minBatchSize, batchSize / 2);
+    }
+
+    public synchronized int getBatchSize() {
+        return (int) batchSize;
+    }
+
+    public synchronized int getConcurrency() {
+        return (int) concurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public synchronized ObjectMap getMetrics() {
+        long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        return new ObjectMap()
+                .append("elements", elements)
+                .append("requests", requests)
+                .append("errors", errors)
+                .append("retries", retries)
+                .append("throughput", elements * 1000.0 / elapsed)
+                .append("avgLatency", requests == errors ? 0 : ((double) totalLatency) / (requests - errors))
+                .append("concurrency", getConcurrency())
+                .append("batchSize", getBatchSize());
+    }
+}
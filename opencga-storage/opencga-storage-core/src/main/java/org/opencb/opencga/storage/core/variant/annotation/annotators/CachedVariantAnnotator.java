@@ -0,0 +1,264 @@
+package org.opencb.opencga.storage.core.variant.annotation.annotators;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.AdditionalAttribute;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.config.StorageConfiguration;
+import org.opencb.opencga.storage.core.metadata.models.ProjectMetadata;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotatorException;
+import org.opencb.opencga.storage.core.variant.io.json.VariantAnnotationJsonDataReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantField.AdditionalAttributes.GROUP_NAME;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantField.AdditionalAttributes.VARIANT_ID;
+
+/**
+ * Wraps a {@link VariantAnnotator}, looking up every variant in a {@link VariantAnnotationCache} before calling the
+ * wrapped annotator. Only the cache misses are sent to the annotator, and its results are added to the cache.
+ *
+ * The cache is bound to the annotator version, see {@link #getCacheVersion}.
+ */
+public class CachedVariantAnnotator extends VariantAnnotator {
+
+    private static final int WARM_UP_BATCH_SIZE = 1000;
+    private static Logger logger = LoggerFactory.getLogger(CachedVariantAnnotator.class);
+
+    private final VariantAnnotator annotator;
+    private final VariantAnnotationCache cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CachedVariantAnnotator(StorageConfiguration configuration, ProjectMetadata projectMetadata, ObjectMap options,
+                                  VariantAnnotator annotator, VariantAnnotationCache cache)
+            throws VariantAnnotatorException {
+        super(configuration, projectMetadata, options);
+        this.annotator = annotator;
+        this.cache = cache;
+    }
+
+    /**
+     * Wrap the given annotator with a {@link FileVariantAnnotationCache}, if enabled in the options.
+     *
+     * @param configuration   Storage configuration
+     * @param projectMetadata Project metadata
+     * @param options         Options
+     * @param annotator       Annotator to wrap
+     * @return The cached annotator, or the given annotator if the cache is not enabled.
+     * @throws VariantAnnotatorException if the cache could not be opened
+     */
+    public static VariantAnnotator wrap(StorageConfiguration configuration, ProjectMetadata projectMetadata, ObjectMap options,
+                                        VariantAnnotator annotator)
+            throws VariantAnnotatorException {
+        if (!options.getBoolean(VariantStorageOptions.ANNOTATOR_CACHE.key(), VariantStorageOptions.ANNOTATOR_CACHE.defaultValue())) {
+            return annotator;
+        }
+        String cacheDir = options.getString(VariantStorageOptions.ANNOTATOR_CACHE_DIR.key());
+        if (cacheDir == null || cacheDir.isEmpty()) {
+            throw new VariantAnnotatorException("Missing " + VariantStorageOptions.ANNOTATOR_CACHE_DIR.key()
+                    + " to use the variant annotation cache");
+        }
+        String version = getCacheVersion(annotator, projectMetadata, options);
+        if (version == null) {
+            logger.warn("Unable to get the variant annotator version. Skip variant annotation cache.");
+            return annotator;
+        }
+        try {
+            Path path = Paths.get(cacheDir).resolve(version);
+            logger.info("Using variant annotation cache at {}", path);
+            FileVariantAnnotationCache cache = new FileVariantAnnotationCache(path,
+                    options.getInt(VariantStorageOptions.ANNOTATOR_CACHE_MAX_SHARDS.key(),
+                            VariantStorageOptions.ANNOTATOR_CACHE_MAX_SHARDS.defaultValue()));
+            CachedVariantAnnotator cachedAnnotator = new CachedVariantAnnotator(configuration, projectMetadata, options, annotator, cache);
+            for (String file : options.getAsStringList(VariantStorageOptions.ANNOTATOR_CACHE_WARM_UP.key())) {
+                cachedAnnotator.warmUp(new File(file));
+            }
+            return cachedAnnotator;
+        } catch (IOException e) {
+            throw new VariantAnnotatorException("Error opening variant annotation cache", e);
+        }
+    }
+
+    /**
+     * Build a version identifier for the annotations produced by the given annotator. It depends on the annotator program,
+     * the source versions, the project species and assembly, and the options that modify the annotation content.
+     *
+     * @param annotator       Annotator
+     * @param projectMetadata Project metadata
+     * @param options         Annotator options
+     * @return Version identifier, or null if the annotator does not provide its program
+     * @throws VariantAnnotatorException if the annotator version could not be read
+     */
+    public static String getCacheVersion(VariantAnnotator annotator, ProjectMetadata projectMetadata, ObjectMap options)
+            throws VariantAnnotatorException {
+        ProjectMetadata.VariantAnnotatorProgram program;
+        List<ObjectMap> sourceVersion;
+        try {
+            program = annotator.getVariantAnnotatorProgram();
+            sourceVersion = annotator.getVariantAnnotatorSourceVersion();
+        } catch (IOException e) {
+            throw new VariantAnnotatorException("Error reading variant annotator version", e);
+        }
+        if (program == null || program.getName() == null) {
+            return null;
+        }
+        List<Object> versionKeys = Arrays.asList(
+                program.getName(), program.getVersion(), program.getCommit(), sourceVersion,
+                projectMetadata.getSpecies(), projectMetadata.getAssembly(),
+                options.getString(VariantStorageOptions.ANNOTATOR_CELLBASE_INCLUDE.key()),
+                options.getString(VariantStorageOptions.ANNOTATOR_CELLBASE_EXCLUDE.key()),
+                options.getString(VariantStorageOptions.ANNOTATOR_CELLBASE_IMPRECISE_VARIANTS.key()));
+        return (program.getName() + '_' + program.getVersion()).replaceAll("[^A-Za-z0-9._-]", "_")
+                + '_' + DigestUtils.sha1Hex(versionKeys.toString()).substring(0, 12);
+    }
+
+    @Override
+    public List<VariantAnnotation> annotate(List<Variant> variants) throws VariantAnnotatorException {
+        List<String> keys = new ArrayList<>(variants.size());
+        for (Variant variant : variants) {
+            keys.add(buildKey(variant));
+        }
+
+        Map<String, VariantAnnotation> cached;
+        try {
+            cached = cache.get(keys);
+        } catch (IOException e) {
+            throw new VariantAnnotatorException("Error reading from variant annotation cache", e);
+        }
+
+        List<Variant> missingVariants = new ArrayList<>(variants.size() - cached.size());
+        for (int i = 0; i < variants.size(); i++) {
+            if (!cached.containsKey(keys.get(i))) {
+                missingVariants.add(variants.get(i));
+            }
+        }
+        hits.addAndGet(variants.size() - missingVariants.size());
+        misses.addAndGet(missingVariants.size());
+        if (missingVariants.isEmpty()) {
+            return toList(keys, cached, Collections.emptyMap());
+        }
+
+        List<VariantAnnotation> newAnnotations = annotator.annotate(missingVariants);
+        Map<String, VariantAnnotation> newAnnotationsMap = new HashMap<>(newAnnotations.size());
+        for (VariantAnnotation annotation : newAnnotations) {
+            newAnnotationsMap.put(buildKey(annotation), annotation);
+        }
+        try {
+            cache.put(newAnnotationsMap);
+        } catch (IOException e) {
+            throw new VariantAnnotatorException("Error writing into variant annotation cache", e);
+        }
+        logger.debug("Annotation cache. Hits : {}, misses : {}", variants.size() - missingVariants.size(), missingVariants.size());
+        return toList(keys, cached, newAnnotationsMap);
+    }
+
+    /**
+     * Load into the cache the annotations from a file generated by a previous annotation.
+     * The file must have been generated with the same annotator version.
+     *
+     * @param annotationFile Annotation file in json.gz format
+     * @return Number of read annotations
+     * @throws IOException if there is any error writing into the cache
+     */
+    public long warmUp(File annotationFile) throws IOException {
+        logger.info("Warm up variant annotation cache from {}", annotationFile);
+        VariantAnnotationJsonDataReader reader = new VariantAnnotationJsonDataReader(annotationFile);
+        long count = 0;
+        reader.open();
+        try {
+            List<VariantAnnotation> batch = reader.read(WARM_UP_BATCH_SIZE);
+            while (!batch.isEmpty()) {
+                Map<String, VariantAnnotation> annotations = new HashMap<>(batch.size());
+                for (VariantAnnotation annotation : batch) {
+                    annotations.put(buildKey(annotation), annotation);
+                }
+                cache.put(annotations);
+                count += batch.size();
+                batch = reader.read(WARM_UP_BATCH_SIZE);
+            }
+        } finally {
+            reader.close();
+        }
+        logger.info("Loaded {} annotations into the variant annotation cache", count);
+        return count;
+    }
+
+    public static String buildKey(Variant variant) {
+        if (variant.isSV() || variant.getSv() != null) {
+            return variant.toString();
+        } else {
+            return buildKey(variant.getChromosome(), variant.getStart(), variant.getReference(), variant.getAlternate());
+        }
+    }
+
+    public static String buildKey(VariantAnnotation annotation) {
+        if (annotation.getAdditionalAttributes() != null) {
+            AdditionalAttribute attribute = annotation.getAdditionalAttributes().get(GROUP_NAME.key());
+            if (attribute != null && attribute.getAttribute().containsKey(VARIANT_ID.key())) {
+                return attribute.getAttribute().get(VARIANT_ID.key());
+            }
+        }
+        return buildKey(annotation.getChromosome(), annotation.getStart(), annotation.getReference(), annotation.getAlternate());
+    }
+
+    private static String buildKey(String chromosome, int start, String reference, String alternate) {
+        return chromosome + ':' + start + ':' + (reference == null ? "" : reference) + ':' + (alternate == null ? "" : alternate);
+    }
+
+    private static List<VariantAnnotation> toList(List<String> keys, Map<String, VariantAnnotation> cached,
+                                                  Map<String, VariantAnnotation> newAnnotations) {
+        List<VariantAnnotation> annotations = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            VariantAnnotation annotation = cached.get(key);
+            if (annotation == null) {
+                annotation = newAnnotations.get(key);
+            }
+            // Variants skipped by the annotator are not in any map
+            if (annotation != null) {
+                annotations.add(annotation);
+            }
+        }
+        return annotations;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : ((double) hits.get()) / total;
+    }
+
+    public VariantAnnotator getAnnotator() {
+        return annotator;
+    }
+
+    public VariantAnnotationCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public ProjectMetadata.VariantAnnotatorProgram getVariantAnnotatorProgram() throws IOException {
+        return annotator.getVariantAnnotatorProgram();
+    }
+
+    @Override
+    public List<ObjectMap> getVariantAnnotatorSourceVersion() throws IOException {
+        return annotator.getVariantAnnotatorSourceVersion();
+    }
+}
@@ -0,0 +1,178 @@
+package org.opencb.opencga.storage.core.variant.annotation.annotators;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.opencga.storage.core.variant.io.json.mixin.VariantAnnotationMixin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * File based {@link VariantAnnotationCache}.
+ *
+ * Annotations are split in shards by chromosome and position, so sorted annotation runs only touch a few shards at a time.
+ * Each shard is an append-only file of records with the variant key, followed by the deflated JSON annotation.
+ * Appends are protected with a file lock, so the same cache can be shared by concurrent processes. An incomplete trailing
+ * record (e.g. from a killed process) is ignored when reading.
+ *
+ * The most recently used shards are kept in memory, still compressed.
+ */
+public class FileVariantAnnotationCache implements VariantAnnotationCache {
+
+    public static final int SHARD_SIZE = 1000000;
+    public static final String SHARD_EXTENSION = ".annot.bin";
+
+    private static Logger logger = LoggerFactory.getLogger(FileVariantAnnotationCache.class);
+
+    private final Path directory;
+    private final Map<String, Map<String, byte[]>> shards;
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+
+    public FileVariantAnnotationCache(Path directory, int maxShardsInMemory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        shards = new LinkedHashMap<String, Map<String, byte[]>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, byte[]>> eldest) {
+                return size() > maxShardsInMemory;
+            }
+        };
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.addMixIn(VariantAnnotation.class, VariantAnnotationMixin.class);
+        objectMapper.configure(MapperFeature.REQUIRE_SETTERS_FOR_GETTERS, true);
+        reader = objectMapper.readerFor(VariantAnnotation.class);
+        writer = objectMapper.writerFor(VariantAnnotation.class);
+    }
+
+    @Override
+    public Map<String, VariantAnnotation> get(Collection<String> keys) throws IOException {
+        Map<String, byte[]> values = new HashMap<>();
+        synchronized (shards) {
+            for (String key : keys) {
+                byte[] value = getShard(getShardId(key)).get(key);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+        }
+
+        Map<String, VariantAnnotation> annotations = new HashMap<>(values.size());
+        for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+            annotations.put(entry.getKey(), decode(entry.getValue()));
+        }
+        return annotations;
+    }
+
+    @Override
+    public void put(Map<String, VariantAnnotation> annotations) throws IOException {
+        Map<String, Map<String, byte[]>> valuesByShard = new HashMap<>();
+        for (Map.Entry<String, VariantAnnotation> entry : annotations.entrySet()) {
+            valuesByShard.computeIfAbsent(getShardId(entry.getKey()), k -> new LinkedHashMap<>())
+                    .put(entry.getKey(), encode(entry.getValue()));
+        }
+
+        synchronized (shards) {
+            for (Map.Entry<String, Map<String, byte[]>> entry : valuesByShard.entrySet()) {
+                Map<String, byte[]> shard = getShard(entry.getKey());
+                ByteArrayOutputStream records = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(records);
+                for (Map.Entry<String, byte[]> value : entry.getValue().entrySet()) {
+                    if (shard.putIfAbsent(value.getKey(), value.getValue()) == null) {
+                        out.writeUTF(value.getKey());
+                        out.writeInt(value.getValue().length);
+                        out.write(value.getValue());
+                    }
+                }
+                out.flush();
+                if (records.size() > 0) {
+                    try (FileOutputStream os = new FileOutputStream(getShardFile(entry.getKey()).toFile(), true);
+                         FileLock ignored = os.getChannel().lock()) {
+                        records.writeTo(os);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (shards) {
+            shards.clear();
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    static String getShardId(String key) {
+        int idx = key.indexOf(':');
+        if (idx < 0) {
+            return key;
+        }
+        String chromosome = key.substring(0, idx);
+        int position = 0;
+        for (int i = idx + 1; i < key.length() && Character.isDigit(key.charAt(i)); i++) {
+            position = position * 10 + (key.charAt(i) - '0');
+        }
+        return chromosome.replaceAll("[^A-Za-z0-9._-]", "_") + '_' + (position / SHARD_SIZE);
+    }
+
+    private Path getShardFile(String shardId) {
+        return directory.resolve(shardId + SHARD_EXTENSION);
+    }
+
+    private Map<String, byte[]> getShard(String shardId) throws IOException {
+        Map<String, byte[]> shard = shards.get(shardId);
+        if (shard == null) {
+            shard = readShard(getShardFile(shardId));
+            shards.put(shardId, shard);
+        }
+        return shard;
+    }
+
+    private static Map<String, byte[]> readShard(Path file) throws IOException {
+        Map<String, byte[]> shard = new HashMap<>();
+        if (!Files.exists(file)) {
+            return shard;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                String key = in.readUTF();
+                byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                shard.put(key, value);
+            }
+        } catch (EOFException e) {
+            // End of file. Ignore any incomplete record
+            logger.debug("Read {} annotations from {}", shard.size(), file);
+        }
+        return shard;
+    }
+
+    private byte[] encode(VariantAnnotation annotation) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DeflaterOutputStream os = new DeflaterOutputStream(bytes)) {
+            writer.writeValue(os, annotation);
+        }
+        return bytes.toByteArray();
+    }
+
+    private VariantAnnotation decode(byte[] value) throws IOException {
+        try (InflaterInputStream is = new InflaterInputStream(new ByteArrayInputStream(value))) {
+            return reader.readValue(is);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.opencb.opencga.storage.core.variant.annotation.annotators;
+
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Persistent store of variant annotations, consulted by the {@link CachedVariantAnnotator} before calling the actual annotator.
+ *
+ * Each cache instance is bound to one annotator version, so the keys only need to identify the variant.
+ * Implementations must be thread safe.
+ */
+public interface VariantAnnotationCache extends Closeable {
+
+    /**
+     * Get the cached annotations for the given variant keys.
+     *
+     * @param keys Normalized variant keys. See {@link CachedVariantAnnotator#buildKey}
+     * @return Map from key to annotation. Missing keys are not present in the map.
+     * @throws IOException if there is any error reading the cache
+     */
+    Map<String, VariantAnnotation> get(Collection<String> keys) throws IOException;
+
+    /**
+     * Store a set of annotations in the cache.
+     *
+     * @param annotations Map from normalized variant key to annotation
+     * @throws IOException if there is any error writing the cache
+     */
+    void put(Map<String, VariantAnnotation> annotations) throws IOException;
+
+}
@@ -54,6 +54,13 @@ public final class VariantAnnotatorFactory {
     public static VariantAnnotator buildVariantAnnotator(StorageConfiguration configuration,
                                                          ProjectMetadata projectMetadata, ObjectMap options)
             throws VariantAnnotatorException {
+        VariantAnnotator annotator = buildRawVariantAnnotator(configuration, projectMetadata, options);
+        return CachedVariantAnnotator.wrap(configuration, projectMetadata, options, annotator);
+    }
+
+    private static VariantAnnotator buildRawVariantAnnotator(StorageConfiguration configuration,
+                                                             ProjectMetadata projectMetadata, ObjectMap options)
+            throws VariantAnnotatorException {
 
         AnnotationEngine defaultValue = options.containsKey(VariantStorageOptions.ANNOTATOR_CLASS.key())
                 ? AnnotationEngine.OTHER
@@ -18,6 +18,7 @@ package org.opencb.opencga.storage.core.variant.io;
 
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.StringUtils;
 import org.opencb.biodata.formats.variant.vcf4.io.VariantVcfReader;
 import org.opencb.biodata.models.metadata.Individual;
 import org.opencb.biodata.models.variant.Variant;
@@ -61,6 +62,9 @@ public class VariantExporter {
     public static final String METADATA_FILE_EXTENSION = ".meta.json.gz";
     public static final String TPED_FILE_EXTENSION = ".tped";
     public static final String TFAM_FILE_EXTENSION = ".tfam";
+    public static final String BED_FILE_EXTENSION = ".bed";
+    public static final String BIM_FILE_EXTENSION = ".bim";
+    public static final String FAM_FILE_EXTENSION = ".fam";
     protected final VariantStorageEngine engine;
     protected final VariantWriterFactory variantWriterFactory;
     protected final VariantMetadataFactory metadataFactory;
@@ -99,23 +103,56 @@ public class VariantExporter {
             ioConnectorProvider.checkWritable(outputFile);
         }
 
-        try (OutputStream os = VariantWriterFactory.getOutputStream(outputFile, outputFormat, ioConnectorProvider)) {
+        URI bimFile = null;
+        if (outputFormat == VariantOutputFormat.PLINK_BED) {
+            if (VariantWriterFactory.isStandardOutput(outputFile)) {
+                throw new IllegalArgumentException("Unable to export PLINK BED files to the standard output");
+            }
+            bimFile = UriUtils.replacePath(outputFile, replaceExtension(outputFile.getPath(), BED_FILE_EXTENSION, BIM_FILE_EXTENSION));
+        }
+
+        try (OutputStream os = VariantWriterFactory.getOutputStream(outputFile, outputFormat, ioConnectorProvider);
+             OutputStream bimOs = bimFile == null ? null : ioConnectorProvider.newOutputStream(bimFile)) {
             boolean logProgress = !VariantWriterFactory.isStandardOutput(outputFile);
-            exportData(os, outputFormat, variantsFile, query, queryOptions, logProgress);
+            exportData(os, bimOs, outputFormat, variantsFile, query, queryOptions, logProgress);
         }
         if (metadataFactory != null && !VariantWriterFactory.isStandardOutput(outputFile)) {
             VariantMetadata metadata = metadataFactory.makeVariantMetadata(query, queryOptions);
             String metaFilename = outputFile.getPath() + METADATA_FILE_EXTENSION;
             if (outputFormat == VariantOutputFormat.TPED) {
-                metaFilename = outputFile.getPath().replace(TPED_FILE_EXTENSION, TFAM_FILE_EXTENSION);
+                metaFilename = replaceExtension(outputFile.getPath(), TPED_FILE_EXTENSION, TFAM_FILE_EXTENSION);
+            } else if (outputFormat == VariantOutputFormat.PLINK_BED) {
+                metaFilename = replaceExtension(outputFile.getPath(), BED_FILE_EXTENSION, FAM_FILE_EXTENSION);
             }
             writeMetadata(metadata, UriUtils.replacePath(outputFile, metaFilename));
         }
     }
 
+    /**
+     * Replace the trailing extension of a file name. Only the end of the name is modified.
+     *
+     * @param path          File name
+     * @param extension     Current extension
+     * @param newExtension  New extension
+     * @return File name with the new extension
+     * @throws IllegalArgumentException if the file name does not end with the given extension
+     */
+    static String replaceExtension(String path, String extension, String newExtension) {
+        if (!path.endsWith(extension)) {
+            throw new IllegalArgumentException("Invalid output file name (" + path + "): its extension must be " + extension);
+        }
+        return StringUtils.removeEnd(path, extension) + newExtension;
+    }
+
     protected void exportData(OutputStream outputStream, VariantOutputFormat outputFormat, URI variantsFile,
                               Query query, QueryOptions queryOptions, boolean logProgress)
             throws StorageEngineException, IOException {
+        exportData(outputStream, null, outputFormat, variantsFile, query, queryOptions, logProgress);
+    }
+
+    protected void exportData(OutputStream outputStream, @Nullable OutputStream companionOutputStream, VariantOutputFormat outputFormat,
+                              URI variantsFile, Query query, QueryOptions queryOptions, boolean logProgress)
+            throws StorageEngineException, IOException {
         if (query == null) {
             query = new Query();
         }
@@ -156,7 +193,8 @@ public class VariantExporter {
         }
 
         // DataWriter
-        DataWriter<Variant> variantDataWriter = variantWriterFactory.newDataWriter(outputFormat, outputStream, query, queryOptions);
+        DataWriter<Variant> variantDataWriter = variantWriterFactory.newDataWriter(outputFormat, outputStream, companionOutputStream,
+                query, queryOptions);
 
         ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder().setNumTasks(1).setBatchSize(10).build();
 
@@ -173,8 +211,8 @@ public class VariantExporter {
     }
 
     protected void writeMetadata(VariantMetadata metadata, URI metadataFile) throws IOException {
-        if (metadataFile.toString().endsWith(TFAM_FILE_EXTENSION)) {
-            // Write .tfam file
+        if (metadataFile.toString().endsWith(TFAM_FILE_EXTENSION) || metadataFile.toString().endsWith(FAM_FILE_EXTENSION)) {
+            // Write .tfam or .fam file. Both share the same format
             writeTfam(metadata, metadataFile);
         } else {
             ObjectMapper objectMapper = new ObjectMapper().configure(MapperFeature.REQUIRE_SETTERS_FOR_GETTERS, true);
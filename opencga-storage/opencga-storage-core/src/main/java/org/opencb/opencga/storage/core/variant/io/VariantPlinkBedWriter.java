@@ -0,0 +1,188 @@
+package org.opencb.opencga.storage.core.variant.io;
+
+import org.apache.commons.lang3.StringUtils;
+import org.opencb.biodata.models.variant.Genotype;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.SampleEntry;
+import org.opencb.commons.io.DataWriter;
+import org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes variants in binary PLINK format. Genotypes are written to the ".bed" stream in SNP-major mode, packed in 2 bits
+ * per sample, and the variant description is written to the ".bim" stream. The ".fam" file is written by the
+ * {@link VariantExporter} as part of the metadata.
+ *
+ * The alternate allele is used as allele 1, and the reference as allele 2. Genotypes with any other allele are written as
+ * missing. As in the TPED format, unknown genotypes (samples not present in the file) are considered homozygous reference.
+ *
+ * See https://www.cog-genomics.org/plink/1.9/formats#bed
+ */
+public class VariantPlinkBedWriter implements DataWriter<Variant> {
+
+    public static final byte[] MAGIC_NUMBER = {0x6c, 0x1b, 0x01};
+
+    // 2-bit codes
+    public static final byte HOM_ALLELE_1 = 0b00;
+    public static final byte MISSING = 0b01;
+    public static final byte HETEROZYGOUS = 0b10;
+    public static final byte HOM_ALLELE_2 = 0b11;
+
+    private final OutputStream bedOutputStream;
+    private final Writer bimWriter;
+    private final Map<String, Byte> genotypeCodes = new HashMap<>();
+    private byte[] buffer = new byte[0];
+    private int numSamples = -1;
+    private int writtenVariants;
+
+    public VariantPlinkBedWriter(OutputStream bedOutputStream, OutputStream bimOutputStream) {
+        this.bedOutputStream = bedOutputStream;
+        this.bimWriter = new BufferedWriter(new OutputStreamWriter(bimOutputStream, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean pre() {
+        writtenVariants = 0;
+        try {
+            bedOutputStream.write(MAGIC_NUMBER);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean write(List<Variant> batch) {
+        for (Variant variant : batch) {
+            write(variant);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean write(Variant variant) {
+        StudyEntry studyEntry = variant.getStudies().get(0);
+        List<SampleEntry> samples = studyEntry.getSamples();
+        if (numSamples < 0) {
+            numSamples = samples.size();
+            buffer = new byte[getBytesPerVariant(numSamples)];
+        } else if (numSamples != samples.size()) {
+            throw new IllegalStateException("Expected " + numSamples + " samples in variant " + variant + ", found " + samples.size());
+        }
+
+        encode(samples, buffer);
+
+        try {
+            bedOutputStream.write(buffer);
+            bimWriter.write(variant.getChromosome());
+            bimWriter.write('\t');
+            bimWriter.write(StringUtils.isEmpty(variant.getId()) ? variant.toString() : variant.getId());
+            bimWriter.write("\t0\t");
+            bimWriter.write(Integer.toString(variant.getStart()));
+            bimWriter.write('\t');
+            bimWriter.write(toAllele(variant.getAlternate()));
+            bimWriter.write('\t');
+            bimWriter.write(toAllele(variant.getReference()));
+            bimWriter.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        ++writtenVariants;
+        return true;
+    }
+
+    @Override
+    public boolean post() {
+        try {
+            bedOutputStream.flush();
+            bimWriter.flush();
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int getWrittenVariants() {
+        return writtenVariants;
+    }
+
+    public static int getBytesPerVariant(int numSamples) {
+        return (numSamples + 3) / 4;
+    }
+
+    /**
+     * Pack the genotypes of one variant in the given buffer, four samples per byte, starting from the lowest bits.
+     *
+     * @param samples Samples data, with the genotype as first field
+     * @param buffer  Output buffer. Must have at least {@link #getBytesPerVariant} bytes.
+     */
+    protected void encode(List<SampleEntry> samples, byte[] buffer) {
+        int bytes = getBytesPerVariant(samples.size());
+        for (int i = 0; i < bytes; i++) {
+            buffer[i] = 0;
+        }
+        int i = 0;
+        for (SampleEntry sample : samples) {
+            byte code = getGenotypeCode(sample.getData().get(0));
+            buffer[i >> 2] |= code << ((i & 3) << 1);
+            i++;
+        }
+    }
+
+    protected byte getGenotypeCode(String gt) {
+        Byte code = genotypeCodes.get(gt);
+        if (code == null) {
+            code = parseGenotypeCode(gt);
+            genotypeCodes.put(gt, code);
+        }
+        return code;
+    }
+
+    static byte parseGenotypeCode(String gt) {
+        if (gt.equals(GenotypeClass.UNKNOWN_GENOTYPE)) {
+            return HOM_ALLELE_2;
+        }
+        Genotype genotype;
+        try {
+            genotype = new Genotype(gt);
+        } catch (RuntimeException e) {
+            return MISSING;
+        }
+        int[] alleles = genotype.getAllelesIdx();
+        if (alleles.length != 2) {
+            // Haploid calls are written as homozygous
+            if (alleles.length == 1) {
+                alleles = new int[]{alleles[0], alleles[0]};
+            } else {
+                return MISSING;
+            }
+        }
+        int alt = 0;
+        for (int allele : alleles) {
+            if (allele == 1) {
+                alt++;
+            } else if (allele != 0) {
+                return MISSING;
+            }
+        }
+        switch (alt) {
+            case 0:
+                return HOM_ALLELE_2;
+            case 1:
+                return HETEROZYGOUS;
+            default:
+                return HOM_ALLELE_1;
+        }
+    }
+
+    private static String toAllele(String allele) {
+        return StringUtils.isEmpty(allele) ? "-" : allele;
+    }
+}
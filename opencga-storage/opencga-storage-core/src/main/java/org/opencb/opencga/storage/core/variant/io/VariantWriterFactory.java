@@ -47,6 +47,7 @@ import java.util.List;
 import java.util.zip.GZIPOutputStream;
 
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.INCLUDE_STUDY;
+import static org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat.PLINK_BED;
 import static org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat.TPED;
 import static org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat.VCF;
 import static org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat.VCF_GZ;
@@ -83,7 +84,8 @@ public class VariantWriterFactory {
         STATS_GZ("stats.tsv.gz", false),
         CELLBASE("frequencies.json"),
         CELLBASE_GZ("frequencies.json.gz"),
-        TPED("tped", false);
+        TPED("tped", false),
+        PLINK_BED("bed", false);
 
         private final boolean multiStudy;
         private final String extension;
@@ -169,6 +171,10 @@ public class VariantWriterFactory {
             throw new IllegalArgumentException("Invalid output file name (" + output + ") when exporting TPED file: its extension must be "
                     + VariantExporter.TPED_FILE_EXTENSION);
         }
+        if (outputFormat == PLINK_BED && !output.endsWith(VariantExporter.BED_FILE_EXTENSION)) {
+            throw new IllegalArgumentException("Invalid output file name (" + output + ") when exporting PLINK BED file: "
+                    + "its extension must be " + VariantExporter.BED_FILE_EXTENSION);
+        }
         if (output.endsWith(".")) {
             output = output.substring(0, output.length() - 1);
         }
@@ -220,6 +226,23 @@ public class VariantWriterFactory {
 
     public DataWriter<Variant> newDataWriter(VariantOutputFormat outputFormat, final OutputStream outputStream,
                                                 Query query, QueryOptions queryOptions) throws IOException {
+        return newDataWriter(outputFormat, outputStream, null, query, queryOptions);
+    }
+
+    /**
+     * Build a new DataWriter for the given output format.
+     *
+     * @param outputFormat          Output format
+     * @param outputStream          Main output stream
+     * @param companionOutputStream Secondary output stream, required by formats split in multiple files. i.e. ".bim" file for PLINK_BED
+     * @param query                 Query
+     * @param queryOptions          Query options
+     * @return                      DataWriter
+     * @throws IOException          If there is any IO error
+     */
+    public DataWriter<Variant> newDataWriter(VariantOutputFormat outputFormat, final OutputStream outputStream,
+                                             @Nullable OutputStream companionOutputStream,
+                                             Query query, QueryOptions queryOptions) throws IOException {
         final DataWriter<Variant> exporter;
 
         switch (outputFormat) {
@@ -276,6 +299,14 @@ public class VariantWriterFactory {
                 exporter = new VariantTpedWriter(outputStream);
                 break;
 
+            case PLINK_BED:
+                if (companionOutputStream == null) {
+                    throw new IllegalArgumentException("Missing output for the " + VariantExporter.BIM_FILE_EXTENSION
+                            + " file when exporting PLINK BED file");
+                }
+                exporter = new VariantPlinkBedWriter(outputStream, companionOutputStream);
+                break;
+
             default:
                 throw variantFormatNotSupported(outputFormat.toString());
         }
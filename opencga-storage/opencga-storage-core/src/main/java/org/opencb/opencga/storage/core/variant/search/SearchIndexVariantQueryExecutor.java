@@ -1,6 +1,5 @@
 package org.opencb.opencga.storage.core.variant.search;
 
-import com.google.common.collect.Iterators;
 import org.apache.commons.lang3.time.StopWatch;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.commons.datastore.core.DataResult;
@@ -15,7 +14,7 @@ import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.adaptors.*;
 import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
 import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchManager;
-import org.opencb.opencga.storage.core.variant.search.solr.SolrNativeIterator;
+import org.opencb.opencga.storage.core.variant.search.solr.SolrVariantIdIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -294,33 +293,19 @@ public class SearchIndexVariantQueryExecutor extends AbstractSearchIndexVariantQ
     }
 
     protected Iterator<String> variantIdIteratorFromSearch(Query query, int limit, int skip, AtomicLong numTotalResults) {
-        Iterator<String> variantsIterator;
         QueryOptions queryOptions = new QueryOptions()
                 .append(QueryOptions.LIMIT, limit)
-                .append(QueryOptions.SKIP, skip)
-                .append(QueryOptions.INCLUDE, VariantField.ID.fieldName());
+                .append(QueryOptions.SKIP, skip);
         try {
-            // Do not iterate for small queries
-            if (limit < 10000) {
-                VariantQueryResult<VariantSearchModel> nativeResult = searchManager.nativeQuery(dbName, query, queryOptions);
-                if (numTotalResults != null) {
-                    numTotalResults.set(nativeResult.getNumMatches());
-                }
-                variantsIterator = nativeResult.getResults()
-                        .stream()
-                        .map(VariantSearchModel::getId)
-                        .iterator();
-            } else {
-                SolrNativeIterator nativeIterator = searchManager.nativeIterator(dbName, query, queryOptions);
-                if (numTotalResults != null) {
-                    numTotalResults.set(nativeIterator.getNumFound());
-                }
-                variantsIterator = Iterators.transform(nativeIterator, VariantSearchModel::getId);
+            // Only fetch the IDs from solr, and stream them into the storage engine
+            SolrVariantIdIterator variantIdIterator = searchManager.variantIdIterator(dbName, query, queryOptions);
+            if (numTotalResults != null) {
+                numTotalResults.set(variantIdIterator.getNumFound());
             }
-        } catch (VariantSearchException | IOException e) {
+            return variantIdIterator;
+        } catch (VariantSearchException e) {
             throw new VariantQueryException("Error querying " + VariantSearchManager.SEARCH_ENGINE_ID, e);
         }
-        return variantsIterator;
     }
 
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.search.solr;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.StreamingResponseCallback;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterate over the IDs of the variants matching a Solr query.
+ *
+ * Only the "id" field is requested. Documents are decoded as they are read from the response, without binding them
+ * to {@link org.opencb.opencga.storage.core.variant.search.VariantSearchModel} nor building the whole document list.
+ *
+ * Small queries are resolved with one single request using start and rows. Larger queries are paginated with
+ * cursorMark, sorted by id, fetching {@link #DEFAULT_BATCH_SIZE} IDs per request.
+ */
+public class SolrVariantIdIterator implements Iterator<String>, AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+    private static final String ID = "id";
+
+    private final SolrClient solrClient;
+    private final String collection;
+    private final SolrQuery solrQuery;
+    private final int batchSize;
+    private final boolean useCursor;
+
+    private String cursorMark;
+    private boolean exhausted;
+    // Number of elements to skip. Only when paginating with cursorMark
+    private int pendingSkip;
+    // Number of elements to return
+    private int remaining;
+    private long numFound = -1;
+
+    private List<String> batch = new ArrayList<>();
+    private int batchIdx;
+
+    public SolrVariantIdIterator(SolrClient solrClient, String collection, SolrQuery solrQuery) {
+        this(solrClient, collection, solrQuery, DEFAULT_BATCH_SIZE);
+    }
+
+    public SolrVariantIdIterator(SolrClient solrClient, String collection, SolrQuery solrQuery, int batchSize) {
+        this.solrClient = solrClient;
+        this.collection = collection;
+        this.solrQuery = solrQuery;
+        this.batchSize = batchSize;
+
+        // Only the variant id is required
+        this.solrQuery.setFields(ID);
+
+        int limit = (solrQuery.getRows() == null || solrQuery.getRows() < 0) ? Integer.MAX_VALUE : solrQuery.getRows();
+        int skip = (solrQuery.getStart() == null || solrQuery.getStart() < 0) ? 0 : solrQuery.getStart();
+        this.remaining = limit;
+
+        if (limit <= batchSize && skip <= batchSize) {
+            // Resolve with one single request
+            useCursor = false;
+            solrQuery.setStart(skip);
+            solrQuery.setRows(limit);
+        } else {
+            // Cursor mark does not support start. Discard the first "skip" elements
+            useCursor = true;
+            pendingSkip = skip;
+            solrQuery.setStart(null);
+            solrQuery.setSort(SolrQuery.SortClause.asc(ID));
+            cursorMark = CursorMarkParams.CURSOR_MARK_START;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (batchIdx >= batch.size()) {
+            if (exhausted || remaining == 0) {
+                return false;
+            }
+            fetch();
+        }
+        return true;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        remaining--;
+        return batch.get(batchIdx++);
+    }
+
+    private void fetch() {
+        if (useCursor) {
+            solrQuery.setRows((int) Math.min(batchSize, (long) remaining + pendingSkip));
+            solrQuery.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+        }
+        List<String> ids = new ArrayList<>(solrQuery.getRows() == null ? batchSize : Math.min(solrQuery.getRows(), batchSize));
+        try {
+            QueryResponse response = solrClient.queryAndStreamResponse(collection, solrQuery, new StreamingResponseCallback() {
+                @Override
+                public void streamSolrDocument(SolrDocument doc) {
+                    ids.add((String) doc.getFirstValue(ID));
+                }
+
+                @Override
+                public void streamDocListInfo(long numFound, long start, Float maxScore) {
+                    SolrVariantIdIterator.this.numFound = numFound;
+                }
+            });
+            if (useCursor) {
+                String nextCursorMark = response.getNextCursorMark();
+                exhausted = ids.size() < solrQuery.getRows() || cursorMark.equals(nextCursorMark);
+                cursorMark = nextCursorMark;
+            } else {
+                exhausted = true;
+            }
+        } catch (SolrServerException | IOException e) {
+            throw new VariantQueryException("Error searching more variants", e);
+        }
+
+        int from = 0;
+        if (pendingSkip > 0) {
+            from = Math.min(pendingSkip, ids.size());
+            pendingSkip -= from;
+        }
+        batch = from == 0 ? ids : ids.subList(from, ids.size());
+        batchIdx = 0;
+    }
+
+    /**
+     * @return Number of variants matching the query, ignoring limit and skip.
+     */
+    public long getNumFound() {
+        if (numFound < 0 && batch.isEmpty()) {
+            fetch();
+        }
+        return Math.max(0, numFound);
+    }
+
+    @Override
+    public void close() {
+        // nothing to do
+    }
+}
@@ -26,10 +26,20 @@ public class VariantSearchLoadResult {
      */
     private final long numDeletedVariants;
 
+    /**
+     * Time spent loading the variants, in milliseconds.
+     */
+    private final long loadTimeMillis;
+
     public VariantSearchLoadResult(long numProcessedVariants, long numLoadedVariants, long numDeletedVariants) {
+        this(numProcessedVariants, numLoadedVariants, numDeletedVariants, 0);
+    }
+
+    public VariantSearchLoadResult(long numProcessedVariants, long numLoadedVariants, long numDeletedVariants, long loadTimeMillis) {
         this.numProcessedVariants = numProcessedVariants;
         this.numLoadedVariants = numLoadedVariants;
         this.numDeletedVariants = numDeletedVariants;
+        this.loadTimeMillis = loadTimeMillis;
     }
 
     public long getNumProcessedVariants() {
@@ -44,12 +54,25 @@ public class VariantSearchLoadResult {
         return numDeletedVariants;
     }
 
+    public long getLoadTimeMillis() {
+        return loadTimeMillis;
+    }
+
+    /**
+     * @return Number of loaded variants (i.e. Solr documents) per second.
+     */
+    public double getLoadedVariantsPerSecond() {
+        return loadTimeMillis > 0 ? numLoadedVariants * 1000.0 / loadTimeMillis : 0;
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
                 .append("numProcessedVariants", numProcessedVariants)
                 .append("numLoadedVariants", numLoadedVariants)
                 .append("numDeletedVariants", numDeletedVariants)
+                .append("loadTimeMillis", loadTimeMillis)
+                .append("loadedVariantsPerSecond", getLoadedVariantsPerSecond())
                 .toString();
     }
 }
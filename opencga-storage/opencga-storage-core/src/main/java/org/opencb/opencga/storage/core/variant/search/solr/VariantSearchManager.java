@@ -76,6 +76,9 @@ public class VariantSearchManager {
     private StorageConfiguration storageConfiguration;
     private VariantSearchToVariantConverter variantSearchToVariantConverter;
     private int insertBatchSize;
+    private int insertThreads;
+    private int insertCommitWithin;
+    private int insertMaxRetries;
 
     private Logger logger;
 
@@ -83,6 +86,10 @@ public class VariantSearchManager {
     public static final String SEARCH_ENGINE_ID = "solr";
     public static final String USE_SEARCH_INDEX = "useSearchIndex";
     public static final int DEFAULT_INSERT_BATCH_SIZE = 10000;
+    public static final int DEFAULT_INSERT_THREADS = 4;
+    public static final int DEFAULT_INSERT_COMMIT_WITHIN = 60000;
+    public static final int DEFAULT_INSERT_MAX_RETRIES = 3;
+    private static final int INSERT_RETRY_SLEEP_MS = 1000;
 
     public VariantSearchManager(VariantStorageMetadataManager variantStorageMetadataManager, StorageConfiguration storageConfiguration) {
         this.storageConfiguration = storageConfiguration;
@@ -98,6 +105,15 @@ public class VariantSearchManager {
         insertBatchSize = storageConfiguration.getSearch().getInsertBatchSize() > 0
                 ? storageConfiguration.getSearch().getInsertBatchSize()
                 : DEFAULT_INSERT_BATCH_SIZE;
+        insertThreads = storageConfiguration.getSearch().getInsertThreads() > 0
+                ? storageConfiguration.getSearch().getInsertThreads()
+                : DEFAULT_INSERT_THREADS;
+        insertCommitWithin = storageConfiguration.getSearch().getInsertCommitWithin() > 0
+                ? storageConfiguration.getSearch().getInsertCommitWithin()
+                : DEFAULT_INSERT_COMMIT_WITHIN;
+        insertMaxRetries = storageConfiguration.getSearch().getInsertMaxRetries() >= 0
+                ? storageConfiguration.getSearch().getInsertMaxRetries()
+                : DEFAULT_INSERT_MAX_RETRIES;
 
         logger = LoggerFactory.getLogger(VariantSearchManager.class);
     }
@@ -163,7 +179,7 @@ public class VariantSearchManager {
     }
 
     /**
-     * Insert a list of variants into the given Solr collection.
+     * Insert a list of variants into the given Solr collection, and commit.
      *
      * @param collection Solr collection where to insert
      * @param variants List of variants to insert
@@ -171,13 +187,26 @@ public class VariantSearchManager {
      * @throws SolrServerException SolrServerException
      */
     public void insert(String collection, List<Variant> variants) throws IOException, SolrServerException {
+        insert(collection, variants, true);
+    }
+
+    /**
+     * Insert a list of variants into the given Solr collection.
+     *
+     * @param collection Solr collection where to insert
+     * @param variants List of variants to insert
+     * @param commit   Execute a hard commit after inserting the variants. Otherwise, variants will be committed
+     *                 within the configured "insertCommitWithin" milliseconds.
+     * @throws IOException   IOException
+     * @throws SolrServerException SolrServerException
+     */
+    public void insert(String collection, List<Variant> variants, boolean commit) throws IOException, SolrServerException {
         if (CollectionUtils.isNotEmpty(variants)) {
             List<VariantSearchModel> variantSearchModels = variantSearchToVariantConverter.convertListToStorageType(variants);
 
             if (!variantSearchModels.isEmpty()) {
-                UpdateResponse updateResponse;
-                updateResponse = solrManager.getSolrClient().addBeans(collection, variantSearchModels);
-                if (updateResponse.getStatus() == 0) {
+                addBeans(collection, variantSearchModels, commit ? -1 : insertCommitWithin);
+                if (commit) {
                     solrManager.getSolrClient().commit(collection);
                 }
             }
@@ -234,6 +263,10 @@ public class VariantSearchManager {
         AtomicInteger count = new AtomicInteger();
         AtomicInteger numLoadedVariants = new AtomicInteger();
 
+        // Variants are converted and sent to Solr from multiple threads, each one with its own update stream.
+        // Documents are committed within "insertCommitWithin" milliseconds, with one final hard commit, instead of
+        // committing each batch.
+        // The listener postLoad is executed from one single thread, once the batch is accepted by Solr.
         ParallelTaskRunner<Variant, Variant> ptr = new ParallelTaskRunner<>((n) -> {
             List<Variant> batch = new ArrayList<>(n);
             while (batch.size() < n && variantDBIterator.hasNext()) {
@@ -241,23 +274,36 @@ public class VariantSearchManager {
             }
             count.addAndGet(batch.size());
             return batch;
-        }, batch -> {
-            progressLogger.increment(batch.size(), () -> "up to position " + batch.get(batch.size() - 1).toString());
-            return batch;
+        }, () -> {
+            // VariantSearchToVariantConverter is not thread safe
+            VariantSearchToVariantConverter converter = new VariantSearchToVariantConverter();
+            return batch -> {
+                progressLogger.increment(batch.size(), () -> "up to position " + batch.get(batch.size() - 1).toString());
+                loadListener.preLoad(batch);
+                if (!batch.isEmpty()) {
+                    List<VariantSearchModel> variantSearchModels = converter.convertListToStorageType(batch);
+                    try {
+                        addBeans(collection, variantSearchModels, insertCommitWithin);
+                    } catch (SolrServerException e) {
+                        throw new IOException(e);
+                    }
+                    numLoadedVariants.addAndGet(batch.size());
+                }
+                return batch;
+            };
         }, batch -> {
             try {
-                loadListener.preLoad(batch);
-                numLoadedVariants.addAndGet(batch.size());
-                insert(collection, batch);
                 loadListener.postLoad(batch);
-            } catch (SolrServerException | IOException e) {
+            } catch (IOException e) {
                 throw new RuntimeException(e);
             }
             return true;
         }, ParallelTaskRunner.Config.builder()
                 .setBatchSize(insertBatchSize)
-                .setCapacity(2)
-                .setNumTasks(1)
+                .setCapacity(insertThreads + 1)
+                .setNumTasks(insertThreads)
+                .setSorted(false)
+                .setAbortOnFail(true)
                 .build());
 
         StopWatch stopWatch = StopWatch.createStarted();
@@ -267,13 +313,21 @@ public class VariantSearchManager {
             throw new VariantSearchException("Error loading secondary index", e);
         }
 
+        try {
+            solrManager.getSolrClient().commit(collection);
+        } catch (SolrServerException | IOException e) {
+            throw new VariantSearchException("Error committing secondary index", e);
+        }
+
         loadListener.close();
 
-        logger.info("Variant Search loading done. " + numLoadedVariants + " variants indexed in " + TimeUtils.durationToString(stopWatch));
-        return new VariantSearchLoadResult(count.get(), numLoadedVariants.get(), 0);
+        long loadTimeMillis = stopWatch.getTime();
+        VariantSearchLoadResult result = new VariantSearchLoadResult(count.get(), numLoadedVariants.get(), 0, loadTimeMillis);
+        logger.info("Variant Search loading done. " + numLoadedVariants + " variants indexed in " + TimeUtils.durationToString(stopWatch)
+                + String.format(" (%.1f variants/s)", result.getLoadedVariantsPerSecond()));
+        return result;
     }
 
-
     /**
      * Delete variants a Solr core/collection from a variant DB iterator.
      *
@@ -403,6 +457,27 @@ public class VariantSearchManager {
         }
     }
 
+    /**
+     * Return an iterator over the IDs of the variants from a Solr core/collection according a given query.
+     * Only the "id" field is fetched from Solr. See {@link SolrVariantIdIterator}.
+     *
+     * @param collection   Collection name
+     * @param query        Query
+     * @param queryOptions Query options. Only limit and skip are used.
+     * @return Variant ID iterator
+     * @throws VariantSearchException VariantSearchException
+     */
+    public SolrVariantIdIterator variantIdIterator(String collection, Query query, QueryOptions queryOptions)
+            throws VariantSearchException {
+        try {
+            SolrQuery solrQuery = solrQueryParser.parse(query, new QueryOptions(queryOptions)
+                    .append(QueryOptions.INCLUDE, VariantField.ID.fieldName()));
+            return new SolrVariantIdIterator(solrManager.getSolrClient(), collection, solrQuery);
+        } catch (SolrException e) {
+            throw new VariantSearchException("Error getting variant ID iterator", e);
+        }
+    }
+
     /**
      *
      * @param collection Collection name
@@ -573,7 +648,7 @@ public class VariantSearchManager {
                 count++;
                 if (count % insertBatchSize == 0) {
                     logger.debug("Loading variants from '{}', {} variants loaded", uri.toString(), count);
-                    insert(collection, variants);
+                    insert(collection, variants, false);
                     variants.clear();
                 }
             }
@@ -581,9 +656,10 @@ public class VariantSearchManager {
             // Insert the remaining variants
             if (CollectionUtils.isNotEmpty(variants)) {
                 logger.debug("Loading remaining variants from '{}', {} variants loaded", uri.toString(), count);
-                insert(collection, variants);
+                insert(collection, variants, false);
             }
         }
+        solrManager.getSolrClient().commit(collection);
     }
 
     private void loadAvro(String collection, URI uri, VariantReaderUtils variantReaderUtils)
@@ -597,10 +673,48 @@ public class VariantSearchManager {
         List<Variant> variants;
         do {
             variants = reader.read(bufferSize);
-            insert(collection, variants);
+            insert(collection, variants, false);
         } while (CollectionUtils.isNotEmpty(variants));
 
         reader.close();
+        solrManager.getSolrClient().commit(collection);
+    }
+
+    /**
+     * Add documents to Solr, retrying failed requests up to "insertMaxRetries" times.
+     *
+     * @param collection     Solr collection
+     * @param documents      Documents to add
+     * @param commitWithinMs Max time in milliseconds before the documents are committed. -1 to let Solr decide.
+     * @throws IOException   IOException
+     * @throws SolrServerException SolrServerException
+     */
+    private void addBeans(String collection, List<VariantSearchModel> documents, int commitWithinMs)
+            throws IOException, SolrServerException {
+        int attempt = 0;
+        while (true) {
+            try {
+                UpdateResponse updateResponse = solrManager.getSolrClient().addBeans(collection, documents, commitWithinMs);
+                if (updateResponse.getStatus() != 0) {
+                    throw new SolrServerException("Error adding " + documents.size() + " documents to Solr collection '" + collection
+                            + "'. Status: " + updateResponse.getStatus());
+                }
+                return;
+            } catch (IOException | SolrServerException | SolrException e) {
+                attempt++;
+                if (attempt > insertMaxRetries) {
+                    throw e;
+                }
+                logger.warn("Error adding {} documents to Solr collection '{}'. Retry {}/{} : {}",
+                        documents.size(), collection, attempt, insertMaxRetries, e.getMessage());
+                try {
+                    Thread.sleep(INSERT_RETRY_SLEEP_MS * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(interrupted);
+                }
+            }
+        }
     }
 
     private void delete(String collection, List<String> variants) throws IOException, SolrServerException {
@@ -763,6 +877,9 @@ public class VariantSearchManager {
         sb.append(", storageConfiguration=").append(storageConfiguration);
         sb.append(", variantSearchToVariantConverter=").append(variantSearchToVariantConverter);
         sb.append(", insertBatchSize=").append(insertBatchSize);
+        sb.append(", insertThreads=").append(insertThreads);
+        sb.append(", insertCommitWithin=").append(insertCommitWithin);
+        sb.append(", insertMaxRetries=").append(insertMaxRetries);
         sb.append('}');
         return sb.toString();
     }
@@ -820,4 +937,31 @@ public class VariantSearchManager {
         this.insertBatchSize = insertBatchSize;
         return this;
     }
+
+    public int getInsertThreads() {
+        return insertThreads;
+    }
+
+    public VariantSearchManager setInsertThreads(int insertThreads) {
+        this.insertThreads = insertThreads;
+        return this;
+    }
+
+    public int getInsertCommitWithin() {
+        return insertCommitWithin;
+    }
+
+    public VariantSearchManager setInsertCommitWithin(int insertCommitWithin) {
+        this.insertCommitWithin = insertCommitWithin;
+        return this;
+    }
+
+    public int getInsertMaxRetries() {
+        return insertMaxRetries;
+    }
+
+    public VariantSearchManager setInsertMaxRetries(int insertMaxRetries) {
+        this.insertMaxRetries = insertMaxRetries;
+        return this;
+    }
 }
@@ -0,0 +1,121 @@
+package org.opencb.opencga.storage.core.variant.stats;
+
+import org.opencb.biodata.models.variant.Genotype;
+
+import java.util.*;
+
+/**
+ * Genotype counter working with genotype codes as small ints.
+ *
+ * Each distinct genotype string gets a code the first time it is seen. Codes are kept between variants, so once the
+ * dictionary is warm, counting genotypes does not allocate. {@link Genotype} objects are only created when building
+ * the final count map for each variant, once per distinct genotype.
+ *
+ * Not thread safe. Use one instance per thread.
+ */
+public class GenotypeCounter {
+
+    public static final int NO_CODE = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> genotypes = new ArrayList<>();
+    private int[] counts = new int[8];
+    // Genotypes explicitly added, even with 0 counts
+    private boolean[] present = new boolean[8];
+
+    public int getCode(String gt) {
+        Integer code = codes.get(gt);
+        if (code == null) {
+            code = genotypes.size();
+            codes.put(gt, code);
+            genotypes.add(gt);
+            if (code >= counts.length) {
+                counts = Arrays.copyOf(counts, counts.length * 2);
+                present = Arrays.copyOf(present, present.length * 2);
+            }
+        }
+        return code;
+    }
+
+    public String getGenotype(int code) {
+        return genotypes.get(code);
+    }
+
+    public void add(int code) {
+        counts[code]++;
+        present[code] = true;
+    }
+
+    public void add(int code, int num) {
+        counts[code] += num;
+        present[code] = true;
+    }
+
+    public void add(String gt, int num) {
+        add(getCode(gt), num);
+    }
+
+    public int getCount(int code) {
+        return code < genotypes.size() ? counts[code] : 0;
+    }
+
+    /**
+     * Reset all the counts, keeping the genotype codes.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0, genotypes.size(), 0);
+        Arrays.fill(present, 0, genotypes.size(), false);
+    }
+
+    /**
+     * Add the current counts to a genotype count map.
+     *
+     * @param gtCountMap Map to add the counts to
+     * @return the same map
+     */
+    public Map<Genotype, Integer> addTo(Map<Genotype, Integer> gtCountMap) {
+        for (int code = 0; code < genotypes.size(); code++) {
+            if (present[code]) {
+                gtCountMap.merge(new Genotype(genotypes.get(code)), counts[code], Integer::sum);
+            }
+        }
+        return gtCountMap;
+    }
+
+    public Map<Genotype, Integer> toGenotypeCountMap() {
+        return addTo(new HashMap<>());
+    }
+
+    /**
+     * Build a dense index from sample ids. Sample ids are small sequential integers within a study, so an array lookup
+     * can be used instead of a Set or Map of boxed integers.
+     *
+     * @param sampleIds Sample ids
+     * @return Array where array[sampleId] is the position of the sample in the given collection,
+     *         or {@link #NO_CODE} for samples not present.
+     */
+    public static int[] buildSampleIndex(Collection<Integer> sampleIds) {
+        int max = -1;
+        for (Integer sampleId : sampleIds) {
+            max = Math.max(max, sampleId);
+        }
+        int[] index = new int[max + 1];
+        Arrays.fill(index, NO_CODE);
+        int i = 0;
+        for (Integer sampleId : sampleIds) {
+            index[sampleId] = i++;
+        }
+        return index;
+    }
+
+    /**
+     * Get the position of a sample from an index built with {@link #buildSampleIndex}.
+     *
+     * @param index    Sample index
+     * @param sampleId Sample id
+     * @return Position of the sample, or {@link #NO_CODE} if not indexed.
+     */
+    public static int indexOf(int[] index, int sampleId) {
+        return sampleId >= 0 && sampleId < index.length ? index[sampleId] : NO_CODE;
+    }
+}
@@ -0,0 +1,64 @@
+package org.opencb.opencga.storage.core.alignment.local;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class BamManagerCacheTest {
+
+    @Test
+    public void testBorrow() throws Exception {
+        Path path = Paths.get(getClass().getResource("/HG00096.chrom20.small.bam").toURI());
+        BamManagerCache cache = new BamManagerCache(2, 1);
+
+        try (BamManagerCache.Lease lease1 = cache.borrow(path); BamManagerCache.Lease lease2 = cache.borrow(path)) {
+            // Concurrent leases never share the same instance
+            assertNotSame(lease1.get(), lease2.get());
+        }
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        Object bamManager;
+        try (BamManagerCache.Lease lease = cache.borrow(path)) {
+            bamManager = lease.get();
+        }
+        try (BamManagerCache.Lease lease = cache.borrow(path)) {
+            assertSame(bamManager, lease.get());
+            lease.discard();
+        }
+        assertEquals(2, cache.getHits());
+
+        try (BamManagerCache.Lease lease = cache.borrow(path)) {
+            assertNotSame(bamManager, lease.get());
+        }
+        assertEquals(3, cache.getMisses());
+        cache.clear();
+    }
+
+    @Test
+    public void testBorrowSamReader() throws Exception {
+        Path path = Paths.get(getClass().getResource("/HG00096.chrom20.small.bam").toURI());
+        BamManagerCache cache = new BamManagerCache(2, 1);
+
+        Object samReader;
+        try (BamManagerCache.Lease lease = cache.borrow(path)) {
+            samReader = lease.getSamReader();
+            // Opened once per lease
+            assertSame(samReader, lease.getSamReader());
+        }
+        // Cached together with the BamManager
+        try (BamManagerCache.Lease lease = cache.borrow(path)) {
+            assertSame(samReader, lease.getSamReader());
+            lease.discard();
+        }
+        try (BamManagerCache.Lease lease = cache.borrow(path)) {
+            assertNotSame(samReader, lease.getSamReader());
+        }
+        cache.clear();
+    }
+}
@@ -0,0 +1,50 @@
+package org.opencb.opencga.storage.core.alignment.local;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.alignment.iterators.ProtoAlignmentIterator;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.opencb.opencga.core.api.ParamConstants.*;
+
+public class LocalAlignmentDBAdaptorTest {
+
+    private LocalAlignmentDBAdaptor dbAdaptor;
+    private Path path;
+
+    @Before
+    public void setUp() throws Exception {
+        dbAdaptor = new LocalAlignmentDBAdaptor();
+        path = Paths.get(getClass().getResource("/HG00096.chrom20.small.bam").toURI());
+    }
+
+    @Test
+    public void testCountFromIndex() throws Exception {
+        checkCount(new Query());
+        checkCount(new Query(REGION_PARAM, "20"));
+        checkCount(new Query(SKIP_UNMAPPED_PARAM, true));
+    }
+
+    @Test
+    public void testCountRawRecords() throws Exception {
+        checkCount(new Query(MINIMUM_MAPPING_QUALITY_PARAM, 30));
+        checkCount(new Query(REGION_PARAM, "20:60000-70000").append(SKIP_DUPLICATED_PARAM, true));
+        checkCount(new Query(PROPERLY_PAIRED_PARAM, true).append(SKIP_UNMAPPED_PARAM, true));
+    }
+
+    private void checkCount(Query query) throws Exception {
+        long expected = 0;
+        try (ProtoAlignmentIterator iterator = dbAdaptor.iterator(path, query, new QueryOptions())) {
+            while (iterator.hasNext()) {
+                iterator.next();
+                expected++;
+            }
+        }
+        assertEquals(query.toJson(), expected, dbAdaptor.count(path, query, new QueryOptions()).first().longValue());
+    }
+}
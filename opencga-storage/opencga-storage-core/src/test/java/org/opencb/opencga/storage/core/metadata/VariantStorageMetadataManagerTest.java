@@ -5,14 +5,21 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.models.SampleMetadata;
 import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
 import org.opencb.opencga.storage.core.metadata.models.TaskMetadata;
 import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
 import org.opencb.opencga.storage.core.variant.VariantStorageTest;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public abstract class VariantStorageMetadataManagerTest extends VariantStorageBaseTest implements VariantStorageTest {
@@ -43,6 +50,43 @@ public abstract class VariantStorageMetadataManagerTest extends VariantStorageBa
         Assert.assertEquals("DONE", Collections.singletonList("MyTask2"), getTasks(study, Collections.singletonList(TaskMetadata.Status.DONE)));
     }
 
+    @Test
+    public void testUpdateStudyMetadataWithCondition() throws StorageEngineException {
+        StudyMetadata study = metadataManager.createStudy("study");
+        AtomicInteger updates = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            metadataManager.updateStudyMetadata(study.getId(), sm -> !sm.getAttributes().containsKey("key"), sm -> {
+                updates.incrementAndGet();
+                sm.getAttributes().put("key", "value");
+                return sm;
+            });
+        }
+        Assert.assertEquals(1, updates.get());
+        Assert.assertEquals("value", metadataManager.getStudyMetadata(study.getId()).getAttributes().getString("key"));
+    }
+
+    @Test
+    public void testRegisterFilesConcurrently() throws Exception {
+        StudyMetadata study = metadataManager.createStudy("study");
+        int sampleId = metadataManager.registerSamples(study.getId(), Collections.singletonList("S1")).get(0);
+
+        int numFiles = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> futures = new ArrayList<>(numFiles);
+        for (int i = 0; i < numFiles; i++) {
+            String path = "/data/file_" + i + ".vcf";
+            futures.add(executor.submit(() -> metadataManager.registerFile(study.getId(), path, Collections.singletonList("S1"))));
+        }
+        List<Integer> fileIds = new ArrayList<>(numFiles);
+        for (Future<Integer> future : futures) {
+            fileIds.add(future.get());
+        }
+        executor.shutdown();
+
+        SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(study.getId(), sampleId);
+        Assert.assertEquals(new HashSet<>(fileIds), new HashSet<>(sampleMetadata.getFiles()));
+    }
+
     public List<String> getTasks(StudyMetadata study, List<TaskMetadata.Status> status) {
         return Arrays.stream(Iterators.toArray(metadataManager.taskIterator(study.getId(), status), TaskMetadata.class))
                 .map(TaskMetadata::getName)
@@ -0,0 +1,57 @@
+package org.opencb.opencga.storage.core.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class LockBackoffTest {
+
+    @Test
+    public void testNextSleep() throws Exception {
+        LockBackoff backoff = new LockBackoff(10, 100, 10000);
+        for (int i = 0; i < 10; i++) {
+            long ceiling = Math.min(100, 10 << i);
+            for (int j = 0; j < 100; j++) {
+                long sleep = backoff.nextSleepMillis();
+                assertTrue(sleep + " < 5", sleep >= 5);
+                assertTrue(sleep + " > " + ceiling, sleep <= ceiling);
+            }
+            backoff.sleep();
+        }
+        assertEquals(10, backoff.getAttempts());
+
+        backoff.reset();
+        assertTrue(backoff.nextSleepMillis() <= 10);
+        assertEquals(10, backoff.getAttempts());
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void testTimeout() throws Exception {
+        LockBackoff backoff = new LockBackoff(10, 20, 50);
+        while (true) {
+            backoff.sleep();
+        }
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        LockMetrics metrics = LockMetrics.get("testMetrics");
+        metrics.acquired(new LockBackoff(1000));
+
+        LockBackoff backoff = new LockBackoff(10, 20, 50);
+        backoff.sleep();
+        backoff.sleep();
+        metrics.acquired(backoff);
+
+        metrics.timeout(backoff);
+
+        assertSame(metrics, LockMetrics.getAll().get("testMetrics"));
+        assertEquals(2, metrics.getAcquired());
+        assertEquals(1, metrics.getTimeouts());
+        assertEquals(2, metrics.getContended());
+        assertEquals(4, metrics.getWaitAttempts());
+        assertTrue(metrics.getMaxWaitMillis() >= 10);
+    }
+}
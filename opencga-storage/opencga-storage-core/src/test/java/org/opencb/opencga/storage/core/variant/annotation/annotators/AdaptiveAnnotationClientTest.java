@@ -0,0 +1,84 @@
+package org.opencb.opencga.storage.core.variant.annotation.annotators;
+
+import org.junit.Test;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotatorException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveAnnotationClientTest {
+
+    @Test
+    public void testExecute() throws Exception {
+        AdaptiveAnnotationClient client = new AdaptiveAnnotationClient(2, 4, 10, 100, 10000, 3, 1);
+        List<Integer> elements = range(250);
+        List<Integer> batchSizes = new ArrayList<>();
+
+        List<Integer> results = client.execute(elements, batch -> {
+            batchSizes.add(batch.size());
+            return batch.stream().map(i -> i * 2).collect(Collectors.toList());
+        });
+
+        assertEquals(elements.stream().map(i -> i * 2).collect(Collectors.toList()), results);
+        assertEquals(3, batchSizes.size());
+        assertEquals(3L, client.getMetrics().getLong("requests"));
+        assertEquals(3, client.getConcurrency());
+    }
+
+    @Test
+    public void testRetrySplit() throws Exception {
+        AdaptiveAnnotationClient client = new AdaptiveAnnotationClient(2, 4, 10, 100, 10000, 3, 1);
+        List<Integer> elements = range(100);
+        List<Integer> batchSizes = new ArrayList<>();
+
+        List<Integer> results = client.execute(elements, batch -> {
+            batchSizes.add(batch.size());
+            if (batch.size() > 25) {
+                throw new IOException("Too large");
+            }
+            return batch;
+        });
+
+        assertEquals(elements, results);
+        // 100 -> 50 + 50 -> 25 + 25 + 25 + 25
+        assertEquals(7, batchSizes.size());
+        assertEquals(3L, client.getMetrics().getLong("errors"));
+        assertEquals(3L, client.getMetrics().getLong("retries"));
+        assertEquals(2, client.getConcurrency());
+        assertTrue(client.getBatchSize() < 100);
+    }
+
+    @Test(expected = VariantAnnotatorException.class)
+    public void testRetryFail() throws Exception {
+        AdaptiveAnnotationClient client = new AdaptiveAnnotationClient(2, 4, 10, 100, 10000, 2, 1);
+        client.execute(range(10), batch -> {
+            throw new IOException("Unavailable");
+        });
+    }
+
+    @Test
+    public void testBuildMaxConcurrencyLimitedByNumThreads() {
+        AdaptiveAnnotationClient client = AdaptiveAnnotationClient.build(new ObjectMap()
+                .append(VariantStorageOptions.ANNOTATION_NUM_THREADS.key(), 4)
+                .append(VariantStorageOptions.ANNOTATOR_CELLBASE_MAX_CONCURRENCY.key(), 16));
+        assertEquals(4, client.getMaxConcurrency());
+        assertEquals(4, client.getConcurrency());
+
+        client = AdaptiveAnnotationClient.build(new ObjectMap()
+                .append(VariantStorageOptions.ANNOTATION_NUM_THREADS.key(), 8)
+                .append(VariantStorageOptions.ANNOTATOR_CELLBASE_MAX_CONCURRENCY.key(), 2));
+        assertEquals(2, client.getMaxConcurrency());
+    }
+
+    private static List<Integer> range(int size) {
+        return IntStream.range(0, size).boxed().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,119 @@
+package org.opencb.opencga.storage.core.variant.annotation.annotators;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.metadata.models.ProjectMetadata;
+import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotatorException;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class CachedVariantAnnotatorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private TestVariantAnnotator annotator;
+
+    @Before
+    public void setUp() throws Exception {
+        annotator = new TestVariantAnnotator();
+    }
+
+    @Test
+    public void testAnnotate() throws Exception {
+        annotator.skip.add("1:300:A:T");
+        CachedVariantAnnotator cachedAnnotator = newCachedAnnotator();
+
+        List<Variant> variants = variants("1:100:A:C", "1:200:A:G", "1:300:A:T", "2:2000000:C:T");
+        assertEquals(Arrays.asList("1:100:A:C", "1:200:A:G", "2:2000000:C:T"), toIds(cachedAnnotator.annotate(variants)));
+        assertEquals(4, annotator.annotated.size());
+        assertEquals(0, cachedAnnotator.getHits());
+        assertEquals(4, cachedAnnotator.getMisses());
+
+        annotator.annotated.clear();
+        variants = variants("1:50:A:C", "1:100:A:C", "1:300:A:T", "2:2000000:C:T");
+        assertEquals(Arrays.asList("1:50:A:C", "1:100:A:C", "2:2000000:C:T"), toIds(cachedAnnotator.annotate(variants)));
+        // Skipped variants are not cached
+        assertEquals(Arrays.asList("1:50:A:C", "1:300:A:T"), annotator.annotated);
+        assertEquals(2, cachedAnnotator.getHits());
+        assertEquals(6, cachedAnnotator.getMisses());
+        cachedAnnotator.getCache().close();
+
+        // Reopen the cache from disk
+        annotator.annotated.clear();
+        cachedAnnotator = newCachedAnnotator();
+        variants = variants("1:50:A:C", "1:100:A:C", "1:200:A:G", "2:2000000:C:T");
+        assertEquals(Arrays.asList("1:50:A:C", "1:100:A:C", "1:200:A:G", "2:2000000:C:T"), toIds(cachedAnnotator.annotate(variants)));
+        assertEquals(Collections.emptyList(), annotator.annotated);
+        assertEquals(1.0, cachedAnnotator.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testShardId() {
+        assertEquals("1_0", FileVariantAnnotationCache.getShardId("1:100:A:C"));
+        assertEquals("1_2", FileVariantAnnotationCache.getShardId("1:2000000:A:C"));
+        assertEquals("HLA-A_01_0", FileVariantAnnotationCache.getShardId("HLA-A*01:100:A:C"));
+    }
+
+    private CachedVariantAnnotator newCachedAnnotator() throws IOException, VariantAnnotatorException {
+        FileVariantAnnotationCache cache = new FileVariantAnnotationCache(temporaryFolder.getRoot().toPath().resolve("cache"), 1);
+        return new CachedVariantAnnotator(null, null, new ObjectMap(), annotator, cache);
+    }
+
+    private static List<Variant> variants(String... variants) {
+        return Arrays.stream(variants).map(Variant::new).collect(Collectors.toList());
+    }
+
+    private static List<String> toIds(List<VariantAnnotation> annotations) {
+        return annotations.stream().map(VariantAnnotation::getId).collect(Collectors.toList());
+    }
+
+    public static class TestVariantAnnotator extends VariantAnnotator {
+
+        private final Set<String> skip = new HashSet<>();
+        private final List<String> annotated = new ArrayList<>();
+
+        public TestVariantAnnotator() throws VariantAnnotatorException {
+            super(null, null, null);
+        }
+
+        @Override
+        public List<VariantAnnotation> annotate(List<Variant> variants) {
+            List<VariantAnnotation> annotations = new ArrayList<>(variants.size());
+            for (Variant variant : variants) {
+                annotated.add(variant.toString());
+                if (skip.contains(variant.toString())) {
+                    continue;
+                }
+                VariantAnnotation annotation = new VariantAnnotation();
+                annotation.setId(variant.toString());
+                annotation.setChromosome(variant.getChromosome());
+                annotation.setStart(variant.getStart());
+                annotation.setEnd(variant.getEnd());
+                annotation.setReference(variant.getReference());
+                annotation.setAlternate(variant.getAlternate());
+                annotations.add(annotation);
+            }
+            return annotations;
+        }
+
+        @Override
+        public ProjectMetadata.VariantAnnotatorProgram getVariantAnnotatorProgram() {
+            return new ProjectMetadata.VariantAnnotatorProgram("test", "1.0", "");
+        }
+
+        @Override
+        public List<ObjectMap> getVariantAnnotatorSourceVersion() {
+            return Collections.emptyList();
+        }
+    }
+}
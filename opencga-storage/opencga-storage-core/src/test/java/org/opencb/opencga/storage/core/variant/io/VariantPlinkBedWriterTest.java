@@ -0,0 +1,75 @@
+package org.opencb.opencga.storage.core.variant.io;
+
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.opencb.opencga.storage.core.variant.io.VariantPlinkBedWriter.*;
+
+public class VariantPlinkBedWriterTest {
+
+    @Test
+    public void testWrite() {
+        ByteArrayOutputStream bed = new ByteArrayOutputStream();
+        ByteArrayOutputStream bim = new ByteArrayOutputStream();
+        VariantPlinkBedWriter writer = new VariantPlinkBedWriter(bed, bim);
+
+        writer.open();
+        writer.pre();
+        writer.write(Arrays.asList(
+                Variant.newBuilder("1:100:A:C")
+                        .setStudyId("s1")
+                        .setSampleDataKeys("GT")
+                        .addSample("S1", "0/0")
+                        .addSample("S2", "0/1")
+                        .addSample("S3", "1/1")
+                        .addSample("S4", "./.")
+                        .addSample("S5", "1|0")
+                        .build(),
+                Variant.newBuilder("2:200:-:T")
+                        .setStudyId("s1")
+                        .setSampleDataKeys("GT")
+                        .addSample("S1", "?/?")
+                        .addSample("S2", "1/2")
+                        .addSample("S3", "1")
+                        .addSample("S4", "0")
+                        .addSample("S5", "1/1")
+                        .build()));
+        writer.post();
+        writer.close();
+
+        assertEquals(2, writer.getWrittenVariants());
+        assertArrayEquals(new byte[]{
+                0x6c, 0x1b, 0x01,
+                // S4, S3, S2, S1  |  S5
+                (byte) 0b01_00_10_11, 0b10,
+                (byte) 0b11_00_01_11, 0b00,
+        }, bed.toByteArray());
+        assertEquals("1\t1:100:A:C\t0\t100\tC\tA\n"
+                + "2\t2:200:-:T\t0\t200\tT\t-\n", bim.toString());
+    }
+
+    @Test
+    public void testParseGenotypeCode() {
+        assertEquals(HOM_ALLELE_2, parseGenotypeCode("0/0"));
+        assertEquals(HOM_ALLELE_2, parseGenotypeCode("0|0"));
+        assertEquals(HETEROZYGOUS, parseGenotypeCode("0/1"));
+        assertEquals(HETEROZYGOUS, parseGenotypeCode("1|0"));
+        assertEquals(HOM_ALLELE_1, parseGenotypeCode("1/1"));
+        assertEquals(MISSING, parseGenotypeCode("./."));
+        assertEquals(MISSING, parseGenotypeCode("0/2"));
+        assertEquals(HOM_ALLELE_2, parseGenotypeCode("?/?"));
+    }
+
+    @Test
+    public void testBytesPerVariant() {
+        assertEquals(0, getBytesPerVariant(0));
+        assertEquals(1, getBytesPerVariant(1));
+        assertEquals(1, getBytesPerVariant(4));
+        assertEquals(2, getBytesPerVariant(5));
+    }
+}
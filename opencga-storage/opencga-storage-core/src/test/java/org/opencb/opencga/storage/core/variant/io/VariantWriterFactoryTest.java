@@ -70,6 +70,22 @@ public class VariantWriterFactoryTest {
         VariantWriterFactory.checkOutput("path/", JSON_GZ);
     }
 
+    @Test
+    public void checkBadPlinkBedOutputTest() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+        VariantWriterFactory.checkOutput("myFile.vcf", VariantWriterFactory.VariantOutputFormat.PLINK_BED);
+    }
+
+    @Test
+    public void replaceExtensionTest() throws Exception {
+        assertEquals("/data/my.bed.files/out.bim", VariantExporter.replaceExtension("/data/my.bed.files/out.bed", ".bed", ".bim"));
+        assertEquals("out.bed.fam", VariantExporter.replaceExtension("out.bed.bed", ".bed", ".fam"));
+        assertEquals("/data/out.tped/out.tfam", VariantExporter.replaceExtension("/data/out.tped/out.tped", ".tped", ".tfam"));
+
+        thrown.expect(IllegalArgumentException.class);
+        VariantExporter.replaceExtension("/data/out.bed.gz", ".bed", ".bim");
+    }
+
     @Test
     public void testContigLengthNull() throws IOException, StorageEngineException {
         DummyVariantDBAdaptor dbAdaptor = new DummyVariantDBAdaptor("opencga");
@@ -4,6 +4,13 @@ import htsjdk.variant.vcf.VCFHeader;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.params.UpdateParams;
+import org.apache.solr.common.util.NamedList;
 import org.junit.Rule;
 import org.junit.Test;
 import org.opencb.biodata.models.variant.Variant;
@@ -12,24 +19,34 @@ import org.opencb.biodata.models.variant.avro.Score;
 import org.opencb.biodata.models.variant.avro.VariantAnnotation;
 import org.opencb.biodata.tools.variant.VariantVcfHtsjdkReader;
 import org.opencb.cellbase.client.rest.CellBaseClient;
+import org.opencb.commons.ProgressLogger;
 import org.opencb.commons.datastore.core.*;
 import org.opencb.commons.datastore.solr.FacetQueryParser;
 import org.opencb.commons.utils.ListUtils;
 import org.opencb.opencga.core.common.JacksonUtils;
 import org.opencb.opencga.core.response.VariantQueryResult;
+import org.opencb.opencga.storage.core.exceptions.VariantSearchException;
 import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
 import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
 import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.opencb.opencga.storage.core.variant.dummy.DummyVariantStorageTest;
+import org.opencb.opencga.storage.core.variant.search.solr.SolrVariantIdIterator;
+import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchLoadListener;
+import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchLoadResult;
 import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchManager;
 import org.opencb.opencga.storage.core.variant.solr.VariantSolrExternalResource;
 
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class VariantSearchTest extends VariantStorageBaseTest implements DummyVariantStorageTest {
@@ -244,6 +261,148 @@ public class VariantSearchTest extends VariantStorageBaseTest implements DummyVa
         //        System.out.println(facetQueryResult.toString());
     }
 
+    @Test
+    public void testVariantIdIterator() throws Exception {
+        int limit = 500;
+
+        solr.configure(variantStorageEngine);
+        VariantSearchManager variantSearchManager = variantStorageEngine.getVariantSearchManager();
+
+        List<Variant> annotatedVariants = annotatedVariants(getVariants(limit));
+        metadataManager.createStudy("s1");
+
+        String collection = solr.coreName;
+        variantSearchManager.create(collection);
+        variantSearchManager.insert(collection, annotatedVariants);
+
+        List<String> expected = annotatedVariants.stream().map(Variant::toString).distinct().sorted().collect(Collectors.toList());
+
+        // Single request
+        SolrVariantIdIterator iterator = variantSearchManager.variantIdIterator(collection, new Query(), new QueryOptions());
+        List<String> ids = new ArrayList<>();
+        iterator.forEachRemaining(ids::add);
+        assertEquals(expected.size(), iterator.getNumFound());
+        assertEquals(new HashSet<>(expected), new HashSet<>(ids));
+
+        // Paginated with cursorMark, with skip and limit
+        iterator = new SolrVariantIdIterator(variantSearchManager.getSolrClient(), collection,
+                new SolrQuery("*:*").setStart(150).setRows(220), 100);
+        ids = new ArrayList<>();
+        iterator.forEachRemaining(ids::add);
+        assertEquals(expected.size(), iterator.getNumFound());
+        assertEquals(expected.subList(150, 370), ids);
+    }
+
+    @Test
+    public void testLoadRetry() throws Exception {
+        int limit = 500;
+
+        solr.configure(variantStorageEngine);
+        VariantSearchManager variantSearchManager = variantStorageEngine.getVariantSearchManager();
+
+        List<Variant> annotatedVariants = annotatedVariants(getVariants(limit));
+        metadataManager.createStudy("s1");
+
+        String collection = solr.coreName;
+        variantSearchManager.create(collection);
+
+        // First two add requests fail
+        FailingSolrClient solrClient = new FailingSolrClient(solr.getSolrClient(), 2);
+        variantSearchManager.setSolrClient(solrClient);
+        // Long commitWithin, so only the final hard commit can make the documents visible
+        variantSearchManager.setInsertBatchSize(limit)
+                .setInsertThreads(1)
+                .setInsertMaxRetries(3)
+                .setInsertCommitWithin(600000);
+
+        VariantSearchLoadResult result = variantSearchManager.load(collection, VariantDBIterator.wrapper(annotatedVariants.iterator()),
+                new ProgressLogger("Variants loaded:"), VariantSearchLoadListener.empty());
+
+        // One batch, retried twice
+        assertEquals(3, solrClient.addRequests.get());
+        assertEquals(annotatedVariants.size(), result.getNumLoadedVariants());
+        for (Integer commitWithin : solrClient.commitWithin) {
+            assertEquals(600000, commitWithin.intValue());
+        }
+        assertTrue(solrClient.commits.get() > 0);
+
+        // Searchable once load returns
+        List<String> expected = annotatedVariants.stream().map(Variant::toString).distinct().sorted().collect(Collectors.toList());
+        SolrVariantIdIterator iterator = variantSearchManager.variantIdIterator(collection, new Query(), new QueryOptions());
+        List<String> ids = new ArrayList<>();
+        iterator.forEachRemaining(ids::add);
+        assertEquals(expected.size(), iterator.getNumFound());
+        assertEquals(new HashSet<>(expected), new HashSet<>(ids));
+    }
+
+    @Test
+    public void testLoadRetryGiveUp() throws Exception {
+        int limit = 100;
+
+        solr.configure(variantStorageEngine);
+        VariantSearchManager variantSearchManager = variantStorageEngine.getVariantSearchManager();
+
+        List<Variant> annotatedVariants = annotatedVariants(getVariants(limit));
+        metadataManager.createStudy("s1");
+
+        String collection = solr.coreName;
+        variantSearchManager.create(collection);
+
+        // All add requests fail
+        FailingSolrClient solrClient = new FailingSolrClient(solr.getSolrClient(), Integer.MAX_VALUE);
+        variantSearchManager.setSolrClient(solrClient);
+        variantSearchManager.setInsertBatchSize(limit)
+                .setInsertThreads(1)
+                .setInsertMaxRetries(2);
+
+        try {
+            variantSearchManager.load(collection, VariantDBIterator.wrapper(annotatedVariants.iterator()),
+                    new ProgressLogger("Variants loaded:"), VariantSearchLoadListener.empty());
+            fail("Expected VariantSearchException");
+        } catch (VariantSearchException e) {
+            // First attempt plus two retries
+            assertEquals(3, solrClient.addRequests.get());
+            assertEquals(0, solrClient.commits.get());
+        }
+    }
+
+    /**
+     * SolrClient failing the first add requests.
+     */
+    private static class FailingSolrClient extends SolrClient {
+        private final SolrClient solrClient;
+        private final AtomicInteger failures;
+        private final AtomicInteger addRequests = new AtomicInteger();
+        private final AtomicInteger commits = new AtomicInteger();
+        private final List<Integer> commitWithin = new CopyOnWriteArrayList<>();
+
+        FailingSolrClient(SolrClient solrClient, int failures) {
+            this.solrClient = solrClient;
+            this.failures = new AtomicInteger(failures);
+        }
+
+        @Override
+        public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException, IOException {
+            if (request instanceof UpdateRequest) {
+                UpdateRequest updateRequest = (UpdateRequest) request;
+                if (CollectionUtils.isNotEmpty(updateRequest.getDocuments())) {
+                    addRequests.incrementAndGet();
+                    commitWithin.add(updateRequest.getCommitWithin());
+                    if (failures.getAndDecrement() > 0) {
+                        throw new IOException("Simulated error adding documents");
+                    }
+                } else if (updateRequest.getParams() != null && updateRequest.getParams().getBool(UpdateParams.COMMIT, false)) {
+                    commits.incrementAndGet();
+                }
+            }
+            return solrClient.request(request, collection);
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
     public void regex() throws Exception {
         String facet = "genes[G1,G2]>>type[INDEL,SNV];aggr(genes);biotypes";
         Map<String, Set<String>> includeMap = new FacetQueryParser().getIncludingValuesMap(facet);
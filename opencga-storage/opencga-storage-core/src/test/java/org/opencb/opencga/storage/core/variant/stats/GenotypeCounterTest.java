@@ -0,0 +1,50 @@
+package org.opencb.opencga.storage.core.variant.stats;
+
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Genotype;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class GenotypeCounterTest {
+
+    @Test
+    public void testCount() {
+        GenotypeCounter counter = new GenotypeCounter();
+        int het = counter.getCode("0/1");
+        int homAlt = counter.getCode("1/1");
+        assertEquals(het, counter.getCode("0/1"));
+
+        counter.add(het);
+        counter.add(het);
+        counter.add(homAlt);
+        counter.add("0/0", 0);
+
+        Map<Genotype, Integer> expected = new HashMap<>();
+        expected.put(new Genotype("0/1"), 2);
+        expected.put(new Genotype("1/1"), 1);
+        expected.put(new Genotype("0/0"), 0);
+        assertEquals(expected, counter.toGenotypeCountMap());
+
+        counter.reset();
+        counter.add("1/1", 3);
+        for (int i = 0; i < 20; i++) {
+            counter.add("0/" + (i + 2), 1);
+        }
+        assertEquals(3, counter.getCount(homAlt));
+        assertEquals(0, counter.getCount(het));
+        assertEquals(21, counter.toGenotypeCountMap().size());
+    }
+
+    @Test
+    public void testSampleIndex() {
+        int[] index = GenotypeCounter.buildSampleIndex(Arrays.asList(5, 2, 7));
+        assertArrayEquals(new int[]{-1, -1, 1, -1, -1, 0, -1, 2}, index);
+        assertEquals(GenotypeCounter.NO_CODE, GenotypeCounter.indexOf(index, 10));
+        assertEquals(2, GenotypeCounter.indexOf(index, 7));
+    }
+}
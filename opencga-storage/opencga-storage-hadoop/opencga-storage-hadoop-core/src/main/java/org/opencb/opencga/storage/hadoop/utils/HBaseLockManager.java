@@ -23,14 +23,19 @@ import org.apache.hadoop.hbase.client.*;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.solr.common.StringUtils;
 import org.opencb.opencga.storage.core.metadata.models.Lock;
+import org.opencb.opencga.storage.core.utils.LockBackoff;
+import org.opencb.opencga.storage.core.utils.LockMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -57,6 +62,14 @@ import java.util.concurrent.TimeoutException;
  * Unlock:
  *      HBase.put(row, column, "");
  *
+ * While the lock is taken, waiters poll the lock cell with a jittered exponential backoff.
+ *
+ * Fair locks:
+ *      Waiters append a ticket to a queue cell next to the lock cell, and only try to win the lock when their
+ *      ticket is the first non expired ticket in the queue. Waiters refresh their tickets while waiting.
+ *      Expired tickets and waiters that left the queue are pruned from the queue cell.
+ *      Non fair lockers ignore the queue.
+ *
  * Created on 19/05/16.
  *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
@@ -68,15 +81,32 @@ public class HBaseLockManager {
     private static final String LOCK_PREFIX_SEPARATOR = "-";
     private static final String CURRENT = "CURRENT" + LOCK_PREFIX_SEPARATOR;
     private static final String REFRESH = "REFRESH" + LOCK_PREFIX_SEPARATOR;
-    protected static final ExecutorService THREAD_POOL = Executors.newCachedThreadPool(
+    private static final String TICKET = "TICKET" + LOCK_PREFIX_SEPARATOR;
+    private static final String DONE = "DONE" + LOCK_PREFIX_SEPARATOR;
+    private static final byte[] QUEUE_SUFFIX = Bytes.toBytes("_QUEUE");
+    // Shared scheduler to trigger the refresh of all the locks
+    protected static final ScheduledThreadPoolExecutor THREAD_POOL = new ScheduledThreadPoolExecutor(1,
             new ThreadFactoryBuilder()
                     .setNameFormat("hbase-lock-%d")
+                    .setDaemon(true)
+                    .build());
+
+    // Runs the refresh of the locks. One thread per concurrent refresh, so a slow refresh does not delay the others
+    protected static final ExecutorService REFRESH_THREAD_POOL = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("hbase-lock-refresh-%d")
+                    .setDaemon(true)
                     .build());
 
+    static {
+        THREAD_POOL.setRemoveOnCancelPolicy(true);
+    }
+
     protected final HBaseManager hbaseManager;
     protected final String tableName;
     protected final byte[] columnFamily;
     protected final byte[] defaultRow;
+    private boolean fair;
     protected static Logger logger = LoggerFactory.getLogger(HBaseLockManager.class);
 
     public HBaseLockManager(HBaseManager hbaseManager, String tableName, byte[] columnFamily, byte[] row) {
@@ -84,6 +114,22 @@ public class HBaseLockManager {
         this.tableName = tableName;
         this.columnFamily = columnFamily;
         this.defaultRow = row;
+        this.fair = false;
+    }
+
+    public boolean isFair() {
+        return fair;
+    }
+
+    /**
+     * Serve the waiters of each lock in FIFO order.
+     *
+     * @param fair Use fair locks
+     * @return this
+     */
+    public HBaseLockManager setFair(boolean fair) {
+        this.fair = fair;
+        return this;
     }
 
     /**
@@ -125,50 +171,74 @@ public class HBaseLockManager {
         // Minimum lock duration of 100ms
         lockDuration = Math.max(lockDuration, 100);
 
-        String[] lockValue;
-        String readToken = "";
-        StopWatch stopWatch = new StopWatch();
-        stopWatch.start();
-
-        lockValue = readLockValue(row, column);
-        do {
-            // If the lock is taken, wait
-            while (isLockTaken(lockValue)) {
-                Thread.sleep(100);
-                lockValue = readLockValue(row, column);
-                //Check if the lock is still valid
-                if (stopWatch.getTime() > timeout) {
-                    throw new TimeoutException("Unable to get the lock");
-                }
-            }
-            //Check if the lock is still valid
-            if (stopWatch.getTime() > timeout) {
-                throw new TimeoutException("Unable to get the lock");
+        LockMetrics metrics = LockMetrics.get(getLockName(row, column));
+        LockBackoff backoff = new LockBackoff(LockBackoff.DEFAULT_MIN_SLEEP_MILLIS,
+                Math.max(LockBackoff.DEFAULT_MIN_SLEEP_MILLIS, Math.min(LockBackoff.DEFAULT_MAX_SLEEP_MILLIS, lockDuration / 2)),
+                timeout);
+        byte[] queueColumn = fair ? Bytes.add(column, QUEUE_SUFFIX) : null;
+        // Tickets must survive a full backoff sleep
+        long ticketDuration = lockDuration + 2 * backoff.getMaxSleepMillis();
+
+        try {
+            if (fair) {
+                appendTicket(token, ticketDuration, row, queueColumn);
             }
+            long ticketRefreshTime = System.currentTimeMillis();
+            String readToken = "";
+            String[] lockValue = readLockValue(row, column);
+            do {
+                // If the lock is taken, or is not our turn, wait
+                while (true) {
+                    boolean firstInQueue = !fair || isFirstInQueue(token, readLockValue(row, queueColumn));
+                    if (firstInQueue && !isLockTaken(lockValue)) {
+                        break;
+                    }
+                    if (fair && firstInQueue) {
+                        // Next in line. Poll at the shortest interval
+                        backoff.reset();
+                    }
+                    backoff.sleep();
+                    if (fair && System.currentTimeMillis() - ticketRefreshTime > ticketDuration / 4) {
+                        ticketRefreshTime = System.currentTimeMillis();
+                        appendTicket(token, ticketDuration, row, queueColumn);
+                    }
+                    lockValue = readLockValue(row, column);
+                }
+                //Check if the lock is still valid
+                backoff.checkTimeout();
 
-            // Append token to the lock cell
-            appendToken(token, lockDuration, row, column);
+                // Append token to the lock cell
+                appendToken(token, lockDuration, row, column);
 
-            lockValue = readLockValue(row, column);
+                lockValue = readLockValue(row, column);
 
-            // Get the first non expired lock
-            for (String lock : lockValue) {
-                if (!isLockExpired(lock)) {
-                    readToken = readLockToken(lock);
-                    break;
+                // Get the first non expired lock
+                for (String lock : lockValue) {
+                    if (!isLockExpired(lock)) {
+                        readToken = readLockToken(lock);
+                        break;
+                    }
                 }
-            }
 
-            // You win the lock if the first available lock is yours.
-        } while (!readToken.equals(token));
-
-        logger.debug("Won the lock with token " + token + " (" + token.hashCode() + ") from lock: " + Arrays.toString(lockValue));
-        // Overwrite the lock with the winner current lock. Remove previous expired locks
-        putCurrentLock(token, lockDuration, row, column);
+                // You win the lock if the first available lock is yours.
+            } while (!readToken.equals(token));
+
+            logger.debug("Won the lock with token " + token + " (" + token.hashCode() + ") from lock: " + Arrays.toString(lockValue));
+            // Overwrite the lock with the winner current lock. Remove previous expired locks
+            putCurrentLock(token, lockDuration, row, column);
+        } catch (TimeoutException e) {
+            metrics.timeout(backoff);
+            throw e;
+        } finally {
+            if (fair) {
+                leaveQueue(token, row, queueColumn);
+            }
+        }
+        metrics.acquired(backoff);
 
         long tokenHash = token.hashCode();
         long finalLockDuration = lockDuration;
-        return new Lock(THREAD_POOL, (int) (finalLockDuration / 4), tokenHash) {
+        return new Lock(THREAD_POOL, REFRESH_THREAD_POOL, (int) (finalLockDuration / 4), tokenHash) {
             @Override
             public void unlock0() {
                 try {
@@ -286,6 +356,116 @@ public class HBaseLockManager {
         });
     }
 
+    private void appendQueueEntry(String prefix, String token, long duration, byte[] row, byte[] queueColumn) throws IOException {
+        HBaseManager.act(getConnection(), tableName, table -> {
+            Append a = new Append(row);
+            a.add(getColumnFamily(), queueColumn,
+                    Bytes.toBytes(
+                            prefix
+                            + token
+                            + LOCK_EXPIRING_DATE_SEPARATOR
+                            + (System.currentTimeMillis() + duration)
+                            + LOCK_SEPARATOR));
+            table.append(a);
+        });
+    }
+
+    /**
+     * Append or refresh a ticket in the queue, and prune the queue.
+     */
+    private void appendTicket(String token, long duration, byte[] row, byte[] queueColumn) throws IOException {
+        appendQueueEntry(TICKET, token, duration, row, queueColumn);
+        pruneQueue(row, queueColumn);
+    }
+
+    /**
+     * Remove the ticket from the queue. If there are no more waiters, the queue cell is cleared.
+     */
+    private void leaveQueue(String token, byte[] row, byte[] queueColumn) throws IOException {
+        appendQueueEntry(DONE, token, 0, row, queueColumn);
+        pruneQueue(row, queueColumn);
+    }
+
+    /**
+     * Rewrite the queue cell with one ticket per waiter, removing expired tickets and waiters that left the queue.
+     * The order of the waiters is preserved. The cell is only rewritten if no other waiter modified the queue.
+     */
+    private void pruneQueue(byte[] row, byte[] queueColumn) throws IOException {
+        HBaseManager.act(getConnection(), tableName, table -> {
+            byte[] columnFamily = getColumnFamily();
+            Result result = table.get(new Get(row).addColumn(columnFamily, queueColumn));
+            byte[] value = result.getValue(columnFamily, queueColumn);
+            if (value == null || value.length == 0) {
+                return;
+            }
+            String[] queue = Bytes.toString(value).split(LOCK_SEPARATOR);
+            long now = System.currentTimeMillis();
+            StringBuilder prunedQueue = new StringBuilder();
+            int tickets = 0;
+            for (Map.Entry<String, Long> entry : readQueue(queue).entrySet()) {
+                if (entry.getValue() >= now) {
+                    prunedQueue.append(TICKET).append(entry.getKey())
+                            .append(LOCK_EXPIRING_DATE_SEPARATOR).append(entry.getValue())
+                            .append(LOCK_SEPARATOR);
+                    tickets++;
+                }
+            }
+            if (tickets < queue.length) {
+                Put p = new Put(row);
+                p.addColumn(columnFamily, queueColumn, Bytes.toBytes(prunedQueue.toString()));
+                table.checkAndPut(row, columnFamily, queueColumn, value, p);
+            }
+        });
+    }
+
+    protected static boolean isFirstInQueue(String token, String[] queue) {
+        String first = getFirstInQueue(queue);
+        return first == null || first.equals(token);
+    }
+
+    /**
+     * Get the first waiter in the queue.
+     * Waiters are sorted by their first ticket. Waiters with expired tickets, or that left the queue, are ignored.
+     *
+     * @param queue Queue values
+     * @return First token in the queue, if any
+     */
+    protected static String getFirstInQueue(String[] queue) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Long> entry : readQueue(queue).entrySet()) {
+            if (entry.getValue() >= now) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read the last expiration date of each waiter, in order of arrival. Negative if left the queue.
+     *
+     * @param queue Queue values
+     * @return Waiters of the queue
+     */
+    protected static Map<String, Long> readQueue(String[] queue) {
+        Map<String, Long> waiters = new LinkedHashMap<>();
+        for (String entry : queue) {
+            if (entry.startsWith(TICKET)) {
+                String token = readLockToken(entry);
+                Long expireDate = waiters.get(token);
+                if (expireDate == null || expireDate >= 0) {
+                    waiters.put(token, readExpireDate(entry));
+                }
+            } else if (entry.startsWith(DONE)) {
+                waiters.put(readLockToken(entry), -1L);
+            }
+        }
+        return waiters;
+    }
+
+    private String getLockName(byte[] row, byte[] column) {
+        return tableName + ":" + Bytes.toStringBinary(row) + ":" + Bytes.toStringBinary(column);
+    }
+
     private void putCurrentLock(String token, long lockDuration, byte[] row, byte[] qualifier) throws IOException {
         HBaseManager.act(getConnection(), tableName, table -> {
             Put p = new Put(row);
@@ -91,6 +91,7 @@ import org.opencb.opencga.storage.hadoop.variant.index.SampleIndexVariantQueryEx
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.mr.SampleIndexAnnotationLoaderDriver;
 import org.opencb.opencga.storage.hadoop.variant.index.family.FamilyIndexDriver;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConsolidationDrive;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDriver;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema;
@@ -355,6 +356,21 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine implements
                         options), options,
                 "Annotate sample index for " + (samples.size() < 10 ? "samples " + samples : samples.size() + " samples"));    }
 
+    /**
+     * Change the layout of the annotation index and the sample index.
+     * Existing indexes are not modified. The annotation index and the annotation of the sample index must be rebuilt.
+     *
+     * @param configuration New configuration
+     * @return The stored configuration
+     * @throws StorageEngineException if the configuration can not be stored
+     */
+    public SampleIndexConfiguration configureSampleIndex(SampleIndexConfiguration configuration) throws StorageEngineException {
+        SampleIndexConfiguration stored = SampleIndexDBAdaptor.updateConfiguration(getMetadataManager(), configuration);
+        // Force to read the new configuration
+        sampleIndexDBAdaptor.set(null);
+        return stored;
+    }
+
 
     @Override
     public void familyIndex(String study, List<List<String>> trios, ObjectMap options) throws StorageEngineException {
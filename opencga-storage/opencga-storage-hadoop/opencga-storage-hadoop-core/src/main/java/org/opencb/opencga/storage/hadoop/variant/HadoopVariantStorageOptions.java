@@ -10,6 +10,15 @@ public enum HadoopVariantStorageOptions implements ConfigurationOption {
     HBASE_NAMESPACE("storage.hadoop.hbase.namespace"),
     EXPECTED_FILES_NUMBER("expected_files_number", 5000),
     DBADAPTOR_PHOENIX_FETCH_SIZE("storage.hadoop.phoenix.fetchSize", -1),
+    /**
+     * Number of threads used to scan the variants table splitting the query along the region boundaries.
+     * Use 1 to scan sequentially.
+     */
+    DBADAPTOR_HBASE_PARALLEL_SCAN_THREADS("storage.hadoop.hbase.parallelScan.threads", 1),
+    /**
+     * Number of results buffered per running split in parallel scans.
+     */
+    DBADAPTOR_HBASE_PARALLEL_SCAN_PREFETCH("storage.hadoop.hbase.parallelScan.prefetch", 500),
 
     /////////////////////////
     // MapReduce configuration
@@ -61,6 +70,8 @@ public enum HadoopVariantStorageOptions implements ConfigurationOption {
     // Do not create phoenix indexes. Testing purposes only
     VARIANT_TABLE_INDEXES_SKIP("storage.hadoop.variant.table.indexes.skip"),
     VARIANT_TABLE_LOAD_REFERENCE("storage.hadoop.variant.table.load.reference", false),
+    // Store the full annotation with a binary encoding instead of JSON. See VariantAnnotationBinaryCodec
+    VARIANT_TABLE_ANNOTATION_BINARY("storage.hadoop.variant.table.annotation.binary", false),
 
     /////////////////////////
     // Archive table configuration
@@ -81,6 +92,8 @@ public enum HadoopVariantStorageOptions implements ConfigurationOption {
     /////////////////////////
     SAMPLE_INDEX_TABLE_COMPRESSION("storage.hadoop.sampleIndex.table.compression", Compression.Algorithm.SNAPPY.getName()),
     SAMPLE_INDEX_TABLE_PRESPLIT_SIZE("storage.hadoop.sampleIndex.table.preSplit.samplesPerSplit", 15),
+    // Requires the opencga-storage-hadoop jar to be deployed in the region servers
+    SAMPLE_INDEX_QUERY_SERVER_SIDE_FILTER("storage.hadoop.sampleIndex.query.serverSideFilter", false),
 
     /////////////////////////
     // Annotation index table  configuration
@@ -92,6 +105,8 @@ public enum HadoopVariantStorageOptions implements ConfigurationOption {
     // Other
     /////////////////////////
     INTERMEDIATE_HDFS_DIRECTORY("storage.hadoop.intermediate.hdfs.directory"),
+    // Serve the waiters of the metadata locks in FIFO order
+    METADATA_LOCK_FAIR("storage.hadoop.metadata.lock.fair", false),
     FILL_MISSING_WRITE_MAPPERS_LIMIT_FACTOR("storage.hadoop.fill_missing.write.mappers.limit.factor", 1.5F),
     FILL_MISSING_SIMPLIFIED_MULTIALLELIC_VARIANTS("storage.hadoop.fill_missing.simplifiedMultiAllelicVariants", true),
     STATS_LOCAL("storage.hadoop.stats.local", false);
@@ -51,6 +51,7 @@ import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.PhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantPhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.executors.MRExecutor;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.transform.VariantSliceReader;
 import org.opencb.opencga.storage.hadoop.variant.transform.VariantToVcfSliceConverterTask;
@@ -218,6 +219,13 @@ public abstract class HadoopVariantStoragePipeline extends VariantStoragePipelin
         } else {
             options.put(MERGE_MODE.key(), MergeMode.from(studyMetadata.getAttributes()));
         }
+
+        if (!studyMetadata.getAttributes().containsKey(SampleIndexDBAdaptor.SAMPLE_INDEX_BATCH_SIZE)
+                && getMetadataManager().getIndexedFiles(studyMetadata.getId()).isEmpty()) {
+            // New studies use the configured batch size. Existing studies without batch size keep the default layout.
+            int batchSize = SampleIndexDBAdaptor.readConfiguration(getMetadataManager()).getBatchSize();
+            studyMetadata.getAttributes().put(SampleIndexDBAdaptor.SAMPLE_INDEX_BATCH_SIZE, batchSize);
+        }
     }
 
     @Override
@@ -53,6 +53,7 @@ import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
 import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
 import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageOptions;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.iterators.VariantHBaseResultSetIterator;
+import org.opencb.opencga.storage.hadoop.variant.adaptors.iterators.ParallelScanResultIterator;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.iterators.VariantHBaseScanIterator;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.PhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantPhoenixHelper;
@@ -63,6 +64,7 @@ import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.archive.VariantHadoopArchiveDBIterator;
 import org.opencb.opencga.storage.hadoop.variant.converters.HBaseVariantConverterConfiguration;
 import org.opencb.opencga.storage.hadoop.variant.converters.annotation.HBaseToVariantAnnotationConverter;
+import org.opencb.opencga.storage.hadoop.variant.converters.annotation.VariantAnnotationBinaryCodec;
 import org.opencb.opencga.storage.hadoop.variant.converters.annotation.VariantAnnotationToPhoenixConverter;
 import org.opencb.opencga.storage.hadoop.variant.metadata.HBaseFileMetadataDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.metadata.HBaseVariantStorageMetadataDBAdaptorFactory;
@@ -104,6 +106,8 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
     private final VariantHBaseQueryParser hbaseQueryParser;
     private final HBaseFileMetadataDBAdaptor variantFileMetadataDBAdaptor;
     private final int phoenixFetchSize;
+    private final int parallelScanThreads;
+    private final int parallelScanPrefetch;
     private boolean clientSideSkip;
     private HBaseManager hBaseManager;
 
@@ -134,6 +138,12 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
         phoenixFetchSize = options.getInt(
                 HadoopVariantStorageOptions.DBADAPTOR_PHOENIX_FETCH_SIZE.key(),
                 HadoopVariantStorageOptions.DBADAPTOR_PHOENIX_FETCH_SIZE.defaultValue());
+        parallelScanThreads = options.getInt(
+                HadoopVariantStorageOptions.DBADAPTOR_HBASE_PARALLEL_SCAN_THREADS.key(),
+                HadoopVariantStorageOptions.DBADAPTOR_HBASE_PARALLEL_SCAN_THREADS.defaultValue());
+        parallelScanPrefetch = options.getInt(
+                HadoopVariantStorageOptions.DBADAPTOR_HBASE_PARALLEL_SCAN_PREFETCH.key(),
+                HadoopVariantStorageOptions.DBADAPTOR_HBASE_PARALLEL_SCAN_PREFETCH.defaultValue());
 
         phoenixHelper = new VariantPhoenixHelper(genomeHelper);
 
@@ -315,6 +325,7 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
         }).iterator();
         long ts = getMetadataManager().getProjectMetadata().getAttributes()
                 .getLong(SEARCH_INDEX_LAST_TIMESTAMP.key());
+        VariantAnnotationBinaryCodec.loadWriterSchemas(getMetadataManager().getProjectMetadata());
         HBaseToVariantAnnotationConverter converter = new HBaseToVariantAnnotationConverter(ts)
                 .setAnnotationIds(getMetadataManager().getProjectMetadata().getAnnotation())
                 .setIncludeFields(selectElements.getFields());
@@ -389,16 +400,35 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
         if (hbaseIterator) {
             logger.debug("Creating " + VariantHBaseScanIterator.class.getSimpleName() + " iterator");
             List<Scan> scans = hbaseQueryParser.parseQueryMultiRegion(variantQuery, options);
-            Iterator<ResultScanner> resScans = scans.stream().map(scan -> {
-                try {
-                    return hBaseManager.getScanner(variantTable, scan);
-                } catch (IOException e) {
-                    throw VariantQueryException.internalException(e);
-                }
-            }).iterator();
+            int numThreads = options.getInt(HadoopVariantStorageOptions.DBADAPTOR_HBASE_PARALLEL_SCAN_THREADS.key(), parallelScanThreads);
+
+            VariantHBaseScanIterator iterator;
+            if (numThreads > 1) {
+                // Each split is limited by the PageFilter to "skip + limit" results, which is still an upper bound
+                // for the whole query. Skip and limit are applied over the merged results.
+                // Unsorted merges are only allowed if explicitly requested, and there is no skip.
+                boolean sorted = !options.containsKey(QueryOptions.SORT)
+                        || options.getBoolean(QueryOptions.SORT)
+                        || options.getInt(QueryOptions.SKIP, 0) > 0;
+                List<Scan> splits = ParallelScanResultIterator.splitByRegions(scans, getRegionStartKeys());
+                logger.info("Parallel scan. Split {} scans into {} region splits. Threads = {}, sorted = {}",
+                        scans.size(), splits.size(), numThreads, sorted);
+                ParallelScanResultIterator results = new ParallelScanResultIterator(splits,
+                        scan -> hBaseManager.getScanner(variantTable, scan),
+                        numThreads, options.getInt(HadoopVariantStorageOptions.DBADAPTOR_HBASE_PARALLEL_SCAN_PREFETCH.key(),
+                        parallelScanPrefetch), sorted);
+                iterator = new VariantHBaseScanIterator(results, metadataManager, converterConfiguration, options);
+            } else {
+                Iterator<ResultScanner> resScans = scans.stream().map(scan -> {
+                    try {
+                        return hBaseManager.getScanner(variantTable, scan);
+                    } catch (IOException e) {
+                        throw VariantQueryException.internalException(e);
+                    }
+                }).iterator();
 
-            VariantHBaseScanIterator iterator = new VariantHBaseScanIterator(
-                    resScans, metadataManager, converterConfiguration, options);
+                iterator = new VariantHBaseScanIterator(resScans, metadataManager, converterConfiguration, options);
+            }
 
             // Client side skip!
             int skip = options.getInt(QueryOptions.SKIP, -1);
@@ -460,6 +490,14 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
         }
     }
 
+    private byte[][] getRegionStartKeys() {
+        try (RegionLocator regionLocator = hBaseManager.getConnection().getRegionLocator(TableName.valueOf(variantTable))) {
+            return regionLocator.getStartKeys();
+        } catch (IOException e) {
+            throw VariantQueryException.internalException(e);
+        }
+    }
+
     private VariantDBIterator archiveIterator(ParsedVariantQuery variantQuery, QueryOptions options) {
         Query query = variantQuery.getQuery();
         return archiveIterator(query.getString(STUDY.key()), query.getString(FILE.key()), query, options);
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.adaptors.iterators;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executes a list of non overlapping scans concurrently, merging the results.
+ *
+ * Each scan is executed by one thread from a pool of fixed size, and the results are buffered in a bounded queue, so
+ * the number of results in memory is limited to "numThreads * prefetch".
+ * If sorted, the results are returned in the same order as the given scans. Otherwise, results are returned as soon
+ * as they are available.
+ * If sorted, scanners are only opened for a window of "numThreads" scans starting at the scan being consumed. The next
+ * scan is started when the consumer finishes one, so no scanner stays open, and idle, far ahead of the consumer
+ * until its lease expires.
+ *
+ * Use {@link #splitByRegions} to split the scans along the region boundaries of the table.
+ */
+public class ParallelScanResultIterator implements Iterator<Result>, AutoCloseable {
+
+    /**
+     * Opens the results of one scan. The returned value will be closed if {@link Closeable}.
+     */
+    @FunctionalInterface
+    public interface ScannerFactory {
+        Iterable<Result> open(Scan scan) throws IOException;
+    }
+
+    // Marks the end of the results of one scan
+    private static final Result END = new Result();
+
+    private final Logger logger = LoggerFactory.getLogger(ParallelScanResultIterator.class);
+    private final ExecutorService threadPool;
+    private final List<Scan> scans;
+    private final ScannerFactory scannerFactory;
+    private final List<BlockingQueue<Result>> queues;
+    private final boolean sorted;
+    private final int numScans;
+    private final int prefetch;
+
+    private volatile boolean closed;
+    private volatile Exception error;
+    private int currentQueue;
+    private int finishedScans;
+    private int submittedScans;
+    private Result next;
+
+    public ParallelScanResultIterator(List<Scan> scans, ScannerFactory scannerFactory, int numThreads, int prefetch, boolean sorted) {
+        this.scans = scans;
+        this.scannerFactory = scannerFactory;
+        this.sorted = sorted;
+        this.numScans = scans.size();
+        numThreads = Math.max(1, Math.min(numThreads, scans.size()));
+        this.prefetch = Math.max(1, prefetch);
+        threadPool = Executors.newFixedThreadPool(numThreads, new BasicThreadFactory.Builder()
+                .namingPattern("variant-hbase-parallel-scan-%s")
+                .daemon(true)
+                .build());
+
+        queues = new ArrayList<>(sorted ? scans.size() : 1);
+        if (sorted) {
+            // Start the first window of scans. Next scans are submitted as the consumer finishes the previous ones.
+            for (int i = 0; i < numThreads; i++) {
+                submitNextScan();
+            }
+        } else {
+            queues.add(new ArrayBlockingQueue<>(this.prefetch * numThreads));
+            while (submittedScans < numScans) {
+                submitNextScan();
+            }
+        }
+        if (numScans == 0) {
+            threadPool.shutdown();
+        }
+        logger.info("Parallel scan over {} splits with {} threads", numScans, numThreads);
+    }
+
+    private void submitNextScan() {
+        if (submittedScans == numScans || closed) {
+            return;
+        }
+        Scan scan = scans.get(submittedScans);
+        BlockingQueue<Result> queue;
+        if (sorted) {
+            queue = new ArrayBlockingQueue<>(prefetch);
+            queues.add(queue);
+        } else {
+            queue = queues.get(0);
+        }
+        submittedScans++;
+        threadPool.submit(() -> scan(scan, scannerFactory, queue));
+        if (submittedScans == numScans) {
+            threadPool.shutdown();
+        }
+    }
+
+    /**
+     * Split the scans along the region boundaries. The returned scans preserve the order of the input scans.
+     * Reversed scans, or scans for a single row, are not split.
+     *
+     * @param scans           Scans to split
+     * @param regionStartKeys Sorted start keys of the regions of the table
+     * @return List of scans
+     */
+    public static List<Scan> splitByRegions(List<Scan> scans, byte[][] regionStartKeys) {
+        List<Scan> splits = new ArrayList<>(scans.size());
+        for (Scan scan : scans) {
+            byte[] startRow = scan.getStartRow();
+            byte[] stopRow = scan.getStopRow();
+            boolean unboundedStop = stopRow == null || stopRow.length == 0;
+            if (scan.isReversed() || (!unboundedStop && Bytes.compareTo(startRow, stopRow) >= 0)) {
+                splits.add(scan);
+                continue;
+            }
+            byte[] splitStart = startRow;
+            for (byte[] regionStartKey : regionStartKeys) {
+                if (regionStartKey.length == 0 || Bytes.compareTo(regionStartKey, startRow) <= 0) {
+                    continue;
+                }
+                if (!unboundedStop && Bytes.compareTo(regionStartKey, stopRow) >= 0) {
+                    break;
+                }
+                splits.add(subScan(scan, splitStart, regionStartKey));
+                splitStart = regionStartKey;
+            }
+            if (splitStart == startRow) {
+                splits.add(scan);
+            } else {
+                splits.add(subScan(scan, splitStart, stopRow));
+            }
+        }
+        return splits;
+    }
+
+    private static Scan subScan(Scan scan, byte[] startRow, byte[] stopRow) {
+        try {
+            Scan subScan = new Scan(scan);
+            subScan.setStartRow(startRow);
+            subScan.setStopRow(stopRow);
+            return subScan;
+        } catch (IOException e) {
+            throw VariantQueryException.internalException(e);
+        }
+    }
+
+    private void scan(Scan scan, ScannerFactory scannerFactory, BlockingQueue<Result> queue) {
+        Iterable<Result> scanner = null;
+        try {
+            if (!closed) {
+                scanner = scannerFactory.open(scan);
+                for (Result result : scanner) {
+                    if (closed) {
+                        break;
+                    }
+                    queue.put(result);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            logger.error("Error scanning " + Bytes.toStringBinary(scan.getStartRow()) + " - " + Bytes.toStringBinary(scan.getStopRow()), e);
+            error = e;
+        } finally {
+            if (scanner instanceof Closeable) {
+                try {
+                    ((Closeable) scanner).close();
+                } catch (IOException e) {
+                    logger.warn("Error closing scanner", e);
+                }
+            }
+        }
+        try {
+            queue.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            if (closed || finishedScans == numScans) {
+                return false;
+            }
+            Result result;
+            try {
+                result = queues.get(currentQueue).take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw VariantQueryException.internalException(e);
+            }
+            if (result == END) {
+                finishedScans++;
+                if (error != null) {
+                    throw VariantQueryException.internalException(error);
+                }
+                if (sorted) {
+                    // Release the finished scan, and start the next one
+                    queues.set(currentQueue, null);
+                    currentQueue++;
+                    submitNextScan();
+                }
+            } else {
+                next = result;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Result next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Result result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        // Interrupt the threads blocked on a full queue
+        threadPool.shutdownNow();
+    }
+}
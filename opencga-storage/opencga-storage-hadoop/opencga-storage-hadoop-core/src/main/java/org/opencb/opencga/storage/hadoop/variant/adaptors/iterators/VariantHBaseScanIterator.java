@@ -51,6 +51,7 @@ public class VariantHBaseScanIterator extends VariantDBIterator {
     private long limit = Long.MAX_VALUE;
     private int count = 0;
     private ExecutorService threadPool;
+    private AutoCloseable results;
     private AtomicLong timeConverting = new AtomicLong();
 //    private static final ExecutorService THREAD_POOL = Executors.newCachedThreadPool(new BasicThreadFactory.Builder()
 //            .namingPattern("variant-hbase-scan-convert-%s")
@@ -65,6 +66,13 @@ public class VariantHBaseScanIterator extends VariantDBIterator {
         threadPool = Executors.newFixedThreadPool(POOL_SIZE);
     }
 
+    public VariantHBaseScanIterator(ParallelScanResultIterator results, VariantStorageMetadataManager metadataManager,
+                                    HBaseVariantConverterConfiguration configuration, QueryOptions options) {
+        this(Collections.emptyIterator(), metadataManager, configuration, options);
+        this.resultIterator = results;
+        this.results = results;
+    }
+
     @Override
     public boolean hasNext() {
         if (count >= limit) {
@@ -133,6 +141,9 @@ public class VariantHBaseScanIterator extends VariantDBIterator {
         if (currentResultScanner != null) {
             currentResultScanner.close();
         }
+        if (results != null) {
+            results.close();
+        }
     }
 
     @Override
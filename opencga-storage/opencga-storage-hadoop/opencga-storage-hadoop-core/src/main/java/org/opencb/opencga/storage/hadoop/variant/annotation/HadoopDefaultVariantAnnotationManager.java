@@ -48,10 +48,12 @@ import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor
 import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantPhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.annotation.pending.DiscoverPendingVariantsToAnnotateDriver;
 import org.opencb.opencga.storage.hadoop.variant.annotation.pending.PendingVariantsToAnnotateReader;
+import org.opencb.opencga.storage.hadoop.variant.converters.annotation.VariantAnnotationBinaryCodec;
 import org.opencb.opencga.storage.hadoop.variant.converters.annotation.VariantAnnotationToHBaseConverter;
 import org.opencb.opencga.storage.hadoop.variant.executors.MRExecutor;
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexDBLoader;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexAnnotationLoader;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
 
 import java.io.IOException;
 import java.net.URI;
@@ -181,9 +183,13 @@ public class HadoopDefaultVariantAnnotationManager extends DefaultVariantAnnotat
             int currentAnnotationId = dbAdaptor.getMetadataManager().getProjectMetadata()
                     .getAnnotation().getCurrent().getId();
             VariantAnnotationToHBaseConverter hBaseConverter =
-                    new VariantAnnotationToHBaseConverter(progressLogger, currentAnnotationId);
+                    new VariantAnnotationToHBaseConverter(progressLogger, currentAnnotationId)
+                            .setBinaryEncoding(params.getBoolean(
+                                    HadoopVariantStorageOptions.VARIANT_TABLE_ANNOTATION_BINARY.key(),
+                                    HadoopVariantStorageOptions.VARIANT_TABLE_ANNOTATION_BINARY.defaultValue()));
             AnnotationIndexDBLoader annotationIndexDBLoader = new AnnotationIndexDBLoader(
-                    dbAdaptor.getHBaseManager(), dbAdaptor.getTableNameGenerator().getAnnotationIndexTableName());
+                    dbAdaptor.getHBaseManager(), dbAdaptor.getTableNameGenerator().getAnnotationIndexTableName(),
+                    SampleIndexDBAdaptor.readConfiguration(dbAdaptor.getMetadataManager()));
 
             Task<VariantAnnotation, Put> task = Task.join(hBaseConverter, annotationIndexDBLoader.asTask(true));
 
@@ -201,6 +207,16 @@ public class HadoopDefaultVariantAnnotationManager extends DefaultVariantAnnotat
 
     @Override
     public void loadVariantAnnotation(URI uri, ObjectMap params) throws IOException, StorageEngineException {
+        boolean binaryEncoding = params.getBoolean(HadoopVariantStorageOptions.VARIANT_TABLE_ANNOTATION_BINARY.key(),
+                HadoopVariantStorageOptions.VARIANT_TABLE_ANNOTATION_BINARY.defaultValue());
+        VariantStorageMetadataManager metadataManager = dbAdaptor.getMetadataManager();
+        if (binaryEncoding && !VariantAnnotationBinaryCodec.containsWriterSchema(metadataManager.getProjectMetadata())) {
+            // Keep the schema, to read these annotations after a data model upgrade
+            metadataManager.updateProjectMetadata(pm -> {
+                VariantAnnotationBinaryCodec.addWriterSchema(pm);
+                return pm;
+            });
+        }
         super.loadVariantAnnotation(uri, params);
 
         updateSampleIndexAnnotation(params);
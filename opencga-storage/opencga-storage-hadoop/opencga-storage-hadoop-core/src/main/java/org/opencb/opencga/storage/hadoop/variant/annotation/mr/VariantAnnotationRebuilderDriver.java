@@ -1,6 +1,7 @@
 package org.opencb.opencga.storage.hadoop.variant.annotation.mr;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.Scan;
@@ -14,9 +15,11 @@ import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.hadoop.variant.AbstractVariantsTableDriver;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageOptions;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHBaseQueryParser;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantPhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.converters.annotation.HBaseToVariantAnnotationConverter;
+import org.opencb.opencga.storage.hadoop.variant.converters.annotation.VariantAnnotationBinaryCodec;
 import org.opencb.opencga.storage.hadoop.variant.converters.annotation.VariantAnnotationToHBaseConverter;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantMapReduceUtil;
 import org.slf4j.Logger;
@@ -29,16 +32,24 @@ import java.util.Map;
 
 /**
  * Created by jacobo on 26/03/19.
+ *
+ * Rewrites the annotation columns from the full annotation. The full annotation is written using the encoding
+ * defined by {@link HadoopVariantStorageOptions#VARIANT_TABLE_ANNOTATION_BINARY}, so this job can be used to migrate
+ * the encoding of an existing table, region by region. Use {@link #REENCODE_ONLY} to skip the rows already
+ * stored with the target encoding.
  */
 public class VariantAnnotationRebuilderDriver extends AbstractVariantsTableDriver {
 
+    public static final String REENCODE_ONLY = "reencodeOnly";
     private String region;
+    private boolean reencodeOnly;
     private final Logger logger = LoggerFactory.getLogger(VariantAnnotationRebuilderDriver.class);
 
     @Override
     protected Map<String, String> getParams() {
         Map<String, String> params = new HashMap<>();
         params.put("--" + VariantQueryParam.REGION.key(), "<region>");
+        params.put("--" + REENCODE_ONLY, "<true|false>");
         return params;
     }
 
@@ -47,6 +58,7 @@ public class VariantAnnotationRebuilderDriver extends AbstractVariantsTableDrive
         super.parseAndValidateParameters();
 
         region = getParam(VariantQueryParam.REGION.key(), "");
+        reencodeOnly = Boolean.parseBoolean(getParam(REENCODE_ONLY, "false"));
     }
 
     @Override
@@ -70,7 +82,9 @@ public class VariantAnnotationRebuilderDriver extends AbstractVariantsTableDrive
         scan.addColumn(GenomeHelper.COLUMN_FAMILY_BYTES, VariantPhoenixHelper.VariantColumn.FULL_ANNOTATION.bytes());
 
         VariantMapReduceUtil.configureMapReduceScan(scan, getConf());
+        job.getConfiguration().setBoolean(REENCODE_ONLY, reencodeOnly);
         VariantMapReduceUtil.initTableMapperJob(job, variantTable, variantTable, scan, getMapperClass());
+        VariantMapReduceUtil.setAnnotationWriterSchemas(job, getMetadataManager().getProjectMetadata());
         VariantMapReduceUtil.setNoneReduce(job);
 
         return job;
@@ -87,23 +101,54 @@ public class VariantAnnotationRebuilderDriver extends AbstractVariantsTableDrive
         } catch (ClassNotFoundException | SQLException e) {
             throw new RuntimeException(e);
         }
+
+        boolean binaryEncoding = getConf().getBoolean(
+                HadoopVariantStorageOptions.VARIANT_TABLE_ANNOTATION_BINARY.key(),
+                HadoopVariantStorageOptions.VARIANT_TABLE_ANNOTATION_BINARY.defaultValue());
+        if (binaryEncoding && !VariantAnnotationBinaryCodec.containsWriterSchema(getMetadataManager().getProjectMetadata())) {
+            getMetadataManager().updateProjectMetadata(pm -> {
+                VariantAnnotationBinaryCodec.addWriterSchema(pm);
+                return pm;
+            });
+        }
     }
 
     public static class VariantAnnotationRebuilderMapper extends TableMapper<ImmutableBytesWritable, Put> {
 
         private VariantAnnotationToHBaseConverter converter;
         private HBaseToVariantAnnotationConverter toAnnotationConverter;
+        private boolean binaryEncoding;
+        private boolean reencodeOnly;
 
         @Override
         protected void setup(Context context) throws IOException, InterruptedException {
             super.setup(context);
-            converter = new VariantAnnotationToHBaseConverter(null, -1);
+            binaryEncoding = context.getConfiguration().getBoolean(
+                    HadoopVariantStorageOptions.VARIANT_TABLE_ANNOTATION_BINARY.key(),
+                    HadoopVariantStorageOptions.VARIANT_TABLE_ANNOTATION_BINARY.defaultValue());
+            reencodeOnly = context.getConfiguration().getBoolean(REENCODE_ONLY, false);
+            converter = new VariantAnnotationToHBaseConverter(null, -1).setBinaryEncoding(binaryEncoding);
+            VariantMapReduceUtil.loadAnnotationWriterSchemas(context.getConfiguration());
             toAnnotationConverter = new HBaseToVariantAnnotationConverter(0);
         }
 
         @Override
         protected void map(ImmutableBytesWritable key, Result value, Context context)
                 throws IOException, InterruptedException {
+            if (reencodeOnly) {
+                Cell cell = value.getColumnLatestCell(GenomeHelper.COLUMN_FAMILY_BYTES,
+                        VariantPhoenixHelper.VariantColumn.FULL_ANNOTATION.bytes());
+                if (cell == null || cell.getValueLength() == 0) {
+                    return;
+                }
+                boolean isBinary = VariantAnnotationBinaryCodec.isBinary(cell.getValueArray(), cell.getValueOffset(),
+                        cell.getValueLength());
+                if (isBinary == binaryEncoding) {
+                    context.getCounter(COUNTER_GROUP_NAME, "annotation_encoding_skip").increment(1);
+                    return;
+                }
+                context.getCounter(COUNTER_GROUP_NAME, "annotation_encoding_rewrite").increment(1);
+            }
             VariantAnnotation annotation = toAnnotationConverter.convert(value);
             Put put = converter.convert(annotation);
 
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.converters;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.schema.types.PArrayDataType;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.PhoenixHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decodes the sample data columns, serialized as Phoenix VARCHAR arrays, without building an intermediate
+ * {@link org.apache.phoenix.schema.types.PhoenixArray}.
+ *
+ * Elements are read in place from the cell value. The first element, the genotype, is resolved through a dictionary
+ * shared by all the decoders of the same study, so the most common genotypes are not decoded again for every sample
+ * and every variant.
+ *
+ * This class is not thread safe. The dictionary can be shared between threads.
+ */
+public class SampleDataDecoder {
+
+    public static final int MAX_DICTIONARY_SIZE = 1000;
+    private static final int GT_IDX = 0;
+
+    private final ConcurrentMap<ImmutableBytesWritable, String> dictionary;
+    private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+
+    public SampleDataDecoder() {
+        this(newDictionary());
+    }
+
+    public SampleDataDecoder(ConcurrentMap<ImmutableBytesWritable, String> dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public static ConcurrentMap<ImmutableBytesWritable, String> newDictionary() {
+        return new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Decode a Phoenix VARCHAR array.
+     *
+     * @param array  Bytes array
+     * @param offset Offset of the serialized Phoenix array
+     * @param length Length of the serialized Phoenix array
+     * @return Modifiable list with the values. Empty elements are returned as null.
+     */
+    public List<String> decode(byte[] array, int offset, int length) {
+        ptr.set(array, offset, length);
+        int size = PArrayDataType.getArrayLength(ptr, PVarchar.INSTANCE, null);
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ptr.set(array, offset, length);
+            PhoenixHelper.positionAtArrayElement(ptr, i, PVarchar.INSTANCE, null);
+            if (ptr.getLength() == 0) {
+                values.add(null);
+            } else if (i == GT_IDX) {
+                values.add(getGenotype(ptr));
+            } else {
+                values.add(Bytes.toString(ptr.get(), ptr.getOffset(), ptr.getLength()));
+            }
+        }
+        return values;
+    }
+
+    private String getGenotype(ImmutableBytesWritable ptr) {
+        // ImmutableBytesWritable equals and hashCode only look at the referenced bytes
+        String gt = dictionary.get(ptr);
+        if (gt == null) {
+            gt = Bytes.toString(ptr.get(), ptr.getOffset(), ptr.getLength());
+            if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+                dictionary.putIfAbsent(new ImmutableBytesWritable(ptr.copyBytes()), gt);
+            }
+        }
+        return gt;
+    }
+}
@@ -341,6 +341,16 @@ public class VariantRow {
 
         List<String> getMutableSampleData();
 
+        /**
+         * Get a modifiable copy of the sample data, using the given decoder.
+         *
+         * @param decoder Sample data decoder
+         * @return Modifiable list
+         */
+        default List<String> getMutableSampleData(SampleDataDecoder decoder) {
+            return getMutableSampleData();
+        }
+
         default String getGT() {
             return getSampleData(0);
         }
@@ -475,6 +485,11 @@ public class VariantRow {
 //            return AbstractPhoenixConverter.toList(array);
         }
 
+        @Override
+        public List<String> getMutableSampleData(SampleDataDecoder decoder) {
+            return decoder.decode(valueArray, valueOffset, valueLength);
+        }
+
         @Override
         public String getSampleData(int idx) {
             return super.getString(idx);
@@ -75,6 +75,8 @@ public class HBaseToVariantAnnotationConverter extends AbstractPhoenixConverter
     private String defaultAnnotationId = null;
     private Map<Integer, String> annotationIds;
     private boolean includeIndexStatus;
+    private final VariantAnnotationBinaryCodec binaryCodec = new VariantAnnotationBinaryCodec();
+    private Set<String> excludedAnnotationFieldsSet = null;
 
     public HBaseToVariantAnnotationConverter() {
         this(-1);
@@ -128,6 +130,7 @@ public class HBaseToVariantAnnotationConverter extends AbstractPhoenixConverter
             }
         }
         String[] excludedAnnotationFields = list.toArray(new String[list.size()]);
+        excludedAnnotationFieldsSet = list.isEmpty() ? null : new HashSet<>(list);
         objectMapper.setAnnotationIntrospector(
                 new JacksonAnnotationIntrospector() {
 
@@ -294,7 +297,10 @@ public class HBaseToVariantAnnotationConverter extends AbstractPhoenixConverter
     public VariantAnnotation convert(byte[] valueArray, int valueOffset, int valueLength) {
         VariantAnnotation variantAnnotation;
         try {
-            if (valueArray[valueOffset] == '{') {
+            if (VariantAnnotationBinaryCodec.isBinary(valueArray, valueOffset, valueLength)) {
+                // Binary encoded. Only decode the included fields
+                variantAnnotation = binaryCodec.decode(valueArray, valueOffset, valueLength, excludedAnnotationFieldsSet);
+            } else if (valueArray[valueOffset] == '{') {
                 // Value looks to be uncompressed. Try to parse. If fails, try to decompress and parse.
                 try {
                     variantAnnotation = objectMapper.readValue(valueArray, valueOffset, valueLength,
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.converters.annotation;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.opencga.storage.core.metadata.models.ProjectMetadata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary encoding of the {@link VariantAnnotation} stored in the variants table.
+ *
+ * Each top level field of the annotation is encoded independently with Avro binary, so the decoder can skip the
+ * fields not included in the query projection without parsing them.
+ *
+ * <pre>
+ * [MAGIC][VERSION][FLAGS][SCHEMA_FINGERPRINT (8 bytes)][PAYLOAD]
+ * PAYLOAD := ([FIELD_POS (1 byte)][LENGTH (4 bytes)][AVRO_BINARY_VALUE])*
+ * </pre>
+ *
+ * The payload is deflate-compressed if the flag {@link #FLAG_DEFLATE} is set.
+ * The MAGIC byte can not be confused with a JSON encoded annotation, starting with '{', nor with a compressed
+ * JSON annotation, starting with the zlib header.
+ *
+ * Values are encoded with the schema of the VariantAnnotation model, identified by its fingerprint. The schema of
+ * each model version used to write is stored in the {@link ProjectMetadata} (see {@link #addWriterSchema}), so
+ * annotations written with a previous version are decoded with the Avro schema resolution, once the stored schemas are
+ * loaded with {@link #loadWriterSchemas}. Fields removed from the model are skipped, and new fields are left empty.
+ *
+ * This class is thread safe. Encoders, decoders and buffers are local to each call, so a single instance can be
+ * shared by the converters used from parallel scan threads.
+ */
+public class VariantAnnotationBinaryCodec {
+
+    public static final byte MAGIC = 0;
+    public static final byte VERSION = 1;
+    public static final byte FLAG_DEFLATE = 1;
+    private static final int HEADER_SIZE = 3 + Long.BYTES;
+    private static final int FIELD_HEADER_SIZE = 1 + Integer.BYTES;
+
+    /**
+     * ProjectMetadata attribute with the schemas used to write binary annotations, by fingerprint.
+     */
+    public static final String WRITER_SCHEMAS = "annotation.binary.writerSchemas";
+
+    private static final Schema SCHEMA = VariantAnnotation.getClassSchema();
+    private static final long SCHEMA_FINGERPRINT = SchemaNormalization.parsingFingerprint64(SCHEMA);
+    private static final Map<Long, Schema> KNOWN_WRITER_SCHEMAS = new ConcurrentHashMap<>();
+
+    private final int compressThreshold;
+    private final SpecificDatumWriter<Object>[] writers;
+    private final FieldReaders readers;
+    private final Map<Long, FieldReaders> resolvingReaders = new ConcurrentHashMap<>();
+
+    public VariantAnnotationBinaryCodec() {
+        this(VariantAnnotationToPhoenixConverter.COMPRESS_THRESHOLD);
+    }
+
+    @SuppressWarnings("unchecked")
+    public VariantAnnotationBinaryCodec(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+        List<Schema.Field> fields = SCHEMA.getFields();
+        if (fields.size() > 0xFF) {
+            throw new IllegalStateException("Unsupported number of fields in " + SCHEMA.getFullName() + " : " + fields.size());
+        }
+        writers = new SpecificDatumWriter[fields.size()];
+        for (Schema.Field field : fields) {
+            writers[field.pos()] = new SpecificDatumWriter<>(field.schema());
+        }
+        readers = new FieldReaders(SCHEMA);
+    }
+
+    /**
+     * Add the schema of the current VariantAnnotation model to the writer schemas stored in the project metadata.
+     * Must be called before writing binary annotations.
+     *
+     * @param projectMetadata Project metadata
+     * @return false if the schema was already stored
+     */
+    public static boolean addWriterSchema(ProjectMetadata projectMetadata) {
+        Map<String, Object> schemas = new HashMap<>(getWriterSchemas(projectMetadata));
+        if (schemas.put(String.valueOf(SCHEMA_FINGERPRINT), SCHEMA.toString()) != null) {
+            return false;
+        }
+        projectMetadata.getAttributes().put(WRITER_SCHEMAS, schemas);
+        return true;
+    }
+
+    /**
+     * Check if the schema of the current VariantAnnotation model is stored in the project metadata.
+     *
+     * @param projectMetadata Project metadata
+     * @return if the schema is stored
+     */
+    public static boolean containsWriterSchema(ProjectMetadata projectMetadata) {
+        return getWriterSchemas(projectMetadata).containsKey(String.valueOf(SCHEMA_FINGERPRINT));
+    }
+
+    /**
+     * Load the writer schemas stored in the project metadata, to decode annotations written with any of them.
+     *
+     * @param projectMetadata Project metadata
+     */
+    public static void loadWriterSchemas(ProjectMetadata projectMetadata) {
+        loadWriterSchemas(getWriterSchemas(projectMetadata));
+    }
+
+    /**
+     * Load writer schemas, to decode annotations written with any of them.
+     *
+     * @param schemas Writer schemas, as stored in the project metadata
+     */
+    public static void loadWriterSchemas(Map<String, ?> schemas) {
+        for (Object value : schemas.values()) {
+            Schema schema = new Schema.Parser().parse(value.toString());
+            KNOWN_WRITER_SCHEMAS.putIfAbsent(SchemaNormalization.parsingFingerprint64(schema), schema);
+        }
+    }
+
+    /**
+     * Get the writer schemas stored in the project metadata.
+     *
+     * @param projectMetadata Project metadata
+     * @return Writer schemas, by fingerprint
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> getWriterSchemas(ProjectMetadata projectMetadata) {
+        Object schemas = projectMetadata.getAttributes().get(WRITER_SCHEMAS);
+        return schemas instanceof Map ? (Map<String, Object>) schemas : Collections.emptyMap();
+    }
+
+    public static boolean isBinary(byte[] bytes, int offset, int length) {
+        return length > 0 && bytes[offset] == MAGIC;
+    }
+
+    public byte[] encode(VariantAnnotation annotation) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(4096);
+            byte[] fieldHeader = new byte[FIELD_HEADER_SIZE];
+            ByteArrayOutputStream fieldBuffer = new ByteArrayOutputStream(1024);
+            BinaryEncoder encoder = null;
+            for (Schema.Field field : SCHEMA.getFields()) {
+                Object value = annotation.get(field.pos());
+                if (value == null) {
+                    continue;
+                }
+                fieldBuffer.reset();
+                encoder = EncoderFactory.get().directBinaryEncoder(fieldBuffer, encoder);
+                writers[field.pos()].write(value, encoder);
+                encoder.flush();
+
+                ByteBuffer.wrap(fieldHeader).put((byte) field.pos()).putInt(fieldBuffer.size());
+                payload.write(fieldHeader);
+                fieldBuffer.writeTo(payload);
+            }
+
+            byte flags = 0;
+            byte[] payloadBytes = payload.toByteArray();
+            if (payloadBytes.length > compressThreshold) {
+                flags |= FLAG_DEFLATE;
+                payloadBytes = deflate(payloadBytes);
+            }
+            return ByteBuffer.allocate(HEADER_SIZE + payloadBytes.length)
+                    .put(MAGIC)
+                    .put(VERSION)
+                    .put(flags)
+                    .putLong(SCHEMA_FINGERPRINT)
+                    .put(payloadBytes)
+                    .array();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public VariantAnnotation decode(byte[] bytes, int offset, int length) {
+        return decode(bytes, offset, length, null);
+    }
+
+    /**
+     * Decode a binary annotation.
+     *
+     * @param bytes          Encoded annotation
+     * @param offset         Offset
+     * @param length         Length
+     * @param excludedFields Names of the VariantAnnotation fields to skip. Null for none.
+     * @return Decoded annotation, without the excluded fields.
+     */
+    public VariantAnnotation decode(byte[] bytes, int offset, int length, Collection<String> excludedFields) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+        if (length < HEADER_SIZE || buffer.get() != MAGIC) {
+            throw new IllegalArgumentException("Not a binary encoded variant annotation");
+        }
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported binary variant annotation version " + version);
+        }
+        byte flags = buffer.get();
+        long fingerprint = buffer.getLong();
+        FieldReaders fieldReaders = fingerprint == SCHEMA_FINGERPRINT
+                ? readers
+                : resolvingReaders.computeIfAbsent(fingerprint, VariantAnnotationBinaryCodec::newResolvingReaders);
+        if ((flags & FLAG_DEFLATE) != 0) {
+            buffer = ByteBuffer.wrap(inflate(bytes, buffer.position(), buffer.remaining()));
+        }
+
+        VariantAnnotation annotation = new VariantAnnotation();
+        BinaryDecoder decoder = null;
+        try {
+            while (buffer.remaining() >= FIELD_HEADER_SIZE) {
+                int writerPos = buffer.get() & 0xFF;
+                int fieldLength = buffer.getInt();
+                int fieldOffset = buffer.position();
+                buffer.position(fieldOffset + fieldLength);
+                Schema.Field field = fieldReaders.fields[writerPos];
+                if (field == null || excludedFields != null && excludedFields.contains(field.name())) {
+                    continue;
+                }
+                decoder = DecoderFactory.get().binaryDecoder(buffer.array(), buffer.arrayOffset() + fieldOffset, fieldLength, decoder);
+                annotation.put(field.pos(), fieldReaders.readers[writerPos].read(null, decoder));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return annotation;
+    }
+
+    private static FieldReaders newResolvingReaders(long fingerprint) {
+        Schema writerSchema = KNOWN_WRITER_SCHEMAS.get(fingerprint);
+        if (writerSchema == null) {
+            throw new IllegalStateException("Variant annotation encoded with an unknown version of the VariantAnnotation model. "
+                    + "Missing writer schema " + fingerprint + " at the project metadata attribute '" + WRITER_SCHEMAS + "'");
+        }
+        return new FieldReaders(writerSchema);
+    }
+
+    /**
+     * Readers of each field written with the given schema, by field position in the writer schema.
+     * Fields missing in the current model have no reader.
+     */
+    private static final class FieldReaders {
+        private final SpecificDatumReader<Object>[] readers;
+        private final Schema.Field[] fields;
+
+        @SuppressWarnings("unchecked")
+        FieldReaders(Schema writerSchema) {
+            List<Schema.Field> writerFields = writerSchema.getFields();
+            readers = new SpecificDatumReader[writerFields.size()];
+            fields = new Schema.Field[writerFields.size()];
+            for (Schema.Field writerField : writerFields) {
+                Schema.Field field = SCHEMA.getField(writerField.name());
+                if (field != null) {
+                    fields[writerField.pos()] = field;
+                    readers[writerField.pos()] = writerSchema == SCHEMA
+                            ? new SpecificDatumReader<>(field.schema())
+                            : new SpecificDatumReader<>(writerField.schema(), field.schema());
+                }
+            }
+        }
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes, int offset, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, offset, length);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length * 4);
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated binary variant annotation");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
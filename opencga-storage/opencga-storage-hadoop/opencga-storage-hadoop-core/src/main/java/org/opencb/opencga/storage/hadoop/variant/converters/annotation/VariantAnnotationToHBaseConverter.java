@@ -26,6 +26,11 @@ public class VariantAnnotationToHBaseConverter extends AbstractPhoenixConverter
         this.converter = new VariantAnnotationToPhoenixConverter(GenomeHelper.COLUMN_FAMILY_BYTES, annotationId);
     }
 
+    public VariantAnnotationToHBaseConverter setBinaryEncoding(boolean binaryEncoding) {
+        converter.setBinaryEncoding(binaryEncoding);
+        return this;
+    }
+
     @Override
     public Put convert(VariantAnnotation variantAnnotation) {
         Put put = converter.buildPut(variantAnnotation);
@@ -65,6 +65,7 @@ public class VariantAnnotationToPhoenixConverter extends AbstractPhoenixConverte
     private VariantTraitAssociationToEvidenceEntryConverter evidenceEntryConverter;
 
     private int annotationId;
+    private VariantAnnotationBinaryCodec binaryCodec;
 
     @Deprecated
     public VariantAnnotationToPhoenixConverter(byte[] columnFamily) {
@@ -77,6 +78,17 @@ public class VariantAnnotationToPhoenixConverter extends AbstractPhoenixConverte
         this.annotationId = annotationId;
     }
 
+    /**
+     * Write the full annotation with the {@link VariantAnnotationBinaryCodec} instead of JSON.
+     *
+     * @param binaryEncoding Use binary encoding
+     * @return this
+     */
+    public VariantAnnotationToPhoenixConverter setBinaryEncoding(boolean binaryEncoding) {
+        this.binaryCodec = binaryEncoding ? new VariantAnnotationBinaryCodec(COMPRESS_THRESHOLD) : null;
+        return this;
+    }
+
     private final Logger logger = LoggerFactory.getLogger(VariantAnnotationToPhoenixConverter.class);
 
     @Override
@@ -90,15 +102,19 @@ public class VariantAnnotationToPhoenixConverter extends AbstractPhoenixConverte
             variantAnnotation.setTraitAssociation(evidenceEntries);
         }
 
-        String json = variantAnnotation.toString();
-        if (json.length() > COMPRESS_THRESHOLD) {
-            try {
-                map.put(FULL_ANNOTATION, CompressionUtils.compress(Bytes.toBytes(json)));
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
+        if (binaryCodec != null) {
+            map.put(FULL_ANNOTATION, binaryCodec.encode(variantAnnotation));
         } else {
-            map.put(FULL_ANNOTATION, json);
+            String json = variantAnnotation.toString();
+            if (json.length() > COMPRESS_THRESHOLD) {
+                try {
+                    map.put(FULL_ANNOTATION, CompressionUtils.compress(Bytes.toBytes(json)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else {
+                map.put(FULL_ANNOTATION, json);
+            }
         }
         if (annotationId >= 0) {
             map.put(ANNOTATION_ID, annotationId);
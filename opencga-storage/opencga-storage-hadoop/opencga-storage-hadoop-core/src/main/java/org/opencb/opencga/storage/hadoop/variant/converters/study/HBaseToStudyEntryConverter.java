@@ -20,6 +20,7 @@ import htsjdk.variant.vcf.VCFConstants;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.phoenix.schema.types.PhoenixArray;
 import org.opencb.biodata.models.variant.StudyEntry;
 import org.opencb.biodata.models.variant.Variant;
@@ -37,6 +38,7 @@ import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantPhoenix
 import org.opencb.opencga.storage.hadoop.variant.converters.AbstractPhoenixConverter;
 import org.opencb.opencga.storage.hadoop.variant.converters.HBaseToVariantConverter;
 import org.opencb.opencga.storage.hadoop.variant.converters.HBaseVariantConverterConfiguration;
+import org.opencb.opencga.storage.hadoop.variant.converters.SampleDataDecoder;
 import org.opencb.opencga.storage.hadoop.variant.converters.VariantRow;
 import org.opencb.opencga.storage.hadoop.variant.converters.stats.HBaseToVariantStatsConverter;
 import org.opencb.opencga.storage.hadoop.variant.gaps.VariantOverlappingStatus;
@@ -46,6 +48,7 @@ import org.slf4j.LoggerFactory;
 import java.sql.ResultSet;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 import static org.opencb.biodata.models.variant.VariantBuilder.REF_ONLY_ALT;
@@ -82,6 +85,7 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
     private final Map<Integer, Set<Integer>> filesFromReturnedSamples = new ConcurrentHashMap<>();
     private final Map<Integer, List<String>> fixedFormatsMap = new ConcurrentHashMap<>();
     private Map<Integer, List<String>> expectedFormatPerStudy = new ConcurrentHashMap<>();
+    private final Map<Integer, ConcurrentMap<ImmutableBytesWritable, String>> genotypeDictionaries = new ConcurrentHashMap<>();
 
     protected final Logger logger = LoggerFactory.getLogger(HBaseToStudyEntryConverter.class);
     private HBaseVariantConverterConfiguration configuration;
@@ -131,6 +135,8 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
         Map<Integer, List<Pair<String, PhoenixArray>>> filesMap = new HashMap<>();
         Map<Integer, List<VariantStats>> stats = new HashMap<>();
         Map<Integer, List<VariantScore>> scores = new HashMap<>();
+        // Decoders are not thread safe. Use a new one for each row, sharing the genotype dictionary of the study
+        Map<Integer, SampleDataDecoder> decoders = new HashMap<>();
 
         Variant variant = row.walker()
                 .onStudy(studies::add)
@@ -157,7 +163,8 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
                         }
                     }
                     sampleDataMap.computeIfAbsent(sampleColumn.getStudyId(), s -> new ArrayList<>())
-                            .add(Pair.of(sampleColumn.getSampleId(), sampleColumn.getMutableSampleData()));
+                            .add(Pair.of(sampleColumn.getSampleId(), sampleColumn.getMutableSampleData(
+                                    decoders.computeIfAbsent(sampleColumn.getStudyId(), this::newSampleDataDecoder))));
                 })
                 .onFile(fileColumn -> {
                     studies.add(fileColumn.getStudyId());
@@ -775,6 +782,10 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
 
     ////// Caching methods
 
+    private SampleDataDecoder newSampleDataDecoder(int studyId) {
+        return new SampleDataDecoder(genotypeDictionaries.computeIfAbsent(studyId, id -> SampleDataDecoder.newDictionary()));
+    }
+
     /**
      * Creates a SORTED MAP with the required samples position.
      *
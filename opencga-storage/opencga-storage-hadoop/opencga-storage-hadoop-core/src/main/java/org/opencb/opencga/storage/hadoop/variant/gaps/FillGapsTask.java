@@ -21,6 +21,7 @@ import org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
 import org.opencb.opencga.storage.hadoop.variant.converters.study.StudyEntryMultiFileToHBaseConverter;
 import org.opencb.opencga.storage.hadoop.variant.converters.study.StudyEntryToHBaseConverter;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +48,7 @@ public class FillGapsTask {
     private final boolean simplifiedNewMultiAllelicVariants;
     private final GenomeHelper helper;
     private final VariantStorageMetadataManager metadataManager;
+    private final int sampleIndexBatchSize;
 
     private Logger logger = LoggerFactory.getLogger(FillGapsTask.class);
     private boolean quiet = false;
@@ -58,6 +60,7 @@ public class FillGapsTask {
 
         this.helper = helper;
         this.metadataManager = metadataManager;
+        sampleIndexBatchSize = SampleIndexDBAdaptor.getBatchSize(studyMetadata);
         studyConverter = new StudyEntryMultiFileToHBaseConverter(GenomeHelper.COLUMN_FAMILY_BYTES, studyMetadata.getId(), metadataManager,
                 true,
                 null, // Do not update release
@@ -387,7 +390,7 @@ public class FillGapsTask {
 
     private Put buildSampleIndexPut(Variant variant, Put put, Integer sampleId, String gt) {
         Put sampleIndexPut = new Put(
-                SampleIndexSchema.toRowKey(sampleId, variant.getChromosome(), variant.getStart()),
+                SampleIndexSchema.toRowKey(sampleId, variant.getChromosome(), variant.getStart(), sampleIndexBatchSize),
                 put.getTimeStamp());
         sampleIndexPut.addColumn(GenomeHelper.COLUMN_FAMILY_BYTES, SampleIndexSchema.toPendingColumn(variant, gt), null);
         return sampleIndexPut;
@@ -3,7 +3,6 @@ package org.opencb.opencga.storage.hadoop.variant.index;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.opencb.biodata.models.core.Region;
-import org.opencb.biodata.models.variant.avro.ClinicalSignificance;
 import org.opencb.commons.datastore.core.FacetField;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
@@ -14,6 +13,7 @@ import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
 import org.opencb.opencga.storage.core.utils.iterators.CloseableIterator;
 import org.opencb.opencga.storage.core.variant.query.executors.AbstractLocalVariantAggregationExecutor;
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexConverter;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleIndexQuery;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexQueryParser;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleVariantIndexEntry;
@@ -21,7 +21,6 @@ import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleVariantIndex
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
-import java.util.stream.Collectors;
 
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.REGION;
 import static org.opencb.opencga.storage.core.variant.search.solr.SolrQueryParser.CHROM_DENSITY;
@@ -29,6 +28,7 @@ import static org.opencb.opencga.storage.core.variant.search.solr.SolrQueryParse
 public class SampleIndexVariantAggregationExecutor extends AbstractLocalVariantAggregationExecutor {
 
     private final SampleIndexDBAdaptor sampleIndexDBAdaptor;
+    private final AnnotationIndexConverter annotationIndexConverter;
     private VariantStorageMetadataManager metadataManager;
     public static final Set<String> VALID_FACETS = new HashSet<>(Arrays.asList(
             CHROM_DENSITY,
@@ -46,6 +46,7 @@ public class SampleIndexVariantAggregationExecutor extends AbstractLocalVariantA
     public SampleIndexVariantAggregationExecutor(VariantStorageMetadataManager metadataManager, SampleIndexDBAdaptor sampleIndexDBAdaptor) {
         this.metadataManager = metadataManager;
         this.sampleIndexDBAdaptor = sampleIndexDBAdaptor;
+        this.annotationIndexConverter = new AnnotationIndexConverter(sampleIndexDBAdaptor.getConfiguration());
     }
 
     @Override
@@ -59,7 +60,10 @@ public class SampleIndexVariantAggregationExecutor extends AbstractLocalVariantA
                     return false;
                 }
             }
-            return true;
+            // Annotation bits written with an outdated layout would be counted in the wrong categories
+            SampleIndexQuery sampleIndexQuery = sampleIndexDBAdaptor.getSampleIndexQueryParser().parse(new Query(query));
+            return sampleIndexDBAdaptor.isAnnotationIndexUpToDate(sampleIndexQuery.getStudy(),
+                    sampleIndexQuery.getSamplesMap().keySet());
         }
         return false;
     }
@@ -140,30 +144,22 @@ public class SampleIndexVariantAggregationExecutor extends AbstractLocalVariantA
                     thisAccumulator = new CategoricalAccumulator<>(
                             s -> s.getAnnotationIndexEntry() == null
                                     ? Collections.emptyList()
-                                    : AnnotationIndexConverter.getSoNamesFromMask(s.getAnnotationIndexEntry().getCtIndex()),
+                                    : annotationIndexConverter.getConsequenceTypesFromMask(s.getAnnotationIndexEntry().getCtIndex()),
                             "consequenceType");
                     break;
                 case "biotype":
                     thisAccumulator = new CategoricalAccumulator<>(
                             s -> s.getAnnotationIndexEntry() == null
                                     ? Collections.emptyList()
-                                    : AnnotationIndexConverter.getBiotypesFromMask(s.getAnnotationIndexEntry().getBtIndex()),
+                                    : annotationIndexConverter.getBiotypesFromMask(s.getAnnotationIndexEntry().getBtIndex()),
                             "biotype");
                     break;
                 case "clinicalSignificance":
                     thisAccumulator = new CategoricalAccumulator<>(
-                            s -> {
-                                if (s.getAnnotationIndexEntry() == null) {
-                                    return Collections.emptyList();
-                                }
-                                List<ClinicalSignificance> values = AnnotationIndexConverter
-                                        .getClinicalsFromMask(s.getAnnotationIndexEntry().getClinicalIndex());
-                                if (values.isEmpty()) {
-                                    return Collections.emptyList();
-                                } else {
-                                    return values.stream().map(Objects::toString).collect(Collectors.toList());
-                                }
-                            },
+                            s -> s.getAnnotationIndexEntry() == null
+                                    ? Collections.emptyList()
+                                    : annotationIndexConverter
+                                            .getClinicalSignificancesFromMask(s.getAnnotationIndexEntry().getClinicalIndex()),
                             "clinicalSignificance");
                     break;
                 default:
@@ -15,8 +15,8 @@ import org.opencb.opencga.storage.hadoop.variant.index.IndexUtils;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration;
 
 import java.util.*;
+import java.util.function.ObjIntConsumer;
 
-import static org.opencb.biodata.models.variant.StudyEntry.DEFAULT_COHORT;
 import static org.opencb.cellbase.core.variant.annotation.VariantAnnotationUtils.*;
 import static org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantPhoenixKeyFactory.generateVariantRowKey;
 
@@ -113,8 +113,25 @@ public class AnnotationIndexConverter {
         }
     }
 
+    private static final AnnotationIndexConverter DEFAULT = new AnnotationIndexConverter(SampleIndexConfiguration.defaultConfiguration());
+
     private final Map<String, Integer> populations;
-    private final double[] popFreqRanges;
+    private final double[][] popFreqRanges;
+
+    // Compiled annotation index layout
+    private final Map<String, Short> ctMasks = new HashMap<>();
+    private final String[] ctNames = new String[Short.SIZE];
+    private final short impreciseCtMask;
+    private final Map<String, Byte> btMasks = new HashMap<>();
+    private final String[] btNames = new String[Byte.SIZE];
+    private final byte otherBtMask;
+    private final byte impreciseBtMask;
+    private final Map<String, Byte> clinicalMasks = new HashMap<>();
+    private final String[] clinicalNames = new String[Byte.SIZE];
+    private final byte somaticMask;
+    private final byte impreciseClinicalMask;
+    private final Set<String> popFreqAnySet;
+    private final double popFreqAnyThreshold;
 
     @Deprecated
     public AnnotationIndexConverter() {
@@ -123,13 +140,78 @@ public class AnnotationIndexConverter {
 
     public AnnotationIndexConverter(SampleIndexConfiguration configuration) {
         this.populations = new HashMap<>(configuration.getPopulationRanges().size());
+        this.popFreqRanges = new double[configuration.getPopulationRanges().size()][];
         int i = 0;
         for (SampleIndexConfiguration.PopulationFrequencyRange population : configuration.getPopulationRanges()) {
-            if (this.populations.put(population.getStudyAndPopulation(), i++) != null) {
+            if (this.populations.put(population.getStudyAndPopulation(), i) != null) {
                 throw new IllegalArgumentException("Duplicated population '" + population.getStudyAndPopulation() + "' in " + populations);
             }
+            if (population.getThresholds().length >= (1 << POP_FREQ_SIZE)) {
+                throw new IllegalArgumentException("Population '" + population.getStudyAndPopulation() + "' can not have more than "
+                        + ((1 << POP_FREQ_SIZE) - 1) + " thresholds. Found " + Arrays.toString(population.getThresholds()));
+            }
+            popFreqRanges[i] = population.getThresholds();
+            i++;
+        }
+
+        SampleIndexConfiguration.AnnotationIndexConfiguration annotationConfiguration = configuration.getAnnotationIndexConfiguration();
+        impreciseCtMask = (short) compileLayout("consequence type", annotationConfiguration.getConsequenceTypes(), Short.SIZE,
+                ctNames, (value, mask) -> ctMasks.put(value, (short) mask));
+
+        List<List<String>> biotypes = annotationConfiguration.getBiotypes();
+        int impreciseBt = compileLayout("biotype", biotypes, Byte.SIZE, btNames, (value, mask) -> btMasks.put(value, (byte) mask));
+        // The "other" biotype bit is never precise
+        int otherBt = 0;
+        for (int bit = 0; bit < biotypes.size(); bit++) {
+            if (biotypes.get(bit).contains(SampleIndexConfiguration.AnnotationIndexConfiguration.OTHER_NON_PSEUDOGENE_BIOTYPE)) {
+                otherBt |= 1 << bit;
+                btNames[bit] = "other";
+            }
+        }
+        otherBtMask = (byte) otherBt;
+        impreciseBtMask = (byte) (impreciseBt | otherBt);
+
+        impreciseClinicalMask = (byte) compileLayout("clinical significance", annotationConfiguration.getClinicalSignificances(),
+                Byte.SIZE, clinicalNames, (value, mask) -> clinicalMasks.put(value, (byte) mask));
+        somaticMask = clinicalMasks.getOrDefault(SampleIndexConfiguration.AnnotationIndexConfiguration.SOMATIC, (byte) 0);
+
+        popFreqAnySet = new HashSet<>(annotationConfiguration.getPopFreqAnyPopulations());
+        popFreqAnyThreshold = annotationConfiguration.getPopFreqAnyThreshold();
+    }
+
+    /**
+     * Assign one bit to each group of values.
+     *
+     * @param field   Field name, for error messages
+     * @param groups  Values of each bit
+     * @param maxBits Number of bits available for this field
+     * @param names   Name of each bit. "other" if the bit contains more than one value
+     * @param masks   Consumer of each value and its mask
+     * @return Mask with the imprecise bits, i.e. bits shared by more than one value
+     */
+    private static int compileLayout(String field, List<List<String>> groups, int maxBits, String[] names,
+                                     ObjIntConsumer<String> masks) {
+        if (groups.size() > maxBits) {
+            throw new IllegalArgumentException("Unable to index more than " + maxBits + " " + field + " values. Found " + groups);
+        }
+        Set<String> values = new HashSet<>();
+        int impreciseMask = 0;
+        for (int bit = 0; bit < groups.size(); bit++) {
+            List<String> group = groups.get(bit);
+            for (String value : group) {
+                if (!values.add(value)) {
+                    throw new IllegalArgumentException("Duplicated " + field + " '" + value + "' in annotation index configuration");
+                }
+                masks.accept(value, 1 << bit);
+            }
+            if (group.size() == 1) {
+                names[bit] = group.get(0);
+            } else {
+                names[bit] = "other";
+                impreciseMask |= 1 << bit;
+            }
         }
-        popFreqRanges = SampleIndexConfiguration.PopulationFrequencyRange.DEFAULT_THRESHOLDS;
+        return impreciseMask;
     }
 
     public static Pair<Variant, AnnotationIndexEntry> getAnnotationIndexEntryPair(Result result) {
@@ -183,7 +265,7 @@ public class AnnotationIndexConverter {
                 if (BIOTYPE_SET.contains(ct.getBiotype())) {
                     b |= PROTEIN_CODING_MASK;
                 }
-                byte maskFromBiotype = getMaskFromBiotype(ct.getBiotype());
+                byte maskFromBiotype = getBiotypeMask(ct.getBiotype());
                 btIndex |= maskFromBiotype;
 
                 boolean proteinCoding = PROTEIN_CODING.equals(ct.getBiotype());
@@ -193,7 +275,7 @@ public class AnnotationIndexConverter {
                         intergenic = true;
                     }
 
-                    short maskFromSoName = getMaskFromSoName(soName);
+                    short maskFromSoName = getConsequenceTypeMask(soName);
                     if (maskFromSoName != 0) {
                         if (maskFromBiotype != 0) {
                             ctBtcombinations[maskPosition(maskFromSoName)][maskPosition(maskFromBiotype)] = true;
@@ -223,24 +305,23 @@ public class AnnotationIndexConverter {
 
         AnnotationIndexEntry.CtBtCombination ctBtCombination = getCtBtCombination(ctIndex, btIndex, ctBtcombinations);
 
-        // By default, population frequency is 0.
+        // By default, population frequency is 0. Any missing population has frequency 0.
         double minFreq = 0;
         if (variantAnnotation.getPopulationFrequencies() != null) {
-            double gnomadFreq = 0;
-            double kgenomesFreq = 0;
+            int popFreqAnyFound = 0;
+            minFreq = Double.MAX_VALUE;
             for (PopulationFrequency populationFrequency : variantAnnotation.getPopulationFrequencies()) {
                 addPopFreqIndex(popFreqIndex, populationFrequency);
-                if (populationFrequency.getPopulation().equals(DEFAULT_COHORT)) {
-                    if (populationFrequency.getStudy().equals(GNOMAD_GENOMES)) {
-                        gnomadFreq = populationFrequency.getAltAlleleFreq();
-                    } else if (populationFrequency.getStudy().equals(K_GENOMES)) {
-                        kgenomesFreq = populationFrequency.getAltAlleleFreq();
-                    }
+                if (popFreqAnySet.contains(populationFrequency.getStudy() + ":" + populationFrequency.getPopulation())) {
+                    popFreqAnyFound++;
+                    minFreq = Math.min(minFreq, populationFrequency.getAltAlleleFreq());
                 }
             }
-            minFreq = Math.min(gnomadFreq, kgenomesFreq);
+            if (popFreqAnyFound < popFreqAnySet.size()) {
+                minFreq = 0;
+            }
         }
-        if (minFreq < POP_FREQ_THRESHOLD_001) {
+        if (!popFreqAnySet.isEmpty() && minFreq < popFreqAnyThreshold) {
             b |= POP_FREQ_ANY_001_MASK;
         }
 
@@ -249,29 +330,12 @@ public class AnnotationIndexConverter {
             clinical = true;
             for (EvidenceEntry evidenceEntry : variantAnnotation.getTraitAssociation()) {
                 if (evidenceEntry.getSomaticInformation() != null) {
-                        clinicalIndex |= CLINICAL_SOMATIC_MASK;
+                    clinicalIndex |= somaticMask;
                 }
                 if (evidenceEntry.getVariantClassification() != null
                         && evidenceEntry.getVariantClassification().getClinicalSignificance() != null) {
-                    switch (evidenceEntry.getVariantClassification().getClinicalSignificance()) {
-                        case likely_benign:
-                            clinicalIndex |= CLINICAL_LIKELY_BENIGN_MASK;
-                            break;
-                        case VUS:
-                            clinicalIndex |= CLINICAL_VUS_MASK;
-                            break;
-                        case likely_pathogenic:
-                            clinicalIndex |= CLINICAL_LIKELY_PATHOGENIC_MASK;
-                            break;
-                        case pathogenic:
-                            clinicalIndex |= CLINICAL_PATHOGENIC_MASK;
-                            break;
-                        case uncertain_significance:
-                        case benign:
-                        default:
-                            // Nothing
-                            break;
-                    }
+                    clinicalIndex |= getClinicalSignificanceMask(
+                            evidenceEntry.getVariantClassification().getClinicalSignificance().name());
                 }
             }
         }
@@ -322,7 +386,7 @@ public class AnnotationIndexConverter {
     protected void addPopFreqIndex(byte[] popFreqIndex, PopulationFrequency populationFrequency) {
         Integer idx = populations.get(populationFrequency.getStudy() + ":" + populationFrequency.getPopulation());
         if (idx != null) {
-            byte popFreqInterval = IndexUtils.getRangeCode(populationFrequency.getAltAlleleFreq(), popFreqRanges);
+            byte popFreqInterval = IndexUtils.getRangeCode(populationFrequency.getAltAlleleFreq(), popFreqRanges[idx]);
 //            int byteIdx = (idx * POP_FREQ_SIZE) / Byte.SIZE;
 //            int bitIdx = (idx * POP_FREQ_SIZE) % Byte.SIZE;
 //            popFreqIndex[byteIdx] |= popFreqInterval << bitIdx;
@@ -349,242 +413,109 @@ public class AnnotationIndexConverter {
         return put;
     }
 
-    public static boolean isImpreciseCtMask(short ctMask) {
-        return IndexUtils.testIndexAny(ctMask, ((short) (CT_MIRNA_TFBS_MASK | CT_UTR_MASK)));
-    }
-
-    public static short getMaskFromSoName(String soName) {
+    public short getConsequenceTypeMask(String soName) {
         if (soName == null) {
             return 0;
         }
+        return ctMasks.getOrDefault(soName, (short) 0);
+    }
 
-        switch (soName) {
-            // Coding
-            case MISSENSE_VARIANT:
-                return CT_MISSENSE_VARIANT_MASK;
-            case FRAMESHIFT_VARIANT:
-                return CT_FRAMESHIFT_VARIANT_MASK;
-            case INFRAME_DELETION:
-                return CT_INFRAME_DELETION_MASK;
-            case INFRAME_INSERTION:
-                return CT_INFRAME_INSERTION_MASK;
-            case START_LOST:
-                return CT_START_LOST_MASK;
-            case STOP_GAINED:
-                return CT_STOP_GAINED_MASK;
-            case STOP_LOST:
-                return CT_STOP_LOST_MASK;
-            case INITIATOR_CODON_VARIANT:
-                return CT_INITIATOR_CODON_VARIANT_MASK;
-            case SPLICE_REGION_VARIANT:
-                return CT_SPLICE_REGION_VARIANT_MASK;
-            case INCOMPLETE_TERMINAL_CODON_VARIANT:
-                return CT_INCOMPLETE_TERMINAL_CODON_VARIANT_MASK;
-
-            // Splice
-            case SPLICE_ACCEPTOR_VARIANT:
-                return CT_SPLICE_ACCEPTOR_VARIANT_MASK;
-            case SPLICE_DONOR_VARIANT:
-                return CT_SPLICE_DONOR_VARIANT_MASK;
-
-            case TRANSCRIPT_ABLATION:
-                return CT_TRANSCRIPT_ABLATION_MASK;
-            case TRANSCRIPT_AMPLIFICATION:
-                return CT_TRANSCRIPT_AMPLIFICATION_MASK;
-
-            // Regulatory
-//            case "regulatory_region_ablation":
-//            case "regulatory_region_amplification":
-//            case REGULATORY_REGION_VARIANT:
-//                return CT_REGULATORY_MASK;
-
-            case TF_BINDING_SITE_VARIANT:
-//            case "TFBS_ablation":
-//            case "TFBS_amplification":
-            case MATURE_MIRNA_VARIANT:
-                return CT_MIRNA_TFBS_MASK;
-
-            // NonCoding
-            case THREE_PRIME_UTR_VARIANT:
-            case FIVE_PRIME_UTR_VARIANT:
-                return CT_UTR_MASK;
-
-//            // Intergenic
-//            case UPSTREAM_GENE_VARIANT:
-//            case TWOKB_UPSTREAM_VARIANT:
-//            case "5KB_upstream_variant":
-//
-//            case DOWNSTREAM_GENE_VARIANT:
-//            case TWOKB_DOWNSTREAM_VARIANT:
-//            case "5KB_downstream_variant":
-//                return CT_UPSTREAM_DOWNSTREAM_MASK;
-
-            //case INTERGENIC_VARIANT:
-            //case CODING_SEQUENCE_VARIANT:
-            //case FEATURE_TRUNCATION:
-            //case INFRAME_VARIANT:
-            //case MISSENSE_VARIANT:
-            //case NMD_TRANSCRIPT_VARIANT:
-            //case STOP_RETAINED_VARIANT:
-            //case TERMINATOR_CODON_VARIANT:
-            //case "feature_elongation":
-            //case "protein_altering_variant":
-            //case SYNONYMOUS_VARIANT:
-            //case INTRON_VARIANT:
-            //case NON_CODING_TRANSCRIPT_EXON_VARIANT:
-            //case NON_CODING_TRANSCRIPT_VARIANT:
-            default:
-                return 0;
-        }
+    public boolean isImpreciseConsequenceTypeMask(short ctMask) {
+        return IndexUtils.testIndexAny(ctMask, impreciseCtMask);
     }
 
-    public static List<String> getSoNamesFromMask(short mask) {
-        if (mask == 0) {
-            return Collections.emptyList();
+    public List<String> getConsequenceTypesFromMask(short mask) {
+        return namesFromMask(Short.toUnsignedInt(mask), ctNames);
+    }
+
+    public byte getBiotypeMask(String biotype) {
+        if (biotype == null) {
+            return 0;
         }
+        Byte mask = btMasks.get(biotype);
+        if (mask != null) {
+            return mask;
+        } else if (biotype.contains("pseudogene")) {
+            return 0;
+        } else {
+            return otherBtMask;
+        }
+    }
 
-        List<String> names = new ArrayList<>(5);
-        for (int idx = Short.SIZE; idx > 0; idx--) {
-            short subMask = (short) (1 << idx);
-            if (IndexUtils.testIndexAny(subMask, mask)) {
-                String soName = getSoNameFromMask(subMask);
-                if (soName != null) {
-                    names.add(soName);
-                }
-            }
+    public boolean isImpreciseBiotypeMask(byte btMask) {
+        return IndexUtils.testIndexAny(btMask, impreciseBtMask);
+    }
+
+    public List<String> getBiotypesFromMask(byte mask) {
+        return namesFromMask(Byte.toUnsignedInt(mask), btNames);
+    }
+
+    public byte getClinicalSignificanceMask(String clinicalSignificance) {
+        if (clinicalSignificance == null) {
+            return 0;
         }
+        return clinicalMasks.getOrDefault(clinicalSignificance, (byte) 0);
+    }
+
+    public boolean isImpreciseClinicalSignificanceMask(byte clinicalMask) {
+        return IndexUtils.testIndexAny(clinicalMask, impreciseClinicalMask);
+    }
+
+    public List<String> getClinicalSignificancesFromMask(byte mask) {
+        List<String> names = namesFromMask(Byte.toUnsignedInt(mask & ~somaticMask), clinicalNames);
+        names.removeIf("other"::equals);
         return names;
     }
 
-    public static String getSoNameFromMask(short mask) {
-        if (mask == 0) {
-            return null;
-        }
+    /**
+     * @return Populations covered by the summary bit {@link #POP_FREQ_ANY_001_MASK}.
+     */
+    public Set<String> getPopFreqAnySet() {
+        return popFreqAnySet;
+    }
 
-        switch (mask) {
-            case CT_MISSENSE_VARIANT_MASK:
-                return MISSENSE_VARIANT;
-            case CT_FRAMESHIFT_VARIANT_MASK:
-                return FRAMESHIFT_VARIANT;
-            case CT_INFRAME_DELETION_MASK:
-                return INFRAME_DELETION;
-            case CT_INFRAME_INSERTION_MASK:
-                return INFRAME_INSERTION;
-            case CT_START_LOST_MASK:
-                return START_LOST;
-            case CT_STOP_GAINED_MASK:
-                return STOP_GAINED;
-            case CT_STOP_LOST_MASK:
-                return STOP_LOST;
-            case CT_SPLICE_ACCEPTOR_VARIANT_MASK:
-                return SPLICE_ACCEPTOR_VARIANT;
-            case CT_SPLICE_DONOR_VARIANT_MASK:
-                return SPLICE_DONOR_VARIANT;
-            case CT_TRANSCRIPT_ABLATION_MASK:
-                return TRANSCRIPT_ABLATION;
-            case CT_TRANSCRIPT_AMPLIFICATION_MASK:
-                return TRANSCRIPT_AMPLIFICATION;
-            case CT_INITIATOR_CODON_VARIANT_MASK:
-                return INITIATOR_CODON_VARIANT;
-            case CT_SPLICE_REGION_VARIANT_MASK:
-                return SPLICE_REGION_VARIANT;
-            case CT_INCOMPLETE_TERMINAL_CODON_VARIANT_MASK:
-                return INCOMPLETE_TERMINAL_CODON_VARIANT;
-            case CT_UTR_MASK: // imprecise
-            case CT_MIRNA_TFBS_MASK: // imprecise
-            default:
-                return "other";
-        }
+    /**
+     * @return Threshold of the summary bit {@link #POP_FREQ_ANY_001_MASK}.
+     */
+    public double getPopFreqAnyThreshold() {
+        return popFreqAnyThreshold;
     }
 
-    public static List<String> getBiotypesFromMask(byte mask) {
+    private static List<String> namesFromMask(int mask, String[] names) {
         if (mask == 0) {
-            return Collections.emptyList();
+            return new ArrayList<>(0);
         }
-
-        List<String> names = new ArrayList<>(5);
-        for (int idx = Byte.SIZE; idx > 0; idx--) {
-            byte subMask = (byte) (1 << idx);
-            if (IndexUtils.testIndexAny(subMask, mask)) {
-                String soName = getBiotypeFromMask(subMask);
-                if (soName != null) {
-                    names.add(soName);
-                }
+        List<String> values = new ArrayList<>(Integer.bitCount(mask));
+        for (int bit = names.length - 1; bit >= 0; bit--) {
+            if ((mask & (1 << bit)) != 0 && names[bit] != null) {
+                values.add(names[bit]);
             }
         }
-        return names;
+        return values;
     }
 
-    public static String getBiotypeFromMask(byte btMask) {
+    public static boolean isImpreciseCtMask(short ctMask) {
+        return DEFAULT.isImpreciseConsequenceTypeMask(ctMask);
+    }
 
-        switch (btMask) {
-            case 0:
-                return null;
-            case BT_NONSENSE_MEDIATED_DECAY_MASK:
-                return NONSENSE_MEDIATED_DECAY;
-            case BT_MIRNA_MASK:
-                return MIRNA;
-            case BT_RETAINED_INTRON_MASK:
-                return RETAINED_INTRON;
-            case BT_SNRNA_MASK:
-                return SNRNA;
-            case BT_SNORNA_MASK:
-                return SNORNA;
-            case BT_PROTEIN_CODING_MASK:
-                return PROTEIN_CODING;
-            case BT_LNCRNA_MASK: // imprecise
-            case BT_OTHER_NON_PSEUDOGENE: // imprecise
-            default:
-                return "other";
-        }
+    public static short getMaskFromSoName(String soName) {
+        return DEFAULT.getConsequenceTypeMask(soName);
+    }
+
+    public static List<String> getSoNamesFromMask(short mask) {
+        return DEFAULT.getConsequenceTypesFromMask(mask);
+    }
 
+    public static List<String> getBiotypesFromMask(byte mask) {
+        return DEFAULT.getBiotypesFromMask(mask);
     }
 
     public static boolean isImpreciseBtMask(byte btMask) {
-        return IndexUtils.testIndexAny(btMask, ((byte) (BT_LNCRNA_MASK | BT_OTHER_NON_PSEUDOGENE)));
+        return DEFAULT.isImpreciseBiotypeMask(btMask);
     }
 
     public static byte getMaskFromBiotype(String biotype) {
-        if (biotype == null) {
-            return 0;
-        }
-
-        switch (biotype) {
-            case NONSENSE_MEDIATED_DECAY:
-                return BT_NONSENSE_MEDIATED_DECAY_MASK;
-
-            // See http://www.ensembl.info/2019/05/20/whats-coming-in-ensembl-97-ensembl-genomes-44/
-            case LNCRNA:
-            case NON_CODING:
-            case LINCRNA:
-            case "macro_lncRNA":
-            case ANTISENSE:
-            case SENSE_INTRONIC:
-            case SENSE_OVERLAPPING:
-            case THREEPRIME_OVERLAPPING_NCRNA:
-            case "bidirectional_promoter_lncRNA":
-                return BT_LNCRNA_MASK;
-
-
-            case MIRNA:
-                return BT_MIRNA_MASK;
-            case RETAINED_INTRON:
-                return BT_RETAINED_INTRON_MASK;
-            case SNRNA:
-                return BT_SNRNA_MASK;
-            case SNORNA:
-                return BT_SNORNA_MASK;
-            case NON_STOP_DECAY:
-                return BT_OTHER_NON_PSEUDOGENE;
-            case PROTEIN_CODING:
-                return BT_PROTEIN_CODING_MASK;
-            default:
-                if (biotype.contains("pseudogene")) {
-                    return 0;
-                } else {
-                    return BT_OTHER_NON_PSEUDOGENE;
-                }
-        }
+        return DEFAULT.getBiotypeMask(biotype);
     }
 
     public static List<ClinicalSignificance> getClinicalsFromMask(byte mask) {
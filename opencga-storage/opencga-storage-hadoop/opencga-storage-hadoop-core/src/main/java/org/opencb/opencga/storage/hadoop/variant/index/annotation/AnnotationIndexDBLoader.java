@@ -4,6 +4,7 @@ import org.apache.hadoop.hbase.client.Put;
 import org.opencb.biodata.models.variant.avro.VariantAnnotation;
 import org.opencb.opencga.storage.hadoop.utils.AbstractHBaseDataWriter;
 import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -18,8 +19,12 @@ public class AnnotationIndexDBLoader extends AbstractHBaseDataWriter<VariantAnno
     private final AnnotationIndexConverter converter;
 
     public AnnotationIndexDBLoader(HBaseManager hBaseManager, String tableName) {
+        this(hBaseManager, tableName, SampleIndexConfiguration.defaultConfiguration());
+    }
+
+    public AnnotationIndexDBLoader(HBaseManager hBaseManager, String tableName, SampleIndexConfiguration configuration) {
         super(hBaseManager, tableName);
-        converter = new AnnotationIndexConverter();
+        converter = new AnnotationIndexConverter(configuration);
     }
 
     @Override
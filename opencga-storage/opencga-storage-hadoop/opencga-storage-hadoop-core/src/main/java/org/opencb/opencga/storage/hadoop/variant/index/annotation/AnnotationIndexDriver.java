@@ -18,6 +18,7 @@ import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageOptions;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHBaseQueryParser;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantPhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.converters.annotation.HBaseToVariantAnnotationConverter;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantMapReduceUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +71,8 @@ public class AnnotationIndexDriver extends AbstractVariantsTableDriver {
 
         VariantMapReduceUtil.initTableMapperJob(job, variantTable, scan, getMapperClass());
         VariantMapReduceUtil.setOutputHBaseTable(job, annotationIndexTable);
+        VariantMapReduceUtil.setSampleIndexConfiguration(job, SampleIndexDBAdaptor.readConfiguration(getMetadataManager()));
+        VariantMapReduceUtil.setAnnotationWriterSchemas(job, getMetadataManager().getProjectMetadata());
 
         return job;
     }
@@ -97,8 +100,10 @@ public class AnnotationIndexDriver extends AbstractVariantsTableDriver {
 
         @Override
         protected void setup(Context context) throws IOException, InterruptedException {
+            VariantMapReduceUtil.loadAnnotationWriterSchemas(context.getConfiguration());
             annotationConverter = new HBaseToVariantAnnotationConverter();
-            annotationIndexConverter = new AnnotationIndexConverter();
+            annotationIndexConverter = new AnnotationIndexConverter(
+                    VariantMapReduceUtil.getSampleIndexConfiguration(context.getConfiguration()));
         }
 
         @Override
@@ -19,7 +19,8 @@ import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.PhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantPhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.converters.HBaseToVariantConverter;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexAnnotationLoader;
-import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantAlignedInputFormat;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantMapReduceUtil;
 import org.slf4j.Logger;
@@ -43,6 +44,7 @@ public class SampleIndexAnnotationLoaderDriver extends AbstractVariantsTableDriv
     private boolean hasGenotype;
     private String region;
     private String outputTable;
+    private int configurationVersion;
 
     @Override
     protected Class<SampleIndexAnnotationLoaderMapper> getMapperClass() {
@@ -118,13 +120,16 @@ public class SampleIndexAnnotationLoaderDriver extends AbstractVariantsTableDriv
         scan.addColumn(GenomeHelper.COLUMN_FAMILY_BYTES, VariantPhoenixHelper.VariantColumn.FULL_ANNOTATION.bytes());
 
         SampleIndexAnnotationLoaderMapper.setHasGenotype(job, hasGenotype);
+        SampleIndexConfiguration configuration = SampleIndexDBAdaptor.readConfiguration(getMetadataManager(), getStudyId());
+        VariantMapReduceUtil.setSampleIndexConfiguration(job, configuration);
+        configurationVersion = configuration.getVersion();
 
         VariantMapReduceUtil.configureMapReduceScan(scan, getConf());
 
         VariantMapReduceUtil.initTableMapperJob(job, variantTable,
                 scan, getMapperClass(), VariantAlignedInputFormat.class);
         VariantAlignedInputFormat.setDelegatedInputFormat(job, TableInputFormat.class);
-        VariantAlignedInputFormat.setBatchSize(job, SampleIndexSchema.BATCH_SIZE);
+        VariantAlignedInputFormat.setBatchSize(job, configuration.getBatchSize());
 
         VariantMapReduceUtil.setOutputHBaseTable(job, outputTable);
 
@@ -142,7 +147,7 @@ public class SampleIndexAnnotationLoaderDriver extends AbstractVariantsTableDriv
     protected void postExecution(boolean succeed) throws IOException, StorageEngineException {
         super.postExecution(succeed);
         if (succeed && StringUtils.isEmpty(region)) {
-            SampleIndexAnnotationLoader.postAnnotationLoad(getStudyId(), sampleIds, getMetadataManager());
+            SampleIndexAnnotationLoader.postAnnotationLoad(getStudyId(), sampleIds, getMetadataManager(), configurationVersion);
         }
     }
 
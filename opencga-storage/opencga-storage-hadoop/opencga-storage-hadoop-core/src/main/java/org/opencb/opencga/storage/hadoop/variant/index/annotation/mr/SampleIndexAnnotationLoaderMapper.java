@@ -11,6 +11,7 @@ import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationInde
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexEntry;
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexPutBuilder;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema;
+import org.opencb.opencga.storage.hadoop.variant.mr.VariantMapReduceUtil;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantsTableMapReduceHelper;
 
 import java.io.IOException;
@@ -41,7 +42,7 @@ public class SampleIndexAnnotationLoaderMapper extends VariantTableSampleIndexOr
     protected void setup(Context context) throws IOException, InterruptedException {
         family = GenomeHelper.COLUMN_FAMILY_BYTES;
         hasGenotype = context.getConfiguration().getBoolean(HAS_GENOTYPE, true);
-        converter = new AnnotationIndexConverter();
+        converter = new AnnotationIndexConverter(VariantMapReduceUtil.getSampleIndexConfiguration(context.getConfiguration()));
     }
 
     @Override
@@ -88,7 +89,7 @@ public class SampleIndexAnnotationLoaderMapper extends VariantTableSampleIndexOr
         context.getCounter(VariantsTableMapReduceHelper.COUNTER_GROUP_NAME, "write_indices").increment(1);
         for (Map.Entry<Integer, Map<String, AnnotationIndexPutBuilder>> entry : annotationIndices.entrySet()) {
             Integer sampleId = entry.getKey();
-            Put put = new Put(SampleIndexSchema.toRowKey(sampleId, chromosome, position));
+            Put put = new Put(SampleIndexSchema.toRowKey(sampleId, chromosome, position, batchSize));
             for (Map.Entry<String, AnnotationIndexPutBuilder> e : entry.getValue().entrySet()) {
                 String gt = e.getKey();
                 AnnotationIndexPutBuilder value = e.getValue();
@@ -7,6 +7,7 @@ import org.apache.hadoop.hbase.util.Pair;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantPhoenixKeyFactory;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema;
+import org.opencb.opencga.storage.hadoop.variant.mr.VariantMapReduceUtil;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantsTableMapReduceHelper;
 
 import java.io.IOException;
@@ -22,8 +23,11 @@ import static org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.Variant
  */
 public abstract class VariantTableSampleIndexOrderMapper<KEYOUT, VALOUT> extends TableMapper<KEYOUT, VALOUT> {
 
+    protected int batchSize = SampleIndexSchema.BATCH_SIZE;
+
     @Override
     public void run(Context context) throws IOException, InterruptedException {
+        batchSize = VariantMapReduceUtil.getSampleIndexConfiguration(context.getConfiguration()).getBatchSize();
         this.setup(context);
 
         String chromosome = "";
@@ -66,7 +70,7 @@ public abstract class VariantTableSampleIndexOrderMapper<KEYOUT, VALOUT> extends
 
                         // In event of new chromosome, or new batch, write indices
                         if (!newChromosome.equals(chromosome)
-                                || (position / SampleIndexSchema.BATCH_SIZE) != (newPosition / SampleIndexSchema.BATCH_SIZE)) {
+                                || (position / batchSize) != (newPosition / batchSize)) {
                             flush(context, chromosome, position);
                         }
                     }
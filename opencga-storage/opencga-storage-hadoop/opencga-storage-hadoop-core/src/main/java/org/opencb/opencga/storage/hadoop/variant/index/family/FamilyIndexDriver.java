@@ -25,7 +25,8 @@ import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.PhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantPhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.converters.VariantRow;
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.mr.VariantTableSampleIndexOrderMapper;
-import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantAlignedInputFormat;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantMapReduceUtil;
 import org.slf4j.Logger;
@@ -171,7 +172,9 @@ public class FamilyIndexDriver extends AbstractVariantsTableDriver {
         VariantMapReduceUtil.initTableMapperJob(job, variantTable,
                 scan, getMapperClass(), VariantAlignedInputFormat.class);
         VariantAlignedInputFormat.setDelegatedInputFormat(job, TableInputFormat.class);
-        VariantAlignedInputFormat.setBatchSize(job, SampleIndexSchema.BATCH_SIZE);
+        SampleIndexConfiguration configuration = SampleIndexDBAdaptor.readConfiguration(getMetadataManager(), getStudyId());
+        VariantMapReduceUtil.setSampleIndexConfiguration(job, configuration);
+        VariantAlignedInputFormat.setBatchSize(job, configuration.getBatchSize());
 
         VariantMapReduceUtil.setOutputHBaseTable(job, sampleIndexTableName);
 
@@ -232,7 +235,7 @@ public class FamilyIndexDriver extends AbstractVariantsTableDriver {
 
             for (List<Integer> trio : trios) {
                 Integer child = trio.get(2);
-                familyIndexBuilder.put(child, new FamilyIndexPutBuilder(child));
+                familyIndexBuilder.put(child, new FamilyIndexPutBuilder(child, batchSize));
                 genotypeCount.put(child, new HashMap<>());
             }
 
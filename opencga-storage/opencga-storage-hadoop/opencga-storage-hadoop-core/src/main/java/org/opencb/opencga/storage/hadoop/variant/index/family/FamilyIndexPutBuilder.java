@@ -14,12 +14,18 @@ import java.util.Map;
 public class FamilyIndexPutBuilder {
 
     private final int sampleId;
+    private final int batchSize;
 
     private ByteArrayOutputStream mendelianErrors;
     private Map<String, ByteArrayOutputStream> parentsGTMap;
 
     public FamilyIndexPutBuilder(int sampleId) {
+        this(sampleId, SampleIndexSchema.BATCH_SIZE);
+    }
+
+    public FamilyIndexPutBuilder(int sampleId, int batchSize) {
         this.sampleId = sampleId;
+        this.batchSize = batchSize;
         mendelianErrors = new ByteArrayOutputStream();
         parentsGTMap = new HashMap<>();
     }
@@ -45,7 +51,7 @@ public class FamilyIndexPutBuilder {
     }
 
     public Put buildAndReset(String chromosome, int position) {
-        byte[] row = SampleIndexSchema.toRowKey(sampleId, chromosome, position);
+        byte[] row = SampleIndexSchema.toRowKey(sampleId, chromosome, position, batchSize);
         Put put = new Put(row);
 
         for (Map.Entry<String, ByteArrayOutputStream> gtEntry : parentsGTMap.entrySet()) {
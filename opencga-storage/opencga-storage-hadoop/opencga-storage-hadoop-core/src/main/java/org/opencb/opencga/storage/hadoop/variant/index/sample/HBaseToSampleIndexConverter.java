@@ -28,7 +28,7 @@ public class HBaseToSampleIndexConverter implements Converter<Result, SampleInde
 
     public HBaseToSampleIndexConverter(SampleIndexConfiguration configuration) {
         this.configuration = configuration;
-        converter = new SampleIndexVariantBiConverter();
+        converter = new SampleIndexVariantBiConverter(configuration.getBatchSize());
     }
 
     public static Pair<String, String> parsePendingColumn(byte[] column) {
@@ -52,7 +52,7 @@ public class HBaseToSampleIndexConverter implements Converter<Result, SampleInde
         byte[] row = result.getRow();
         int sampleId = SampleIndexSchema.sampleIdFromRowKey(row);
         String chromosome = SampleIndexSchema.chromosomeFromRowKey(row);
-        int batchStart = SampleIndexSchema.batchStartFromRowKey(row);
+        int batchStart = SampleIndexSchema.batchStartFromRowKey(row, configuration.getBatchSize());
 
         SampleIndexEntry entry = new SampleIndexEntry(sampleId, chromosome, batchStart, configuration);
 
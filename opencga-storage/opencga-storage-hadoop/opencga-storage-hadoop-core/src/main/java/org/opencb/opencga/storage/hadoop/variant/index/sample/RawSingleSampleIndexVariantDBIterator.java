@@ -31,11 +31,12 @@ public class RawSingleSampleIndexVariantDBIterator extends CloseableIterator<Sam
             regions = VariantQueryUtils.mergeRegions(query.getRegions());
         }
 
+        SampleIndexConfiguration configuration = dbAdaptor.getConfiguration(dbAdaptor.toStudyId(query.getStudy()));
         Iterator<Iterator<SampleVariantIndexEntry>> iterators = regions.stream()
                 .map(region -> {
                     // One scan per region
                     Scan scan = dbAdaptor.parseIncludeAll(query, region);
-                    HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(dbAdaptor.getConfiguration());
+                    HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(configuration);
                     RawSampleIndexEntryFilter filter = new RawSampleIndexEntryFilter(query, region);
                     try {
                         ResultScanner scanner = table.getScanner(scan);
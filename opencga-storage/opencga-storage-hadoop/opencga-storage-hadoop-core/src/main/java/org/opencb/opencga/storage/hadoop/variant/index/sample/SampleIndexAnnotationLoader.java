@@ -118,6 +118,7 @@ public class SampleIndexAnnotationLoader {
         logger.info("Update sample index annotation of " + samples.size() + " samples");
 
         String sampleIndexTableName = tableNameGenerator.getSampleIndexTableName(studyId);
+        int batchSize = SampleIndexDBAdaptor.getBatchSize(metadataManager, studyId);
 
         ProgressLogger progressLogger = new ProgressLogger("Sample index annotation updated variants");
 
@@ -144,8 +145,8 @@ public class SampleIndexAnnotationLoader {
                             annotationMasks.add(nextPair);
                             Variant firstVariant = nextPair.getKey();
                             chromosome = firstVariant.getChromosome();
-                            start = firstVariant.getStart() - (firstVariant.getStart() % SampleIndexSchema.BATCH_SIZE);
-                            end = start + SampleIndexSchema.BATCH_SIZE;
+                            start = firstVariant.getStart() - (firstVariant.getStart() % batchSize);
+                            end = start + batchSize;
                             nextPair = null;
                         }
                         while (iterator.hasNext()) {
@@ -172,15 +173,15 @@ public class SampleIndexAnnotationLoader {
 
                     Variant firstVariant = annotationMasks.get(0).getKey();
                     String chromosome = firstVariant.getChromosome();
-                    int start = firstVariant.getStart() - (firstVariant.getStart() % SampleIndexSchema.BATCH_SIZE);
-                    int end = start + SampleIndexSchema.BATCH_SIZE;
+                    int start = firstVariant.getStart() - (firstVariant.getStart() % batchSize);
+                    int end = start + batchSize;
 
                     progressLogger.increment(annotationMasks.size(), () -> "Up to batch " + chromosome + ":" + start + "-" + end);
                     List<Put> puts = new ArrayList<>(samples.size());
 
                     for (Integer sampleId : samples) {
                         Map<String, List<Variant>> map = sampleDBAdaptor.queryByGt(studyId, sampleId, chromosome, start);
-                        Put put = annotate(chromosome, start, sampleId, map, annotationMasks);
+                        Put put = annotate(chromosome, start, batchSize, sampleId, map, annotationMasks);
                         if (!put.isEmpty()) {
                             puts.add(put);
                         }
@@ -204,6 +205,7 @@ public class SampleIndexAnnotationLoader {
 
     public void updateSampleAnnotationMultiSampleIterator(int studyId, List<Integer> samples) throws IOException, StorageEngineException {
         String sampleIndexTableName = tableNameGenerator.getSampleIndexTableName(studyId);
+        int batchSize = SampleIndexDBAdaptor.getBatchSize(metadataManager, studyId);
         Map<Integer, Iterator<Map<String, List<Variant>>>> sampleIterators = new HashMap<>(samples.size());
 
         for (Integer sample : samples) {
@@ -229,12 +231,12 @@ public class SampleIndexAnnotationLoader {
                             || firstVariant.getStart() < start
                             || firstVariant.getStart() > end) {
                         chromosome = firstVariant.getChromosome();
-                        start = firstVariant.getStart() - firstVariant.getStart() % SampleIndexSchema.BATCH_SIZE;
-                        end = start + SampleIndexSchema.BATCH_SIZE;
+                        start = firstVariant.getStart() - firstVariant.getStart() % batchSize;
+                        end = start + batchSize;
                         annotationEntries = annotationIndexDBAdaptor.get(chromosome, start, end);
                     }
 
-                    Put put = annotate(chromosome, start, sampleId, next, annotationEntries);
+                    Put put = annotate(chromosome, start, batchSize, sampleId, next, annotationEntries);
                     mutator.mutate(put);
                 }
             }
@@ -248,9 +250,9 @@ public class SampleIndexAnnotationLoader {
         postAnnotationLoad(studyId, samples);
     }
 
-    private Put annotate(String chromosome, int start, Integer sampleId,
+    private Put annotate(String chromosome, int start, int batchSize, Integer sampleId,
                         Map<String, List<Variant>> sampleIndex, List<Pair<Variant, AnnotationIndexEntry>> annotationMasks) {
-        byte[] rk = SampleIndexSchema.toRowKey(sampleId, chromosome, start);
+        byte[] rk = SampleIndexSchema.toRowKey(sampleId, chromosome, start, batchSize);
         Put put = new Put(rk);
 
         for (Map.Entry<String, List<Variant>> entry : sampleIndex.entrySet()) {
@@ -301,13 +303,15 @@ public class SampleIndexAnnotationLoader {
     }
 
     private void postAnnotationLoad(int studyId, List<Integer> samples) throws StorageEngineException {
-        postAnnotationLoad(studyId, samples, metadataManager);
+        postAnnotationLoad(studyId, samples, metadataManager, sampleDBAdaptor.getConfiguration().getVersion());
     }
 
-    public static void postAnnotationLoad(int studyId, List<Integer> samples, VariantStorageMetadataManager metadataManager)
+    public static void postAnnotationLoad(int studyId, List<Integer> samples, VariantStorageMetadataManager metadataManager,
+                                          int configurationVersion)
             throws StorageEngineException {
         for (Integer sampleId : samples) {
             metadataManager.updateSampleMetadata(studyId, sampleId, sampleMetadata -> {
+                SampleIndexDBAdaptor.setSampleIndexAnnotationVersion(sampleMetadata, configurationVersion);
                 return SampleIndexDBAdaptor.setSampleIndexStatus(sampleMetadata, TaskMetadata.Status.READY);
             });
         }
@@ -1,18 +1,38 @@
 package org.opencb.opencga.storage.hadoop.variant.index.sample;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
+import static org.opencb.cellbase.core.variant.annotation.VariantAnnotationUtils.*;
+
 public class SampleIndexConfiguration {
 
     public static final double[] QUAL_THRESHOLDS = new double[]{10, 20, 30};
     public static final double[] DP_THRESHOLDS = new double[]{5, 15, 30};
 
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    // Version of the layout. Increased every time the stored configuration changes.
+    private int version;
+    // Number of positions in each row. Used as default for new studies. See SampleIndexDBAdaptor#getBatchSize
+    private int batchSize = SampleIndexSchema.BATCH_SIZE;
     private List<PopulationFrequencyRange> populationRanges;
+    private AnnotationIndexConfiguration annotationIndexConfiguration;
 
     public SampleIndexConfiguration() {
         populationRanges = new ArrayList<>();
+        annotationIndexConfiguration = AnnotationIndexConfiguration.defaultConfiguration();
     }
 
     public static SampleIndexConfiguration defaultConfiguration() {
@@ -21,6 +41,57 @@ public class SampleIndexConfiguration {
                 .addPopulationRange(new PopulationFrequencyRange("GNOMAD_GENOMES", "ALL"));
     }
 
+    public static SampleIndexConfiguration fromJson(String json) {
+        try {
+            return OBJECT_MAPPER.readValue(json, SampleIndexConfiguration.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String toJson() {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(this);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public SampleIndexConfiguration setVersion(int version) {
+        this.version = version;
+        return this;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public SampleIndexConfiguration setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Shallow copy of this configuration with a different batch size.
+     *
+     * @param batchSize Batch size
+     * @return this if the batch size is the same, or a new configuration sharing the rest of the values.
+     */
+    public SampleIndexConfiguration withBatchSize(int batchSize) {
+        if (this.batchSize == batchSize) {
+            return this;
+        }
+        return new SampleIndexConfiguration()
+                .setVersion(version)
+                .setBatchSize(batchSize)
+                .setPopulationRanges(populationRanges)
+                .setAnnotationIndexConfiguration(annotationIndexConfiguration);
+    }
+
     public List<PopulationFrequencyRange> getPopulationRanges() {
         return populationRanges;
     }
@@ -42,11 +113,23 @@ public class SampleIndexConfiguration {
         return this;
     }
 
+    public AnnotationIndexConfiguration getAnnotationIndexConfiguration() {
+        return annotationIndexConfiguration;
+    }
+
+    public SampleIndexConfiguration setAnnotationIndexConfiguration(AnnotationIndexConfiguration annotationIndexConfiguration) {
+        this.annotationIndexConfiguration = annotationIndexConfiguration;
+        return this;
+    }
+
     public static class PopulationFrequencyRange {
         public static final double[] DEFAULT_THRESHOLDS = new double[]{0.001, 0.005, 0.01};
         private String study;
         private String population;
-//        private float[] thresholds; // TODO: Make this configurable
+        private double[] thresholds = DEFAULT_THRESHOLDS;
+
+        public PopulationFrequencyRange() {
+        }
 
         public PopulationFrequencyRange(String studyPopulation) {
             this.study = studyPopulation.split(":")[0];
@@ -62,6 +145,7 @@ public class SampleIndexConfiguration {
             return study;
         }
 
+        @JsonIgnore
         public String getStudyAndPopulation() {
             return study + ":" + population;
         }
@@ -81,7 +165,12 @@ public class SampleIndexConfiguration {
         }
 
         public double[] getThresholds() {
-            return DEFAULT_THRESHOLDS;
+            return thresholds;
+        }
+
+        public PopulationFrequencyRange setThresholds(double[] thresholds) {
+            this.thresholds = thresholds;
+            return this;
         }
 
         @Override
@@ -102,6 +191,159 @@ public class SampleIndexConfiguration {
         }
     }
 
+    /**
+     * Describes which values get a bit in the annotation index.
+     *
+     * Each element of the consequence type, biotype and clinical lists is one bit of the index, from the lowest to
+     * the highest, and contains the values that set that bit. Bits with more than one value can not be used to
+     * answer a query exactly, and the filter will be applied again over the variants.
+     */
+    public static class AnnotationIndexConfiguration {
+        /** Matches any biotype not present in the configuration, excluding pseudogenes. */
+        public static final String OTHER_NON_PSEUDOGENE_BIOTYPE = "other_non_pseudogene";
+        /** Matches any clinical evidence with somatic information. */
+        public static final String SOMATIC = "somatic";
+
+        private List<List<String>> consequenceTypes;
+        private List<List<String>> biotypes;
+        private List<List<String>> clinicalSignificances;
+        private List<String> popFreqAnyPopulations;
+        private double popFreqAnyThreshold;
+
+        public AnnotationIndexConfiguration() {
+            consequenceTypes = new ArrayList<>();
+            biotypes = new ArrayList<>();
+            clinicalSignificances = new ArrayList<>();
+            popFreqAnyPopulations = new ArrayList<>();
+        }
+
+        public static AnnotationIndexConfiguration defaultConfiguration() {
+            return new AnnotationIndexConfiguration()
+                    .setConsequenceTypes(new ArrayList<>(Arrays.asList(
+                            Collections.singletonList(MISSENSE_VARIANT),
+                            Collections.singletonList(FRAMESHIFT_VARIANT),
+                            Collections.singletonList(INFRAME_DELETION),
+                            Collections.singletonList(INFRAME_INSERTION),
+                            Collections.singletonList(START_LOST),
+                            Collections.singletonList(STOP_GAINED),
+                            Collections.singletonList(STOP_LOST),
+                            Collections.singletonList(SPLICE_ACCEPTOR_VARIANT),
+                            Collections.singletonList(SPLICE_DONOR_VARIANT),
+                            Collections.singletonList(TRANSCRIPT_ABLATION),
+                            Collections.singletonList(TRANSCRIPT_AMPLIFICATION),
+                            Collections.singletonList(INITIATOR_CODON_VARIANT),
+                            Collections.singletonList(SPLICE_REGION_VARIANT),
+                            Collections.singletonList(INCOMPLETE_TERMINAL_CODON_VARIANT),
+                            Arrays.asList(THREE_PRIME_UTR_VARIANT, FIVE_PRIME_UTR_VARIANT),
+                            Arrays.asList(TF_BINDING_SITE_VARIANT, MATURE_MIRNA_VARIANT))))
+                    .setBiotypes(new ArrayList<>(Arrays.asList(
+                            Collections.singletonList(NONSENSE_MEDIATED_DECAY),
+                            // See http://www.ensembl.info/2019/05/20/whats-coming-in-ensembl-97-ensembl-genomes-44/
+                            Arrays.asList("lncRNA", NON_CODING, LINCRNA, "macro_lncRNA", ANTISENSE, SENSE_INTRONIC,
+                                    SENSE_OVERLAPPING, THREEPRIME_OVERLAPPING_NCRNA, "bidirectional_promoter_lncRNA"),
+                            Collections.singletonList(MIRNA),
+                            Collections.singletonList(RETAINED_INTRON),
+                            Collections.singletonList(SNRNA),
+                            Collections.singletonList(SNORNA),
+                            Arrays.asList(NON_STOP_DECAY, OTHER_NON_PSEUDOGENE_BIOTYPE),
+                            Collections.singletonList(PROTEIN_CODING))))
+                    .setClinicalSignificances(new ArrayList<>(Arrays.asList(
+                            Collections.singletonList(SOMATIC),
+                            Collections.singletonList("likely_benign"),
+                            Collections.singletonList("VUS"),
+                            Collections.singletonList("likely_pathogenic"),
+                            Collections.singletonList("pathogenic"))))
+                    .setPopFreqAnyPopulations(new ArrayList<>(Arrays.asList("1kG_phase3:ALL", "GNOMAD_GENOMES:ALL")))
+                    .setPopFreqAnyThreshold(0.001);
+        }
+
+        public List<List<String>> getConsequenceTypes() {
+            return consequenceTypes;
+        }
+
+        public AnnotationIndexConfiguration setConsequenceTypes(List<List<String>> consequenceTypes) {
+            this.consequenceTypes = consequenceTypes;
+            return this;
+        }
+
+        public List<List<String>> getBiotypes() {
+            return biotypes;
+        }
+
+        public AnnotationIndexConfiguration setBiotypes(List<List<String>> biotypes) {
+            this.biotypes = biotypes;
+            return this;
+        }
+
+        public List<List<String>> getClinicalSignificances() {
+            return clinicalSignificances;
+        }
+
+        public AnnotationIndexConfiguration setClinicalSignificances(List<List<String>> clinicalSignificances) {
+            this.clinicalSignificances = clinicalSignificances;
+            return this;
+        }
+
+        public List<String> getPopFreqAnyPopulations() {
+            return popFreqAnyPopulations;
+        }
+
+        public AnnotationIndexConfiguration setPopFreqAnyPopulations(List<String> popFreqAnyPopulations) {
+            this.popFreqAnyPopulations = popFreqAnyPopulations;
+            return this;
+        }
+
+        public double getPopFreqAnyThreshold() {
+            return popFreqAnyThreshold;
+        }
+
+        public AnnotationIndexConfiguration setPopFreqAnyThreshold(double popFreqAnyThreshold) {
+            this.popFreqAnyThreshold = popFreqAnyThreshold;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            AnnotationIndexConfiguration that = (AnnotationIndexConfiguration) o;
+            return Double.compare(that.popFreqAnyThreshold, popFreqAnyThreshold) == 0
+                    && Objects.equals(consequenceTypes, that.consequenceTypes)
+                    && Objects.equals(biotypes, that.biotypes)
+                    && Objects.equals(clinicalSignificances, that.clinicalSignificances)
+                    && Objects.equals(popFreqAnyPopulations, that.popFreqAnyPopulations);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(consequenceTypes, biotypes, clinicalSignificances, popFreqAnyPopulations, popFreqAnyThreshold);
+        }
+    }
+
+    /**
+     * Compare the index layout described by both configurations, ignoring the version.
+     *
+     * @param other Other configuration
+     * @return if both configurations produce the same index
+     */
+    public boolean sameLayout(SampleIndexConfiguration other) {
+        if (other == null || batchSize != other.batchSize
+                || !Objects.equals(annotationIndexConfiguration, other.annotationIndexConfiguration)
+                || !Objects.equals(populationRanges, other.populationRanges)) {
+            return false;
+        }
+        for (int i = 0; i < populationRanges.size(); i++) {
+            if (!Arrays.equals(populationRanges.get(i).getThresholds(), other.populationRanges.get(i).getThresholds())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -111,11 +353,14 @@ public class SampleIndexConfiguration {
             return false;
         }
         SampleIndexConfiguration that = (SampleIndexConfiguration) o;
-        return Objects.equals(populationRanges, that.populationRanges);
+        return version == that.version
+                && batchSize == that.batchSize
+                && Objects.equals(populationRanges, that.populationRanges)
+                && Objects.equals(annotationIndexConfiguration, that.annotationIndexConfiguration);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(populationRanges);
+        return Objects.hash(version, batchSize, populationRanges, annotationIndexConfiguration);
     }
 }
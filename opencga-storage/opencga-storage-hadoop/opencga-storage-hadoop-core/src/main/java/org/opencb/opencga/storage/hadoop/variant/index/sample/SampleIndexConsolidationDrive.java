@@ -92,6 +92,7 @@ public class SampleIndexConsolidationDrive extends AbstractVariantsTableDriver {
 
         // set other scan attrs
         VariantMapReduceUtil.initTableMapperJob(job, sampleIndexTable, sampleIndexTable, scans, getMapperClass());
+        VariantMapReduceUtil.setSampleIndexConfiguration(job, SampleIndexDBAdaptor.readConfiguration(getMetadataManager(), getStudyId()));
 
         job.setSpeculativeExecution(false);
 //        job.getConfiguration().setInt(MRJobConfig.TASK_TIMEOUT, 20 * 60 * 1000);
@@ -134,7 +135,8 @@ public class SampleIndexConsolidationDrive extends AbstractVariantsTableDriver {
         protected void setup(Context context) throws IOException, InterruptedException {
             new GenomeHelper(context.getConfiguration());
             family = GenomeHelper.COLUMN_FAMILY_BYTES;
-            converter = new SampleIndexVariantBiConverter();
+            converter = new SampleIndexVariantBiConverter(
+                    VariantMapReduceUtil.getSampleIndexConfiguration(context.getConfiguration()).getBatchSize());
         }
 
         @Override
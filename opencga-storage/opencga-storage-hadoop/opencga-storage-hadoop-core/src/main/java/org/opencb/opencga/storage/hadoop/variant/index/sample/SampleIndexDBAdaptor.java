@@ -6,14 +6,18 @@ import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.CollectionUtils;
 import org.opencb.biodata.models.core.Region;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.metadata.models.ProjectMetadata;
 import org.opencb.opencga.storage.core.metadata.models.SampleMetadata;
+import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
 import org.opencb.opencga.storage.core.metadata.models.TaskMetadata;
 import org.opencb.opencga.storage.core.utils.iterators.IntersectMultiKeyIterator;
 import org.opencb.opencga.storage.core.utils.iterators.UnionMultiKeyIterator;
@@ -28,7 +32,9 @@ import org.opencb.opencga.storage.core.variant.adaptors.iterators.UnionMultiVari
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageOptions;
 import org.opencb.opencga.storage.hadoop.variant.index.IndexUtils;
+import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexConverter;
 import org.opencb.opencga.storage.hadoop.variant.index.query.SampleAnnotationIndexQuery.PopulationFrequencyQuery;
 import org.opencb.opencga.storage.hadoop.variant.index.query.SampleIndexQuery;
 import org.opencb.opencga.storage.hadoop.variant.index.query.SingleSampleIndexQuery;
@@ -38,6 +44,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import static org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantSqlQueryParser.DEFAULT_LOADED_GENOTYPES;
@@ -50,6 +57,10 @@ import static org.opencb.opencga.storage.hadoop.variant.index.IndexUtils.EMPTY_M
  */
 public class SampleIndexDBAdaptor implements VariantIterable {
 
+    public static final String SAMPLE_INDEX_CONFIGURATION = "sampleIndex.configuration";
+    public static final String SAMPLE_INDEX_BATCH_SIZE = "sampleIndex.batchSize";
+    public static final String SAMPLE_INDEX_ANNOTATION_VERSION = "sampleIndex.annotation.version";
+
     private final HBaseManager hBaseManager;
     private final HBaseVariantTableNameGenerator tableNameGenerator;
     private final VariantStorageMetadataManager metadataManager;
@@ -57,7 +68,7 @@ public class SampleIndexDBAdaptor implements VariantIterable {
     private static Logger logger = LoggerFactory.getLogger(SampleIndexDBAdaptor.class);
     private SampleIndexQueryParser parser;
     private final SampleIndexConfiguration configuration;
-    private final HBaseToSampleIndexConverter converter;
+    private final AtomicBoolean serverSideFilter;
 
     public SampleIndexDBAdaptor(HBaseManager hBaseManager, HBaseVariantTableNameGenerator tableNameGenerator,
                                 VariantStorageMetadataManager metadataManager) {
@@ -65,10 +76,87 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         this.tableNameGenerator = tableNameGenerator;
         this.metadataManager = metadataManager;
         family = GenomeHelper.COLUMN_FAMILY_BYTES;
-        // TODO: Read configuration from metadata manager
-        configuration = SampleIndexConfiguration.defaultConfiguration();
+        configuration = readConfiguration(metadataManager);
         parser = new SampleIndexQueryParser(metadataManager, configuration);
-        converter = new HBaseToSampleIndexConverter(configuration);
+        serverSideFilter = new AtomicBoolean(hBaseManager.getConf().getBoolean(
+                HadoopVariantStorageOptions.SAMPLE_INDEX_QUERY_SERVER_SIDE_FILTER.key(),
+                HadoopVariantStorageOptions.SAMPLE_INDEX_QUERY_SERVER_SIDE_FILTER.defaultValue()));
+    }
+
+    /**
+     * Read the active SampleIndexConfiguration from the project metadata.
+     *
+     * @param metadataManager Metadata manager
+     * @return The stored configuration, or the default configuration if missing.
+     */
+    public static SampleIndexConfiguration readConfiguration(VariantStorageMetadataManager metadataManager) {
+        ProjectMetadata projectMetadata = metadataManager.getProjectMetadata();
+        String json = projectMetadata == null ? null : projectMetadata.getAttributes().getString(SAMPLE_INDEX_CONFIGURATION);
+        if (StringUtils.isEmpty(json)) {
+            return SampleIndexConfiguration.defaultConfiguration();
+        } else {
+            return SampleIndexConfiguration.fromJson(json);
+        }
+    }
+
+    /**
+     * Read the SampleIndexConfiguration of one study.
+     * The project configuration, using the batch size the SampleIndex of the study was built with.
+     *
+     * @param metadataManager Metadata manager
+     * @param studyId         Study
+     * @return The configuration to read and write the SampleIndex of the given study
+     */
+    public static SampleIndexConfiguration readConfiguration(VariantStorageMetadataManager metadataManager, int studyId) {
+        return readConfiguration(metadataManager).withBatchSize(getBatchSize(metadataManager, studyId));
+    }
+
+    /**
+     * Get the batch size used in the SampleIndex of a study.
+     * Studies without an explicit batch size were built with the default {@link SampleIndexSchema#BATCH_SIZE}.
+     *
+     * @param metadataManager Metadata manager
+     * @param studyId         Study
+     * @return Batch size of the study
+     */
+    public static int getBatchSize(VariantStorageMetadataManager metadataManager, int studyId) {
+        return getBatchSize(metadataManager.getStudyMetadata(studyId));
+    }
+
+    public static int getBatchSize(StudyMetadata studyMetadata) {
+        if (studyMetadata == null) {
+            return SampleIndexSchema.BATCH_SIZE;
+        }
+        return studyMetadata.getAttributes().getInt(SAMPLE_INDEX_BATCH_SIZE, SampleIndexSchema.BATCH_SIZE);
+    }
+
+    /**
+     * Store a new SampleIndexConfiguration in the project metadata.
+     * If the layout changes, the version is increased. The annotation index and the annotation of the sample index
+     * must be rebuilt before the new layout can be used to resolve queries.
+     *
+     * @param metadataManager Metadata manager
+     * @param configuration   New configuration
+     * @return The stored configuration, with the final version
+     * @throws StorageEngineException if the project metadata can not be updated
+     */
+    public static SampleIndexConfiguration updateConfiguration(VariantStorageMetadataManager metadataManager,
+                                                               SampleIndexConfiguration configuration)
+            throws StorageEngineException {
+        // Validate the configuration
+        new AnnotationIndexConverter(configuration);
+        SampleIndexSchema.checkBatchSize(configuration.getBatchSize());
+        SampleIndexConfiguration current = readConfiguration(metadataManager);
+        if (current.sameLayout(configuration)) {
+            return current;
+        }
+        configuration.setVersion(current.getVersion() + 1);
+        metadataManager.updateProjectMetadata(projectMetadata -> {
+            projectMetadata.getAttributes().put(SAMPLE_INDEX_CONFIGURATION, configuration.toJson());
+            return projectMetadata;
+        });
+        logger.warn("SampleIndex configuration updated to version {}. Annotation index must be rebuilt.", configuration.getVersion());
+        return configuration;
     }
 
     public static TaskMetadata.Status getSampleIndexStatus(SampleMetadata sampleMetadata) {
@@ -79,6 +167,46 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         return sampleMetadata.setStatus(SampleIndexAnnotationLoader.SAMPLE_INDEX_STATUS, status);
     }
 
+    /**
+     * Get the version of the SampleIndexConfiguration layout used to write the annotation of the SampleIndex of a sample.
+     * Samples annotated before storing this version were built with the default layout, version 0.
+     *
+     * @param sampleMetadata Sample metadata
+     * @return Layout version
+     */
+    public static int getSampleIndexAnnotationVersion(SampleMetadata sampleMetadata) {
+        return sampleMetadata.getAttributes().getInt(SAMPLE_INDEX_ANNOTATION_VERSION, 0);
+    }
+
+    public static SampleMetadata setSampleIndexAnnotationVersion(SampleMetadata sampleMetadata, int version) {
+        sampleMetadata.getAttributes().put(SAMPLE_INDEX_ANNOTATION_VERSION, version);
+        return sampleMetadata;
+    }
+
+    /**
+     * Check if the annotation of the SampleIndex of a sample was written with the layout of the given configuration.
+     * Samples without annotation in the SampleIndex are always up to date.
+     *
+     * @param sampleMetadata Sample metadata
+     * @param configuration  Active configuration
+     * @return false if the annotation index of the sample must be rebuilt before using it
+     */
+    public static boolean isAnnotationIndexUpToDate(SampleMetadata sampleMetadata, SampleIndexConfiguration configuration) {
+        return getSampleIndexStatus(sampleMetadata) != TaskMetadata.Status.READY
+                || getSampleIndexAnnotationVersion(sampleMetadata) == configuration.getVersion();
+    }
+
+    public boolean isAnnotationIndexUpToDate(String study, Collection<String> samples) {
+        int studyId = metadataManager.getStudyId(study);
+        for (String sample : samples) {
+            Integer sampleId = metadataManager.getSampleId(studyId, sample);
+            if (sampleId != null && !isAnnotationIndexUpToDate(metadataManager.getSampleMetadata(studyId, sampleId), configuration)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public VariantDBIterator iterator(Query query, QueryOptions options) {
         return iterator(parser.parse(query));
@@ -191,20 +319,24 @@ public class SampleIndexDBAdaptor implements VariantIterable {
 
     protected Map<String, List<Variant>> queryByGt(int study, int sample, String chromosome, int position)
             throws IOException {
-        Result result = queryByGtInternal(study, sample, chromosome, position);
-        return converter.convertToMap(result);
+        SampleIndexConfiguration studyConfiguration = getConfiguration(study);
+        Result result = queryByGtInternal(study, sample, chromosome, position, studyConfiguration.getBatchSize());
+        return new HBaseToSampleIndexConverter(studyConfiguration).convertToMap(result);
     }
 
     protected SampleIndexEntryPutBuilder queryByGtBuilder(int study, int sample, String chromosome, int position)
             throws IOException {
-        Result result = queryByGtInternal(study, sample, chromosome, position);
-        return new SampleIndexEntryPutBuilder(sample, chromosome, position, converter.convertToMapSampleVariantIndex(result));
+        SampleIndexConfiguration studyConfiguration = getConfiguration(study);
+        int batchSize = studyConfiguration.getBatchSize();
+        Result result = queryByGtInternal(study, sample, chromosome, position, batchSize);
+        return new SampleIndexEntryPutBuilder(sample, chromosome, position, batchSize,
+                new HBaseToSampleIndexConverter(studyConfiguration).convertToMapSampleVariantIndex(result));
     }
 
-    private Result queryByGtInternal(int study, int sample, String chromosome, int position) throws IOException {
+    private Result queryByGtInternal(int study, int sample, String chromosome, int position, int batchSize) throws IOException {
         String tableName = tableNameGenerator.getSampleIndexTableName(study);
         return hBaseManager.act(tableName, table -> {
-            Get get = new Get(SampleIndexSchema.toRowKey(sample, chromosome, position));
+            Get get = new Get(SampleIndexSchema.toRowKey(sample, chromosome, position, batchSize));
             get.addFamily(family);
             return table.get(get);
         });
@@ -217,7 +349,7 @@ public class SampleIndexDBAdaptor implements VariantIterable {
 
             Scan scan = new Scan();
             scan.setRowPrefixFilter(SampleIndexSchema.toRowKey(sample));
-            HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(configuration);
+            HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(getConfiguration(study));
             try {
                 ResultScanner scanner = table.getScanner(scan);
                 Iterator<Result> resultIterator = scanner.iterator();
@@ -234,7 +366,7 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         return hBaseManager.act(tableName, table -> {
             Scan scan = new Scan();
             scan.setRowPrefixFilter(SampleIndexSchema.toRowKey(sample));
-            HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(configuration);
+            HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(getConfiguration(study));
             ResultScanner scanner = table.getScanner(scan);
             Iterator<Result> resultIterator = scanner.iterator();
             return Iterators.transform(resultIterator, converter::convert);
@@ -330,17 +462,23 @@ public class SampleIndexDBAdaptor implements VariantIterable {
             regionsList = VariantQueryUtils.mergeRegions(query.getRegions());
         }
 
-        String tableName = tableNameGenerator.getSampleIndexTableName(toStudyId(query.getStudy()));
+        int studyId = toStudyId(query.getStudy());
+        String tableName = tableNameGenerator.getSampleIndexTableName(studyId);
+        SampleIndexConfiguration studyConfiguration = getConfiguration(studyId);
+        int batchSize = studyConfiguration.getBatchSize();
 
         try {
             return hBaseManager.act(tableName, table -> {
                 long count = 0;
                 for (Region region : regionsList) {
                     // Split region in countable regions
-                    List<Region> subRegions = region == null ? Collections.singletonList((Region) null) : splitRegion(region);
+                    List<Region> subRegions = region == null
+                            ? Collections.singletonList((Region) null)
+                            : splitRegion(region, batchSize);
                     for (Region subRegion : subRegions) {
-                        HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(configuration);
-                        boolean noRegionFilter = subRegion == null || startsAtBatch(subRegion) && endsAtBatch(subRegion);
+                        HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(studyConfiguration);
+                        boolean noRegionFilter = subRegion == null
+                                || startsAtBatch(subRegion, batchSize) && endsAtBatch(subRegion, batchSize);
                         // Don't need to parse the variant to filter
                         boolean simpleCount = !query.isMultiFileSample()
                                 && CollectionUtils.isEmpty(query.getVariantTypes())
@@ -356,7 +494,6 @@ public class SampleIndexDBAdaptor implements VariantIterable {
                                     result = scanner.next();
                                 }
                             } else {
-                                SampleIndexEntryFilter filter = buildSampleIndexEntryFilter(query, subRegion);
                                 Scan scan;
                                 if (simpleCount) {
                                     // Fast filter and count. Don't need to parse the variant to filter
@@ -365,12 +502,23 @@ public class SampleIndexDBAdaptor implements VariantIterable {
                                     // Need to parse the variant to finish filtering. Create a normal scan query.
                                     scan = parse(query, subRegion);
                                 }
-                                ResultScanner scanner = table.getScanner(scan);
-                                Result result = scanner.next();
-                                while (result != null) {
-                                    SampleIndexEntry sampleIndexEntry = converter.convert(result);
-                                    count += filter.filterAndCount(sampleIndexEntry);
-                                    result = scanner.next();
+                                ResultScanner scanner = getServerSideFilterScanner(table, scan, query, subRegion, studyConfiguration, true);
+                                if (scanner != null) {
+                                    // Filtered and counted at the region servers
+                                    Result result = scanner.next();
+                                    while (result != null) {
+                                        count += SampleIndexEntryServerFilter.getCount(result);
+                                        result = scanner.next();
+                                    }
+                                } else {
+                                    SampleIndexEntryFilter filter = buildSampleIndexEntryFilter(query, subRegion);
+                                    scanner = table.getScanner(scan);
+                                    Result result = scanner.next();
+                                    while (result != null) {
+                                        SampleIndexEntry sampleIndexEntry = converter.convert(result);
+                                        count += filter.filterAndCount(sampleIndexEntry);
+                                        result = scanner.next();
+                                    }
                                 }
                             }
                         } catch (IOException e) {
@@ -393,6 +541,41 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         return configuration;
     }
 
+    public SampleIndexConfiguration getConfiguration(int studyId) {
+        return configuration.withBatchSize(getBatchSize(metadataManager, studyId));
+    }
+
+    /**
+     * Recommend a batch size for the SampleIndex of a study, given the variant density observed in some of its samples.
+     *
+     * @param study          Study
+     * @param samples        Samples to read
+     * @param targetVariants Desired number of variants per row and genotype
+     * @return Recommended batch size
+     * @throws IOException on error reading the SampleIndex table
+     */
+    public int recommendBatchSize(int study, List<Integer> samples, int targetVariants) throws IOException {
+        int batchSize = getBatchSize(metadataManager, study);
+        int[] counts = new int[1024];
+        int numCounts = 0;
+        for (Integer sample : samples) {
+            Iterator<SampleIndexEntry> iterator = rawIterator(study, sample);
+            while (iterator.hasNext()) {
+                SampleIndexEntry entry = iterator.next();
+                for (SampleIndexEntry.SampleIndexGtEntry gtEntry : entry.getGts().values()) {
+                    if (numCounts == counts.length) {
+                        counts = Arrays.copyOf(counts, counts.length * 2);
+                    }
+                    counts[numCounts++] = gtEntry.getCount();
+                }
+            }
+        }
+        int recommendedBatchSize = SampleIndexSchema.recommendBatchSize(Arrays.copyOf(counts, numCounts), batchSize, targetVariants);
+        logger.info("Recommended SampleIndex batch size for study {} : {} . Current batch size : {}",
+                study, recommendedBatchSize, batchSize);
+        return recommendedBatchSize;
+    }
+
     protected int toStudyId(String study) {
         int studyId;
         if (StringUtils.isEmpty(study)) {
@@ -425,27 +608,38 @@ public class SampleIndexDBAdaptor implements VariantIterable {
      * @return List of regions.
      */
     protected static List<Region> splitRegion(Region region) {
+        return splitRegion(region, SampleIndexSchema.BATCH_SIZE);
+    }
+
+    /**
+     * Split region into regions that match with batches at SampleIndexTable.
+     *
+     * @param region    Region to split
+     * @param batchSize Batch size of the SampleIndexTable
+     * @return List of regions.
+     */
+    protected static List<Region> splitRegion(Region region, int batchSize) {
         List<Region> regions;
-        if (region.getEnd() - region.getStart() < SampleIndexSchema.BATCH_SIZE) {
+        if (region.getEnd() - region.getStart() < batchSize) {
             // Less than one batch. Do not split region
             regions = Collections.singletonList(region);
-        } else if (region.getStart() / SampleIndexSchema.BATCH_SIZE + 1 == region.getEnd() / SampleIndexSchema.BATCH_SIZE
-                && !startsAtBatch(region)
-                && !endsAtBatch(region)) {
+        } else if (region.getStart() / batchSize + 1 == region.getEnd() / batchSize
+                && !startsAtBatch(region, batchSize)
+                && !endsAtBatch(region, batchSize)) {
             // Consecutive partial batches. Do not split region
             regions = Collections.singletonList(region);
         } else {
             // Copy region before modifying
             region = new Region(region.getChromosome(), region.getStart(), region.getEnd());
             regions = new ArrayList<>(3);
-            if (!startsAtBatch(region)) {
-                int splitPoint = region.getStart() - region.getStart() % SampleIndexSchema.BATCH_SIZE + SampleIndexSchema.BATCH_SIZE;
+            if (!startsAtBatch(region, batchSize)) {
+                int splitPoint = region.getStart() - region.getStart() % batchSize + batchSize;
                 regions.add(new Region(region.getChromosome(), region.getStart(), splitPoint - 1));
                 region.setStart(splitPoint);
             }
             regions.add(region);
-            if (!endsAtBatch(region)) {
-                int splitPoint = region.getEnd() - region.getEnd() % SampleIndexSchema.BATCH_SIZE;
+            if (!endsAtBatch(region, batchSize)) {
+                int splitPoint = region.getEnd() - region.getEnd() % batchSize;
                 regions.add(new Region(region.getChromosome(), splitPoint, region.getEnd()));
                 region.setEnd(splitPoint - 1);
             }
@@ -454,17 +648,65 @@ public class SampleIndexDBAdaptor implements VariantIterable {
     }
 
     protected static boolean startsAtBatch(Region region) {
-        return region.getStart() % SampleIndexSchema.BATCH_SIZE == 0;
+        return startsAtBatch(region, SampleIndexSchema.BATCH_SIZE);
+    }
+
+    protected static boolean startsAtBatch(Region region, int batchSize) {
+        return region.getStart() % batchSize == 0;
     }
 
     protected static boolean endsAtBatch(Region region) {
-        return (region.getEnd() + 1) % SampleIndexSchema.BATCH_SIZE == 0;
+        return endsAtBatch(region, SampleIndexSchema.BATCH_SIZE);
+    }
+
+    protected static boolean endsAtBatch(Region region, int batchSize) {
+        return (region.getEnd() + 1) % batchSize == 0;
     }
 
     public SampleIndexEntryFilter buildSampleIndexEntryFilter(SingleSampleIndexQuery query, Region region) {
         return new SampleIndexEntryFilter(query, region);
     }
 
+    public boolean isServerSideFilterEnabled() {
+        return serverSideFilter.get();
+    }
+
+    /**
+     * Open a scanner that evaluates the query at the region servers using a {@link SampleIndexEntryServerFilter}.
+     * If the filter is not available at the region servers, the server side filter is disabled for this DBAdaptor,
+     * and the caller is expected to filter the results at the client side.
+     *
+     * @param table         SampleIndex table
+     * @param scan          Scan to execute. The filter is set only if the scanner is opened.
+     * @param query         Query to evaluate
+     * @param region        Region filter, if any
+     * @param configuration SampleIndex configuration of the study
+     * @param count         Return only the number of variants per row
+     * @return The scanner, or null if the server side filter is disabled or not available
+     * @throws IOException on error opening the scanner
+     */
+    protected ResultScanner getServerSideFilterScanner(Table table, Scan scan, SingleSampleIndexQuery query, Region region,
+                                                       SampleIndexConfiguration configuration, boolean count) throws IOException {
+        if (!serverSideFilter.get()) {
+            return null;
+        }
+        scan.setFilter(new SampleIndexEntryServerFilter(query, region, configuration, count));
+        try {
+            return table.getScanner(scan);
+        } catch (IOException e) {
+            scan.setFilter(null);
+            if (SampleIndexEntryServerFilter.isFilterNotAvailable(e)) {
+                if (serverSideFilter.getAndSet(false)) {
+                    logger.warn("SampleIndex server side filter not available at the region servers. "
+                            + "Filter at the client side. Deploy the opencga-storage-hadoop jar in the region servers "
+                            + "or set " + HadoopVariantStorageOptions.SAMPLE_INDEX_QUERY_SERVER_SIDE_FILTER.key() + "=false", e);
+                }
+                return null;
+            }
+            throw e;
+        }
+    }
+
     public Scan parse(SingleSampleIndexQuery query, Region region) {
         return parse(query, region, false, false);
     }
@@ -491,9 +733,10 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         int studyId = toStudyId(query.getStudy());
         int sampleId = toSampleId(studyId, query.getSample());
         if (region != null) {
-            scan.setStartRow(SampleIndexSchema.toRowKey(sampleId, region.getChromosome(), region.getStart()));
+            int batchSize = getBatchSize(metadataManager, studyId);
+            scan.setStartRow(SampleIndexSchema.toRowKey(sampleId, region.getChromosome(), region.getStart(), batchSize));
             scan.setStopRow(SampleIndexSchema.toRowKey(sampleId, region.getChromosome(),
-                    region.getEnd() + (region.getEnd() == Integer.MAX_VALUE ? 0 : SampleIndexSchema.BATCH_SIZE)));
+                    region.getEnd() + (region.getEnd() == Integer.MAX_VALUE ? 0 : batchSize), batchSize));
         } else {
             scan.setStartRow(SampleIndexSchema.toRowKey(sampleId));
             scan.setStopRow(SampleIndexSchema.toRowKey(sampleId + 1));
@@ -39,6 +39,7 @@ public class SampleIndexDBLoader extends AbstractHBaseDataWriter<Variant, Mutati
     private final byte[] family;
     private final ObjectMap options;
     private final SampleIndexDBAdaptor dbAdaptor;
+    private final int batchSize;
     private final VariantFileIndexConverter variantFileIndexConverter = new VariantFileIndexConverter();;
 
     public SampleIndexDBLoader(SampleIndexDBAdaptor dbAdaptor, HBaseManager hBaseManager,
@@ -80,6 +81,7 @@ public class SampleIndexDBLoader extends AbstractHBaseDataWriter<Variant, Mutati
             }
         }
         this.dbAdaptor = dbAdaptor;
+        batchSize = SampleIndexDBAdaptor.getBatchSize(metadataManager, studyId);
     }
 
     private class Chunk implements Iterable<SampleIndexEntryPutBuilder> {
@@ -102,7 +104,7 @@ public class SampleIndexDBLoader extends AbstractHBaseDataWriter<Variant, Mutati
                         merging = true;
                     }
                 } else {
-                    builder = new SampleIndexEntryPutBuilder(sampleId, indexChunk.chromosome, indexChunk.position);
+                    builder = new SampleIndexEntryPutBuilder(sampleId, indexChunk.chromosome, indexChunk.position, batchSize);
                 }
                 samples.add(builder);
             }
@@ -182,7 +184,7 @@ public class SampleIndexDBLoader extends AbstractHBaseDataWriter<Variant, Mutati
     @Override
     protected List<Mutation> convert(List<Variant> variants) {
         for (Variant variant : variants) {
-            IndexChunk indexChunk = new IndexChunk(variant.getChromosome(), getChunkStart(variant.getStart()));
+            IndexChunk indexChunk = new IndexChunk(variant.getChromosome(), getChunkStart(variant.getStart(), batchSize));
             int sampleIdx = 0;
             StudyEntry studyEntry = variant.getStudies().get(0);
             boolean hasGT = studyEntry.getSampleDataKeys().get(0).equals("GT");
@@ -22,6 +22,7 @@ import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
 import org.opencb.opencga.storage.core.metadata.models.SampleMetadata;
 import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
+import org.opencb.opencga.storage.core.metadata.models.TaskMetadata;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
 import org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass;
@@ -72,6 +73,7 @@ public class SampleIndexDriver extends AbstractVariantsTableDriver {
     public static final String SECONDARY_ONLY = "secondary-only";
 //    public static final String MAIN_ONLY = "main-only";
     public static final String PARTIAL_SCAN_SIZE = "partial-scan-size";
+    public static final String BATCH_SIZE = "batch-size";
 
     private static final String SAMPLE_ID_TO_FILE_ID_MAP = "SampleIndexDriver.sampleIdToFileIdMap";
     private static final String MULTI_FILE_SAMPLES = "SampleIndexDriver.multiFileSamples";
@@ -90,6 +92,8 @@ public class SampleIndexDriver extends AbstractVariantsTableDriver {
     private double partialScanSize;
     private List<String> fixedAttributes;
     private boolean multiScan = false;
+    private int batchSize;
+    private boolean rebuild;
 
     @Override
     protected String getJobOperationName() {
@@ -111,6 +115,7 @@ public class SampleIndexDriver extends AbstractVariantsTableDriver {
 //        params.put("--" + MAIN_ONLY, "<main-alternate-only>");
         params.put("--" + VariantQueryParam.REGION.key(), "<region>");
         params.put("--" + PARTIAL_SCAN_SIZE, "<samples-per-scan>");
+        params.put("--" + BATCH_SIZE, "<batch-size>");
         return params;
     }
 
@@ -178,6 +183,22 @@ public class SampleIndexDriver extends AbstractVariantsTableDriver {
             throw new IllegalArgumentException("empty samples!");
         }
 
+        int currentBatchSize = SampleIndexDBAdaptor.getBatchSize(metadataManager, study);
+        batchSize = Integer.parseInt(getParam(BATCH_SIZE, String.valueOf(currentBatchSize)));
+        rebuild = batchSize != currentBatchSize;
+        if (rebuild) {
+            // Changing the batch size requires rebuilding the whole SampleIndex of the study
+            SampleIndexSchema.checkBatchSize(batchSize);
+            if (!allSamples || StringUtils.isNotEmpty(region)) {
+                throw new IllegalArgumentException("Unable to change SampleIndex batch size from " + currentBatchSize
+                        + " to " + batchSize + ". Require to rebuild the SampleIndex of all samples and all regions.");
+            }
+            if (!outputTable.equals(getTableNameGenerator().getSampleIndexTableName(study))) {
+                throw new IllegalArgumentException("Unable to change SampleIndex batch size of a custom output table " + outputTable);
+            }
+            LOGGER.info("Rebuild SampleIndex of study " + study + " from batch size " + currentBatchSize + " to " + batchSize);
+        }
+
         sampleIdToFileIdMap = new HashMap<>();
         multiFileSamples = new HashSet<>();
         for (Integer sampleId : sampleIds) {
@@ -286,11 +307,13 @@ public class SampleIndexDriver extends AbstractVariantsTableDriver {
             Class<? extends InputFormat<?, ?>> delegatedInputFormatClass = job.getInputFormatClass();
             job.setInputFormatClass(VariantAlignedInputFormat.class);
             VariantAlignedInputFormat.setDelegatedInputFormat(job, delegatedInputFormatClass);
-            VariantAlignedInputFormat.setBatchSize(job, SampleIndexSchema.BATCH_SIZE);
+            VariantAlignedInputFormat.setBatchSize(job, batchSize);
         } catch (ClassNotFoundException e) {
             throw new RuntimeException(e);
         }
 
+        VariantMapReduceUtil.setSampleIndexConfiguration(job,
+                SampleIndexDBAdaptor.readConfiguration(getMetadataManager(), study).withBatchSize(batchSize));
         VariantMapReduceUtil.setOutputHBaseTable(job, outputTable);
         VariantMapReduceUtil.setNoneReduce(job);
 
@@ -326,9 +349,44 @@ public class SampleIndexDriver extends AbstractVariantsTableDriver {
 
         ObjectMap options = new ObjectMap();
         options.putAll(getParams());
+        if (rebuild) {
+            rebuildTable();
+        }
         SampleIndexSchema.createTableIfNeeded(outputTable, getHBaseManager(), options);
     }
 
+    /**
+     * Empty the SampleIndex table of the study and store the new batch size.
+     * Annotation and family index have to be loaded again for all the samples.
+     *
+     * @throws IOException            on error truncating the table
+     * @throws StorageEngineException on error updating the metadata
+     */
+    private void rebuildTable() throws IOException, StorageEngineException {
+        if (getHBaseManager().tableExists(outputTable)) {
+            LOGGER.warn("Truncate SampleIndex table " + outputTable);
+            getHBaseManager().act(outputTable, (table, admin) -> {
+                admin.disableTable(table.getName());
+                admin.truncateTable(table.getName(), true);
+                return null;
+            });
+        }
+        VariantStorageMetadataManager metadataManager = getMetadataManager();
+        metadataManager.updateStudyMetadata(study, studyMetadata -> {
+            studyMetadata.getAttributes().put(SampleIndexDBAdaptor.SAMPLE_INDEX_BATCH_SIZE, batchSize);
+            return studyMetadata;
+        });
+        for (Integer sampleId : sampleIds) {
+            metadataManager.updateSampleMetadata(study, sampleId, sampleMetadata -> {
+                SampleIndexDBAdaptor.setSampleIndexStatus(sampleMetadata, TaskMetadata.Status.NONE);
+                sampleMetadata.setFamilyIndexStatus(TaskMetadata.Status.NONE);
+                sampleMetadata.setMendelianErrorStatus(TaskMetadata.Status.NONE);
+                return sampleMetadata;
+            });
+        }
+        LOGGER.warn("SampleIndex annotation and family index must be rebuilt for study " + study);
+    }
+
     public static void main(String[] args) throws Exception {
         try {
             System.exit(new SampleIndexDriver().privateMain(args, null));
@@ -427,7 +485,7 @@ public class SampleIndexDriver extends AbstractVariantsTableDriver {
                 }
                 if (validGt) {
                     SampleIndexEntryPutBuilder builder = samplesMap.computeIfAbsent(sampleId,
-                            s -> new SampleIndexEntryPutBuilder(s, variant));
+                            s -> new SampleIndexEntryPutBuilder(s, variant, batchSize));
                     SampleMetadata sampleMetadata = samples.get(sampleId);
                     List<Integer> files;
                     int filePosition;
@@ -14,25 +14,36 @@ public class SampleIndexEntryPutBuilder {
     private final int sampleId;
     private final String chromosome;
     private final int position;
+    private final int batchSize;
 
     private final Map<String, SampleIndexGtEntryBuilder> gts;
     private final SampleIndexVariantBiConverter variantConverter;
     private final byte[] family = GenomeHelper.COLUMN_FAMILY_BYTES;
 
     public SampleIndexEntryPutBuilder(int sampleId, Variant variant) {
-        this(sampleId, variant.getChromosome(), SampleIndexSchema.getChunkStart(variant.getStart()));
+        this(sampleId, variant, SampleIndexSchema.BATCH_SIZE);
+    }
+
+    public SampleIndexEntryPutBuilder(int sampleId, Variant variant, int batchSize) {
+        this(sampleId, variant.getChromosome(), SampleIndexSchema.getChunkStart(variant.getStart(), batchSize), batchSize);
     }
 
     public SampleIndexEntryPutBuilder(int sampleId, String chromosome, int position) {
+        this(sampleId, chromosome, position, SampleIndexSchema.BATCH_SIZE);
+    }
+
+    public SampleIndexEntryPutBuilder(int sampleId, String chromosome, int position, int batchSize) {
         this.sampleId = sampleId;
         this.chromosome = chromosome;
         this.position = position;
+        this.batchSize = batchSize;
         gts = new HashMap<>();
-        variantConverter = new SampleIndexVariantBiConverter();
+        variantConverter = new SampleIndexVariantBiConverter(batchSize);
     }
 
-    public SampleIndexEntryPutBuilder(int sampleId, String chromosome, int position, Map<String, TreeSet<SampleVariantIndexEntry>> map) {
-        this(sampleId, chromosome, position);
+    public SampleIndexEntryPutBuilder(int sampleId, String chromosome, int position, int batchSize,
+                                      Map<String, TreeSet<SampleVariantIndexEntry>> map) {
+        this(sampleId, chromosome, position, batchSize);
         for (Map.Entry<String, TreeSet<SampleVariantIndexEntry>> entry : map.entrySet()) {
             gts.put(entry.getKey(), new SampleIndexGtEntryBuilder(entry.getKey(), entry.getValue()));
         }
@@ -66,7 +77,7 @@ public class SampleIndexEntryPutBuilder {
     }
 
     public Put build() {
-        byte[] rk = toRowKey(sampleId, chromosome, position);
+        byte[] rk = toRowKey(sampleId, chromosome, position, batchSize);
         Put put = new Put(rk);
         if (gts.isEmpty()) {
             return put;
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.exceptions.DeserializationException;
+import org.apache.hadoop.hbase.filter.FilterBase;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.VariantType;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils.QueryOperation;
+import org.opencb.opencga.storage.hadoop.variant.index.IndexUtils;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleAnnotationIndexQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleAnnotationIndexQuery.PopulationFrequencyQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleFileIndexQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleIndexQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SingleSampleIndexQuery;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * HBase filter to evaluate a {@link SingleSampleIndexQuery} at the region servers.
+ *
+ * Each row of the SampleIndex table is converted into a {@link SampleIndexEntry} and filtered with a
+ * {@link SampleIndexEntryFilter}. The cells of the row are replaced by one single cell containing either the number of
+ * matching variants ({@link #COUNT_COLUMN}) or the serialized matching variants ({@link #VARIANTS_COLUMN}).
+ * Rows without matches are not returned.
+ *
+ * This class, and its dependencies, must be available in the classpath of the region servers.
+ * See {@link #isFilterNotAvailable(Throwable)}.
+ */
+public class SampleIndexEntryServerFilter extends FilterBase {
+
+    public static final byte[] COUNT_COLUMN = Bytes.toBytes("_RC");
+    public static final byte[] VARIANTS_COLUMN = Bytes.toBytes("_RV");
+    private static final byte SERIALIZATION_VERSION = 1;
+
+    private final SingleSampleIndexQuery query;
+    private final Region regionFilter;
+    private final SampleIndexConfiguration configuration;
+    private final boolean count;
+
+    // Server side only
+    private HBaseToSampleIndexConverter converter;
+    private SampleIndexEntryFilter entryFilter;
+    private SampleIndexVariantBiConverter variantConverter;
+    private boolean filterRow;
+
+    public SampleIndexEntryServerFilter(SingleSampleIndexQuery query, Region regionFilter, SampleIndexConfiguration configuration,
+                                        boolean count) {
+        this.query = query;
+        this.regionFilter = regionFilter;
+        this.configuration = configuration;
+        this.count = count;
+    }
+
+    public SingleSampleIndexQuery getQuery() {
+        return query;
+    }
+
+    public Region getRegionFilter() {
+        return regionFilter;
+    }
+
+    public SampleIndexConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    public boolean isCount() {
+        return count;
+    }
+
+    @Override
+    public void reset() {
+        filterRow = false;
+    }
+
+    @Override
+    public ReturnCode filterKeyValue(Cell cell) {
+        return ReturnCode.INCLUDE;
+    }
+
+    @Override
+    public boolean hasFilterRow() {
+        return true;
+    }
+
+    @Override
+    public void filterRowCells(List<Cell> cells) throws IOException {
+        if (cells.isEmpty()) {
+            filterRow = true;
+            return;
+        }
+        if (entryFilter == null) {
+            converter = new HBaseToSampleIndexConverter(configuration);
+            entryFilter = new SampleIndexEntryFilter(query, regionFilter);
+            variantConverter = new SampleIndexVariantBiConverter(configuration.getBatchSize());
+        }
+        Cell firstCell = cells.get(0);
+        byte[] row = CellUtil.cloneRow(firstCell);
+        byte[] family = CellUtil.cloneFamily(firstCell);
+        SampleIndexEntry entry = converter.convert(Result.create(cells));
+        cells.clear();
+        if (count) {
+            int numVariants = entryFilter.filterAndCount(entry);
+            if (numVariants > 0) {
+                cells.add(new KeyValue(row, family, COUNT_COLUMN, Bytes.toBytes(numVariants)));
+            }
+        } else {
+            Collection<Variant> variants = entryFilter.filter(entry);
+            if (!variants.isEmpty()) {
+                cells.add(new KeyValue(row, family, VARIANTS_COLUMN, variantConverter.toBytes(variants)));
+            }
+        }
+        filterRow = cells.isEmpty();
+    }
+
+    @Override
+    public boolean filterRow() {
+        return filterRow;
+    }
+
+    /**
+     * Read the number of matching variants from a row filtered with this filter in count mode.
+     *
+     * @param result Filtered row
+     * @return Number of variants
+     */
+    public static int getCount(Result result) {
+        Cell cell = getCell(result, COUNT_COLUMN);
+        return cell == null ? 0 : Bytes.toInt(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+    }
+
+    /**
+     * Read the matching variants from a row filtered with this filter.
+     *
+     * @param result    Filtered row
+     * @param batchSize Batch size of the SampleIndex
+     * @return Sorted list of variants
+     */
+    public static List<Variant> getVariants(Result result, int batchSize) {
+        Cell cell = getCell(result, VARIANTS_COLUMN);
+        if (cell == null) {
+            return Collections.emptyList();
+        }
+        byte[] row = result.getRow();
+        String chromosome = SampleIndexSchema.chromosomeFromRowKey(row);
+        int batchStart = SampleIndexSchema.batchStartFromRowKey(row, batchSize);
+        return new SampleIndexVariantBiConverter(batchSize)
+                .toVariants(chromosome, batchStart, cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+    }
+
+    private static Cell getCell(Result result, byte[] column) {
+        for (Cell cell : result.rawCells()) {
+            if (CellUtil.matchingQualifier(cell, column)) {
+                return cell;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check if an exception was caused by region servers not able to instantiate this filter.
+     * This happens when the opencga-storage-hadoop jar is not deployed in the region servers.
+     *
+     * @param e Exception obtained opening the scanner
+     * @return If the filter is not available at the region servers
+     */
+    public static boolean isFilterNotAvailable(Throwable e) {
+        while (e != null) {
+            if (e instanceof ClassNotFoundException || e instanceof NoClassDefFoundError || e instanceof DeserializationException) {
+                return true;
+            }
+            String message = e.getMessage();
+            if (message != null && (message.contains(SampleIndexEntryServerFilter.class.getName())
+                    || message.contains(ClassNotFoundException.class.getName()))) {
+                return true;
+            }
+            e = e.getCause();
+        }
+        return false;
+    }
+
+    @Override
+    public byte[] toByteArray() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(SERIALIZATION_VERSION);
+        out.writeBoolean(count);
+        writeBytes(out, Bytes.toBytes(configuration.toJson()));
+
+        out.writeBoolean(regionFilter != null);
+        if (regionFilter != null) {
+            out.writeUTF(regionFilter.getChromosome());
+            out.writeInt(regionFilter.getStart());
+            out.writeInt(regionFilter.getEnd());
+        }
+
+        out.writeUTF(query.getStudy() == null ? "" : query.getStudy());
+        out.writeUTF(query.getSample());
+        writeStrings(out, query.getGenotypes());
+        List<String> variantTypes = new ArrayList<>();
+        if (query.getVariantTypes() != null) {
+            for (VariantType variantType : query.getVariantTypes()) {
+                variantTypes.add(variantType.name());
+            }
+        }
+        writeStrings(out, variantTypes);
+        out.writeBoolean(query.isMultiFileSample());
+        out.writeBoolean(query.getMendelianError());
+        out.writeBoolean(query.isOnlyDeNovo());
+
+        out.writeBoolean(query.hasFatherFilter());
+        if (query.hasFatherFilter()) {
+            writeBooleans(out, query.getFatherFilter());
+        }
+        out.writeBoolean(query.hasMotherFilter());
+        if (query.hasMotherFilter()) {
+            writeBooleans(out, query.getMotherFilter());
+        }
+
+        SampleFileIndexQuery fileQuery = query.getSampleFileIndexQuery();
+        out.writeShort(fileQuery.getFileIndexMask());
+        if (fileQuery.getFileIndexMask() != IndexUtils.EMPTY_MASK) {
+            writeBooleans(out, fileQuery.getValidFileIndex1());
+            writeBooleans(out, fileQuery.getValidFileIndex2());
+        }
+
+        SampleAnnotationIndexQuery annotationQuery = query.getAnnotationIndexQuery();
+        out.writeByte(annotationQuery.getAnnotationIndexMask());
+        out.writeByte(annotationQuery.getAnnotationIndex());
+        out.writeShort(annotationQuery.getConsequenceTypeMask());
+        out.writeByte(annotationQuery.getBiotypeMask());
+        out.writeByte(annotationQuery.getClinicalMask());
+        out.writeUTF(annotationQuery.getPopulationFrequencyQueryOperator().name());
+        out.writeBoolean(annotationQuery.isPopulationFrequencyQueryPartial());
+        out.writeInt(annotationQuery.getPopulationFrequencyQueries().size());
+        for (PopulationFrequencyQuery popFreqQuery : annotationQuery.getPopulationFrequencyQueries()) {
+            out.writeInt(popFreqQuery.getPosition());
+            out.writeUTF(popFreqQuery.getStudy());
+            out.writeUTF(popFreqQuery.getPopulation());
+            out.writeDouble(popFreqQuery.getMinValueInclusive());
+            out.writeDouble(popFreqQuery.getMaxValueExclusive());
+            out.writeByte(popFreqQuery.getMinCodeInclusive());
+            out.writeByte(popFreqQuery.getMaxCodeExclusive());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public static SampleIndexEntryServerFilter parseFrom(byte[] bytes) throws DeserializationException {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            byte version = in.readByte();
+            if (version != SERIALIZATION_VERSION) {
+                throw new DeserializationException("Unsupported " + SampleIndexEntryServerFilter.class.getSimpleName()
+                        + " serialization version " + version);
+            }
+            boolean count = in.readBoolean();
+            SampleIndexConfiguration configuration = SampleIndexConfiguration.fromJson(Bytes.toString(readBytes(in)));
+
+            Region regionFilter = null;
+            if (in.readBoolean()) {
+                regionFilter = new Region(in.readUTF(), in.readInt(), in.readInt());
+            }
+
+            String study = in.readUTF();
+            String sample = in.readUTF();
+            List<String> gts = readStrings(in);
+            Set<VariantType> variantTypes = new HashSet<>();
+            for (String variantType : readStrings(in)) {
+                variantTypes.add(VariantType.valueOf(variantType));
+            }
+            boolean multiFileSample = in.readBoolean();
+            boolean mendelianError = in.readBoolean();
+            boolean onlyDeNovo = in.readBoolean();
+
+            Map<String, boolean[]> fatherFilter = in.readBoolean()
+                    ? Collections.singletonMap(sample, readBooleans(in))
+                    : Collections.emptyMap();
+            Map<String, boolean[]> motherFilter = in.readBoolean()
+                    ? Collections.singletonMap(sample, readBooleans(in))
+                    : Collections.emptyMap();
+
+            Map<String, SampleFileIndexQuery> fileFilterMap;
+            short fileIndexMask = in.readShort();
+            if (fileIndexMask != IndexUtils.EMPTY_MASK) {
+                boolean[] validFileIndex1 = readBooleans(in);
+                boolean[] validFileIndex2 = readBooleans(in);
+                fileFilterMap = Collections.singletonMap(sample,
+                        new SampleFileIndexQuery(sample, fileIndexMask, null, null, validFileIndex1, validFileIndex2));
+            } else {
+                fileFilterMap = Collections.emptyMap();
+            }
+
+            byte[] annotationIndexMask = new byte[]{in.readByte(), in.readByte()};
+            short consequenceTypeMask = in.readShort();
+            byte biotypeMask = in.readByte();
+            byte clinicalMask = in.readByte();
+            QueryOperation popFreqOperator = QueryOperation.valueOf(in.readUTF());
+            boolean popFreqPartial = in.readBoolean();
+            int numPopFreqQueries = in.readInt();
+            List<PopulationFrequencyQuery> popFreqQueries = new ArrayList<>(numPopFreqQueries);
+            for (int i = 0; i < numPopFreqQueries; i++) {
+                popFreqQueries.add(new PopulationFrequencyQuery(in.readInt(), in.readUTF(), in.readUTF(),
+                        in.readDouble(), in.readDouble(), in.readByte(), in.readByte()));
+            }
+            SampleAnnotationIndexQuery annotationQuery = new SampleAnnotationIndexQuery(annotationIndexMask, consequenceTypeMask,
+                    biotypeMask, clinicalMask, popFreqOperator, popFreqQueries, popFreqPartial);
+
+            SampleIndexQuery sampleIndexQuery = new SampleIndexQuery(null, variantTypes, study,
+                    Collections.singletonMap(sample, gts),
+                    multiFileSample ? Collections.singleton(sample) : Collections.emptySet(),
+                    Collections.emptySet(),
+                    fatherFilter,
+                    motherFilter,
+                    fileFilterMap,
+                    annotationQuery,
+                    mendelianError ? Collections.singleton(sample) : Collections.emptySet(),
+                    onlyDeNovo,
+                    QueryOperation.AND);
+            return new SampleIndexEntryServerFilter(sampleIndexQuery.forSample(sample, gts), regionFilter, configuration, count);
+        } catch (IOException | RuntimeException e) {
+            throw new DeserializationException(e);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    private static void writeBooleans(DataOutputStream out, boolean[] values) throws IOException {
+        out.writeInt(values.length);
+        for (boolean value : values) {
+            out.writeBoolean(value);
+        }
+    }
+
+    private static boolean[] readBooleans(DataInputStream in) throws IOException {
+        boolean[] values = new boolean[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readBoolean();
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "SampleIndexEntryServerFilter{"
+                + "sample=" + query.getSample()
+                + ", gts=" + query.getGenotypes()
+                + ", region=" + regionFilter
+                + ", count=" + count
+                + '}';
+    }
+}
@@ -23,6 +23,7 @@ import org.opencb.opencga.storage.core.variant.query.ParsedVariantQuery;
 import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
 import org.opencb.opencga.storage.core.variant.query.VariantQueryParser;
 import org.opencb.opencga.storage.hadoop.variant.index.IndexUtils;
+import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexConverter;
 import org.opencb.opencga.storage.hadoop.variant.index.family.GenotypeCodec;
 import org.opencb.opencga.storage.hadoop.variant.index.query.*;
 import org.opencb.opencga.storage.hadoop.variant.index.query.SampleAnnotationIndexQuery.PopulationFrequencyQuery;
@@ -46,14 +47,16 @@ import static org.opencb.opencga.storage.hadoop.variant.index.sample.VariantFile
 public class SampleIndexQueryParser {
     private static Logger logger = LoggerFactory.getLogger(SampleIndexQueryParser.class);
     private final SampleIndexConfiguration configuration;
+    private final AnnotationIndexConverter annotationIndexConverter;
     private final VariantStorageMetadataManager metadataManager;
 
     public SampleIndexQueryParser(VariantStorageMetadataManager metadataManager) {
-        this(metadataManager, SampleIndexConfiguration.defaultConfiguration());
+        this(metadataManager, SampleIndexDBAdaptor.readConfiguration(metadataManager));
     }
 
     public SampleIndexQueryParser(VariantStorageMetadataManager metadataManager, SampleIndexConfiguration configuration) {
         this.configuration = configuration;
+        this.annotationIndexConverter = new AnnotationIndexConverter(configuration);
         this.metadataManager = metadataManager;
     }
 
@@ -385,22 +388,28 @@ public class SampleIndexQueryParser {
             fileIndexMap.put(sample, fileIndexQuery);
         }
 
-        boolean allSamplesAnnotated = true;
-        if (negatedGenotypesSamples.isEmpty()) {
-            for (String sample : samplesMap.keySet()) {
-                Integer sampleId = metadataManager.getSampleId(studyId, sample);
-                SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(studyId, sampleId);
-                if (!SampleIndexDBAdaptor.getSampleIndexStatus(sampleMetadata).equals(TaskMetadata.Status.READY)) {
-                    allSamplesAnnotated = false;
-                    break;
-                }
+        boolean allSamplesAnnotated = negatedGenotypesSamples.isEmpty();
+        List<String> outdatedAnnotationSamples = new ArrayList<>();
+        for (String sample : samplesMap.keySet()) {
+            Integer sampleId = metadataManager.getSampleId(studyId, sample);
+            SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(studyId, sampleId);
+            if (!SampleIndexDBAdaptor.getSampleIndexStatus(sampleMetadata).equals(TaskMetadata.Status.READY)) {
+                allSamplesAnnotated = false;
+            } else if (!SampleIndexDBAdaptor.isAnnotationIndexUpToDate(sampleMetadata, configuration)) {
+                outdatedAnnotationSamples.add(sample);
             }
-        } else {
-            allSamplesAnnotated = false;
         }
 
-        boolean completeIndex = allSamplesAnnotated && !partialIndex;
-        SampleAnnotationIndexQuery annotationIndexQuery = parseAnnotationIndexQuery(query, completeIndex);
+        SampleAnnotationIndexQuery annotationIndexQuery;
+        if (outdatedAnnotationSamples.isEmpty()) {
+            boolean completeIndex = allSamplesAnnotated && !partialIndex;
+            annotationIndexQuery = parseAnnotationIndexQuery(query, completeIndex);
+        } else {
+            // The annotation index of these samples was written with a different layout. Can not be used until rebuilt.
+            logger.warn("Skip annotation index filter. Annotation index of samples {} built with an outdated layout. "
+                    + "Current layout version {}", outdatedAnnotationSamples, configuration.getVersion());
+            annotationIndexQuery = new SampleAnnotationIndexQuery();
+        }
         Set<VariantType> variantTypes = null;
         if (isValidParam(query, TYPE)) {
             List<String> typesStr = query.getAsStringList(VariantQueryParam.TYPE.key());
@@ -825,7 +834,7 @@ public class SampleIndexQueryParser {
             if (useCtIndexFilter) {
                 ctCovered = completeIndex;
                 for (String soName : soNames) {
-                    short mask = getMaskFromSoName(soName);
+                    short mask = annotationIndexConverter.getConsequenceTypeMask(soName);
                     if (mask == IndexUtils.EMPTY_MASK) {
                         // If any element is not in the index, do not use this filter
                         consequenceTypeMask = IndexUtils.EMPTY_MASK;
@@ -834,7 +843,7 @@ public class SampleIndexQueryParser {
                     }
                     consequenceTypeMask |= mask;
                     // Some CT filter values are not precise, so the query is not covered.
-                    ctCovered &= !isImpreciseCtMask(mask);
+                    ctCovered &= !annotationIndexConverter.isImpreciseConsequenceTypeMask(mask);
                 }
                 // ConsequenceType filter is covered by index
                 if (ctCovered) {
@@ -866,7 +875,7 @@ public class SampleIndexQueryParser {
             if (useBtIndexFilter) {
                 btCovered = completeIndex;
                 for (String biotype : biotypes) {
-                    byte mask = getMaskFromBiotype(biotype);
+                    byte mask = annotationIndexConverter.getBiotypeMask(biotype);
                     if (mask == IndexUtils.EMPTY_MASK) {
                         // If any element is not in the index, do not use this filter
                         biotypeMask = IndexUtils.EMPTY_MASK;
@@ -875,7 +884,7 @@ public class SampleIndexQueryParser {
                     }
                     biotypeMask |= mask;
                     // Some CT filter values are not precise, so the query is not covered.
-                    btCovered &= !isImpreciseBtMask(mask);
+                    btCovered &= !annotationIndexConverter.isImpreciseBiotypeMask(mask);
                 }
                 // Biotype filter is covered by index
                 if (btCovered) {
@@ -903,24 +912,11 @@ public class SampleIndexQueryParser {
             annotationIndex |= CLINICAL_MASK;
             boolean clinicalCovered = true;
             for (String clinical : query.getAsStringList(ANNOT_CLINICAL_SIGNIFICANCE.key())) {
-                switch (ClinicalSignificance.valueOf(clinical)) {
-                    case likely_benign:
-                        clinicalMask |= CLINICAL_LIKELY_BENIGN_MASK;
-                        break;
-                    case VUS:
-                        clinicalMask |= CLINICAL_VUS_MASK;
-                        break;
-                    case likely_pathogenic:
-                        clinicalMask |= CLINICAL_LIKELY_PATHOGENIC_MASK;
-                        break;
-                    case pathogenic:
-                        clinicalMask |= CLINICAL_PATHOGENIC_MASK;
-                        break;
-                    case uncertain_significance:
-                    case benign:
-                    default:
-                        clinicalCovered = false;
-                        break;
+                byte mask = annotationIndexConverter.getClinicalSignificanceMask(ClinicalSignificance.valueOf(clinical).name());
+                if (mask == IndexUtils.EMPTY_MASK || annotationIndexConverter.isImpreciseClinicalSignificanceMask(mask)) {
+                    clinicalCovered = false;
+                } else {
+                    clinicalMask |= mask;
                 }
             }
             if (completeIndex && clinicalCovered) {
@@ -951,7 +947,7 @@ public class SampleIndexQueryParser {
                 studyPops.add(studyPop);
                 double freqFilter = Double.valueOf(keyOpValue[2]);
                 if (keyOpValue[1].equals("<") || keyOpValue[1].equals("<<")) {
-                    if (freqFilter <= POP_FREQ_THRESHOLD_001) {
+                    if (freqFilter <= annotationIndexConverter.getPopFreqAnyThreshold()) {
                         popFreqLessThan001.add(studyPop);
                     }
                 }
@@ -981,13 +977,14 @@ public class SampleIndexQueryParser {
                     filtersNotCoveredByPopFreqQuery.add(popFreq);
                 }
             }
+            Set<String> popFreqAnySet = annotationIndexConverter.getPopFreqAnySet();
             if (QueryOperation.OR.equals(popFreqOp)) {
                 // Should use summary popFreq mask?
-                if (POP_FREQ_ANY_001_SET.containsAll(popFreqLessThan001) && studyPops.equals(popFreqLessThan001)) {
+                if (!popFreqAnySet.isEmpty() && popFreqAnySet.containsAll(popFreqLessThan001) && studyPops.equals(popFreqLessThan001)) {
 
                     annotationIndex |= POP_FREQ_ANY_001_MASK;
 
-                    if (POP_FREQ_ANY_001_SET.size() == pair.getValue().size()) {
+                    if (popFreqAnySet.size() == pair.getValue().size()) {
                         // Do not filter using the PopFreq index, as the summary bit covers the filter
                         popFreqQuery.clear();
 
@@ -1010,7 +1007,7 @@ public class SampleIndexQueryParser {
             } else {
                 popFreqOp = QueryOperation.AND; // it could be null
                 // With AND, the query MUST contain ANY popFreq
-                for (String s : POP_FREQ_ANY_001_SET) {
+                for (String s : popFreqAnySet) {
                     if (popFreqLessThan001.contains(s)) {
                         annotationIndex |= POP_FREQ_ANY_001_MASK;
                         break;
@@ -16,6 +16,7 @@ import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageOptions;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 
 import static org.apache.hadoop.hbase.util.Bytes.SIZEOF_INT;
@@ -29,7 +30,11 @@ import static org.apache.hadoop.hbase.util.Bytes.SIZEOF_INT;
  */
 public final class SampleIndexSchema {
 
+    /** Default number of positions stored in each row. Used by all the studies created without an explicit batch size. */
     public static final int BATCH_SIZE = 1_000_000;
+    /** Positions within the batch are stored with 20 bits at {@link SampleIndexVariantBiConverter}. */
+    public static final int MAX_BATCH_SIZE = 0x10_00_00;
+    public static final int MIN_BATCH_SIZE = 10_000;
     public static final Comparator<Variant> INTRA_CHROMOSOME_VARIANT_COMPARATOR =
             Comparator.comparingInt(Variant::getStart)
                     .thenComparingInt(Variant::getEnd)
@@ -73,7 +78,49 @@ public final class SampleIndexSchema {
     }
 
     public static int getChunkStart(Integer start) {
-        return (start / BATCH_SIZE) * BATCH_SIZE;
+        return getChunkStart(start, BATCH_SIZE);
+    }
+
+    public static int getChunkStart(int start, int batchSize) {
+        return (start / batchSize) * batchSize;
+    }
+
+    public static void checkBatchSize(int batchSize) {
+        if (batchSize < MIN_BATCH_SIZE || batchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Invalid SampleIndex batch size " + batchSize + ". "
+                    + "Must be between " + MIN_BATCH_SIZE + " and " + MAX_BATCH_SIZE);
+        }
+    }
+
+    /**
+     * Recommend a batch size given the density of variants observed in a sample.
+     * The batch size is chosen so most of the rows contain around the given number of variants,
+     * and it is rounded down to a multiple of {@link #MIN_BATCH_SIZE}.
+     *
+     * @param variantsPerBatch  Number of variants observed in each of the rows of the sample
+     * @param currentBatchSize  Batch size used to build the observed rows
+     * @param targetVariants    Desired number of variants per row
+     * @return Recommended batch size
+     */
+    public static int recommendBatchSize(int[] variantsPerBatch, int currentBatchSize, int targetVariants) {
+        if (variantsPerBatch.length == 0 || targetVariants <= 0) {
+            return currentBatchSize;
+        }
+        int[] sorted = Arrays.copyOf(variantsPerBatch, variantsPerBatch.length);
+        Arrays.sort(sorted);
+        // Use the 90th percentile, so a few very dense regions do not shrink the whole study
+        int observed = sorted[(int) Math.ceil(sorted.length * 0.9) - 1];
+        if (observed <= 0) {
+            return MAX_BATCH_SIZE;
+        }
+        double batchSize = ((double) currentBatchSize) * targetVariants / observed;
+        if (batchSize >= MAX_BATCH_SIZE) {
+            return MAX_BATCH_SIZE;
+        } else if (batchSize <= MIN_BATCH_SIZE) {
+            return MIN_BATCH_SIZE;
+        } else {
+            return ((int) batchSize / MIN_BATCH_SIZE) * MIN_BATCH_SIZE;
+        }
     }
 
     public static int getExpectedSize(String chromosome) {
@@ -91,15 +138,19 @@ public final class SampleIndexSchema {
     }
 
     public static byte[] toRowKey(int sample, String chromosome, int position) {
+        return toRowKey(sample, chromosome, position, BATCH_SIZE);
+    }
+
+    public static byte[] toRowKey(int sample, String chromosome, int position, int batchSize) {
         int expectedSize = getExpectedSize(chromosome);
         byte[] rk = new byte[expectedSize];
 
-        toRowKey(sample, chromosome, position, rk);
+        toRowKey(sample, chromosome, position, batchSize, rk);
 
         return rk;
     }
 
-    private static int toRowKey(int sample, String chromosome, int position, byte[] rk) {
+    private static int toRowKey(int sample, String chromosome, int position, int batchSize, byte[] rk) {
         int offset = 0;
         offset += PInteger.INSTANCE.toBytes(sample, rk, offset);
 
@@ -108,7 +159,7 @@ public final class SampleIndexSchema {
             offset += PVarchar.INSTANCE.toBytes(chromosome, rk, offset);
             rk[offset] = 0;
             offset++;
-            offset += PInteger.INSTANCE.toBytes(position / BATCH_SIZE, rk, offset);
+            offset += PInteger.INSTANCE.toBytes(position / batchSize, rk, offset);
         }
         return offset;
     }
@@ -140,7 +191,15 @@ public final class SampleIndexSchema {
     }
 
     public static int batchStartFromRowKey(byte[] row) {
-        return ((Integer) PInteger.INSTANCE.toObject(row, row.length - 4, 4)) * BATCH_SIZE;
+        return batchStartFromRowKey(row, BATCH_SIZE);
+    }
+
+    public static int batchStartFromRowKey(byte[] row, int batchSize) {
+        return batchIndexFromRowKey(row) * batchSize;
+    }
+
+    public static int batchIndexFromRowKey(byte[] row) {
+        return (Integer) PInteger.INSTANCE.toObject(row, row.length - 4, 4);
     }
 
     public static boolean isGenotypeColumn(Cell cell) {
@@ -31,6 +31,17 @@ public class SampleIndexVariantBiConverter {
     public static final int INT24_LENGTH = 3;
     public static final byte BYTE_SEPARATOR = 0;
 
+    private final int batchSize;
+
+    public SampleIndexVariantBiConverter() {
+        this(SampleIndexSchema.BATCH_SIZE);
+    }
+
+    public SampleIndexVariantBiConverter(int batchSize) {
+        SampleIndexSchema.checkBatchSize(batchSize);
+        this.batchSize = batchSize;
+    }
+
     public int expectedSize(Variant variant, boolean interVariantSeparator) {
         return expectedSize(variant.getReference(), getAlternate(variant), interVariantSeparator);
     }
@@ -130,7 +141,7 @@ public class SampleIndexVariantBiConverter {
         if (isGenotypeColumn(cell)) {
             byte[] row = CellUtil.cloneRow(cell);
             String chromosome = SampleIndexSchema.chromosomeFromRowKey(row);
-            int batchStart = SampleIndexSchema.batchStartFromRowKey(row);
+            int batchStart = SampleIndexSchema.batchStartFromRowKey(row, batchSize);
             variants = toVariants(chromosome, batchStart, cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
         } else {
             variants = Collections.emptyList();
@@ -624,7 +635,7 @@ public class SampleIndexVariantBiConverter {
     }
 
     protected int getRelativeStart(Variant variant) {
-        return variant.getStart() % SampleIndexSchema.BATCH_SIZE;
+        return variant.getStart() % batchSize;
     }
 
     protected String getAlternate(Variant v) {
@@ -37,14 +37,23 @@ public class SingleSampleIndexVariantDBIterator extends VariantDBIterator {
             regions = VariantQueryUtils.mergeRegions(query.getRegions());
         }
 
+        SampleIndexConfiguration configuration = dbAdaptor.getConfiguration(dbAdaptor.toStudyId(query.getStudy()));
         Iterator<Iterator<Variant>> iterators = regions.stream()
                 .map(region -> {
                     // One scan per region
                     Scan scan = dbAdaptor.parse(query, region);
-                    HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(dbAdaptor.getConfiguration());
-                    SampleIndexEntryFilter filter = dbAdaptor.buildSampleIndexEntryFilter(query, region);
                     try {
-                        ResultScanner scanner = table.getScanner(scan);
+                        ResultScanner scanner = dbAdaptor.getServerSideFilterScanner(table, scan, query, region, configuration, false);
+                        if (scanner != null) {
+                            // Already filtered at the region servers
+                            addCloseable(scanner);
+                            int batchSize = configuration.getBatchSize();
+                            return Iterators.concat(Iterators.transform(scanner.iterator(),
+                                    result -> SampleIndexEntryServerFilter.getVariants(result, batchSize).iterator()));
+                        }
+                        HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(configuration);
+                        SampleIndexEntryFilter filter = dbAdaptor.buildSampleIndexEntryFilter(query, region);
+                        scanner = table.getScanner(scan);
                         addCloseable(scanner);
                         Iterator<Result> resultIterator = scanner.iterator();
                         Iterator<Iterator<Variant>> transform = Iterators.transform(resultIterator,
@@ -71,6 +71,7 @@ public class HadoopVariantExporter extends VariantExporter {
         if ((outputFileUri == null)
                 || (variantsFile != null)
                 || smallQuery
+                || outputFormat == VariantWriterFactory.VariantOutputFormat.PLINK_BED // Requires multiple outputs. Not supported in MR
                 || queryOptions.getBoolean("skipMapReduce", false)
                 || (!(ioConnector instanceof HDFSIOConnector) && !(ioConnector instanceof LocalIOConnector))) {
             super.export(outputFileUri, outputFormat, variantsFile, query, queryOptions);
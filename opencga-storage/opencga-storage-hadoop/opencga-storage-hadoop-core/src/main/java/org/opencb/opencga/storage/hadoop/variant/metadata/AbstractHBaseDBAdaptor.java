@@ -18,6 +18,7 @@ import org.opencb.opencga.storage.core.variant.io.json.mixin.GenericRecordAvroJs
 import org.opencb.opencga.storage.hadoop.utils.HBaseLockManager;
 import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageOptions;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.utils.HBaseVariantTableNameGenerator;
 import org.slf4j.Logger;
@@ -68,7 +69,9 @@ public abstract class AbstractHBaseDBAdaptor {
             // Create a new instance of HBaseManager to close only if needed
             this.hBaseManager = new HBaseManager(hBaseManager);
         }
-        lock = new HBaseLockManager(this.hBaseManager, this.tableName, family, null);
+        lock = new HBaseLockManager(this.hBaseManager, this.tableName, family, null)
+                .setFair(configuration.getBoolean(HadoopVariantStorageOptions.METADATA_LOCK_FAIR.key(),
+                        HadoopVariantStorageOptions.METADATA_LOCK_FAIR.defaultValue()));
     }
 
     protected void ensureTableExists() {
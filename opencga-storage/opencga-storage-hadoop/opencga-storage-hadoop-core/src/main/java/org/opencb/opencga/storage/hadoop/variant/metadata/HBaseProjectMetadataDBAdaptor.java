@@ -14,6 +14,7 @@ import org.opencb.opencga.storage.core.metadata.models.Lock;
 import org.opencb.opencga.storage.core.metadata.models.ProjectMetadata;
 import org.opencb.opencga.storage.hadoop.utils.HBaseLockManager;
 import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageOptions;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantTableHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,7 +45,9 @@ public class HBaseProjectMetadataDBAdaptor extends AbstractHBaseDBAdaptor implem
 
     public HBaseProjectMetadataDBAdaptor(HBaseManager hBaseManager, String metaTableName, Configuration configuration) {
         super(hBaseManager, metaTableName, configuration);
-        lock = new HBaseLockManager(this.hBaseManager, this.tableName, family, null);
+        lock = new HBaseLockManager(this.hBaseManager, this.tableName, family, null)
+                .setFair(configuration.getBoolean(HadoopVariantStorageOptions.METADATA_LOCK_FAIR.key(),
+                        HadoopVariantStorageOptions.METADATA_LOCK_FAIR.defaultValue()));
     }
 
     @Override
@@ -20,6 +20,7 @@ import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.core.QueryParam;
 import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.metadata.models.ProjectMetadata;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.query.VariantQueryParser;
 import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
@@ -30,6 +31,9 @@ import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHBaseQueryParse
 import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantSqlQueryParser;
 import org.opencb.opencga.storage.hadoop.variant.converters.HBaseVariantConverterConfiguration;
+import org.opencb.opencga.storage.hadoop.variant.converters.annotation.VariantAnnotationBinaryCodec;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexQueryParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -293,6 +297,31 @@ public class VariantMapReduceUtil {
         }
     }
 
+    public static void setSampleIndexConfiguration(Job job, SampleIndexConfiguration configuration) {
+        job.getConfiguration().set(SampleIndexDBAdaptor.SAMPLE_INDEX_CONFIGURATION, configuration.toJson());
+    }
+
+    public static SampleIndexConfiguration getSampleIndexConfiguration(Configuration conf) {
+        String json = conf.get(SampleIndexDBAdaptor.SAMPLE_INDEX_CONFIGURATION);
+        if (StringUtils.isEmpty(json)) {
+            return SampleIndexConfiguration.defaultConfiguration();
+        } else {
+            return SampleIndexConfiguration.fromJson(json);
+        }
+    }
+
+    public static void setAnnotationWriterSchemas(Job job, ProjectMetadata projectMetadata) {
+        job.getConfiguration().set(VariantAnnotationBinaryCodec.WRITER_SCHEMAS,
+                new ObjectMap(VariantAnnotationBinaryCodec.getWriterSchemas(projectMetadata)).toJson());
+    }
+
+    public static void loadAnnotationWriterSchemas(Configuration conf) {
+        String json = conf.get(VariantAnnotationBinaryCodec.WRITER_SCHEMAS);
+        if (StringUtils.isNotEmpty(json)) {
+            VariantAnnotationBinaryCodec.loadWriterSchemas(new ObjectMap(json));
+        }
+    }
+
     public static void initVariantRowMapperJobFromHBase(Job job, String variantTableName, Scan scan,
                                                      Class<? extends VariantRowMapper> variantMapperClass)
             throws IOException {
@@ -13,6 +13,7 @@ import org.opencb.biodata.tools.variant.stats.VariantStatsCalculator;
 import org.opencb.commons.run.Task;
 import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
 import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
+import org.opencb.opencga.storage.core.variant.stats.GenotypeCounter;
 import org.opencb.opencga.storage.core.variant.query.projection.VariantQueryProjection;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
 import org.opencb.opencga.storage.hadoop.variant.converters.AbstractPhoenixConverter;
@@ -100,16 +101,20 @@ public class HBaseVariantStatsCalculator extends AbstractPhoenixConverter implem
     }
 
     private final class HBaseToGenotypeCountConverter extends HBaseToStudyEntryConverter {
-        private final Set<Integer> sampleIdsSet;
+        private static final int EMPTY_GT = -2;
+        // Position of each sample in "sampleIds", by sampleId
+        private final int[] sampleIndex;
         private final Set<Integer> fileIds;
         private final Map<Integer, Collection<Integer>> samplesInFile;
         private final boolean statsMultiAllelic;
         private String defaultGenotype;
+        private final ThreadLocal<GenotypeCounter> genotypeCounter = ThreadLocal.withInitial(GenotypeCounter::new);
+        private final ThreadLocal<int[]> sampleGenotypeCodes = ThreadLocal.withInitial(() -> new int[sampleIds.size()]);
 
         private HBaseToGenotypeCountConverter(VariantStorageMetadataManager metadataManager,
                                               boolean statsMultiAllelic, String unknownGenotype) {
             super(metadataManager, null);
-            sampleIdsSet = new HashSet<>(sampleIds);
+            sampleIndex = GenotypeCounter.buildSampleIndex(sampleIds);
             this.statsMultiAllelic = statsMultiAllelic;
             if (excludeFiles(this.statsMultiAllelic, unknownGenotype, Aggregation.NONE)) {
                 fileIds = Collections.emptySet();
@@ -121,7 +126,7 @@ public class HBaseVariantStatsCalculator extends AbstractPhoenixConverter implem
                     samplesInFile = new HashMap<>(sampleIds.size());
                     metadataManager.sampleMetadataIterator(sm.getId()).forEachRemaining(sampleMetadata -> {
                         int sampleId = sampleMetadata.getId();
-                        if (sampleIdsSet.contains(sampleId)) {
+                        if (GenotypeCounter.indexOf(sampleIndex, sampleId) != GenotypeCounter.NO_CODE) {
                             fileIds.addAll(sampleMetadata.getFiles());
                             for (Integer file : sampleMetadata.getFiles()) {
                                 samplesInFile.computeIfAbsent(file, f -> new HashSet<>()).add(sampleId);
@@ -142,25 +147,34 @@ public class HBaseVariantStatsCalculator extends AbstractPhoenixConverter implem
         }
 
         public VariantStatsPartial apply(Variant variant, VariantRow result, VariantStatsPartial partial) {
-            Set<Integer> processedSamples = new HashSet<>();
+            // Genotype code of each sample, in the same order as "sampleIds".
+            // NO_CODE for samples not in the row, and EMPTY_GT for samples in the row without genotype
+            GenotypeCounter counter = genotypeCounter.get();
+            counter.reset();
+            int[] sampleCodes = sampleGenotypeCodes.get();
+            Arrays.fill(sampleCodes, GenotypeCounter.NO_CODE);
+            int[] processedSamples = new int[1];
             Set<Integer> filesInThisVariant = new HashSet<>();
             AtomicInteger fillMissingColumnValue = new AtomicInteger(-1);
-            Map<Integer, String> sampleToGT = new HashMap<>();
             Map<String, List<Integer>> alternateFileMap = new HashMap<>();
 
             result.walker()
                     .onSample(sample -> {
                         int sampleId = sample.getSampleId();
+                        int idx = GenotypeCounter.indexOf(sampleIndex, sampleId);
                         // Exclude other samples
-                        if (sampleIdsSet.contains(sampleId)) {
-                            processedSamples.add(sampleId);
+                        if (idx != GenotypeCounter.NO_CODE) {
+                            if (sampleCodes[idx] == GenotypeCounter.NO_CODE) {
+                                processedSamples[0]++;
+                            }
 
                             String gt = sample.getGT();
                             if (gt == null || gt.isEmpty()) {
                                 // This is a really weird situation, most likely due to errors in the input files
                                 logger.error("Empty genotype at sample " + sampleId + " in variant " + variant);
+                                sampleCodes[idx] = EMPTY_GT;
                             } else {
-                                sampleToGT.put(sampleId, gt);
+                                sampleCodes[idx] = counter.getCode(gt);
                             }
                         }
                     })
@@ -196,55 +210,53 @@ public class HBaseVariantStatsCalculator extends AbstractPhoenixConverter implem
 
             // If there are multiple different alternates, rearrange genotype
             if (statsMultiAllelic && alternateFileMap.size() > 1) {
-                rearrangeGenotypes(variant, sampleToGT, alternateFileMap);
+                rearrangeGenotypes(variant, counter, sampleCodes, alternateFileMap);
             }
 
-            Map<String, Integer> gtStrCount = new HashMap<>(5);
-            for (String gt : sampleToGT.values()) {
-                addGt(gtStrCount, gt, 1);
+            for (int code : sampleCodes) {
+                if (code >= 0) {
+                    counter.add(code);
+                }
             }
 
-            Set<Integer> unknownSamples = Collections.emptySet();
-            if (processedSamples.size() != sampleIds.size()) {
+            int numProcessedSamples = processedSamples[0];
+            if (numProcessedSamples != sampleIds.size()) {
 
                 if (defaultGenotype.equals(HOM_REF)) {
                     // All missing samples are reference.
-                    addGt(gtStrCount, HOM_REF, sampleIds.size() - processedSamples.size());
+                    counter.add(HOM_REF, sampleIds.size() - numProcessedSamples);
                 } else if (fillMissingColumnValue.get() == -1 && filesInThisVariant.isEmpty()) {
                     // All missing samples are unknown.
-                    addGt(gtStrCount, defaultGenotype, sampleIds.size() - processedSamples.size());
+                    counter.add(defaultGenotype, sampleIds.size() - numProcessedSamples);
                 } else {
                     // Some samples are missing, some other are reference.
-                    unknownSamples = new HashSet<>();
 
                     // Same order as "sampleIds"
                     List<Boolean> missingUpdatedList = getMissingUpdatedSamples(sm, fillMissingColumnValue.get());
                     List<Boolean> sampleWithVariant = getSampleWithVariant(sm, filesInThisVariant);
-                    int i = 0;
                     int reference = 0;
                     int unknown = 0;
-                    for (Integer sampleId : sampleIds) {
-                        if (!processedSamples.contains(sampleId)) {
+                    for (int i = 0; i < sampleCodes.length; i++) {
+                        if (sampleCodes[i] == GenotypeCounter.NO_CODE) {
                             if (missingUpdatedList.get(i) || sampleWithVariant.get(i)) {
                                 reference++;
                             } else {
-                                unknownSamples.add(sampleId);
                                 unknown++;
                             }
                         }
-                        i++;
                     }
-                    addGt(gtStrCount, HOM_REF, reference);
-                    addGt(gtStrCount, defaultGenotype, unknown);
+                    counter.add(HOM_REF, reference);
+                    counter.add(defaultGenotype, unknown);
                 }
             }
 
-            gtStrCount.forEach((str, count) -> partial.gtCountMap.merge(new Genotype(str), count, Integer::sum));
+            counter.addTo(partial.gtCountMap);
 
             return partial;
         }
 
-        private void rearrangeGenotypes(Variant variant, Map<Integer, String> sampleToGT, Map<String, List<Integer>> alternateFileMap) {
+        private void rearrangeGenotypes(Variant variant, GenotypeCounter counter, int[] sampleCodes,
+                                        Map<String, List<Integer>> alternateFileMap) {
             // Get set of reordered alternates.
             // Include the main alternate as first alternate. The "alternateFileMap" only contains the secondary alternates.
             Set<AlternateCoordinate> reorderedAlternatesSet = new LinkedHashSet<>();
@@ -276,11 +288,12 @@ public class HBaseVariantStatsCalculator extends AbstractPhoenixConverter implem
 
                 for (Integer fileId : entry.getValue()) {
                     for (Integer sampleId : samplesInFile.get(fileId)) {
-                        String gt = sampleToGT.get(sampleId);
-                        if (gt != null) {
+                        int idx = sampleIndex[sampleId];
+                        if (sampleCodes[idx] >= 0) {
+                            String gt = counter.getGenotype(sampleCodes[idx]);
                             try {
                                 Genotype newGt = rearranger.rearrangeGenotype(new Genotype(gt));
-                                sampleToGT.put(sampleId, newGt.toString());
+                                sampleCodes[idx] = counter.getCode(newGt.toString());
                             } catch (RuntimeException e) {
                                 throw new IllegalStateException("Error rearranging GT " + gt + " at variant " + variant
                                         + " with reorderedAlternates " + reorderedAlternates
@@ -291,10 +304,6 @@ public class HBaseVariantStatsCalculator extends AbstractPhoenixConverter implem
                 }
             }
         }
-
-        private void addGt(Map<String, Integer> gtStrCount, String gt, int num) {
-            gtStrCount.merge(gt, num, Integer::sum);
-        }
     }
 
     protected static boolean excludeFiles(boolean statsMultiAllelic, String unknownGenotype, Aggregation aggregation) {
@@ -16,6 +16,8 @@
 
 package org.opencb.opencga.storage.hadoop.utils;
 
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.Before;
@@ -24,6 +26,7 @@ import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.ExternalResource;
 import org.opencb.opencga.storage.core.metadata.models.Lock;
+import org.opencb.opencga.storage.core.utils.LockMetrics;
 import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
 import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageTest;
 
@@ -73,7 +76,70 @@ public class HBaseLockManagerTest extends VariantStorageBaseTest implements Hado
 
     @Test
     public void testConcurrentLock() throws Exception {
-        int lockId = 2;
+        testConcurrentLock(2, 20000);
+    }
+
+    @Test
+    public void testConcurrentFairLock() throws Exception {
+        hbaseLock.setFair(true);
+        testConcurrentLock(5, 60000);
+        assertTrue(LockMetrics.get(DB_NAME + ":R:" + Bytes.toStringBinary(getColumn(5))).getContended() > 0);
+    }
+
+    @Test
+    public void testFairLockTicketOrder() throws Exception {
+        hbaseLock.setFair(true);
+        int lockId = 6;
+        int nThreads = 5;
+        List<Integer> grantOrder = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executorService = Executors.newFixedThreadPool(nThreads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        Lock firstLock = hbaseLock.lock(getColumn(lockId), 1000, 10000);
+        for (int t = 0; t < nThreads; t++) {
+            int threadId = t;
+            futures.add(executorService.submit(() -> {
+                try {
+                    Lock lock = hbaseLock.lock(getColumn(lockId), 1000, 60000);
+                    grantOrder.add(threadId);
+                    Thread.sleep(50);
+                    lock.unlock();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+            // Wait until the ticket of this thread is in the queue, so tickets are sorted by thread id
+            while (getQueueWaiters(lockId) < t + 1) {
+                Thread.sleep(10);
+            }
+        }
+        firstLock.unlock();
+
+        executorService.shutdown();
+        executorService.awaitTermination(60, TimeUnit.SECONDS);
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        List<Integer> expected = new ArrayList<>();
+        for (int t = 0; t < nThreads; t++) {
+            expected.add(t);
+        }
+        assertEquals(expected, grantOrder);
+        assertEquals(0, getQueueWaiters(lockId));
+    }
+
+    private long getQueueWaiters(int lockId) throws Exception {
+        byte[] queueColumn = Bytes.add(getColumn(lockId), Bytes.toBytes("_QUEUE"));
+        String value = hbaseLock.hbaseManager.act(DB_NAME, table -> {
+            Result result = table.get(new Get(Bytes.toBytes("R")).addColumn(Bytes.toBytes("0"), queueColumn));
+            return result.isEmpty() ? "" : Bytes.toString(result.getValue(Bytes.toBytes("0"), queueColumn));
+        });
+        long now = System.currentTimeMillis();
+        return HBaseLockManager.readQueue(value.isEmpty() ? new String[0] : value.split("_"))
+                .values().stream().filter(expireDate -> expireDate >= now).count();
+    }
+
+    private void testConcurrentLock(int lockId, long timeout) throws Exception {
 
         AtomicInteger counter = new AtomicInteger(0);
         Set<String> threadWithLock = Collections.synchronizedSet(new HashSet<>());
@@ -86,7 +152,7 @@ public class HBaseLockManagerTest extends VariantStorageBaseTest implements Hado
                 try {
                     for (int i = 0; i < 5; i++) {
                         System.out.println("i = " + i);
-                        Lock lock = hbaseLock.lock(getColumn(lockId), 1000, 20000);
+                        Lock lock = hbaseLock.lock(getColumn(lockId), 1000, timeout);
                         System.out.println("[" + Thread.currentThread().getName() + "] Enter LOCK");
                         assertEquals(threadWithLock.toString(), 0, threadWithLock.size());
                         threadWithLock.add(Thread.currentThread().getName());
@@ -196,6 +262,27 @@ public class HBaseLockManagerTest extends VariantStorageBaseTest implements Hado
         lock.refresh();
     }
 
+    @Test
+    public void testGetFirstInQueue() {
+        long e = System.currentTimeMillis() + 1000;
+
+        assertNull(HBaseLockManager.getFirstInQueue(new String[]{}));
+        assertEquals("abc", HBaseLockManager.getFirstInQueue(new String[]{"TICKET-abc:" + e, "TICKET-efg:" + e}));
+
+        // Expired ticket
+        assertEquals("efg", HBaseLockManager.getFirstInQueue(new String[]{"TICKET-abc:123", "TICKET-efg:" + e}));
+
+        // Refreshed ticket keeps the position
+        assertEquals("abc", HBaseLockManager.getFirstInQueue(new String[]{"TICKET-abc:123", "TICKET-efg:" + e, "TICKET-abc:" + e}));
+
+        // Left the queue
+        assertEquals("efg", HBaseLockManager.getFirstInQueue(new String[]{"TICKET-abc:" + e, "TICKET-efg:" + e, "DONE-abc:0"}));
+        assertNull(HBaseLockManager.getFirstInQueue(new String[]{"TICKET-abc:" + e, "DONE-abc:0", "TICKET-abc:" + e}));
+
+        assertTrue(HBaseLockManager.isFirstInQueue("abc", new String[]{}));
+        assertFalse(HBaseLockManager.isFirstInQueue("efg", new String[]{"TICKET-abc:" + e, "TICKET-efg:" + e}));
+    }
+
     @Test
     public void testGetCurrent() {
         long e = System.currentTimeMillis() + 1000;
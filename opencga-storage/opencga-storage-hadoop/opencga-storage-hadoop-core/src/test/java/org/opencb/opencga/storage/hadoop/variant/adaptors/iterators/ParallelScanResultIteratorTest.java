@@ -0,0 +1,179 @@
+package org.opencb.opencga.storage.hadoop.variant.adaptors.iterators;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ParallelScanResultIteratorTest {
+
+    private static final byte[] FAMILY = Bytes.toBytes("0");
+    private static final byte[][] REGION_START_KEYS = {
+            new byte[0], Bytes.toBytes("row_020"), Bytes.toBytes("row_050"), Bytes.toBytes("row_080")};
+
+    @Test
+    public void testSplitByRegions() {
+        Scan scan = new Scan();
+        scan.setStartRow(Bytes.toBytes("row_010"));
+        scan.setStopRow(Bytes.toBytes("row_060"));
+
+        List<Scan> splits = ParallelScanResultIterator.splitByRegions(Collections.singletonList(scan), REGION_START_KEYS);
+        assertEquals(Arrays.asList("row_010-row_020", "row_020-row_050", "row_050-row_060"), toString(splits));
+
+        // Unbounded scan
+        splits = ParallelScanResultIterator.splitByRegions(Collections.singletonList(new Scan()), REGION_START_KEYS);
+        assertEquals(Arrays.asList("-row_020", "row_020-row_050", "row_050-row_080", "row_080-"), toString(splits));
+
+        // Scan within one region
+        scan = new Scan();
+        scan.setStartRow(Bytes.toBytes("row_021"));
+        scan.setStopRow(Bytes.toBytes("row_030"));
+        splits = ParallelScanResultIterator.splitByRegions(Collections.singletonList(scan), REGION_START_KEYS);
+        assertEquals(Collections.singletonList("row_021-row_030"), toString(splits));
+    }
+
+    @Test
+    public void testSorted() {
+        List<Scan> splits = ParallelScanResultIterator.splitByRegions(Collections.singletonList(new Scan()), REGION_START_KEYS);
+        List<String> rows = new ArrayList<>();
+        try (ParallelScanResultIterator iterator = new ParallelScanResultIterator(splits, this::scan, 3, 2, true)) {
+            iterator.forEachRemaining(result -> rows.add(Bytes.toString(result.getRow())));
+        }
+
+        assertEquals(expectedRows(), rows);
+    }
+
+    @Test
+    public void testUnsorted() {
+        List<Scan> splits = ParallelScanResultIterator.splitByRegions(Collections.singletonList(new Scan()), REGION_START_KEYS);
+        List<String> rows = new ArrayList<>();
+        try (ParallelScanResultIterator iterator = new ParallelScanResultIterator(splits, this::scan, 3, 2, false)) {
+            iterator.forEachRemaining(result -> rows.add(Bytes.toString(result.getRow())));
+        }
+
+        assertEquals(expectedRows().size(), rows.size());
+        assertEquals(new TreeSet<>(expectedRows()), new TreeSet<>(rows));
+    }
+
+    @Test
+    public void testCloseBeforeFinish() {
+        List<Scan> splits = ParallelScanResultIterator.splitByRegions(Collections.singletonList(new Scan()), REGION_START_KEYS);
+        ParallelScanResultIterator iterator = new ParallelScanResultIterator(splits, this::scan, 2, 1, true);
+        assertTrue(iterator.hasNext());
+        assertEquals("row_000", Bytes.toString(iterator.next().getRow()));
+        iterator.close();
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test(expected = VariantQueryException.class)
+    public void testError() {
+        List<Scan> splits = ParallelScanResultIterator.splitByRegions(Collections.singletonList(new Scan()), REGION_START_KEYS);
+        try (ParallelScanResultIterator iterator = new ParallelScanResultIterator(splits, scan -> {
+            throw new IOException("Broken scanner");
+        }, 2, 1, true)) {
+            iterator.forEachRemaining(result -> { });
+        }
+    }
+
+    @Test
+    public void testSortedMoreSplitsThanThreads() throws Exception {
+        // Many small splits, followed by a large one, that does not fit in the prefetch queue
+        List<Scan> splits = new ArrayList<>();
+        for (int i = 0; i < 19; i++) {
+            splits.add(new Scan(Bytes.toBytes(String.format("row_%03d", i)), Bytes.toBytes(String.format("row_%03d", i + 1))));
+        }
+        splits.add(new Scan(Bytes.toBytes("row_019"), Bytes.toBytes("row_030")));
+        int numThreads = 2;
+        long scannerTimeout = 200;
+
+        AtomicInteger consumedSplits = new AtomicInteger();
+        List<Integer> openedSplits = Collections.synchronizedList(new ArrayList<>());
+        ParallelScanResultIterator.ScannerFactory scannerFactory = scan -> {
+            int split = splits.indexOf(scan);
+            openedSplits.add(split);
+            // Only scans within the window of the consumer are open
+            if (split >= consumedSplits.get() + numThreads) {
+                throw new IOException("Split " + split + " opened with " + consumedSplits.get() + " consumed splits");
+            }
+            return expiringScanner(scan(scan), scannerTimeout);
+        };
+
+        List<String> rows = new ArrayList<>();
+        try (ParallelScanResultIterator iterator = new ParallelScanResultIterator(splits, scannerFactory, numThreads, 2, true)) {
+            while (iterator.hasNext()) {
+                String row = Bytes.toString(iterator.next().getRow());
+                rows.add(row);
+                if (row.compareTo("row_019") < 0) {
+                    consumedSplits.incrementAndGet();
+                }
+                // Slow consumer. The whole scan takes longer than the scanner timeout
+                Thread.sleep(20);
+            }
+        }
+
+        assertEquals(expectedRows().subList(0, 30), rows);
+        assertEquals(splits.size(), openedSplits.size());
+    }
+
+    /**
+     * Mimics an HBase scanner, that expires if it is not read for longer than the scanner timeout.
+     */
+    private Iterable<Result> expiringScanner(Iterable<Result> results, long scannerTimeout) {
+        Iterator<Result> iterator = results.iterator();
+        AtomicLong lastAccess = new AtomicLong(System.currentTimeMillis());
+        return () -> new Iterator<Result>() {
+            @Override
+            public boolean hasNext() {
+                checkLease();
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Result next() {
+                checkLease();
+                return iterator.next();
+            }
+
+            private void checkLease() {
+                long now = System.currentTimeMillis();
+                if (now - lastAccess.getAndSet(now) > scannerTimeout) {
+                    throw new IllegalStateException("Scanner lease expired");
+                }
+            }
+        };
+    }
+
+    private List<String> expectedRows() {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(String.format("row_%03d", i));
+        }
+        return rows;
+    }
+
+    private Iterable<Result> scan(Scan scan) {
+        String start = Bytes.toString(scan.getStartRow());
+        String stop = Bytes.toString(scan.getStopRow());
+        return expectedRows().stream()
+                .filter(row -> row.compareTo(start) >= 0 && (stop.isEmpty() || row.compareTo(stop) < 0))
+                .map(row -> Result.create(Collections.singletonList(
+                        new KeyValue(Bytes.toBytes(row), FAMILY, Bytes.toBytes("c"), Bytes.toBytes(row)))))
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> toString(List<Scan> scans) {
+        return scans.stream()
+                .map(scan -> Bytes.toString(scan.getStartRow()) + "-" + Bytes.toString(scan.getStopRow()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,117 @@
+package org.opencb.opencga.storage.hadoop.variant.converters;
+
+import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.schema.types.PVarcharArray;
+import org.apache.phoenix.schema.types.PhoenixArray;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class SampleDataDecoderTest {
+
+    private static final String[] GENOTYPES = {"0/0", "0/1", "1/1", "./.", "0|1", "1|0"};
+    private final Logger logger = LoggerFactory.getLogger(SampleDataDecoderTest.class);
+
+    @Test
+    public void testDecode() {
+        SampleDataDecoder decoder = new SampleDataDecoder();
+        checkDecode(decoder, "0/1", "PASS", "12");
+        checkDecode(decoder, "0/1", null, "12");
+        checkDecode(decoder, "1/1", "PASS", null);
+        checkDecode(decoder, "0/0");
+        checkDecode(decoder, null, "PASS");
+        checkDecode(decoder);
+    }
+
+    @Test
+    public void testDecodeWithOffset() {
+        byte[] bytes = toBytes("0/1", "PASS");
+        byte[] padded = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, padded, 3, bytes.length);
+
+        assertEquals(Arrays.asList("0/1", "PASS"), new SampleDataDecoder().decode(padded, 3, bytes.length));
+    }
+
+    @Test
+    public void testSharedGenotypes() {
+        SampleDataDecoder decoder = new SampleDataDecoder();
+        byte[] bytes1 = toBytes("0/1", "PASS");
+        byte[] bytes2 = toBytes("0/1", "LowQual");
+
+        String gt1 = decoder.decode(bytes1, 0, bytes1.length).get(0);
+        String gt2 = decoder.decode(bytes2, 0, bytes2.length).get(0);
+        assertSame(gt1, gt2);
+
+        // Dictionary shared between decoders
+        SampleDataDecoder decoder2 = new SampleDataDecoder(SampleDataDecoder.newDictionary());
+        assertEquals(gt1, decoder2.decode(bytes2, 0, bytes2.length).get(0));
+    }
+
+    @Test
+    public void testDecodeRandom() {
+        SampleDataDecoder decoder = new SampleDataDecoder();
+        Random random = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            checkDecode(decoder, GENOTYPES[random.nextInt(GENOTYPES.length)], "PASS", String.valueOf(random.nextInt(100)));
+        }
+    }
+
+    /**
+     * Compare the in place decoding with the PhoenixArray decoding over a fixed, seeded dataset.
+     */
+    @Test
+    @Ignore("Benchmark. Run manually")
+    public void testDecodeBenchmark() {
+        int numSamples = 2000;
+        int numVariants = 200;
+        Random random = new Random(1);
+        List<byte[]> columns = new ArrayList<>(numSamples);
+        for (int i = 0; i < numSamples; i++) {
+            columns.add(toBytes(GENOTYPES[random.nextInt(GENOTYPES.length)], "PASS", String.valueOf(random.nextInt(100))));
+        }
+
+        SampleDataDecoder decoder = new SampleDataDecoder();
+        long phoenixArrayTime = 0;
+        long decoderTime = 0;
+        for (int v = 0; v < numVariants; v++) {
+            long start = System.nanoTime();
+            List<List<String>> expected = new ArrayList<>(numSamples);
+            for (byte[] column : columns) {
+                PhoenixArray array = (PhoenixArray) PVarcharArray.INSTANCE.toObject(column, 0, column.length);
+                expected.add(AbstractPhoenixConverter.toModifiableList(array));
+            }
+            phoenixArrayTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<List<String>> actual = new ArrayList<>(numSamples);
+            for (byte[] column : columns) {
+                actual.add(decoder.decode(column, 0, column.length));
+            }
+            decoderTime += System.nanoTime() - start;
+
+            assertEquals(expected, actual);
+        }
+        logger.info("Decoded {} variants x {} samples", numVariants, numSamples);
+        logger.info("PhoenixArray       : {}ms", phoenixArrayTime / 1000000.0);
+        logger.info("SampleDataDecoder  : {}ms", decoderTime / 1000000.0);
+    }
+
+    private void checkDecode(SampleDataDecoder decoder, String... values) {
+        byte[] bytes = toBytes(values);
+        PhoenixArray array = (PhoenixArray) PVarcharArray.INSTANCE.toObject(bytes);
+        assertEquals(AbstractPhoenixConverter.toModifiableList(array), decoder.decode(bytes, 0, bytes.length));
+    }
+
+    private static byte[] toBytes(String... values) {
+        return PVarcharArray.INSTANCE.toBytes(new PhoenixArray(PVarchar.INSTANCE, values));
+    }
+}
@@ -0,0 +1,228 @@
+package org.opencb.opencga.storage.hadoop.variant.converters.annotation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.opencb.biodata.models.variant.avro.ConsequenceType;
+import org.opencb.biodata.models.variant.avro.SequenceOntologyTerm;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.opencga.storage.core.metadata.models.ProjectMetadata;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+import static org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantPhoenixHelper.VariantColumn.FULL_ANNOTATION;
+
+public class VariantAnnotationBinaryCodecTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private VariantAnnotation annotation;
+
+    @Before
+    public void setUp() throws Exception {
+        annotation = new VariantAnnotation();
+        annotation.setChromosome("1");
+        annotation.setStart(1000);
+        annotation.setReference("A");
+        annotation.setAlternate("C");
+        annotation.setId("rs1234");
+        List<ConsequenceType> cts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ConsequenceType ct = new ConsequenceType();
+            ct.setGeneName("GENE_" + i);
+            ct.setEnsemblGeneId("ENSG" + i);
+            ct.setSequenceOntologyTerms(Collections.singletonList(new SequenceOntologyTerm("SO:0001583", "missense_variant")));
+            cts.add(ct);
+        }
+        annotation.setConsequenceTypes(cts);
+    }
+
+    @Test
+    public void testRoundTrip() {
+        VariantAnnotationBinaryCodec codec = new VariantAnnotationBinaryCodec();
+        byte[] bytes = codec.encode(annotation);
+
+        assertTrue(VariantAnnotationBinaryCodec.isBinary(bytes, 0, bytes.length));
+        assertEquals(0, bytes[2] & VariantAnnotationBinaryCodec.FLAG_DEFLATE);
+        assertEquals(annotation, codec.decode(bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void testRoundTripCompressed() {
+        VariantAnnotationBinaryCodec codec = new VariantAnnotationBinaryCodec(0);
+        byte[] bytes = codec.encode(annotation);
+
+        assertEquals(VariantAnnotationBinaryCodec.FLAG_DEFLATE, bytes[2] & VariantAnnotationBinaryCodec.FLAG_DEFLATE);
+        assertTrue(bytes.length < new VariantAnnotationBinaryCodec().encode(annotation).length);
+        assertEquals(annotation, codec.decode(bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void testDecodeWithOffset() {
+        VariantAnnotationBinaryCodec codec = new VariantAnnotationBinaryCodec();
+        byte[] bytes = codec.encode(annotation);
+        byte[] padded = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, padded, 5, bytes.length);
+
+        assertEquals(annotation, codec.decode(padded, 5, bytes.length));
+    }
+
+    @Test
+    public void testDecodeExcludedFields() {
+        VariantAnnotationBinaryCodec codec = new VariantAnnotationBinaryCodec();
+        byte[] bytes = codec.encode(annotation);
+
+        VariantAnnotation decoded = codec.decode(bytes, 0, bytes.length, Collections.singleton("consequenceTypes"));
+        assertNull(decoded.getConsequenceTypes());
+        assertEquals(annotation.getId(), decoded.getId());
+        assertEquals(annotation.getStart(), decoded.getStart());
+    }
+
+    @Test
+    public void testConcurrentDecode() throws Exception {
+        VariantAnnotationBinaryCodec codec = new VariantAnnotationBinaryCodec(0);
+        List<VariantAnnotation> annotations = new ArrayList<>();
+        List<byte[]> encoded = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            VariantAnnotation a = VariantAnnotation.newBuilder(annotation).build();
+            a.setStart(1000 + i);
+            a.setId("rs" + i);
+            a.setConsequenceTypes(new ArrayList<>(annotation.getConsequenceTypes().subList(0, 10 + i * 4)));
+            annotations.add(a);
+            encoded.add(codec.encode(a));
+        }
+
+        int numThreads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                int shift = t;
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    for (int n = 0; n < 200; n++) {
+                        int i = (n + shift) % annotations.size();
+                        byte[] bytes = encoded.get(i);
+                        assertEquals(annotations.get(i), codec.decode(bytes, 0, bytes.length));
+                        assertArrayEquals(bytes, codec.encode(annotations.get(i)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testWriterSchemas() {
+        ProjectMetadata projectMetadata = new ProjectMetadata();
+        assertFalse(VariantAnnotationBinaryCodec.containsWriterSchema(projectMetadata));
+        assertTrue(VariantAnnotationBinaryCodec.addWriterSchema(projectMetadata));
+        assertTrue(VariantAnnotationBinaryCodec.containsWriterSchema(projectMetadata));
+        assertFalse(VariantAnnotationBinaryCodec.addWriterSchema(projectMetadata));
+        assertEquals(1, VariantAnnotationBinaryCodec.getWriterSchemas(projectMetadata).size());
+    }
+
+    @Test
+    public void testDecodePreviousSchema() throws Exception {
+        // Previous model version, without the field "id", and with a field "legacyScore" removed since then
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectNode schemaJson = (ObjectNode) objectMapper.readTree(VariantAnnotation.getClassSchema().toString());
+        ArrayNode fields = (ArrayNode) schemaJson.get("fields");
+        for (int i = 0; i < fields.size(); i++) {
+            if (fields.get(i).get("name").asText().equals("id")) {
+                fields.remove(i);
+                break;
+            }
+        }
+        fields.insert(0, objectMapper.createObjectNode().put("name", "legacyScore").put("type", "double"));
+        Schema writerSchema = new Schema.Parser().parse(schemaJson.toString());
+
+        // Encode as the previous version would do
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        for (Schema.Field field : writerSchema.getFields()) {
+            ByteArrayOutputStream fieldBuffer = new ByteArrayOutputStream();
+            BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(fieldBuffer, null);
+            if (field.name().equals("legacyScore")) {
+                encoder.writeDouble(0.5);
+            } else {
+                Object value = annotation.get(VariantAnnotation.getClassSchema().getField(field.name()).pos());
+                if (value == null) {
+                    continue;
+                }
+                new SpecificDatumWriter<>(field.schema()).write(value, encoder);
+            }
+            encoder.flush();
+            payload.write(ByteBuffer.allocate(5).put((byte) field.pos()).putInt(fieldBuffer.size()).array());
+            fieldBuffer.writeTo(payload);
+        }
+        byte[] bytes = ByteBuffer.allocate(3 + Long.BYTES + payload.size())
+                .put(VariantAnnotationBinaryCodec.MAGIC)
+                .put(VariantAnnotationBinaryCodec.VERSION)
+                .put((byte) 0)
+                .putLong(SchemaNormalization.parsingFingerprint64(writerSchema))
+                .put(payload.toByteArray())
+                .array();
+
+        ProjectMetadata projectMetadata = new ProjectMetadata();
+        projectMetadata.getAttributes().put(VariantAnnotationBinaryCodec.WRITER_SCHEMAS,
+                Collections.singletonMap(String.valueOf(SchemaNormalization.parsingFingerprint64(writerSchema)), writerSchema.toString()));
+        VariantAnnotationBinaryCodec.loadWriterSchemas(projectMetadata);
+
+        VariantAnnotation expected = VariantAnnotation.newBuilder(annotation).build();
+        expected.setId(null);
+        assertEquals(expected, new VariantAnnotationBinaryCodec().decode(bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void testDecodeUnknownSchema() {
+        byte[] bytes = new VariantAnnotationBinaryCodec().encode(annotation);
+        ByteBuffer.wrap(bytes).putLong(3, 42L);
+
+        thrown.expect(IllegalStateException.class);
+        thrown.expectMessage("Missing writer schema 42");
+        new VariantAnnotationBinaryCodec().decode(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void testHBaseConverter() {
+        VariantAnnotationToPhoenixConverter jsonConverter = new VariantAnnotationToPhoenixConverter(GenomeHelper.COLUMN_FAMILY_BYTES, -1);
+        VariantAnnotationToPhoenixConverter binaryConverter = new VariantAnnotationToPhoenixConverter(GenomeHelper.COLUMN_FAMILY_BYTES, -1)
+                .setBinaryEncoding(true);
+        byte[] json = jsonConverter.convert(annotation).get(FULL_ANNOTATION).toString().getBytes();
+        byte[] binary = (byte[]) binaryConverter.convert(annotation).get(FULL_ANNOTATION);
+
+        HBaseToVariantAnnotationConverter converter = new HBaseToVariantAnnotationConverter();
+        // Both encodings can be read by the same converter
+        assertEquals(converter.convert(json, 0, json.length), converter.convert(binary, 0, binary.length));
+
+        converter.setIncludeFields(EnumSet.of(VariantField.ANNOTATION, VariantField.ANNOTATION_ID));
+        assertNull(converter.convert(binary, 0, binary.length).getConsequenceTypes());
+        assertNull(converter.convert(json, 0, json.length).getConsequenceTypes());
+    }
+}
@@ -13,8 +13,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
-import static org.junit.Assert.assertArrayEquals;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 import static org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexConverter.*;
 
 /**
@@ -186,6 +185,80 @@ public class AnnotationIndexConverterTest {
                 converter.convert(annot(pf("STUDY", "POP_1", 0.5), pf("STUDY", "POP_4", 0.001), pf("STUDY", "POP_5", 0.5))).getPopFreqIndex());
     }
 
+    @Test
+    public void testCustomLayout() {
+        SampleIndexConfiguration configuration = new SampleIndexConfiguration();
+        configuration.getAnnotationIndexConfiguration()
+                .setConsequenceTypes(Arrays.asList(
+                        Collections.singletonList("intron_variant"),
+                        Collections.singletonList("missense_variant"),
+                        Arrays.asList("synonymous_variant", "stop_retained_variant")))
+                .setBiotypes(Arrays.asList(
+                        Collections.singletonList("protein_coding"),
+                        Collections.singletonList(SampleIndexConfiguration.AnnotationIndexConfiguration.OTHER_NON_PSEUDOGENE_BIOTYPE)));
+        AnnotationIndexConverter converter = new AnnotationIndexConverter(configuration);
+
+        assertEquals(1, converter.getConsequenceTypeMask("intron_variant"));
+        assertEquals(1 << 2, converter.getConsequenceTypeMask("stop_retained_variant"));
+        assertEquals(0, converter.getConsequenceTypeMask("stop_gained"));
+        assertFalse(converter.isImpreciseConsequenceTypeMask(converter.getConsequenceTypeMask("missense_variant")));
+        assertTrue(converter.isImpreciseConsequenceTypeMask(converter.getConsequenceTypeMask("synonymous_variant")));
+        assertEquals(Arrays.asList("other", "missense_variant", "intron_variant"), converter.getConsequenceTypesFromMask((short) 0b111));
+
+        assertEquals(1, converter.getBiotypeMask("protein_coding"));
+        assertEquals(1 << 1, converter.getBiotypeMask("miRNA"));
+        assertEquals(0, converter.getBiotypeMask("processed_pseudogene"));
+        assertTrue(converter.isImpreciseBiotypeMask(converter.getBiotypeMask("miRNA")));
+
+        AnnotationIndexEntry entry = converter.convert(annot(ct("intron_variant", "protein_coding"), ct("stop_gained", "miRNA")));
+        assertEquals(0b1, entry.getCtIndex());
+        assertEquals(0b11, entry.getBtIndex());
+    }
+
+    @Test
+    public void testCustomPopFreq() {
+        SampleIndexConfiguration configuration = new SampleIndexConfiguration()
+                .addPopulationRange(new SampleIndexConfiguration.PopulationFrequencyRange("STUDY", "POP_1")
+                        .setThresholds(new double[]{0.1}));
+        configuration.getAnnotationIndexConfiguration()
+                .setPopFreqAnyPopulations(Collections.singletonList("STUDY:POP_1"))
+                .setPopFreqAnyThreshold(0.01);
+        AnnotationIndexConverter converter = new AnnotationIndexConverter(configuration);
+
+        assertEquals(POP_FREQ_ANY_001_MASK | INTERGENIC_MASK, converter.convert(annot(pf("STUDY", "POP_1", 0.005))).getSummaryIndex());
+        assertEquals(INTERGENIC_MASK, converter.convert(annot(pf("STUDY", "POP_1", 0.05))).getSummaryIndex());
+        assertEquals(POP_FREQ_ANY_001_MASK | INTERGENIC_MASK, converter.convert(annot(pf(GNOMAD_GENOMES, "ALL", 0.5))).getSummaryIndex());
+
+        assertArrayEquals(new byte[]{0}, converter.convert(annot(pf("STUDY", "POP_1", 0.05))).getPopFreqIndex());
+        assertArrayEquals(new byte[]{1}, converter.convert(annot(pf("STUDY", "POP_1", 0.5))).getPopFreqIndex());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyThresholds() {
+        new AnnotationIndexConverter(new SampleIndexConfiguration().addPopulationRange(
+                new SampleIndexConfiguration.PopulationFrequencyRange("STUDY", "POP_1").setThresholds(new double[]{0.1, 0.2, 0.3, 0.4})));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicatedConsequenceType() {
+        SampleIndexConfiguration configuration = new SampleIndexConfiguration();
+        configuration.getAnnotationIndexConfiguration().setConsequenceTypes(Arrays.asList(
+                Collections.singletonList("intron_variant"),
+                Arrays.asList("missense_variant", "intron_variant")));
+        new AnnotationIndexConverter(configuration);
+    }
+
+    @Test
+    public void testConfigurationJson() {
+        SampleIndexConfiguration configuration = SampleIndexConfiguration.defaultConfiguration().setVersion(3);
+        configuration.getPopulationRanges().get(0).setThresholds(new double[]{0.01, 0.1});
+        SampleIndexConfiguration read = SampleIndexConfiguration.fromJson(configuration.toJson());
+
+        assertEquals(configuration, read);
+        assertTrue(configuration.sameLayout(read));
+        assertFalse(SampleIndexConfiguration.defaultConfiguration().sameLayout(read));
+    }
+
     public static VariantAnnotation annot() {
         VariantAnnotation variantAnnotation = new VariantAnnotation();
         variantAnnotation.setConsequenceTypes(Arrays.asList(ct("intergenic_variant")));
@@ -1,6 +1,7 @@
 package org.opencb.opencga.storage.hadoop.variant.index.sample;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.Scan;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -71,4 +72,58 @@ public class SampleIndexDBAdaptorTest {
         Assert.assertFalse(SampleIndexDBAdaptor.endsAtBatch(split.get(1)));
     }
 
+    @Test
+    public void testSplitRegionCustomBatchSize() {
+        int batchSize = 250000;
+        List<Region> split = SampleIndexDBAdaptor.splitRegion(new Region("1", 1000, 1100000), batchSize);
+        Assert.assertEquals(Arrays.asList(
+                new Region("1", 1000, 249999),
+                new Region("1", 250000, 999999),
+                new Region("1", 1000000, 1100000)),
+                split);
+        Assert.assertTrue(SampleIndexDBAdaptor.startsAtBatch(split.get(1), batchSize));
+        Assert.assertTrue(SampleIndexDBAdaptor.endsAtBatch(split.get(1), batchSize));
+        Assert.assertFalse(SampleIndexDBAdaptor.startsAtBatch(split.get(1)));
+    }
+
+    @Test
+    public void testStudyBatchSize() throws Exception {
+        Assert.assertEquals(SampleIndexSchema.BATCH_SIZE, SampleIndexDBAdaptor.getBatchSize(metadataManager, studyId));
+
+        int batchSize = 100000;
+        metadataManager.updateStudyMetadata(studyId, studyMetadata -> {
+            studyMetadata.getAttributes().put(SampleIndexDBAdaptor.SAMPLE_INDEX_BATCH_SIZE, batchSize);
+            return studyMetadata;
+        });
+        int sampleId = 1;
+        String sampleName = "S1";
+        metadataManager.unsecureUpdateSampleMetadata(studyId, new SampleMetadata(studyId, sampleId, sampleName));
+
+        SampleIndexDBAdaptor dbAdaptor = new SampleIndexDBAdaptor(new HBaseManager(new Configuration()), null, metadataManager);
+        Assert.assertEquals(batchSize, dbAdaptor.getConfiguration(studyId).getBatchSize());
+        Assert.assertEquals(SampleIndexSchema.BATCH_SIZE, dbAdaptor.getConfiguration().getBatchSize());
+
+        SampleIndexQuery query = new SampleIndexQuery(Collections.singletonList(new Region("1", 350000, 420000)), "ST",
+                Collections.singletonMap(sampleName, Collections.singletonList("0/1")), VariantQueryUtils.QueryOperation.AND);
+        Scan scan = dbAdaptor.parse(query.forSample(sampleName), new Region("1", 350000, 420000));
+        Assert.assertEquals(300000, SampleIndexSchema.batchStartFromRowKey(scan.getStartRow(), batchSize));
+        Assert.assertEquals(500000, SampleIndexSchema.batchStartFromRowKey(scan.getStopRow(), batchSize));
+    }
+
+    @Test
+    public void testRecommendBatchSize() {
+        int[] counts = new int[100];
+        Arrays.fill(counts, 1000);
+        // Already at the target
+        Assert.assertEquals(1000000, SampleIndexSchema.recommendBatchSize(counts, 1000000, 1000));
+        // Dense rows. Reduce batch size
+        Assert.assertEquals(250000, SampleIndexSchema.recommendBatchSize(counts, 1000000, 250));
+        // Never go below the minimum, or above the maximum
+        Assert.assertEquals(SampleIndexSchema.MIN_BATCH_SIZE, SampleIndexSchema.recommendBatchSize(counts, 1000000, 1));
+        Assert.assertEquals(SampleIndexSchema.MAX_BATCH_SIZE, SampleIndexSchema.recommendBatchSize(counts, 1000000, 100000));
+        // A few very dense rows do not change the recommendation
+        counts[0] = 100000;
+        Assert.assertEquals(1000000, SampleIndexSchema.recommendBatchSize(counts, 1000000, 1000));
+    }
+
 }
\ No newline at end of file
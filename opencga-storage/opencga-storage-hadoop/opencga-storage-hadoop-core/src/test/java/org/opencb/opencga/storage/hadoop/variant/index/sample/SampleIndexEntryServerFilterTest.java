@@ -0,0 +1,108 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleIndexQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SingleSampleIndexQuery;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SampleIndexEntryServerFilterTest {
+
+    private SampleIndexConfiguration configuration;
+    private List<Cell> row;
+
+    @Before
+    public void setUp() throws Exception {
+        configuration = SampleIndexConfiguration.defaultConfiguration();
+        Put put = new SampleIndexEntryPutBuilder(1, "1", 10, configuration.getBatchSize())
+                .add("0/1", new SampleVariantIndexEntry(new Variant("1:100:A:C"), (short) 0))
+                .add("0/1", new SampleVariantIndexEntry(new Variant("1:200:A:C"), (short) 0))
+                .add("1/1", new SampleVariantIndexEntry(new Variant("1:300:A:C"), (short) 0))
+                .add("1/1", new SampleVariantIndexEntry(new Variant("1:400:A:C"), (short) 0))
+                .build();
+        row = new ArrayList<>();
+        put.getFamilyCellMap().values().forEach(row::addAll);
+        row.sort(KeyValue.COMPARATOR);
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        SampleIndexEntryServerFilter filter = serverSide(new SampleIndexEntryServerFilter(
+                query("0/1", "1/1"), new Region("1", 150, 350), configuration, false));
+
+        List<Cell> cells = new ArrayList<>(row);
+        filter.reset();
+        filter.filterRowCells(cells);
+        assertFalse(filter.filterRow());
+        assertEquals(1, cells.size());
+        List<String> variants = SampleIndexEntryServerFilter.getVariants(Result.create(cells), configuration.getBatchSize())
+                .stream().map(Variant::toString).collect(Collectors.toList());
+        assertEquals(Arrays.asList("1:200:A:C", "1:300:A:C"), variants);
+    }
+
+    @Test
+    public void testCount() throws Exception {
+        SampleIndexEntryServerFilter filter = serverSide(new SampleIndexEntryServerFilter(
+                query("0/1"), new Region("1", 150, 1000), configuration, true));
+
+        List<Cell> cells = new ArrayList<>(row);
+        filter.reset();
+        filter.filterRowCells(cells);
+        assertFalse(filter.filterRow());
+        assertEquals(1, SampleIndexEntryServerFilter.getCount(Result.create(cells)));
+    }
+
+    @Test
+    public void testFilterRow() throws Exception {
+        SampleIndexEntryServerFilter filter = serverSide(new SampleIndexEntryServerFilter(
+                query("0/1"), new Region("1", 250, 1000), configuration, true));
+
+        List<Cell> cells = new ArrayList<>(row);
+        filter.reset();
+        filter.filterRowCells(cells);
+        assertTrue(filter.filterRow());
+        assertTrue(cells.isEmpty());
+
+        filter.reset();
+        assertFalse(filter.filterRow());
+    }
+
+    @Test
+    public void testFilterNotAvailable() {
+        assertTrue(SampleIndexEntryServerFilter.isFilterNotAvailable(
+                new IOException(new DoNotRetryIOException("java.lang.ClassNotFoundException: "
+                        + SampleIndexEntryServerFilter.class.getName()))));
+        assertFalse(SampleIndexEntryServerFilter.isFilterNotAvailable(new IOException("Connection refused")));
+    }
+
+    private SingleSampleIndexQuery query(String... gts) {
+        return new SampleIndexQuery(null, "study", Collections.singletonMap("S1", Arrays.asList(gts)), VariantQueryUtils.QueryOperation.AND)
+                .forSample("S1");
+    }
+
+    private SampleIndexEntryServerFilter serverSide(SampleIndexEntryServerFilter filter) throws Exception {
+        // Mimic the serialization to the region servers
+        SampleIndexEntryServerFilter deserialized = SampleIndexEntryServerFilter.parseFrom(filter.toByteArray());
+        assertEquals(filter.getRegionFilter().toString(), deserialized.getRegionFilter().toString());
+        assertEquals(filter.isCount(), deserialized.isCount());
+        assertEquals(filter.getConfiguration(), deserialized.getConfiguration());
+        assertEquals(filter.getQuery().getGenotypes(), deserialized.getQuery().getGenotypes());
+        return deserialized;
+    }
+}
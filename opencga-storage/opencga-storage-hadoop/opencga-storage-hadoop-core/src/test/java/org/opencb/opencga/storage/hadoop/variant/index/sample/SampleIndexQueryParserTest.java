@@ -135,6 +135,41 @@ public class SampleIndexQueryParserTest {
 
     }
 
+    @Test
+    public void parseAnnotationIndexWithOutdatedLayout() throws Exception {
+        // Annotation index of S1 built with the current layout
+        int sampleId = mm.getSampleId(studyId, "S1");
+        SampleIndexConfiguration configuration = SampleIndexDBAdaptor.readConfiguration(mm);
+        mm.updateSampleMetadata(studyId, sampleId, sampleMetadata -> SampleIndexDBAdaptor.setSampleIndexStatus(sampleMetadata,
+                TaskMetadata.Status.READY));
+        SampleIndexAnnotationLoader.postAnnotationLoad(studyId, Collections.singletonList(sampleId), mm, configuration.getVersion());
+
+        Query query = new VariantQueryParser(null, mm).preProcessQuery(
+                new Query(SAMPLE.key(), "S1").append(ANNOT_CONSEQUENCE_TYPE.key(), "missense_variant"), new QueryOptions());
+        SampleIndexQuery indexQuery = new SampleIndexQueryParser(mm, configuration).parse(new Query(query));
+        assertNotEquals(EMPTY_MASK, indexQuery.getAnnotationIndexQuery().getConsequenceTypeMask());
+
+        // Reconfigure. The annotation index of S1 is not rebuilt yet
+        SampleIndexConfiguration newConfiguration = SampleIndexConfiguration.defaultConfiguration();
+        newConfiguration.getAnnotationIndexConfiguration().setPopFreqAnyThreshold(0.05);
+        newConfiguration = SampleIndexDBAdaptor.updateConfiguration(mm, newConfiguration);
+        assertEquals(configuration.getVersion() + 1, newConfiguration.getVersion());
+        assertFalse(SampleIndexDBAdaptor.isAnnotationIndexUpToDate(mm.getSampleMetadata(studyId, sampleId), newConfiguration));
+
+        Query outdatedQuery = new Query(query);
+        indexQuery = new SampleIndexQueryParser(mm, newConfiguration).parse(outdatedQuery);
+        assertTrue(indexQuery.emptyAnnotationIndex());
+        assertEquals(EMPTY_MASK, indexQuery.getAnnotationIndexQuery().getConsequenceTypeMask());
+        assertTrue(indexQuery.getAnnotationIndexQuery().getPopulationFrequencyQueries().isEmpty());
+        // The filter must be resolved elsewhere
+        assertTrue(outdatedQuery.containsKey(ANNOT_CONSEQUENCE_TYPE.key()));
+
+        // Rebuild the annotation index of S1
+        SampleIndexAnnotationLoader.postAnnotationLoad(studyId, Collections.singletonList(sampleId), mm, newConfiguration.getVersion());
+        indexQuery = new SampleIndexQueryParser(mm, newConfiguration).parse(new Query(query));
+        assertNotEquals(EMPTY_MASK, indexQuery.getAnnotationIndexQuery().getConsequenceTypeMask());
+    }
+
     @Test
     public void parseSampleIndexQuery() {
         Query query;
@@ -46,7 +46,16 @@ public class AbstractMongoDBAdaptor<T> {
         this.collection = getCollection(this.collectionName);
         converter = new GenericDocumentComplexConverter<>(clazz);
         converter.getObjectMapper().configure(MapperFeature.REQUIRE_SETTERS_FOR_GETTERS, true);
-        mongoLock = new MongoLockManager(collection, "_lock");
+        mongoLock = new MongoLockManager(collection, "_lock", collectionName);
+    }
+
+    /**
+     * Serve the waiters of the locks in FIFO order.
+     *
+     * @param fair Use fair locks
+     */
+    public void setFairLock(boolean fair) {
+        mongoLock.setFair(fair);
     }
 
     protected MongoDBCollection getCollection(String collectionName) {
@@ -41,7 +41,16 @@ public class MongoDBProjectMetadataDBAdaptor implements ProjectMetadataAdaptor {
         this.collection = db.getCollection(collectionName)
                 .withReadPreference(ReadPreference.primary())
                 .withWriteConcern(WriteConcern.ACKNOWLEDGED);
-        mongoLock = new MongoLockManager(collection, "_lock");
+        mongoLock = new MongoLockManager(collection, "_lock", collectionName);
+    }
+
+    /**
+     * Serve the waiters of the locks in FIFO order.
+     *
+     * @param fair Use fair locks
+     */
+    public void setFairLock(boolean fair) {
+        mongoLock.setFair(fair);
     }
 
     @Override
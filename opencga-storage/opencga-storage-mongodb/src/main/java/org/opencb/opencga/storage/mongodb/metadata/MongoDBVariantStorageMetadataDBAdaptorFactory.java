@@ -22,52 +22,64 @@ public class MongoDBVariantStorageMetadataDBAdaptorFactory implements VariantSto
 
     @Override
     public ProjectMetadataAdaptor buildProjectMetadataDBAdaptor() {
-        return new MongoDBProjectMetadataDBAdaptor(db, options.getString(
+        MongoDBProjectMetadataDBAdaptor adaptor = new MongoDBProjectMetadataDBAdaptor(db, options.getString(
                 MongoDBVariantStorageOptions.COLLECTION_PROJECT.key(),
                 MongoDBVariantStorageOptions.COLLECTION_PROJECT.defaultValue()
                 ));
+        adaptor.setFairLock(isFairLock());
+        return adaptor;
     }
 
     @Override
     public StudyMetadataDBAdaptor buildStudyMetadataDBAdaptor() {
-        return new MongoDBStudyMetadataDBAdaptor(db, options.getString(
+        return withFairLock(new MongoDBStudyMetadataDBAdaptor(db, options.getString(
                 MongoDBVariantStorageOptions.COLLECTION_STUDIES.key(),
                 MongoDBVariantStorageOptions.COLLECTION_STUDIES.defaultValue()
-                ));
+                )));
     }
 
     @Override
     public SampleMetadataDBAdaptor buildSampleMetadataDBAdaptor() {
-        return new MongoDBSampleMetadataDBAdaptor(db, options.getString(
+        return withFairLock(new MongoDBSampleMetadataDBAdaptor(db, options.getString(
                 MongoDBVariantStorageOptions.COLLECTION_SAMPLES.key(),
                 MongoDBVariantStorageOptions.COLLECTION_SAMPLES.defaultValue()
-        ));
+        )));
     }
 
     @Override
     public CohortMetadataDBAdaptor buildCohortMetadataDBAdaptor() {
-        return new MongoDBCohortMetadataDBAdaptor(db, options.getString(
+        return withFairLock(new MongoDBCohortMetadataDBAdaptor(db, options.getString(
                 MongoDBVariantStorageOptions.COLLECTION_COHORTS.key(),
                 MongoDBVariantStorageOptions.COLLECTION_COHORTS.defaultValue()
-        ));
+        )));
     }
 
     @Override
     public TaskMetadataDBAdaptor buildTaskDBAdaptor() {
-        return new MongoDBTaskMetadataDBAdaptor(db, options.getString(
+        return withFairLock(new MongoDBTaskMetadataDBAdaptor(db, options.getString(
                 MongoDBVariantStorageOptions.COLLECTION_TASKS.key(),
                 MongoDBVariantStorageOptions.COLLECTION_TASKS.defaultValue()
-        ));
+        )));
     }
 
     @Override
     public FileMetadataDBAdaptor buildFileMetadataDBAdaptor() {
-        return new MongoDBFileMetadataDBAdaptor(db, options.getString(
+        return withFairLock(new MongoDBFileMetadataDBAdaptor(db, options.getString(
                 MongoDBVariantStorageOptions.COLLECTION_FILES.key(),
                 MongoDBVariantStorageOptions.COLLECTION_FILES.defaultValue()
         ), options.getString(
                 MongoDBVariantStorageOptions.COLLECTION_STUDIES.key(),
                 MongoDBVariantStorageOptions.COLLECTION_STUDIES.defaultValue()
-        ));
+        )));
+    }
+
+    private boolean isFairLock() {
+        return options.getBoolean(MongoDBVariantStorageOptions.METADATA_LOCK_FAIR.key(),
+                MongoDBVariantStorageOptions.METADATA_LOCK_FAIR.defaultValue());
+    }
+
+    private <T extends AbstractMongoDBAdaptor<?>> T withFairLock(T adaptor) {
+        adaptor.setFairLock(isFairLock());
+        return adaptor;
     }
 }
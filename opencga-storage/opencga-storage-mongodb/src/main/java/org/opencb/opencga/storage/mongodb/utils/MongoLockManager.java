@@ -21,21 +21,23 @@ import com.mongodb.DuplicateKeyException;
 import com.mongodb.MongoWriteException;
 import com.mongodb.ReadPreference;
 import com.mongodb.WriteConcern;
-import org.apache.commons.lang3.time.StopWatch;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.mongodb.MongoDBCollection;
 import org.opencb.opencga.storage.core.metadata.models.Lock;
+import org.opencb.opencga.storage.core.utils.LockBackoff;
+import org.opencb.opencga.storage.core.utils.LockMetrics;
 
-import java.util.Calendar;
-import java.util.Date;
+import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeoutException;
 
 import static com.mongodb.client.model.Filters.*;
 import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.push;
 import static com.mongodb.client.model.Updates.set;
 
 /**
@@ -45,17 +47,42 @@ import static com.mongodb.client.model.Updates.set;
  *
  * see http://stackoverflow.com/questions/31064750/mongodb-implement-a-read-write-lock-mutex
  *
+ * While the lock is taken, waiters poll the document with a jittered exponential backoff.
+ * If fair, waiters push a ticket to a queue in the document, and only try to get the lock when their ticket is
+ * the first non expired ticket in the queue.
+ *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
  */
 public class MongoLockManager {
 
     private static final String LOCK_FIELD = "lock";
     private static final String WRITE_FIELD = "write";
-    private static final ExecutorService THREAD_POOL = Executors.newCachedThreadPool(
+    private static final String QUEUE_FIELD = "queue";
+    private static final String TICKET_TOKEN = "token";
+    private static final String TICKET_EXPIRES = "expires";
+    // Shared scheduler to trigger the refresh of all the locks
+    private static final ScheduledThreadPoolExecutor THREAD_POOL = new ScheduledThreadPoolExecutor(1,
             new ThreadFactoryBuilder()
                     .setNameFormat("mongodb-lock-%d")
+                    .setDaemon(true)
+                    .build());
+
+    // Runs the refresh of the locks. One thread per concurrent refresh, so a slow refresh does not delay the others
+    private static final ExecutorService REFRESH_THREAD_POOL = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("mongodb-lock-refresh-%d")
+                    .setDaemon(true)
                     .build());
+
+    static {
+        THREAD_POOL.setRemoveOnCancelPolicy(true);
+    }
+
+    private final String lockField;
     private final String lockWriteField;
+    private final String lockQueueField;
+    private final String name;
+    private boolean fair;
 
     private final MongoDBCollection collection;
 
@@ -64,10 +91,40 @@ public class MongoLockManager {
     }
 
     public MongoLockManager(MongoDBCollection collection, String lockField) {
+        this(collection, lockField, lockField);
+    }
+
+    /**
+     * Create a lock manager.
+     *
+     * @param collection Collection with the documents to lock
+     * @param lockField  Field of the documents to store the lock
+     * @param name       Name of this lock manager, used for the metrics
+     */
+    public MongoLockManager(MongoDBCollection collection, String lockField, String name) {
         this.collection = collection;
         this.collection.withReadPreference(ReadPreference.primary())
                 .withWriteConcern(WriteConcern.ACKNOWLEDGED);
+        this.lockField = lockField;
+        this.name = name;
         lockWriteField = lockField + '.' + WRITE_FIELD;
+        lockQueueField = lockField + '.' + QUEUE_FIELD;
+        fair = false;
+    }
+
+    public boolean isFair() {
+        return fair;
+    }
+
+    /**
+     * Serve the waiters of each lock in FIFO order.
+     *
+     * @param fair Use fair locks
+     * @return this
+     */
+    public MongoLockManager setFair(boolean fair) {
+        this.fair = fair;
+        return this;
     }
 
     /**
@@ -99,30 +156,63 @@ public class MongoLockManager {
             // See https://jira.mongodb.org/browse/SERVER-14322
         }
 
-        StopWatch watch = new StopWatch();
-        watch.start();
+        LockMetrics metrics = LockMetrics.get(name + ":" + id);
+        LockBackoff backoff = new LockBackoff(Math.min(LockBackoff.DEFAULT_MIN_SLEEP_MILLIS, Math.max(timeout, 1)),
+                LockBackoff.DEFAULT_MAX_SLEEP_MILLIS, timeout);
+        // Tickets must survive a full backoff sleep
+        long ticketDuration = lockDuration + 2 * backoff.getMaxSleepMillis();
+        String ticket = fair ? UUID.randomUUID().toString() : null;
         long modifiedCount;
         Date date;
-        do {
-            date = new Date(Calendar.getInstance().getTimeInMillis() + lockDuration);
-            Date now = Calendar.getInstance().getTime();
+        try {
+            long ticketRefreshTime = System.currentTimeMillis();
+            if (fair) {
+                collection.update(eq("_id", id), push(lockQueueField, new Document(TICKET_TOKEN, ticket)
+                        .append(TICKET_EXPIRES, new Date(ticketRefreshTime + ticketDuration))), null);
+            }
+            do {
+                date = new Date(Calendar.getInstance().getTimeInMillis() + lockDuration);
+                Date now = Calendar.getInstance().getTime();
 
-            Bson query = and(eq("_id", id), or(eq(lockWriteField, null), lt(lockWriteField, now)));
-            Bson update = combine(set(lockWriteField, date));
+                boolean firstInQueue = !fair || isFirstInQueue(id, ticket, now);
+                if (firstInQueue) {
+                    Bson query = and(eq("_id", id), or(eq(lockWriteField, null), lt(lockWriteField, now)));
+                    Bson update = combine(set(lockWriteField, date));
 
-            modifiedCount = collection.update(query, update, null).getNumUpdated();
+                    modifiedCount = collection.update(query, update, null).getNumUpdated();
+                } else {
+                    modifiedCount = 0;
+                }
 
-            if (modifiedCount != 1) {
-                Thread.sleep(100);
-                //Check if the lock is still valid
-                if (watch.getTime() > timeout) {
-                    throw new TimeoutException("Unable to get the lock");
+                if (modifiedCount != 1) {
+                    if (fair && firstInQueue) {
+                        // Next in line. Poll at the shortest interval
+                        backoff.reset();
+                    }
+                    backoff.sleep();
+                    if (fair && System.currentTimeMillis() - ticketRefreshTime > ticketDuration / 4) {
+                        ticketRefreshTime = System.currentTimeMillis();
+                        collection.update(and(eq("_id", id), eq(lockQueueField + '.' + TICKET_TOKEN, ticket)),
+                                set(lockQueueField + ".$." + TICKET_EXPIRES, new Date(ticketRefreshTime + ticketDuration)), null);
+                    }
                 }
+            } while (modifiedCount == 0);
+        } catch (TimeoutException e) {
+            metrics.timeout(backoff);
+            throw e;
+        } finally {
+            if (fair) {
+                // Leave the queue, and remove expired tickets
+                collection.update(eq("_id", id), new Document("$pull", new Document(lockQueueField,
+                        new Document("$or", Arrays.asList(
+                                new Document(TICKET_TOKEN, ticket),
+                                new Document(TICKET_EXPIRES, new Document("$lt", new Date())))))), null);
             }
-        } while (modifiedCount == 0);
+        }
+        metrics.acquired(backoff);
 
         long lockToken = date.getTime();
-        return new Lock(THREAD_POOL, ((int) (lockDuration / 4)), lockToken) {
+        return new Lock(THREAD_POOL, REFRESH_THREAD_POOL, ((int) (lockDuration / 4)), lockToken) {
             @Override
             public void unlock0() {
                 MongoLockManager.this.unlock(id, getToken());
@@ -135,6 +225,21 @@ public class MongoLockManager {
         };
     }
 
+    private boolean isFirstInQueue(Object id, String ticket, Date now) {
+        Document document = collection.find(eq("_id", id), new QueryOptions(QueryOptions.INCLUDE, lockQueueField)).first();
+        Document lock = document == null ? null : document.get(lockField, Document.class);
+        List<?> queue = lock == null ? null : lock.get(QUEUE_FIELD, List.class);
+        if (queue != null) {
+            for (Object o : queue) {
+                Document entry = (Document) o;
+                if (!entry.getDate(TICKET_EXPIRES).before(now)) {
+                    return ticket.equals(entry.getString(TICKET_TOKEN));
+                }
+            }
+        }
+        return true;
+    }
+
     public long refresh(Object id, long lockToken, long lockDuration) {
         Date date = new Date(Calendar.getInstance().getTimeInMillis() + lockDuration);
         Date lockToRefresh = new Date(lockToken);
@@ -181,7 +181,8 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
             getDBAdaptor().cleanTrash(timeStamp);
         }
 
-        return new VariantSearchLoadResult(searchIndex.getNumProcessedVariants(), searchIndex.getNumLoadedVariants(), deletedVariants);
+        return new VariantSearchLoadResult(searchIndex.getNumProcessedVariants(), searchIndex.getNumLoadedVariants(), deletedVariants,
+                searchIndex.getLoadTimeMillis());
     }
 
     @Override
@@ -17,6 +17,7 @@ public enum MongoDBVariantStorageOptions implements ConfigurationOption {
     COLLECTION_STAGE("storage.mongodb.collection.stage", "stage"),
     COLLECTION_ANNOTATION("storage.mongodb.collection.annotation", "annot"),
     COLLECTION_TRASH("storage.mongodb.collection.trash", "trash"),
+    COLLECTION_SUMMARY("storage.mongodb.collection.summary", "summary"),
 
     ALREADY_LOADED_VARIANTS("storage.mongodb.alreadyLoadedVariants", 0),
 
@@ -38,6 +39,12 @@ public enum MongoDBVariantStorageOptions implements ConfigurationOption {
     MERGE_BATCH_SIZE("storage.mongodb.merge.batchSize", 10),          //Number of files to merge directly from first to second collection
 
 
+    SUMMARY("storage.mongodb.summary", false),          // Maintain and use region-bucketed summaries for groupBy and getFrequency
+    SUMMARY_BUCKET_SIZE("storage.mongodb.summary.bucketSize", 100000),
+
+    // Serve the waiters of the metadata locks in FIFO order
+    METADATA_LOCK_FAIR("storage.mongodb.metadata.lock.fair", false),
+
     EXTRA_GENOTYPE_FIELDS_COMPRESS("extra-fields.compress", true),    //Compress with gzip other sample information
     DEFAULT_GENOTYPE("defaultGenotype", Arrays.asList("0/0", "0|0"));
 
@@ -705,7 +705,14 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
     public URI postLoad(URI input, URI output) throws StorageEngineException {
 
         if (options.getBoolean(MERGE.key()) || options.getBoolean(DIRECT_LOAD.key(), DIRECT_LOAD.defaultValue())) {
-            return postLoad(input, output, fileIds);
+            URI uri = postLoad(input, output, fileIds);
+            // Same flag used by the adaptor to read the summaries
+            if (dbAdaptor.isSummaryEnabled()) {
+                dbAdaptor.getSummaryManager().update(getStudyId(),
+                        fileIds == null || fileIds.isEmpty() ? Collections.singletonList(getFileId()) : fileIds);
+                dbAdaptor.getSummaryManager().refreshDirty(getStudyId());
+            }
+            return uri;
         } else {
             return input;
         }
@@ -53,6 +53,7 @@ import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine;
 import org.opencb.opencga.storage.mongodb.variant.converters.*;
 import org.opencb.opencga.storage.mongodb.variant.converters.stage.StageDocumentToVariantConverter;
 import org.opencb.opencga.storage.mongodb.variant.converters.trash.DocumentToTrashVariantConverter;
+import org.opencb.opencga.storage.mongodb.variant.summary.VariantMongoDBSummaryManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -89,6 +90,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
     private final StorageConfiguration storageConfiguration;
     private final MongoCredentials credentials;
     private final VariantMongoDBQueryParser queryParser;
+    private final VariantMongoDBSummaryManager summaryManager;
 
     private VariantStorageMetadataManager metadataManager;
     private final ObjectMap configuration;
@@ -128,6 +130,10 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
                 : storageEngineConfiguration.getOptions();
 
         queryParser = new VariantMongoDBQueryParser(variantStorageMetadataManager);
+        summaryManager = new VariantMongoDBSummaryManager(
+                db.getCollection(configuration.getString(COLLECTION_SUMMARY.key(), COLLECTION_SUMMARY.defaultValue())),
+                variantsCollection, this::getMetadataManager,
+                configuration.getInt(SUMMARY_BUCKET_SIZE.key(), SUMMARY_BUCKET_SIZE.defaultValue()));
         NUMBER_INSTANCES.incrementAndGet();
     }
 
@@ -167,6 +173,14 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         db.dropCollection(annotationCollectionName);
     }
 
+    public VariantMongoDBSummaryManager getSummaryManager() {
+        return summaryManager;
+    }
+
+    public boolean isSummaryEnabled() {
+        return configuration.getBoolean(SUMMARY.key(), SUMMARY.defaultValue());
+    }
+
     private MongoDBCollection getTrashCollection() {
         return db.getCollection(configuration.getString(COLLECTION_TRASH.key(), COLLECTION_TRASH.defaultValue()));
     }
@@ -225,6 +239,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
                 )
         );
         removeFilesFromStageCollection(studiesToRemoveQuery, studyId, fileIds);
+        summaryManager.invalidate(studyId);
 
         return removeFilesFromVariantsCollection(studiesToRemoveQuery, studyMetadata, fileIds, timestamp);
     }
@@ -342,6 +357,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
 
         Integer studyId = metadataManager.getStudyId(studyName);
         Bson query = queryParser.parseQuery(new Query(STUDY.key(), studyId));
+        summaryManager.invalidate(studyId);
 
         boolean purge = options.getBoolean("purge", true);
 
@@ -676,14 +692,21 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         // 20000] } ] },
         //                                  totalCount: {$sum: 1}}})
 
-        QueryOptions options = new QueryOptions();
-
-        // If interval is not provided is set to the value that returns 200 values
+        // If interval is not provided is set to the value that returns about 200 values.
+        // Same interval with or without summaries. Summaries are only used if the interval is a multiple of the bucket size.
         if (regionIntervalSize <= 0) {
-//            regionIntervalSize = options.getInt("interval", (region.getEnd() - region.getStart()) / 200);
-            regionIntervalSize = (region.getEnd() - region.getStart()) / 200;
+            regionIntervalSize = VariantMongoDBSummaryManager.getDefaultIntervalSize(region);
         }
 
+        if (isSummaryEnabled()) {
+            DataResult<Document> summaryResult = summaryManager.getFrequency(query.getQuery(), region, regionIntervalSize);
+            if (summaryResult != null) {
+                return summaryResult;
+            }
+        }
+
+        QueryOptions options = new QueryOptions();
+
         Document start = new Document("$gt", region.getStart());
         start.append("$lt", region.getEnd());
 
@@ -795,6 +818,13 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
             options = new QueryOptions(options); // Copy given QueryOptions.
         }
 
+        if (isSummaryEnabled()) {
+            DataResult<Document> summaryResult = summaryManager.groupBy(query, field, options);
+            if (summaryResult != null) {
+                return summaryResult;
+            }
+        }
+
         String documentPath;
         String unwindPath;
         int numUnwinds = 2;
@@ -817,6 +847,18 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
                         + '.' + DocumentToVariantAnnotationConverter.CONSEQUENCE_TYPE_FIELD;
                 numUnwinds = 3;
                 break;
+            case "biotype":
+                documentPath = DocumentToVariantConverter.ANNOTATION_FIELD
+                        + '.' + DocumentToVariantAnnotationConverter.CONSEQUENCE_TYPE_FIELD
+                        + '.' + DocumentToVariantAnnotationConverter.CT_BIOTYPE_FIELD;
+                unwindPath = DocumentToVariantConverter.ANNOTATION_FIELD
+                        + '.' + DocumentToVariantAnnotationConverter.CONSEQUENCE_TYPE_FIELD;
+                break;
+            case "type":
+                documentPath = DocumentToVariantConverter.TYPE_FIELD;
+                unwindPath = DocumentToVariantConverter.TYPE_FIELD;
+                numUnwinds = 0;
+                break;
             default:
                 documentPath = DocumentToVariantConverter.ANNOTATION_FIELD
                         + '.' + DocumentToVariantAnnotationConverter.CONSEQUENCE_TYPE_FIELD
@@ -928,6 +970,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         DocumentToVariantConverter variantConverter = getDocumentToVariantConverter(new Query(), options);
         boolean overwrite = options.getBoolean(VariantStorageOptions.STATS_OVERWRITE.key(), false);
 
+        Map<String, List<Integer>> positions = new HashMap<>();
         // TODO make unset of 'st' if already present?
         for (VariantStatsWrapper wrapper : variantStatsWrappers) {
             List<VariantStats> cohortStats = wrapper.getCohortStats();
@@ -935,6 +978,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
             if (cohortStats.isEmpty()) {
                 continue;
             }
+            positions.computeIfAbsent(wrapper.getChromosome(), k -> new ArrayList<>()).add(wrapper.getStart());
             List<Document> cohorts = statsConverter.convertCohortsToStorageType(cohortStats, studyMetadata.getId());
             // remove when we remove fileId
 //            List cohorts = statsConverter.convertCohortsToStorageType(cohortStats, variantSource.getStudyId());   // TODO use when we
@@ -986,6 +1030,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
             logger.warn("Could not update stats from some variants: {} != {}, {} non loaded stats", writeResult.getNumMatches(),
                     pushQueriesBulkList.size(), (pushQueriesBulkList.size() - writeResult.getNumMatches()));
         }
+        summaryManager.markDirty(positions);
 
         return writeResult;
     }
@@ -1021,7 +1066,9 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
 
         StopWatch watch = StopWatch.createStarted();
         DocumentToVariantConverter variantConverter = getDocumentToVariantConverter(new Query(), queryOptions);
+        Map<String, List<Integer>> positions = new HashMap<>();
         for (VariantAnnotation variantAnnotation : variantAnnotations) {
+            positions.computeIfAbsent(variantAnnotation.getChromosome(), k -> new ArrayList<>()).add(variantAnnotation.getStart());
             String id;
             if (variantAnnotation.getAdditionalAttributes() != null
                     && variantAnnotation.getAdditionalAttributes().containsKey(GROUP_NAME.key())) {
@@ -1044,7 +1091,9 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
             queries.add(find);
             updates.add(update);
         }
-        return variantsCollection.update(queries, updates, null);
+        DataResult result = variantsCollection.update(queries, updates, null);
+        summaryManager.markDirty(positions);
+        return result;
     }
 
     @Override
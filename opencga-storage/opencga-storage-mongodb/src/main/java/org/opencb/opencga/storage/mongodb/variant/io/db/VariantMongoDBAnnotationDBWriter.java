@@ -21,7 +21,8 @@ import org.opencb.opencga.storage.core.variant.io.db.VariantAnnotationDBWriter;
 import org.opencb.opencga.storage.mongodb.variant.adaptors.VariantMongoDBAdaptor;
 
 /**
- * Basic functionality of VariantAnnotationDBWriter. Creates MongoDB indexes at the post step (if needed).
+ * Basic functionality of VariantAnnotationDBWriter. Creates MongoDB indexes at the post step (if needed),
+ * and refreshes the variant summaries affected by the new annotations.
  * Created on 05/01/17.
  *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
@@ -48,5 +49,8 @@ public class VariantMongoDBAnnotationDBWriter extends VariantAnnotationDBWriter
             dbAdaptor.createIndexes(new QueryOptions());
             options.put(INDEXES_CREATED, true);
         }
+        if (dbAdaptor.isSummaryEnabled()) {
+            dbAdaptor.getSummaryManager().refreshDirty();
+        }
     }
 }
@@ -37,9 +37,21 @@ import java.util.concurrent.ExecutionException;
 public class MongoDBVariantStatisticsManager extends DefaultVariantStatisticsManager {
 
     private static Logger logger = LoggerFactory.getLogger(MongoDBVariantStatisticsManager.class);
+    private final VariantMongoDBAdaptor dbAdaptor;
 
     public MongoDBVariantStatisticsManager(VariantMongoDBAdaptor dbAdaptor, IOConnectorProvider ioConnectorProvider) {
         super(dbAdaptor, ioConnectorProvider);
+        this.dbAdaptor = dbAdaptor;
+    }
+
+    @Override
+    public void loadVariantStats(URI uri, StudyMetadata studyMetadata, QueryOptions options)
+            throws IOException, StorageEngineException {
+        super.loadVariantStats(uri, studyMetadata, options);
+        // Refresh the summary buckets marked as dirty while loading the stats
+        if (dbAdaptor.isSummaryEnabled()) {
+            dbAdaptor.getSummaryManager().refreshDirty(studyMetadata.getId());
+        }
     }
 
     @Override
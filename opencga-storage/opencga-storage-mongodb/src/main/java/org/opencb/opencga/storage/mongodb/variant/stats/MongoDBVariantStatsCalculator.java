@@ -12,6 +12,7 @@ import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
 import org.opencb.opencga.storage.core.metadata.models.CohortMetadata;
 import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
 import org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass;
+import org.opencb.opencga.storage.core.variant.stats.GenotypeCounter;
 import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
 import org.opencb.opencga.storage.mongodb.variant.converters.AbstractDocumentConverter;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyVariantEntryConverter;
@@ -33,6 +34,10 @@ public class MongoDBVariantStatsCalculator extends AbstractDocumentConverter imp
 
     private final Map<Integer, CohortMetadata> cohorts;
     private final Map<Integer, Set<Integer>> filesInCohortMap;
+    private final Map<Integer, int[]> samplesInCohortMap;
+    private int[] sampleIndex;
+    private final ThreadLocal<GenotypeCounter> genotypeCounter = ThreadLocal.withInitial(GenotypeCounter::new);
+    private final ThreadLocal<int[]> sampleGenotypeCodes = new ThreadLocal<>();
     private String unknownGenotype;
     private String defaultGenotype;
     private final DocumentToVariantConverter variantConverter;
@@ -44,6 +49,7 @@ public class MongoDBVariantStatsCalculator extends AbstractDocumentConverter imp
         this.cohorts = cohorts.stream().collect(Collectors.toMap(CohortMetadata::getId, c -> c));
         this.unknownGenotype = unknownGenotype;
         this.filesInCohortMap = new HashMap<>();
+        this.samplesInCohortMap = new HashMap<>();
         variantConverter = new DocumentToVariantConverter();
         this.multiAllelic = multiAllelic;
         init(studyMetadata);
@@ -54,6 +60,7 @@ public class MongoDBVariantStatsCalculator extends AbstractDocumentConverter imp
         this.studyMetadata = studyMetadata;
         this.cohorts = new HashMap<>();
         this.filesInCohortMap = new HashMap<>();
+        this.samplesInCohortMap = new HashMap<>();
         this.variantConverter = new DocumentToVariantConverter();
         for (Object cohort : cohorts) {
             CohortMetadata cohortMetadata = metadataManager.getCohortMetadata(studyMetadata.getId(), cohort);
@@ -65,8 +72,19 @@ public class MongoDBVariantStatsCalculator extends AbstractDocumentConverter imp
     }
 
     public void init(StudyMetadata studyMetadata) {
+        Set<Integer> allSamples = new LinkedHashSet<>();
         for (CohortMetadata cohortMetadata : this.cohorts.values()) {
             this.filesInCohortMap.put(cohortMetadata.getId(), new HashSet<>(cohortMetadata.getFiles()));
+            allSamples.addAll(cohortMetadata.getSamples());
+        }
+        sampleIndex = GenotypeCounter.buildSampleIndex(allSamples);
+        for (CohortMetadata cohortMetadata : this.cohorts.values()) {
+            int[] samplesInCohort = new int[cohortMetadata.getSamples().size()];
+            int i = 0;
+            for (Integer sampleId : cohortMetadata.getSamples()) {
+                samplesInCohort[i++] = sampleIndex[sampleId];
+            }
+            this.samplesInCohortMap.put(cohortMetadata.getId(), samplesInCohort);
         }
         List<String> defaultGenotypes = studyMetadata.getAttributes().getAsStringList(DEFAULT_GENOTYPE.key());
 
@@ -107,38 +125,42 @@ public class MongoDBVariantStatsCalculator extends AbstractDocumentConverter imp
         List<Document> files = study.getList(DocumentToStudyVariantEntryConverter.FILES_FIELD, Document.class);
         Document gt = study.get(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD, Document.class);
 
-        // Make a Set from the lists of genotypes for fast indexOf
-        Map<String, Set<Integer>> gtsMap = new HashMap<>(gt.size());
+        // Genotype code of each sample, by position in the sampleIndex. Samples not present in any gt list are NO_CODE
+        GenotypeCounter counter = genotypeCounter.get();
+        int[] sampleCodes = getSampleGenotypeCodes();
         for (Map.Entry<String, Object> entry : gt.entrySet()) {
-            gtsMap.put(entry.getKey(), new HashSet<>((Collection) entry.getValue()));
+            String gtStr = entry.getKey();
+            // If any ?/? is present in the DB, must be read as "unknownGenotype", usually "./."
+            if (GenotypeClass.UNKNOWN_GENOTYPE.equals(gtStr)) {
+                gtStr = unknownGenotype;
+            }
+            int code = counter.getCode(gtStr);
+            for (Object sampleId : (Collection) entry.getValue()) {
+                int idx = GenotypeCounter.indexOf(sampleIndex, ((Number) sampleId).intValue());
+                if (idx != GenotypeCounter.NO_CODE && sampleCodes[idx] == GenotypeCounter.NO_CODE) {
+                    sampleCodes[idx] = code;
+                }
+            }
         }
 
         for (CohortMetadata cohort : cohorts.values()) {
             Set<Integer> filesInCohort = this.filesInCohortMap.get(cohort.getId());
-            Map<String, Integer> gtStrCount = new HashMap<>();
-
-            int unknownGenotypes = cohort.getSamples().size();
-            for (Integer sampleId : cohort.getSamples()) {
-                for (Map.Entry<String, Set<Integer>> entry : gtsMap.entrySet()) {
-                    String gtStr = entry.getKey();
-                    // If any ?/? is present in the DB, must be read as "unknownGenotype", usually "./."
-                    if (GenotypeClass.UNKNOWN_GENOTYPE.equals(gtStr)) {
-                        gtStr = unknownGenotype;
-                    }
-                    if ((entry.getValue()).contains(sampleId)) {
-                        addGt(gtStrCount, gtStr, 1);
-                        unknownGenotypes--;
-                        break;
-                    }
+            counter.reset();
+
+            int unknownGenotypes = 0;
+            for (int idx : samplesInCohortMap.get(cohort.getId())) {
+                int code = sampleCodes[idx];
+                if (code == GenotypeCounter.NO_CODE) {
+                    unknownGenotypes++;
+                } else {
+                    counter.add(code);
                 }
             }
 
             // All the samples not present in any gt list must count as "defaultGenotype", usually "0/0"
-            addGt(gtStrCount, defaultGenotype, unknownGenotypes);
+            counter.add(defaultGenotype, unknownGenotypes);
 
-            Map<Genotype, Integer> gtCountMap = new HashMap<>(gtStrCount.size());
-            gtStrCount.forEach((str, count) -> gtCountMap.compute(new Genotype(str),
-                    (key, value) -> value == null ? count : value + count));
+            Map<Genotype, Integer> gtCountMap = counter.toGenotypeCountMap();
 
             VariantStats stats = VariantStatsCalculator.calculate(variant, gtCountMap, multiAllelic);
             stats.setCohortId(cohort.getName());
@@ -176,7 +198,13 @@ public class MongoDBVariantStatsCalculator extends AbstractDocumentConverter imp
     }
 
 
-    private void addGt(Map<String, Integer> gtStrCount, String gt, int num) {
-        gtStrCount.merge(gt, num, Integer::sum);
+    private int[] getSampleGenotypeCodes() {
+        int[] sampleCodes = sampleGenotypeCodes.get();
+        if (sampleCodes == null || sampleCodes.length != sampleIndex.length) {
+            sampleCodes = new int[sampleIndex.length];
+            sampleGenotypeCodes.set(sampleCodes);
+        }
+        Arrays.fill(sampleCodes, GenotypeCounter.NO_CODE);
+        return sampleCodes;
     }
 }
@@ -0,0 +1,477 @@
+package org.opencb.opencga.storage.mongodb.variant.summary;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.commons.datastore.core.DataResult;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.mongodb.MongoDBCollection;
+import org.opencb.commons.datastore.mongodb.MongoDBIterator;
+import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantAnnotationConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.VariantStringIdConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+import static com.mongodb.client.model.Filters.*;
+import static org.opencb.commons.datastore.mongodb.MongoDBCollection.MULTI;
+import static org.opencb.commons.datastore.mongodb.MongoDBCollection.UPSERT;
+import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyVariantEntryConverter.*;
+import static org.opencb.opencga.storage.mongodb.variant.summary.VariantSummaryBucket.*;
+
+/**
+ * Maintains a per-study collection of region-bucketed variant summaries, used to answer
+ * {@link org.opencb.opencga.storage.mongodb.variant.adaptors.VariantMongoDBAdaptor#getFrequency},
+ * {@link org.opencb.opencga.storage.mongodb.variant.adaptors.VariantMongoDBAdaptor#groupBy} and
+ * {@link org.opencb.opencga.storage.mongodb.variant.adaptors.VariantMongoDBAdaptor#rank} without
+ * aggregating over the whole variants collection.
+ *
+ * Buckets are rebuilt incrementally. Loading files refreshes the buckets containing variants from those files, while
+ * annotation and stats updates mark the affected buckets as dirty, to be refreshed at the end of the operation.
+ * Queries never refresh buckets. Summary queries return null whenever the query can not be answered from the summaries,
+ * including queries over dirty buckets, so the caller can fall back to the live aggregation.
+ */
+public class VariantMongoDBSummaryManager {
+
+    public static final String STATUS_ID_PREFIX = "status_";
+    public static final String READY_FIELD = "ready";
+
+    private static final Set<VariantQueryParam> SUMMARY_FREQUENCY_PARAMS = Collections.unmodifiableSet(
+            EnumSet.of(VariantQueryParam.STUDY, VariantQueryParam.TYPE));
+    private static final Set<VariantQueryParam> SUMMARY_GROUP_BY_PARAMS = Collections.unmodifiableSet(
+            EnumSet.of(VariantQueryParam.STUDY));
+    private static final Bson VARIANT_PROJECTION = Projections.include(
+            DocumentToVariantConverter.CHROMOSOME_FIELD,
+            DocumentToVariantConverter.START_FIELD,
+            DocumentToVariantConverter.TYPE_FIELD,
+            DocumentToVariantConverter.STATS_FIELD,
+            DocumentToVariantConverter.ANNOTATION_FIELD + '.' + DocumentToVariantAnnotationConverter.CONSEQUENCE_TYPE_FIELD
+                    + '.' + DocumentToVariantAnnotationConverter.CT_SO_ACCESSION_FIELD,
+            DocumentToVariantConverter.ANNOTATION_FIELD + '.' + DocumentToVariantAnnotationConverter.CONSEQUENCE_TYPE_FIELD
+                    + '.' + DocumentToVariantAnnotationConverter.CT_BIOTYPE_FIELD,
+            DocumentToVariantConverter.ANNOTATION_FIELD + '.' + DocumentToVariantAnnotationConverter.CONSEQUENCE_TYPE_FIELD
+                    + '.' + DocumentToVariantAnnotationConverter.CT_GENE_NAME_FIELD,
+            DocumentToVariantConverter.ANNOTATION_FIELD + '.' + DocumentToVariantAnnotationConverter.CONSEQUENCE_TYPE_FIELD
+                    + '.' + DocumentToVariantAnnotationConverter.CT_ENSEMBL_GENE_ID_FIELD);
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoDBCollection summaryCollection;
+    private final MongoDBCollection variantsCollection;
+    private final Supplier<VariantStorageMetadataManager> metadataManager;
+    private final int bucketSize;
+    private final Logger logger = LoggerFactory.getLogger(VariantMongoDBSummaryManager.class);
+
+    public VariantMongoDBSummaryManager(MongoDBCollection summaryCollection, MongoDBCollection variantsCollection,
+                                        Supplier<VariantStorageMetadataManager> metadataManager, int bucketSize) {
+        this.summaryCollection = summaryCollection;
+        this.variantsCollection = variantsCollection;
+        this.metadataManager = metadataManager;
+        this.bucketSize = bucketSize;
+    }
+
+    public int getBucketSize() {
+        return bucketSize;
+    }
+
+    public boolean isReady(int studyId) {
+        Document status = summaryCollection.find(eq(ID_FIELD, STATUS_ID_PREFIX + studyId), new QueryOptions()).first();
+        return status != null && status.getBoolean(READY_FIELD, false);
+    }
+
+    /**
+     * Build from scratch the summary of the given study, with one single sorted scan of its variants.
+     *
+     * @param studyId Study to build
+     */
+    public void build(int studyId) {
+        long start = System.currentTimeMillis();
+        logger.info("Building variants summary of study {}", studyId);
+        invalidate(studyId);
+
+        int defaultCohortId = getDefaultCohortId(studyId);
+        VariantSummaryBucket bucket = null;
+        String currentChromosome = null;
+        int currentBucket = -1;
+        List<Document> buckets = new ArrayList<>(BATCH_SIZE);
+        QueryOptions options = new QueryOptions(QueryOptions.SORT, Sorts.ascending(ID_FIELD))
+                .append(MongoDBCollection.BATCH_SIZE, BATCH_SIZE);
+        try (MongoDBIterator<Document> iterator = variantsCollection.nativeQuery()
+                .find(eq(DocumentToVariantConverter.STUDIES_FIELD + '.' + STUDYID_FIELD, studyId), VARIANT_PROJECTION, options)) {
+            while (iterator.hasNext()) {
+                Document variant = iterator.next();
+                String chromosome = variant.getString(DocumentToVariantConverter.CHROMOSOME_FIELD);
+                int b = getBucket(variant.getInteger(DocumentToVariantConverter.START_FIELD), bucketSize);
+                if (bucket == null || b != currentBucket || !chromosome.equals(currentChromosome)) {
+                    if (bucket != null) {
+                        buckets.add(bucket.toDocument());
+                        if (buckets.size() >= BATCH_SIZE) {
+                            write(buckets);
+                            buckets.clear();
+                        }
+                    }
+                    currentChromosome = chromosome;
+                    currentBucket = b;
+                    bucket = new VariantSummaryBucket(studyId, defaultCohortId, chromosome, b, bucketSize);
+                }
+                bucket.add(variant);
+            }
+        }
+        if (bucket != null) {
+            buckets.add(bucket.toDocument());
+        }
+        write(buckets);
+        setReady(studyId, true);
+        logger.info("Variants summary of study {} built in {}ms", studyId, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Update the summary of a study after loading some files. Only the buckets containing variants from the given files
+     * are refreshed. If the summary was not built yet, builds it from scratch.
+     *
+     * @param studyId Study
+     * @param fileIds Loaded files
+     */
+    public void update(int studyId, Collection<Integer> fileIds) {
+        if (!isReady(studyId)) {
+            build(studyId);
+            return;
+        }
+        Bson query = elemMatch(DocumentToVariantConverter.STUDIES_FIELD, and(
+                eq(STUDYID_FIELD, studyId),
+                in(FILES_FIELD + '.' + FILEID_FIELD, fileIds)));
+        Map<String, Set<Integer>> buckets = new HashMap<>();
+        try (MongoDBIterator<Document> iterator = variantsCollection.nativeQuery().find(query,
+                Projections.include(DocumentToVariantConverter.CHROMOSOME_FIELD, DocumentToVariantConverter.START_FIELD),
+                new QueryOptions(MongoDBCollection.BATCH_SIZE, BATCH_SIZE))) {
+            while (iterator.hasNext()) {
+                Document variant = iterator.next();
+                buckets.computeIfAbsent(variant.getString(DocumentToVariantConverter.CHROMOSOME_FIELD), k -> new HashSet<>())
+                        .add(getBucket(variant.getInteger(DocumentToVariantConverter.START_FIELD), bucketSize));
+            }
+        }
+        buckets.forEach((chromosome, bucketIds) -> bucketIds.forEach(b -> refresh(studyId, chromosome, b)));
+    }
+
+    /**
+     * Mark as dirty the buckets containing the given positions for all the studies with a ready summary.
+     *
+     * @param positions Map from chromosome to positions
+     */
+    public void markDirty(Map<String, ? extends Collection<Integer>> positions) {
+        List<Integer> studies = getReadyStudies();
+        if (studies.isEmpty()) {
+            return;
+        }
+        List<Bson> queries = new ArrayList<>();
+        List<Bson> updates = new ArrayList<>();
+        for (Integer studyId : studies) {
+            positions.forEach((chromosome, chromosomePositions) -> {
+                Set<Integer> buckets = new HashSet<>();
+                for (Integer position : chromosomePositions) {
+                    buckets.add(getBucket(position, bucketSize));
+                }
+                for (Integer b : buckets) {
+                    queries.add(eq(ID_FIELD, buildId(studyId, chromosome, b)));
+                    updates.add(Updates.combine(
+                            Updates.set(DIRTY_FIELD, true),
+                            Updates.setOnInsert(STUDY_FIELD, studyId),
+                            Updates.setOnInsert(CHROMOSOME_FIELD, chromosome),
+                            Updates.setOnInsert(BUCKET_FIELD, b)));
+                }
+            });
+        }
+        if (!queries.isEmpty()) {
+            summaryCollection.update(queries, updates, new QueryOptions(UPSERT, true));
+        }
+    }
+
+    /**
+     * Refresh all the buckets marked as dirty.
+     */
+    public void refreshDirty() {
+        for (Integer studyId : getReadyStudies()) {
+            refreshDirty(studyId);
+        }
+    }
+
+    public void refreshDirty(int studyId) {
+        List<Document> dirty = summaryCollection.find(and(eq(STUDY_FIELD, studyId), eq(DIRTY_FIELD, true)),
+                Projections.include(CHROMOSOME_FIELD, BUCKET_FIELD), null).getResults();
+        if (!dirty.isEmpty()) {
+            logger.info("Refresh {} dirty summary buckets from study {}", dirty.size(), studyId);
+        }
+        for (Document document : dirty) {
+            refresh(studyId, document.getString(CHROMOSOME_FIELD), document.getInteger(BUCKET_FIELD));
+        }
+    }
+
+    private boolean hasDirtyBuckets(int studyId) {
+        return summaryCollection.count(and(eq(STUDY_FIELD, studyId), eq(DIRTY_FIELD, true))).first() > 0;
+    }
+
+    /**
+     * Recompute one single bucket.
+     *
+     * @param studyId    Study
+     * @param chromosome Chromosome
+     * @param b          Bucket
+     */
+    public void refresh(int studyId, String chromosome, int b) {
+        VariantSummaryBucket bucket = new VariantSummaryBucket(studyId, getDefaultCohortId(studyId), chromosome, b, bucketSize);
+        Bson query = and(
+                gte(ID_FIELD, VariantStringIdConverter.buildId(chromosome, getBucketStart(b, bucketSize))),
+                lt(ID_FIELD, VariantStringIdConverter.buildId(chromosome, getBucketEnd(b, bucketSize) + 1)),
+                eq(DocumentToVariantConverter.STUDIES_FIELD + '.' + STUDYID_FIELD, studyId));
+        try (MongoDBIterator<Document> iterator = variantsCollection.nativeQuery().find(query, VARIANT_PROJECTION,
+                new QueryOptions(MongoDBCollection.BATCH_SIZE, BATCH_SIZE))) {
+            while (iterator.hasNext()) {
+                bucket.add(iterator.next());
+            }
+        }
+        if (bucket.getCount() == 0) {
+            summaryCollection.remove(eq(ID_FIELD, buildId(studyId, chromosome, b)), null);
+        } else {
+            write(Collections.singletonList(bucket.toDocument()));
+        }
+    }
+
+    /**
+     * Remove the summary of a study. Queries will use the live aggregation until the summary is built again.
+     *
+     * @param studyId Study
+     */
+    public void invalidate(int studyId) {
+        setReady(studyId, false);
+        summaryCollection.remove(and(eq(STUDY_FIELD, studyId), exists(CHROMOSOME_FIELD)), new QueryOptions(MULTI, true));
+    }
+
+    /**
+     * Default interval size of the variant frequency histogram, returning about 200 intervals.
+     * Used by both the summaries and the live aggregation, so both return the same intervals. The summaries can only answer
+     * the query if the interval is a multiple of the bucket size.
+     *
+     * @param region Region
+     * @return Interval size
+     */
+    public static int getDefaultIntervalSize(Region region) {
+        return Math.max(1, (region.getEnd() - region.getStart()) / 200);
+    }
+
+    /**
+     * Compute the variant frequency histogram from the summaries.
+     *
+     * @param query              Variants query
+     * @param region             Region
+     * @param regionIntervalSize Interval size. If not positive, use {@link #getDefaultIntervalSize}.
+     * @return Histogram, or null if the query can not be answered from the summaries.
+     */
+    public DataResult<Document> getFrequency(Query query, Region region, int regionIntervalSize) {
+        long start = System.currentTimeMillis();
+        Integer studyId = getSummaryStudy(query, SUMMARY_FREQUENCY_PARAMS);
+        if (studyId == null) {
+            return null;
+        }
+        List<String> types = VariantQueryUtils.isValidParam(query, VariantQueryParam.TYPE)
+                ? query.getAsStringList(VariantQueryParam.TYPE.key())
+                : Collections.emptyList();
+        if (types.stream().anyMatch(VariantQueryUtils::isNegated)) {
+            return null;
+        }
+        if (regionIntervalSize <= 0) {
+            regionIntervalSize = getDefaultIntervalSize(region);
+        }
+        if (regionIntervalSize % bucketSize != 0) {
+            return null;
+        }
+
+        int firstBucket = getBucket(region.getStart(), bucketSize);
+        int lastBucket = getBucket(region.getEnd(), bucketSize);
+        List<Document> buckets = summaryCollection.find(and(
+                eq(STUDY_FIELD, studyId),
+                eq(CHROMOSOME_FIELD, region.getChromosome()),
+                gte(BUCKET_FIELD, firstBucket),
+                lte(BUCKET_FIELD, lastBucket)),
+                Projections.include(BUCKET_FIELD, MIN_START_FIELD, MAX_START_FIELD, COUNT_FIELD, TYPE_FIELD, DIRTY_FIELD), null)
+                .getResults();
+
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (Document bucket : buckets) {
+            if (bucket.getBoolean(DIRTY_FIELD, false)) {
+                // Not refreshed yet
+                return null;
+            }
+            int b = bucket.getInteger(BUCKET_FIELD);
+            // Partially overlapping buckets can only be used if all their variants are within the region
+            if ((b == firstBucket || b == lastBucket)
+                    && (bucket.getInteger(MIN_START_FIELD) <= region.getStart() || bucket.getInteger(MAX_START_FIELD) >= region.getEnd())) {
+                return null;
+            }
+            int count;
+            if (types.isEmpty()) {
+                count = bucket.getInteger(COUNT_FIELD);
+            } else {
+                count = 0;
+                for (Document type : bucket.getList(TYPE_FIELD, Document.class)) {
+                    if (types.contains(type.getString(KEY_FIELD))) {
+                        count += type.getInteger(VALUE_FIELD);
+                    }
+                }
+            }
+            counts.merge(getBucketStart(b, bucketSize) / regionIntervalSize, count, Integer::sum);
+        }
+
+        List<Document> results = new ArrayList<>();
+        int firstChunkId = region.getStart() / regionIntervalSize;
+        int lastChunkId = region.getEnd() / regionIntervalSize;
+        for (int chunkId = firstChunkId; chunkId <= lastChunkId; chunkId++) {
+            int count = counts.getOrDefault(chunkId, 0);
+            results.add(new Document()
+                    .append("_id", (long) chunkId)
+                    .append("start", (chunkId == 0) ? 1 : chunkId * regionIntervalSize)
+                    .append("end", (chunkId * regionIntervalSize) + regionIntervalSize - 1)
+                    .append("chromosome", region.getChromosome())
+                    .append("features_count", count == 0 ? 0 : Math.log(count)));
+        }
+        return new DataResult<>((int) (System.currentTimeMillis() - start), Collections.emptyList(), results.size(), results,
+                results.size());
+    }
+
+    /**
+     * Count variants grouped by the given field from the summaries.
+     *
+     * @param query   Variants query
+     * @param field   Field to group by. Accepts the same values as VariantMongoDBAdaptor::groupBy
+     * @param options Query options: count, order, skip and limit
+     * @return Grouped counts as documents "{id, count}", or null if the query can not be answered from the summaries.
+     */
+    public DataResult<Document> groupBy(Query query, String field, QueryOptions options) {
+        if (!options.getBoolean("count", false)) {
+            return null;
+        }
+        Integer studyId = getSummaryStudy(query, SUMMARY_GROUP_BY_PARAMS);
+        if (studyId == null || hasDirtyBuckets(studyId)) {
+            return null;
+        }
+
+        String summaryField;
+        switch (field) {
+            case "gene":
+            case "ensemblGene":
+                summaryField = ENSEMBL_GENE_FIELD;
+                break;
+            case "ct":
+            case "consequence_type":
+                summaryField = CONSEQUENCE_TYPE_FIELD;
+                break;
+            case "type":
+                summaryField = TYPE_FIELD;
+                break;
+            case "biotype":
+                summaryField = BIOTYPE_FIELD;
+                break;
+            default:
+                summaryField = GENE_NAME_FIELD;
+                break;
+        }
+
+        int order = options.getInt("order", -1);
+        int skip = options.getInt(QueryOptions.SKIP, -1);
+        int limit = options.getInt(QueryOptions.LIMIT, -1) > 0 ? options.getInt(QueryOptions.LIMIT) : 10;
+
+        List<Bson> operations = new ArrayList<>();
+        operations.add(new Document("$match", new Document(STUDY_FIELD, studyId)
+                .append(CHROMOSOME_FIELD, new Document("$exists", true))));
+        operations.add(new Document("$unwind", "$" + summaryField));
+        operations.add(new Document("$group", new Document("_id", "$" + summaryField + '.' + KEY_FIELD)
+                .append("count", new Document("$sum", "$" + summaryField + '.' + VALUE_FIELD))));
+        operations.add(new Document("$project", new Document("id", "$_id").append("_id", 0).append("count", 1)));
+        operations.add(new Document("$sort", new Document("count", order)));
+        if (skip > 0) {
+            operations.add(new Document("$skip", skip));
+        }
+        operations.add(new Document("$limit", limit));
+        logger.debug("db." + summaryCollection + ".aggregate( " + operations + " )");
+        return summaryCollection.aggregate(operations, new QueryOptions());
+    }
+
+    /**
+     * Get the study to be used for answering the query from the summaries.
+     *
+     * @param query       Variants query
+     * @param validParams Params that the summaries can resolve
+     * @return Study id, or null if the query can not be answered from the summaries.
+     */
+    private Integer getSummaryStudy(Query query, Set<VariantQueryParam> validParams) {
+        Set<VariantQueryParam> params = VariantQueryUtils.validParams(query, true);
+        params.removeAll(validParams);
+        if (!params.isEmpty()) {
+            return null;
+        }
+        Integer studyId;
+        if (VariantQueryUtils.isValidParam(query, VariantQueryParam.STUDY)) {
+            List<String> studies = query.getAsStringList(VariantQueryParam.STUDY.key());
+            if (studies.size() != 1 || VariantQueryUtils.isNegated(studies.get(0))) {
+                return null;
+            }
+            studyId = metadataManager.get().getStudyId(studies.get(0));
+        } else {
+            List<Integer> studyIds = metadataManager.get().getStudyIds();
+            if (studyIds.size() != 1) {
+                return null;
+            }
+            studyId = studyIds.get(0);
+        }
+        return isReady(studyId) ? studyId : null;
+    }
+
+    private List<Integer> getReadyStudies() {
+        List<Integer> studies = new ArrayList<>();
+        for (Document status : summaryCollection.find(and(regex(ID_FIELD, "^" + STATUS_ID_PREFIX), eq(READY_FIELD, true)),
+                Projections.include(STUDY_FIELD), null).getResults()) {
+            studies.add(status.getInteger(STUDY_FIELD));
+        }
+        return studies;
+    }
+
+    private void setReady(int studyId, boolean ready) {
+        summaryCollection.update(eq(ID_FIELD, STATUS_ID_PREFIX + studyId),
+                Updates.combine(Updates.set(STUDY_FIELD, studyId), Updates.set(READY_FIELD, ready)),
+                new QueryOptions(UPSERT, true));
+    }
+
+    private int getDefaultCohortId(int studyId) {
+        Integer cohortId = metadataManager.get().getCohortId(studyId, StudyEntry.DEFAULT_COHORT);
+        return cohortId == null ? -1 : cohortId;
+    }
+
+    private void write(List<Document> buckets) {
+        if (buckets.isEmpty()) {
+            return;
+        }
+        List<Bson> queries = new ArrayList<>(buckets.size());
+        List<Bson> updates = new ArrayList<>(buckets.size());
+        for (Document bucket : buckets) {
+            queries.add(Filters.eq(ID_FIELD, bucket.get(ID_FIELD)));
+            List<Bson> sets = new ArrayList<>(bucket.size());
+            bucket.forEach((key, value) -> {
+                if (!key.equals(ID_FIELD)) {
+                    sets.add(Updates.set(key, value));
+                }
+            });
+            updates.add(Updates.combine(sets));
+        }
+        summaryCollection.update(queries, updates, new QueryOptions(UPSERT, true));
+    }
+}
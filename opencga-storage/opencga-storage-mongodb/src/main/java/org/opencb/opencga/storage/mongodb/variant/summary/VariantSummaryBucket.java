@@ -0,0 +1,200 @@
+package org.opencb.opencga.storage.mongodb.variant.summary;
+
+import org.bson.Document;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantAnnotationConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantStatsConverter;
+
+import java.util.*;
+
+/**
+ * Accumulates the precomputed summary of one region bucket of one study.
+ *
+ * Each variant is counted once per distinct value of each field, so the counts can be summed across buckets and match
+ * the live "$addToSet" based aggregations from VariantMongoDBAdaptor.
+ */
+public class VariantSummaryBucket {
+
+    public static final String ID_FIELD = "_id";
+    public static final String STUDY_FIELD = "sid";
+    public static final String CHROMOSOME_FIELD = "chr";
+    public static final String BUCKET_FIELD = "b";
+    public static final String START_FIELD = "start";
+    public static final String END_FIELD = "end";
+    public static final String MIN_START_FIELD = "minStart";
+    public static final String MAX_START_FIELD = "maxStart";
+    public static final String COUNT_FIELD = "count";
+    public static final String TYPE_FIELD = "type";
+    public static final String CONSEQUENCE_TYPE_FIELD = "ct";
+    public static final String BIOTYPE_FIELD = "bt";
+    public static final String GENE_NAME_FIELD = "gn";
+    public static final String ENSEMBL_GENE_FIELD = "ensg";
+    public static final String MAF_BINS_FIELD = "maf";
+    public static final String DIRTY_FIELD = "dirty";
+    public static final String KEY_FIELD = "k";
+    public static final String VALUE_FIELD = "c";
+
+    /**
+     * Upper bounds (exclusive) of the minor allele frequency bins. The last bin holds everything up to 0.5.
+     */
+    public static final double[] MAF_BINS = {0.001, 0.005, 0.01, 0.05};
+
+    private final int studyId;
+    private final int defaultCohortId;
+    private final String chromosome;
+    private final int bucket;
+    private final int bucketSize;
+
+    private int count;
+    private int minStart = Integer.MAX_VALUE;
+    private int maxStart = Integer.MIN_VALUE;
+    private final Map<Object, Integer> types = new HashMap<>();
+    private final Map<Object, Integer> consequenceTypes = new HashMap<>();
+    private final Map<Object, Integer> biotypes = new HashMap<>();
+    private final Map<Object, Integer> geneNames = new HashMap<>();
+    private final Map<Object, Integer> ensemblGenes = new HashMap<>();
+    private final int[] mafBins = new int[MAF_BINS.length + 1];
+
+    public VariantSummaryBucket(int studyId, int defaultCohortId, String chromosome, int bucket, int bucketSize) {
+        this.studyId = studyId;
+        this.defaultCohortId = defaultCohortId;
+        this.chromosome = chromosome;
+        this.bucket = bucket;
+        this.bucketSize = bucketSize;
+    }
+
+    public static String buildId(int studyId, String chromosome, int bucket) {
+        return studyId + "_" + chromosome + "_" + bucket;
+    }
+
+    public static int getBucket(int position, int bucketSize) {
+        return position / bucketSize;
+    }
+
+    public static int getBucketStart(int bucket, int bucketSize) {
+        return bucket * bucketSize;
+    }
+
+    public static int getBucketEnd(int bucket, int bucketSize) {
+        return bucket * bucketSize + bucketSize - 1;
+    }
+
+    /**
+     * Add a variant document, as stored in the variants collection, to this bucket.
+     *
+     * @param variant Variant document. Requires at least "start", "type", "annotation.ct" and "stats" fields.
+     */
+    public void add(Document variant) {
+        count++;
+        int start = variant.getInteger(DocumentToVariantConverter.START_FIELD);
+        minStart = Math.min(minStart, start);
+        maxStart = Math.max(maxStart, start);
+
+        increment(types, variant.getString(DocumentToVariantConverter.TYPE_FIELD));
+
+        Document annotation = getAnnotation(variant);
+        if (annotation != null) {
+            Set<Object> cts = new HashSet<>();
+            Set<Object> bts = new HashSet<>();
+            Set<Object> gns = new HashSet<>();
+            Set<Object> ensgs = new HashSet<>();
+            List<Document> consequenceTypesList = getList(annotation, DocumentToVariantAnnotationConverter.CONSEQUENCE_TYPE_FIELD);
+            for (Document ct : consequenceTypesList) {
+                for (Object so : getList(ct, DocumentToVariantAnnotationConverter.CT_SO_ACCESSION_FIELD)) {
+                    cts.add(so);
+                }
+                addIfNotNull(bts, ct.get(DocumentToVariantAnnotationConverter.CT_BIOTYPE_FIELD));
+                addIfNotNull(gns, ct.get(DocumentToVariantAnnotationConverter.CT_GENE_NAME_FIELD));
+                addIfNotNull(ensgs, ct.get(DocumentToVariantAnnotationConverter.CT_ENSEMBL_GENE_ID_FIELD));
+            }
+            cts.forEach(key -> increment(consequenceTypes, key));
+            bts.forEach(key -> increment(biotypes, key));
+            gns.forEach(key -> increment(geneNames, key));
+            ensgs.forEach(key -> increment(ensemblGenes, key));
+        }
+
+        for (Document stats : this.<Document>getList(variant, DocumentToVariantConverter.STATS_FIELD)) {
+            if (Objects.equals(stats.get(DocumentToVariantStatsConverter.STUDY_ID), studyId)
+                    && Objects.equals(stats.get(DocumentToVariantStatsConverter.COHORT_ID), defaultCohortId)) {
+                Number maf = (Number) stats.get(DocumentToVariantStatsConverter.MAF_FIELD);
+                if (maf != null) {
+                    mafBins[getMafBin(maf.doubleValue())]++;
+                }
+                break;
+            }
+        }
+    }
+
+    public Document toDocument() {
+        return new Document(ID_FIELD, buildId(studyId, chromosome, bucket))
+                .append(STUDY_FIELD, studyId)
+                .append(CHROMOSOME_FIELD, chromosome)
+                .append(BUCKET_FIELD, bucket)
+                .append(START_FIELD, getBucketStart(bucket, bucketSize))
+                .append(END_FIELD, getBucketEnd(bucket, bucketSize))
+                .append(MIN_START_FIELD, count == 0 ? null : minStart)
+                .append(MAX_START_FIELD, count == 0 ? null : maxStart)
+                .append(COUNT_FIELD, count)
+                .append(TYPE_FIELD, toKeyValueList(types))
+                .append(CONSEQUENCE_TYPE_FIELD, toKeyValueList(consequenceTypes))
+                .append(BIOTYPE_FIELD, toKeyValueList(biotypes))
+                .append(GENE_NAME_FIELD, toKeyValueList(geneNames))
+                .append(ENSEMBL_GENE_FIELD, toKeyValueList(ensemblGenes))
+                .append(MAF_BINS_FIELD, toList(mafBins))
+                .append(DIRTY_FIELD, false);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    static int getMafBin(double maf) {
+        for (int i = 0; i < MAF_BINS.length; i++) {
+            if (maf < MAF_BINS[i]) {
+                return i;
+            }
+        }
+        return MAF_BINS.length;
+    }
+
+    private static Document getAnnotation(Document variant) {
+        Object o = variant.get(DocumentToVariantConverter.ANNOTATION_FIELD);
+        if (o instanceof List) {
+            return ((List) o).isEmpty() ? null : (Document) ((List) o).get(0);
+        } else {
+            return (Document) o;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> getList(Document document, String key) {
+        Object o = document.get(key);
+        return o instanceof List ? (List<T>) o : Collections.emptyList();
+    }
+
+    private static void addIfNotNull(Set<Object> set, Object value) {
+        if (value != null) {
+            set.add(value);
+        }
+    }
+
+    private static void increment(Map<Object, Integer> map, Object key) {
+        if (key != null) {
+            map.merge(key, 1, Integer::sum);
+        }
+    }
+
+    private static List<Document> toKeyValueList(Map<Object, Integer> map) {
+        List<Document> list = new ArrayList<>(map.size());
+        map.forEach((key, value) -> list.add(new Document(KEY_FIELD, key).append(VALUE_FIELD, value)));
+        return list;
+    }
+
+    private static List<Integer> toList(int[] array) {
+        List<Integer> list = new ArrayList<>(array.length);
+        for (int i : array) {
+            list.add(i);
+        }
+        return list;
+    }
+}
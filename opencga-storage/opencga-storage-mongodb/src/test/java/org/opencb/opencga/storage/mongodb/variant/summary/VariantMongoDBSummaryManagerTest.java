@@ -0,0 +1,19 @@
+package org.opencb.opencga.storage.mongodb.variant.summary;
+
+import org.junit.Test;
+import org.opencb.biodata.models.core.Region;
+
+import static org.junit.Assert.assertEquals;
+
+public class VariantMongoDBSummaryManagerTest {
+
+    @Test
+    public void testDefaultIntervalSize() {
+        // About 200 intervals, same as the live aggregation
+        assertEquals(5000, VariantMongoDBSummaryManager.getDefaultIntervalSize(new Region("1", 1, 1000001)));
+        assertEquals(5999, VariantMongoDBSummaryManager.getDefaultIntervalSize(new Region("1", 1, 1199999)));
+        // Never smaller than one
+        assertEquals(4, VariantMongoDBSummaryManager.getDefaultIntervalSize(new Region("1", 1, 1000)));
+        assertEquals(1, VariantMongoDBSummaryManager.getDefaultIntervalSize(new Region("1", 1, 100)));
+    }
+}
@@ -0,0 +1,94 @@
+package org.opencb.opencga.storage.mongodb.variant.summary;
+
+import org.bson.Document;
+import org.junit.Test;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantAnnotationConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantStatsConverter;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.opencb.opencga.storage.mongodb.variant.summary.VariantSummaryBucket.*;
+
+public class VariantSummaryBucketTest {
+
+    @Test
+    public void testAdd() {
+        VariantSummaryBucket bucket = new VariantSummaryBucket(1, 10, "1", 3, 1000);
+
+        bucket.add(variant(3100, "SNV", 0.0001,
+                ct("BRCA2", "ENSG01", "protein_coding", 1583, 1631),
+                ct("BRCA2", "ENSG01", "protein_coding", 1583)));
+        bucket.add(variant(3500, "INDEL", 0.2,
+                ct("BRCA2", "ENSG01", "nonsense_mediated_decay", 1631)));
+        bucket.add(variant(3999, "SNV", null));
+
+        Document document = bucket.toDocument();
+        assertEquals("1_1_3", document.get(ID_FIELD));
+        assertEquals(3, document.get(COUNT_FIELD));
+        assertEquals(3000, document.get(START_FIELD));
+        assertEquals(3999, document.get(END_FIELD));
+        assertEquals(3100, document.get(MIN_START_FIELD));
+        assertEquals(3999, document.get(MAX_START_FIELD));
+        assertEquals(false, document.get(DIRTY_FIELD));
+
+        assertEquals(map("SNV", 2, "INDEL", 1), toMap(document, TYPE_FIELD));
+        assertEquals(map(1583, 1, 1631, 2), toMap(document, CONSEQUENCE_TYPE_FIELD));
+        assertEquals(map("protein_coding", 1, "nonsense_mediated_decay", 1), toMap(document, BIOTYPE_FIELD));
+        assertEquals(map("BRCA2", 2), toMap(document, GENE_NAME_FIELD));
+        assertEquals(map("ENSG01", 2), toMap(document, ENSEMBL_GENE_FIELD));
+        assertEquals(Arrays.asList(1, 0, 0, 0, 1), document.get(MAF_BINS_FIELD));
+    }
+
+    @Test
+    public void testMafBins() {
+        assertEquals(0, VariantSummaryBucket.getMafBin(0));
+        assertEquals(1, VariantSummaryBucket.getMafBin(0.001));
+        assertEquals(2, VariantSummaryBucket.getMafBin(0.009));
+        assertEquals(3, VariantSummaryBucket.getMafBin(0.01));
+        assertEquals(4, VariantSummaryBucket.getMafBin(0.5));
+    }
+
+    private static Document variant(int start, String type, Double maf, Document... cts) {
+        Document variant = new Document(DocumentToVariantConverter.START_FIELD, start)
+                .append(DocumentToVariantConverter.TYPE_FIELD, type);
+        if (cts.length > 0) {
+            variant.append(DocumentToVariantConverter.ANNOTATION_FIELD, Collections.singletonList(
+                    new Document(DocumentToVariantAnnotationConverter.CONSEQUENCE_TYPE_FIELD, Arrays.asList(cts))));
+        }
+        if (maf != null) {
+            variant.append(DocumentToVariantConverter.STATS_FIELD, Arrays.asList(
+                    new Document(DocumentToVariantStatsConverter.STUDY_ID, 2)
+                            .append(DocumentToVariantStatsConverter.COHORT_ID, 10)
+                            .append(DocumentToVariantStatsConverter.MAF_FIELD, 0.4),
+                    new Document(DocumentToVariantStatsConverter.STUDY_ID, 1)
+                            .append(DocumentToVariantStatsConverter.COHORT_ID, 10)
+                            .append(DocumentToVariantStatsConverter.MAF_FIELD, maf)));
+        }
+        return variant;
+    }
+
+    private static Document ct(String gene, String ensg, String biotype, Integer... so) {
+        return new Document(DocumentToVariantAnnotationConverter.CT_GENE_NAME_FIELD, gene)
+                .append(DocumentToVariantAnnotationConverter.CT_ENSEMBL_GENE_ID_FIELD, ensg)
+                .append(DocumentToVariantAnnotationConverter.CT_BIOTYPE_FIELD, biotype)
+                .append(DocumentToVariantAnnotationConverter.CT_SO_ACCESSION_FIELD, Arrays.asList(so));
+    }
+
+    private static Map<Object, Object> toMap(Document document, String field) {
+        Map<Object, Object> map = new HashMap<>();
+        for (Document kv : document.getList(field, Document.class)) {
+            map.put(kv.get(KEY_FIELD), kv.get(VALUE_FIELD));
+        }
+        return map;
+    }
+
+    private static Map<Object, Object> map(Object... keyValues) {
+        Map<Object, Object> map = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            map.put(keyValues[i], keyValues[i + 1]);
+        }
+        return map;
+    }
+}